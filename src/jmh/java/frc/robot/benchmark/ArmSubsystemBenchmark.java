@@ -0,0 +1,65 @@
+package frc.robot.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.RelativeEncoder;
+import edu.wpi.first.hal.HAL;
+import frc.robot.subsystems.ArmSubsystem;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks the arm subsystem methods that run every loop, using mock hardware like {@code
+ * ArmSubsystemTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArmSubsystemBenchmark {
+  private ArmSubsystem arm;
+
+  /** Create the arm with mock hardware and start a move so the controller is enabled. */
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+
+    // Stub-only mocks don't record invocations, so they don't add to the measured allocation
+    CANSparkMax motor = mock(CANSparkMax.class, withSettings().stubOnly());
+    RelativeEncoder encoder = mock(RelativeEncoder.class, withSettings().stubOnly());
+    when(encoder.getPosition()).thenReturn(0.1);
+    when(encoder.getVelocity()).thenReturn(0.5);
+    when(motor.getOutputCurrent()).thenReturn(10.0);
+
+    arm = new ArmSubsystem(new ArmSubsystem.Hardware(motor, encoder));
+    arm.moveToPosition(1.0).initialize();
+  }
+
+  /** Close the arm. */
+  @TearDown
+  public void tearDown() {
+    arm.close();
+  }
+
+  /** Profile, PID and feedforward calculation for one loop. */
+  @Benchmark
+  public double useOutput() {
+    arm.useOutput();
+    return arm.getVoltageCommand();
+  }
+
+  /** Telemetry and state logging for one loop. */
+  @Benchmark
+  public void periodic() {
+    arm.periodic();
+  }
+}
@@ -0,0 +1,47 @@
+package frc.robot.benchmark;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.PWM;
+import frc.robot.subsystems.BlinkinSubsystem;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** Benchmarks the Blinkin periodic update with a simulated PWM output. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlinkinSubsystemBenchmark {
+  private BlinkinSubsystem blinkin;
+  private boolean condition;
+
+  /** Create an enabled Blinkin that follows a condition. */
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+    blinkin =
+        new BlinkinSubsystem(
+            new PWM(0), () -> condition, BlinkinSubsystem.GOLD, BlinkinSubsystem.RED);
+    blinkin.enable();
+  }
+
+  /** Release the PWM channel. */
+  @TearDown
+  public void tearDown() {
+    blinkin.close();
+  }
+
+  /** Update the output, alternating the condition so the value changes. */
+  @Benchmark
+  public double periodic() {
+    condition = !condition;
+    blinkin.periodic();
+    return blinkin.getSpeed();
+  }
+}
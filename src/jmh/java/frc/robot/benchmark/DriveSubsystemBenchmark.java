@@ -0,0 +1,57 @@
+package frc.robot.benchmark;
+
+import edu.wpi.first.hal.HAL;
+import frc.robot.subsystems.DriveSubsystem;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks the drive subsystem methods that run every loop, using simulated hardware.
+ *
+ * <p>The devices are not configured, so the odometry loop never starts and the odometry update is
+ * measured on its own, on the benchmark thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DriveSubsystemBenchmark {
+  private DriveSubsystem drive;
+
+  /** Create the drive with simulated motor controllers and gyro. */
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+    drive = new DriveSubsystem();
+  }
+
+  /** Close the drive and its devices. */
+  @TearDown
+  public void tearDown() {
+    drive.close();
+  }
+
+  /** Joystick tank drive command for one loop. */
+  @Benchmark
+  public void tankDrive() {
+    drive.tankDrive(0.5, 0.4, false);
+  }
+
+  /** Gyro and encoder sample, odometry update and pose history for one odometry loop cycle. */
+  @Benchmark
+  public void updateOdometry() {
+    drive.updateOdometry();
+  }
+
+  /** Telemetry and state logging for one loop. */
+  @Benchmark
+  public void periodic() {
+    drive.periodic();
+  }
+}
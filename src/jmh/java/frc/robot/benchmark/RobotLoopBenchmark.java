@@ -0,0 +1,78 @@
+package frc.robot.benchmark;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.DataLogging;
+import frc.robot.RobotContainer;
+import frc.robot.devices.DeviceConfigurator;
+import frc.robot.subsystems.ArmSubsystem;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks the robot-wide parts of the loop with the full robot container on simulated hardware
+ * and the robot enabled, so the drive and arm default commands are scheduled.
+ *
+ * <p>The arm is built with its control law in the robot loop rather than on its own Notifier, so
+ * the scheduler benchmark includes the control law and no control thread runs while measuring. The
+ * drive odometry runs on its own loop, {@code DriveConstants.ODOMETRY_PERIOD_SEC} apart, so it is
+ * not part of the scheduler benchmark and is measured one update at a time instead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RobotLoopBenchmark {
+  private DataLogging datalog;
+  private CommandScheduler scheduler;
+  private RobotContainer container;
+
+  /** Create the robot container, enable the robot and schedule the default commands. */
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+
+    datalog = DataLogging.getInstance();
+    container = new RobotContainer(new ArmSubsystem(ArmSubsystem.initializeHardware()));
+    DeviceConfigurator.getInstance().configureAll();
+    datalog.dataLogRobotContainerInit(container);
+
+    // Moving the arm enables it, which sets its default hold position command
+    scheduler = CommandScheduler.getInstance();
+    scheduler.schedule(container.getArmSubsystem().moveToPosition(1.0));
+    scheduler.run();
+  }
+
+  /** Stop the odometry loop and close the devices. */
+  @TearDown
+  public void tearDown() {
+    container.close();
+  }
+
+  /** Telemetry flush, command logging and loop time logging for one loop. */
+  @Benchmark
+  public void dataLoggingPeriodic() {
+    datalog.periodic();
+  }
+
+  /** Buttons, default commands and subsystem periodic methods for one loop. */
+  @Benchmark
+  public void schedulerRun() {
+    scheduler.run();
+  }
+
+  /** One cycle of the drive odometry loop, with the rest of the robot running. */
+  @Benchmark
+  public void driveOdometry() {
+    container.getDriveSubsystem().updateOdometry();
+  }
+}
@@ -6,6 +6,7 @@ package frc.robot;
 
 import edu.wpi.first.math.kinematics.DifferentialDriveKinematics;
 import edu.wpi.first.math.util.Units;
+import java.util.List;
 
 /**
  * The Constants class provides a convenient place for teams to hold robot-wide numerical or boolean
@@ -53,6 +54,26 @@ public final class Constants {
   // Set to true to log loop timing data. To false to disable.
   public static final boolean LOOP_TIMING_LOG = true;
 
+  // Set to true to also record the NetworkTables value changes under NT_LOG_PREFIXES in the data
+  // log. To false to log only the data log entries.
+  public static final boolean LOG_NETWORK_TABLES = true;
+
+  // NetworkTables prefixes recorded in the data log. The arm and drive SmartDashboard values are
+  // left out, since the /arm/state and /drive/state struct records hold them every loop. Add a
+  // prefix here to record a new SmartDashboard value.
+  public static final List<String> NT_LOG_PREFIXES =
+      List.of(
+          "/FMSInfo/",
+          "/Preferences/",
+          "/Shuffleboard/",
+          "/Telemetry/",
+          "/SmartDashboard/Logging/",
+          "/SmartDashboard/Profiler/",
+          "/SmartDashboard/CAN Bus Load Estimate",
+          "/SmartDashboard/Drive Left Speed Error",
+          "/SmartDashboard/Drive Right Speed Error",
+          "/SmartDashboard/Arm MPC ");
+
   /** Constants used for the Drive subsystem. */
   public static final class DriveConstants {
 
@@ -80,6 +101,46 @@ public final class Constants {
         (WHEEL_DIAMETER_METERS * Math.PI) / GEAR_RATIO;
     public static final double ENCODER_VELOCITY_CONVERSION =
         (WHEEL_DIAMETER_METERS * Math.PI) / (GEAR_RATIO * 60);
+
+    // Odometry is integrated on its own loop from gyro and encoder samples at 100-250 Hz, so the
+    // estimated path does not cut the corners of fast turns.
+    public static final double ODOMETRY_PERIOD_SEC = 0.005;
+    // Length of the pose history kept for finding the pose at a recent timestamp
+    public static final double POSE_HISTORY_SEC = 1.5;
+
+    // Trajectory following. These are fake gains chosen to match the simulated drivetrain; in
+    // actuality these must be determined individually for each robot.
+    public static final double KS_VOLTS = 0.1;
+    public static final double KV_VOLTS_PER_METER_PER_SEC = 2.8;
+    public static final double KA_VOLTS_PER_METER_PER_SEC_SQUARED = 0.3;
+    public static final double KP_VOLTS_PER_METER_PER_SEC = 1.0; // Wheel velocity P gain
+    public static final double KI_VOLTS_PER_METER = 0.0;
+    public static final double KD_VOLTS_PER_METER_PER_SEC_SQUARED = 0.0;
+    public static final double RAMSETE_B = 2.0; // In units of 1/m^2 * s^2
+    public static final double RAMSETE_ZETA = 0.7; // Damping ratio
+
+    // Default trajectory limits, used unless a path definition sets its own
+    public static final double MAX_SPEED_METERS_PER_SEC = 2.0;
+    public static final double MAX_ACCELERATION_METERS_PER_SEC_SQUARED = 1.5;
+    public static final double MAX_TRAJECTORY_VOLTS = 10.0;
+
+    // Drive the wheels at closed-loop speeds from the sticks instead of open-loop duty cycle, so
+    // the same stick gives the same speed and acceleration at any battery voltage. The top speed
+    // must be reachable with a sagging battery. Off until the gains above come from
+    // characterization.
+    public static final boolean USE_VELOCITY_DRIVE = false;
+    public static final double MAX_DRIVE_SPEED_METERS_PER_SEC = 3.5;
+    public static final double MAX_DRIVE_ACCELERATION_METERS_PER_SEC_SQUARED = 4.0;
+
+    // Compiled trajectories, in this directory of the deploy directory, and the one driven in
+    // autonomous, compiled from src/main/paths/Example.path
+    public static final String TRAJECTORY_DIRECTORY = "trajectories";
+    public static final String AUTO_TRAJECTORY = "Example";
+
+    // Background sample periods for motor controller telemetry
+    public static final double VOLTAGE_SAMPLE_PERIOD_SEC = 0.1;
+    public static final double CURRENT_SAMPLE_PERIOD_SEC = 0.02;
+    public static final double TEMPERATURE_SAMPLE_PERIOD_SEC = 0.5;
   }
 
   /** Constants used for the Arm subsystem. */
@@ -120,6 +181,67 @@ public final class Constants {
     public static final double POS_INCREMENT = Units.degreesToRadians(2); // For small adjustments
     public static final double POSITION_TOLERANCE = Units.degreesToRadians(1);
     public static final double VELOCITY_TOLERANCE = Units.degreesToRadians(1);
+
+    // Arm control loop period (200-1000 Hz), number of planned moves to keep for reuse and samples
+    // allocated for each. Moves longer than PLAN_CAPACITY samples grow the plan when they are
+    // planned.
+    public static final double CONTROL_PERIOD_SEC = 0.005;
+    public static final int PLAN_CACHE_SIZE = 8;
+    public static final int PLAN_CAPACITY = (int) Math.ceil(2.5 / CONTROL_PERIOD_SEC) + 1;
+
+    // Close the arm position loop on the Spark MAX instead of the roboRIO. The P gain is converted
+    // from volts to duty cycle using the nominal voltage.
+    public static final boolean USE_ONBOARD_PID = false;
+    public static final int ONBOARD_PID_SLOT = 0;
+    public static final double NOMINAL_VOLTAGE = 12.0;
+
+    // Plan moves time-optimally for the arm model with PROFILE_VOLTAGE_LIMIT available to follow
+    // them, leaving the rest of the supply for the PID correction. The maximum velocity still
+    // applies but the maximum acceleration is only used for trapezoid profiles. kA is also used by
+    // the state estimator; measure it with fitArm.
+    public static final boolean USE_TIME_OPTIMAL_PROFILE = true;
+    public static final double PROFILE_VOLTAGE_LIMIT = 9.0;
+    public static final double KA_VOLTS_PER_RAD_PER_SEC_SQUARED = 0.07;
+
+    // Estimate the arm position and velocity with a Kalman filter on the arm model instead of using
+    // the encoder readings directly. The encoder position is taken to be ESTIMATOR_DELAY_SEC old
+    // when read, half a status frame. The noise values are standard deviations of the model
+    // position and velocity per root second and of the encoder position.
+    public static final boolean USE_STATE_ESTIMATOR = false;
+    public static final double ESTIMATOR_DELAY_SEC = 0.01;
+    public static final double ESTIMATOR_POSITION_NOISE = 0.01;
+    public static final double ESTIMATOR_VELOCITY_NOISE = 1.0;
+    public static final double ESTIMATOR_MEASUREMENT_NOISE_RADS = 0.002;
+
+    // Model predictive control, selected with ControlMode.MODEL_PREDICTIVE. Each cycle optimizes
+    // the voltages over MPC_HORIZON_SEC for the position and velocity errors and the change from
+    // the feedforward, within the nominal voltage, the current budget and the angle limits. Each
+    // solve stops after MPC_MAX_ITERATIONS or once MPC_CPU_BUDGET_SEC is used. The motor
+    // resistance is for two 775pro motors, 12 V at a stall current of 134 A each.
+    public static final double MPC_HORIZON_SEC = 0.25;
+    public static final double MPC_POSITION_WEIGHT = 1000.0;
+    public static final double MPC_VELOCITY_WEIGHT = 10.0;
+    public static final double MPC_VOLTAGE_WEIGHT = 1.0;
+    public static final double MPC_LIMIT_WEIGHT = 10000.0;
+    public static final double MPC_CURRENT_LIMIT_AMPS = 200.0;
+    public static final double MOTOR_RESISTANCE_OHMS = 12.0 / (2 * 134);
+    public static final int MPC_MAX_ITERATIONS = 50;
+    public static final double MPC_CPU_BUDGET_SEC = 0.001;
+
+    // System identification tests. Samples are recorded at SYSID_PERIOD_SEC with the motor
+    // controller position and velocity frames sent at the same rate. Each test stops
+    // SYSID_LIMIT_MARGIN_RADS before the end of travel or after SYSID_TIMEOUT_SEC.
+    public static final double SYSID_PERIOD_SEC = 0.002;
+    public static final int SYSID_FRAME_PERIOD_MS = 2;
+    public static final int DEFAULT_FRAME_PERIOD_MS = 20;
+    public static final double SYSID_RAMP_VOLTS_PER_SEC = 1.0;
+    public static final double SYSID_STEP_VOLTS = 3.0;
+    public static final double SYSID_LIMIT_MARGIN_RADS = Units.degreesToRadians(10);
+    public static final double SYSID_TIMEOUT_SEC = 10.0;
+
+    // Background sample periods for motor controller telemetry
+    public static final double VELOCITY_SAMPLE_PERIOD_SEC = 0.02;
+    public static final double CURRENT_SAMPLE_PERIOD_SEC = 0.02;
   }
 
   /** Constants used for assigning operator input. */
@@ -6,8 +6,6 @@ import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.networktables.NetworkTableType;
 import edu.wpi.first.util.datalog.DataLog;
-import edu.wpi.first.util.datalog.DoubleLogEntry;
-import edu.wpi.first.util.datalog.StringLogEntry;
 import edu.wpi.first.util.sendable.Sendable;
 import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.DriverStation;
@@ -25,27 +23,50 @@ import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import frc.robot.subsystems.ArmSubsystem;
 import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.telemetry.AsyncDataLog;
+import frc.robot.telemetry.CommandEventLog;
+import frc.robot.telemetry.LoopProfiler;
+import frc.robot.telemetry.TelemetryPublisher;
+import frc.robot.telemetry.TelemetryPublisher.DoubleSignal;
 import java.util.Map;
 import java.util.Set;
 
 /** The DataLogging class contains all the logic for using telemetry. */
 public class DataLogging {
 
-  private DoubleLogEntry loopTime;
+  private AsyncDataLog asyncLog;
+  private int loopTimeEntry;
+  private CommandEventLog commandLog;
   private double startTime;
   private ShuffleboardTab sbCommandsTab;
   private ShuffleboardLayout pdpWidget;
   private boolean everBrownout = false;
+  private boolean prevBrownout = false;
+  private int brownoutEntry;
   private boolean prevDsConnectState;
   private ShuffleboardTab sbDriverTab;
   private Field2d sbField;
   private DriveSubsystem drive;
   private ArmSubsystem arm;
+  private final TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+  private final LoopProfiler profiler = LoopProfiler.getInstance();
+  private final int profilerPhase = profiler.registerPhase("DataLogging");
+  private final DoubleSignal droppedSignal = telemetry.addDouble("Logging/DroppedRecords", 0);
+  private final DoubleSignal highWaterSignal = telemetry.addDouble("Logging/RingHighWaterMark", 0);
 
   private DataLogging() {
-    // Starts recording to data log
+    // Starts recording to data log. NetworkTables is recorded below, without the values the state
+    // structs already hold.
+    DataLogManager.logNetworkTables(false);
     DataLogManager.start();
     final DataLog log = DataLogManager.getLog();
+    if (Constants.LOG_NETWORK_TABLES) {
+      NetworkTableInstance inst = NetworkTableInstance.getDefault();
+      for (String prefix : Constants.NT_LOG_PREFIXES) {
+        inst.startEntryDataLog(log, prefix, "NT:" + prefix);
+      }
+      inst.startConnectionDataLog(log, "NTConnection");
+    }
 
     // Record the starting values of preferences
     NetworkTable prefTable = NetworkTableInstance.getDefault().getTable("Preferences");
@@ -105,23 +126,14 @@ public class DataLogging {
 
     DataLogManager.log(String.format("Brownout Voltage: %f", RobotController.getBrownoutVoltage()));
 
-    // Set the scheduler to log Shuffleboard events for command initialize,
-    // interrupt, finish
-
-    StringLogEntry commandLog = new StringLogEntry(log, "/command/event");
-    CommandScheduler.getInstance()
-        .onCommandInitialize(
-            command -> commandLog.append("Command initialized:" + command.getName()));
-    CommandScheduler.getInstance()
-        .onCommandExecute(command -> commandLog.append("Command execute:" + command.getName()));
-    CommandScheduler.getInstance()
-        .onCommandInterrupt(
-            command -> commandLog.append("Command interrupted" + command.getName()));
-    CommandScheduler.getInstance()
-        .onCommandFinish(command -> commandLog.append("Command finished" + command.getName()));
-    commandLog.append("Opened command log");
-
-    loopTime = new DoubleLogEntry(log, "/robot/LoopTime");
+    // Log command initialize, interrupt and finish events and per-second execute counts
+    commandLog = new CommandEventLog(AsyncDataLog.getInstance());
+    commandLog.attach(CommandScheduler.getInstance());
+
+    // Values logged every loop are written by a background thread
+    asyncLog = AsyncDataLog.getInstance();
+    loopTimeEntry = asyncLog.startDouble("/robot/LoopTime");
+    brownoutEntry = asyncLog.startBoolean("/robot/BrownedOut");
   }
 
   private static class InstanceHolder {
@@ -147,8 +159,15 @@ public class DataLogging {
    * }</pre>
    */
   public void periodic() {
+    profiler.startPhase(profilerPhase);
 
-    if (RobotController.isBrownedOut()) {
+    // Log brownout transitions so the log analyzer can find brownout intervals
+    boolean brownedOut = RobotController.isBrownedOut();
+    if (brownedOut != prevBrownout) {
+      asyncLog.appendBoolean(brownoutEntry, brownedOut);
+      prevBrownout = brownedOut;
+    }
+    if (brownedOut) {
       everBrownout = true;
     }
 
@@ -164,8 +183,18 @@ public class DataLogging {
     sbField.setRobotPose(drive.getPose());
 
     if (Constants.LOOP_TIMING_LOG) {
-      loopTime.append(Timer.getFPGATimestamp() - startTime);
+      asyncLog.appendDouble(loopTimeEntry, Timer.getFPGATimestamp() - startTime);
     }
+
+    commandLog.periodic();
+
+    droppedSignal.set(asyncLog.getDroppedCount());
+    highWaterSignal.set(asyncLog.getHighWaterMark());
+
+    // Publish all telemetry values that changed this loop in one batch
+    telemetry.flush();
+
+    profiler.endPhase(profilerPhase);
   }
 
   /**
@@ -230,6 +259,7 @@ public class DataLogging {
     // See "Adding widgets to layouts" in Shuffleboard docs.
   }
 
+  /** Mark the start of the loop for the loop time log. Called from Robot.loopFunc(). */
   public void startLoopTime() {
     startTime = Timer.getFPGATimestamp();
   }
@@ -4,11 +4,18 @@
 
 package frc.robot;
 
+import edu.wpi.first.wpilibj.DataLogManager;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.devices.CanBusBudget;
+import frc.robot.devices.CanSignalSampler;
+import frc.robot.devices.DeviceConfigurator;
+import frc.robot.telemetry.LoopProfiler;
 import frc.sim.RobotModel;
+import java.util.Locale;
 
 /**
  * The VM is configured to automatically run this class, and to call the functions corresponding to
@@ -20,6 +27,8 @@ public class Robot extends TimedRobot {
   private Command autonomousCommand;
   private RobotContainer robotContainer;
   private DataLogging datalog;
+  private final LoopProfiler profiler = LoopProfiler.getInstance();
+  private final int schedulerPhase = profiler.registerPhase("Scheduler", 0.010);
 
   /**
    * {@code robotInit} runs when the robot first starts up. It is used to create the robot
@@ -34,12 +43,53 @@ public class Robot extends TimedRobot {
     // Print our splash screen info.
     Splash.printAllStatusFiles();
 
+    // Subsystems declare their CAN status frame needs as they are created. Warn if one pushes the
+    // estimated bus load over the budget.
+    CanBusBudget canBusBudget = CanBusBudget.getInstance();
+    canBusBudget.setWarningHandler(message -> DriverStation.reportWarning(message, false));
+
     // Instantiate our RobotContainer. This will perform all our button bindings,
     // and put our
     // autonomous chooser on the dashboard.
     this.robotContainer = new RobotContainer();
 
+    // Configure the devices the subsystems added, all at the same time, so startup waits only for
+    // the slowest device. This also sends the status frame periods.
+    long configStart = System.nanoTime();
+    for (DeviceConfigurator.Result result : DeviceConfigurator.getInstance().configureAll()) {
+      DataLogManager.log(result.toString());
+      if (!result.isOk()) {
+        DriverStation.reportWarning(result.toString(), false);
+      }
+    }
+    DataLogManager.log(
+        String.format(
+            Locale.ROOT, "Devices configured in %.3f s", (System.nanoTime() - configStart) / 1e9));
+
     datalog.dataLogRobotContainerInit(this.robotContainer);
+
+    // Publish the estimated bus load.
+    DataLogManager.log(canBusBudget.getReport());
+    SmartDashboard.putNumber("CAN Bus Load Estimate", canBusBudget.getUtilization());
+
+    // Start reading telemetry-only CAN signals in the background.
+    CanSignalSampler.getInstance().start();
+  }
+
+  /**
+   * Runs one iteration of the robot loop. The loop timing is started here so that it includes
+   * everything that runs in the loop, not just the code after the mode specific periodic function.
+   */
+  @Override
+  protected void loopFunc() {
+    profiler.startLoop();
+    if (datalog != null) {
+      datalog.startLoopTime();
+    }
+
+    super.loopFunc();
+
+    profiler.endLoop();
   }
 
   /**
@@ -55,7 +105,9 @@ public class Robot extends TimedRobot {
     // running already-scheduled commands, removing finished or interrupted commands, and running
     // subsystem periodic() methods. This must be called from the robot's periodic block in order
     // for anything in the Command-based framework to work.
+    profiler.startPhase(schedulerPhase);
     CommandScheduler.getInstance().run();
+    profiler.endPhase(schedulerPhase);
 
     // Must be at the end of robotPeriodic
     datalog.periodic();
@@ -76,7 +128,6 @@ public class Robot extends TimedRobot {
   @Override
   public void disabledPeriodic() {
     // Add code to run repeatedly while disabled.
-    datalog.startLoopTime();
   }
 
   /**
@@ -105,7 +156,6 @@ public class Robot extends TimedRobot {
   /** This function is called periodically during autonomous. */
   @Override
   public void autonomousPeriodic() {
-    datalog.startLoopTime();
     // Add code to run repeatedly during Autonomous mode.
   }
 
@@ -124,7 +174,6 @@ public class Robot extends TimedRobot {
   /** This function is called periodically during operator control. */
   @Override
   public void teleopPeriodic() {
-    datalog.startLoopTime();
     // Add code to run repeatedly during Teleop mode.
   }
 
@@ -142,8 +191,7 @@ public class Robot extends TimedRobot {
   @Override
   public void testPeriodic() {
     // Generally test mode will have the same Init and Periodic code as Teleop,
-    // so call them here. Replace if desired. If you don't call teleopPeriodic
-    // here, then add a call to StartLoopTime.
+    // so call them here. Replace if desired.
     teleopPeriodic();
     // Add code to run repeatedly during Test mode.
   }
@@ -177,4 +225,16 @@ public class Robot extends TimedRobot {
   public RobotContainer getRobotContainer() {
     return robotContainer;
   }
+
+  @Override
+  public void close() {
+    // Stop the simulation and control loops that run on their own Notifiers
+    if (simModel != null) {
+      simModel.close();
+    }
+    if (robotContainer != null) {
+      robotContainer.close();
+    }
+    super.close();
+  }
 }
@@ -4,7 +4,8 @@
 
 package frc.robot;
 
-import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj.GenericHID;
 import edu.wpi.first.wpilibj.PowerDistribution;
 import edu.wpi.first.wpilibj.XboxController;
@@ -12,11 +13,18 @@ import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.RunCommand;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
+import frc.robot.Constants.ArmConstants;
+import frc.robot.Constants.DriveConstants;
 import frc.robot.Constants.OIConstants;
 import frc.robot.commands.ExampleCommand;
+import frc.robot.commands.FollowTrajectory;
+import frc.robot.control.DriveTrajectory;
 import frc.robot.subsystems.ArmSubsystem;
 import frc.robot.subsystems.DriveSubsystem;
 import frc.robot.subsystems.ExampleSubsystem;
+import frc.robot.telemetry.AsyncDataLog;
+import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * This class is where the bulk of the robot should be declared. Since Command-based is a
@@ -36,15 +44,27 @@ public class RobotContainer {
   // Now all the subsystems.
   // The Example.
   private final ExampleSubsystem exampleSubsystem = new ExampleSubsystem();
-  private final ExampleCommand autoCommand =
-      new ExampleCommand("ExampleCommand", this.exampleSubsystem);
-  // The Arm.
-  private final ArmSubsystem robotArm = new ArmSubsystem(ArmSubsystem.initializeHardware());
+  // The Arm. The arm control law runs on its own loop, faster than the robot loop.
+  private final ArmSubsystem robotArm;
   // The drive.
   private final DriveSubsystem robotDrive = new DriveSubsystem();
+  // The autonomous command.
+  private final Command autoCommand;
 
   /** The container for the robot. Contains subsystems, OI devices, and commands. */
   public RobotContainer() {
+    this(new ArmSubsystem(ArmSubsystem.initializeHardware(), ArmConstants.CONTROL_PERIOD_SEC));
+  }
+
+  /**
+   * The container for the robot with an arm built by the caller, for benchmarks that run the arm
+   * control law in the robot loop.
+   *
+   * @param arm The arm subsystem.
+   */
+  public RobotContainer(ArmSubsystem arm) {
+    this.robotArm = arm;
+    this.autoCommand = createAutoCommand();
 
     // Configure the button bindings
     configureButtonBindings();
@@ -107,7 +127,13 @@ public class RobotContainer {
   public void disableSubsystems() {
     robotArm.disable();
     robotDrive.disable();
-    DataLogManager.log("disableSubsystems");
+    AsyncDataLog.getInstance().log("disableSubsystems");
+  }
+
+  /** Stops subsystems that run their own control loops. Called when the robot is closed. */
+  public void close() {
+    robotArm.close();
+    robotDrive.close();
   }
 
   /**
@@ -116,10 +142,32 @@ public class RobotContainer {
    * @return the command to run in autonomous
    */
   public Command getAutonomousCommand() {
-    // An ExampleCommand will run in autonomous
     return this.autoCommand;
   }
 
+  /**
+   * Create the autonomous command, which drives the trajectory compiled from the autonomous path
+   * and deployed with the robot code. The file is memory-mapped here, at boot, so autonomous starts
+   * without reading it. If it can't be loaded the example command runs instead.
+   */
+  private Command createAutoCommand() {
+    Path file =
+        Filesystem.getDeployDirectory()
+            .toPath()
+            .resolve(DriveConstants.TRAJECTORY_DIRECTORY)
+            .resolve(DriveConstants.AUTO_TRAJECTORY + DriveTrajectory.FILE_EXTENSION);
+    try {
+      return new FollowTrajectory(
+          "Auto: " + DriveConstants.AUTO_TRAJECTORY,
+          this.robotDrive,
+          DriveTrajectory.load(file),
+          true);
+    } catch (IOException e) {
+      DriverStation.reportError("Can't load autonomous trajectory " + file + ": " + e, false);
+      return new ExampleCommand("ExampleCommand", this.exampleSubsystem);
+    }
+  }
+
   /**
    * Use this to get the PDP for data logging.
    *
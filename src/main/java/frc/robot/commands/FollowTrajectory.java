@@ -0,0 +1,115 @@
+package frc.robot.commands;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.DataLogging;
+import frc.robot.control.DriveTrajectory;
+import frc.robot.subsystems.DriveSubsystem;
+
+/**
+ * Drive a compiled trajectory with a RAMSETE controller.
+ *
+ * <p>Each loop the trajectory is sampled at the time since the command started and the RAMSETE
+ * controller corrects the reference velocity and turn rate for the error between the reference and
+ * the estimated pose. The wheel speeds for the corrected motion are driven by the closed-loop speed
+ * control of {@link DriveSubsystem#setWheelSpeeds(double, double)}. The reference is sampled into a
+ * reused array and the controller works on primitives, so following a trajectory does not create
+ * objects every loop.
+ */
+public class FollowTrajectory extends Command {
+
+  private final DriveSubsystem drive;
+  private final DriveTrajectory trajectory;
+  private final boolean resetPose;
+  private final double[] reference = new double[DriveTrajectory.FIELDS];
+  private double startTime;
+
+  /**
+   * Creates a new FollowTrajectory.
+   *
+   * @param commandName Name of the command
+   * @param drive The drive subsystem
+   * @param trajectory The trajectory to drive
+   * @param resetPose Reset the odometry to the start of the trajectory when the command starts, for
+   *     the first trajectory of a routine
+   */
+  public FollowTrajectory(
+      String commandName, DriveSubsystem drive, DriveTrajectory trajectory, boolean resetPose) {
+    this.drive = drive;
+    this.trajectory = trajectory;
+    this.resetPose = resetPose;
+    addRequirements(this.drive);
+    this.setName(commandName);
+    DataLogging.getInstance().logCommand(this.drive.getName(), commandName, this);
+  }
+
+  // Called when the command is initially scheduled.
+  @Override
+  public void initialize() {
+    trajectory.sample(0, reference);
+    if (resetPose) {
+      drive.resetOdometry(
+          new Pose2d(
+              reference[DriveTrajectory.X],
+              reference[DriveTrajectory.Y],
+              new Rotation2d(reference[DriveTrajectory.HEADING])));
+    }
+    startTime = Timer.getFPGATimestamp();
+  }
+
+  // Called every time the scheduler runs while the command is scheduled.
+  @Override
+  public void execute() {
+    trajectory.sample(Timer.getFPGATimestamp() - startTime, reference);
+
+    // Pose error in the robot frame
+    Pose2d pose = drive.getPose();
+    double heading = pose.getRotation().getRadians();
+    double cos = Math.cos(heading);
+    double sin = Math.sin(heading);
+    double dx = reference[DriveTrajectory.X] - pose.getX();
+    double dy = reference[DriveTrajectory.Y] - pose.getY();
+    double errorX = cos * dx + sin * dy;
+    double errorY = cos * dy - sin * dx;
+    double errorHeading =
+        Math.IEEEremainder(reference[DriveTrajectory.HEADING] - heading, 2 * Math.PI);
+
+    // RAMSETE control law
+    double referenceVelocity = reference[DriveTrajectory.VELOCITY];
+    double referenceTurnRate = referenceVelocity * reference[DriveTrajectory.CURVATURE];
+    double gain =
+        2
+            * DriveConstants.RAMSETE_ZETA
+            * Math.sqrt(
+                referenceTurnRate * referenceTurnRate
+                    + DriveConstants.RAMSETE_B * referenceVelocity * referenceVelocity);
+    double velocity = referenceVelocity * Math.cos(errorHeading) + gain * errorX;
+    double turnRate =
+        referenceTurnRate
+            + gain * errorHeading
+            + DriveConstants.RAMSETE_B * referenceVelocity * sinc(errorHeading) * errorY;
+
+    double halfTrack = DriveConstants.TRACK_WIDTH_METERS / 2;
+    drive.setWheelSpeeds(velocity - turnRate * halfTrack, velocity + turnRate * halfTrack);
+  }
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {
+    drive.tankDriveVolts(0, 0);
+  }
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return Timer.getFPGATimestamp() - startTime >= trajectory.getTotalTime();
+  }
+
+  /** Returns sin(x) / x, which is 1 at zero. */
+  private static double sinc(double x) {
+    return Math.abs(x) < 1e-9 ? 1.0 - x * x / 6.0 : Math.sin(x) / x;
+  }
+}
@@ -0,0 +1,418 @@
+package frc.robot.control;
+
+/**
+ * Arm position controller that follows planned moves with a PID correction and feedforward.
+ *
+ * <p>Produces the same output as a WPILib {@code ProfiledPIDController} plus {@code ArmFeedforward}
+ * on the profile setpoint, but all state is kept in primitive fields that are updated in place. The
+ * setpoint and feedforward come from an {@link ArmTrajectoryPlanner} table and the PID math is done
+ * here, so {@link #calculate(double)} does not allocate. Planning a new move only allocates if the
+ * move is longer than the planner capacity.
+ *
+ * <p>The PID terms match {@code PIDController}: the derivative is the change in error over the
+ * period and the integral contribution is limited to {@link #INTEGRATOR_RANGE_VOLTS}.
+ *
+ * <p>A path through several waypoints is followed as one continuous motion. Waypoints are queued
+ * with {@link #addWaypoint(double, double)}, also while the arm is moving, and each move is planned
+ * to pass through its waypoint at the highest speed up to the requested one from which the arm can
+ * still follow the rest of the path within the constraints and stop at the last waypoint. The arm
+ * stops at waypoints where the path reverses direction.
+ */
+public final class ArmController {
+
+  /** Limit on the integral term in volts, the same as the {@code PIDController} default. */
+  public static final double INTEGRATOR_RANGE_VOLTS = 1.0;
+
+  /** The number of waypoints that can be queued after the current one. A power of two. */
+  public static final int MAX_WAYPOINTS = 16;
+
+  private final double period;
+  private final ArmTrajectoryPlanner planner;
+
+  private double kp;
+  private double ki;
+  private double kd;
+  private double positionTolerance = Double.POSITIVE_INFINITY;
+  private double velocityTolerance = Double.POSITIVE_INFINITY;
+
+  private ArmTrajectory trajectory;
+  private int index;
+  private double goal;
+  private double setpointPosition;
+  private double setpointVelocity;
+
+  // The current move, to the next waypoint of the path
+  private double moveGoal;
+  private double moveSpeed;
+  private double moveEndVelocity;
+
+  // Waypoints after the current move, in a ring
+  private final double[] waypointPositions = new double[MAX_WAYPOINTS];
+  private final double[] waypointSpeeds = new double[MAX_WAYPOINTS];
+  private int waypointHead;
+  private int waypointCount;
+
+  private boolean haveMeasurement;
+  private double positionError;
+  private double velocityError;
+  private double totalError;
+  private double pidOutput;
+  private double feedforward;
+
+  /**
+   * Create a controller.
+   *
+   * @param period The control loop period in seconds.
+   * @param cacheSize The number of planned moves to keep for reuse.
+   * @param capacity The number of samples to allocate for each planned move.
+   */
+  public ArmController(double period, int cacheSize, int capacity) {
+    this.period = period;
+    planner = new ArmTrajectoryPlanner(period, cacheSize, capacity);
+  }
+
+  /**
+   * Set the PID gains.
+   *
+   * @param proportional The proportional gain in volts per radian.
+   * @param integral The integral gain in volts per radian second.
+   * @param derivative The derivative gain in volts per radian per second.
+   */
+  public void setPid(double proportional, double integral, double derivative) {
+    kp = proportional;
+    ki = integral;
+    kd = derivative;
+  }
+
+  /**
+   * Set the profile constraints for new moves.
+   *
+   * @param maxVelocity The maximum velocity in radians per second.
+   * @param maxAcceleration The maximum acceleration in radians per second squared.
+   */
+  public void setConstraints(double maxVelocity, double maxAcceleration) {
+    planner.setConstraints(maxVelocity, maxAcceleration);
+  }
+
+  /**
+   * Set the feedforward gains for new moves.
+   *
+   * @param ks The static gain in volts.
+   * @param kg The gravity gain in volts.
+   * @param kv The velocity gain in volts per radian per second.
+   */
+  public void setFeedforward(double ks, double kg, double kv) {
+    planner.setFeedforward(ks, kg, kv);
+  }
+
+  /**
+   * Set the feedforward gains for new moves, including acceleration.
+   *
+   * @param ks The static gain in volts.
+   * @param kg The gravity gain in volts.
+   * @param kv The velocity gain in volts per radian per second.
+   * @param ka The acceleration gain in volts per radian per second squared.
+   */
+  public void setFeedforward(double ks, double kg, double kv, double ka) {
+    planner.setFeedforward(ks, kg, kv, ka);
+  }
+
+  /**
+   * Set the voltage available to follow new moves, which are then planned time-optimally for the
+   * arm model instead of with a trapezoid profile.
+   *
+   * @param volts The voltage limit, or 0 for trapezoid profiles.
+   */
+  public void setVoltageLimit(double volts) {
+    planner.setVoltageLimit(volts);
+  }
+
+  /**
+   * Set the tolerances used by {@link #atGoal()}.
+   *
+   * @param position The position error tolerance in radians.
+   * @param velocity The error rate tolerance in radians per second.
+   */
+  public void setTolerance(double position, double velocity) {
+    positionTolerance = position;
+    velocityTolerance = velocity;
+  }
+
+  /**
+   * Clear the PID state and plan a move to the goal from a stopped position.
+   *
+   * @param position The current arm position in radians.
+   * @param newGoal The goal position in radians.
+   */
+  public void reset(double position, double newGoal) {
+    reset(position, newGoal, 0);
+  }
+
+  /**
+   * Clear the PID state and start a path from a stopped position.
+   *
+   * @param position The current arm position in radians.
+   * @param firstWaypoint The first waypoint of the path in radians.
+   * @param speed The speed to pass through the first waypoint if more are added, in radians per
+   *     second.
+   */
+  public void reset(double position, double firstWaypoint, double speed) {
+    haveMeasurement = false;
+    positionError = 0;
+    velocityError = 0;
+    totalError = 0;
+    pidOutput = 0;
+    feedforward = 0;
+    waypointCount = 0;
+    startMove(position, 0, firstWaypoint, speed);
+  }
+
+  /**
+   * Plan a move to a new goal from the current setpoint so the arm moves smoothly. Any queued
+   * waypoints are dropped. The PID state is kept.
+   *
+   * @param newGoal The goal position in radians.
+   */
+  public void setGoal(double newGoal) {
+    setGoal(newGoal, 0);
+  }
+
+  /**
+   * Start a new path from the current setpoint so the arm moves smoothly. Any queued waypoints are
+   * dropped. The PID state is kept.
+   *
+   * @param firstWaypoint The first waypoint of the path in radians.
+   * @param speed The speed to pass through the first waypoint if more are added, in radians per
+   *     second.
+   */
+  public void setGoal(double firstWaypoint, double speed) {
+    waypointCount = 0;
+    startMove(setpointPosition, setpointVelocity, firstWaypoint, speed);
+  }
+
+  /**
+   * Add a waypoint to the end of the path. If the arm is moving to the previous last waypoint, the
+   * move is planned again from the current setpoint so that it can continue through it.
+   *
+   * @param position The waypoint position in radians.
+   * @param speed The speed to pass through the waypoint if more are added, in radians per second.
+   *     The arm stops at the last waypoint.
+   * @return False if the waypoint queue is full.
+   */
+  public boolean addWaypoint(double position, double speed) {
+    if (waypointCount == MAX_WAYPOINTS) {
+      return false;
+    }
+    int slot = (waypointHead + waypointCount) & (MAX_WAYPOINTS - 1);
+    waypointPositions[slot] = position;
+    waypointSpeeds[slot] = Math.abs(speed);
+    waypointCount++;
+    goal = position;
+
+    if (trajectory != null
+        && index < trajectory.lastIndex()
+        && endVelocity(setpointPosition, setpointVelocity) != moveEndVelocity) {
+      planMove(setpointPosition, setpointVelocity);
+    }
+    return true;
+  }
+
+  /** Returns the number of waypoints queued after the current move. */
+  public int getWaypointCount() {
+    return waypointCount;
+  }
+
+  /** Start the move to the next waypoint of the path from a setpoint. */
+  private void startMove(double position, double velocity, double waypoint, double speed) {
+    moveGoal = waypoint;
+    moveSpeed = Math.abs(speed);
+    if (waypointCount == 0) {
+      goal = waypoint;
+    }
+    planMove(position, velocity);
+  }
+
+  /** Plan the current move from a setpoint. */
+  private void planMove(double position, double velocity) {
+    moveEndVelocity = endVelocity(position, velocity);
+    trajectory = planner.plan(position, velocity, moveGoal, moveEndVelocity);
+    index = 0;
+    setpointPosition = trajectory.getPosition(0);
+    setpointVelocity = trajectory.getVelocity(0);
+  }
+
+  /**
+   * Calculate the velocity at the end of the current move. Working back from a stop at the last
+   * waypoint, each waypoint speed is limited to the requested speed, the maximum velocity and the
+   * speed from which the arm can slow down to the limit at the next waypoint. The arm stops where
+   * the path reverses. The result is also limited to the speed the arm can reach from the start.
+   */
+  private double endVelocity(double position, double velocity) {
+    double direction = Math.signum(moveGoal - position);
+    if (waypointCount == 0 || direction == 0) {
+      return 0;
+    }
+    double maxVelocity = planner.getMaxVelocity();
+    double maxAcceleration = planner.getMaxAcceleration();
+
+    double limit = 0;
+    double next = waypointPosition(waypointCount - 1);
+    for (int i = waypointCount - 2; i >= -1; i--) {
+      double waypoint = i >= 0 ? waypointPosition(i) : moveGoal;
+      double previous = i >= 1 ? waypointPosition(i - 1) : i == 0 ? moveGoal : position;
+      double distance = next - waypoint;
+      if (Math.signum(waypoint - previous) != Math.signum(distance) || distance == 0) {
+        limit = 0;
+      } else {
+        double speed = i >= 0 ? waypointSpeeds[waypointSlot(i)] : moveSpeed;
+        limit =
+            Math.min(
+                Math.min(speed, maxVelocity),
+                Math.sqrt(limit * limit + 2 * maxAcceleration * Math.abs(distance)));
+      }
+      next = waypoint;
+    }
+
+    double startSpeed = Math.max(0, velocity * direction);
+    limit =
+        Math.min(
+            limit,
+            Math.sqrt(
+                startSpeed * startSpeed + 2 * maxAcceleration * Math.abs(moveGoal - position)));
+    return limit * direction;
+  }
+
+  private int waypointSlot(int i) {
+    return (waypointHead + i) & (MAX_WAYPOINTS - 1);
+  }
+
+  private double waypointPosition(int i) {
+    return waypointPositions[waypointSlot(i)];
+  }
+
+  /**
+   * Step to the next setpoint and calculate the motor voltage.
+   *
+   * @param measurement The arm position in radians.
+   * @return The PID output plus feedforward in volts.
+   */
+  public double calculate(double measurement) {
+    double prevError = positionError;
+    step();
+    positionError = setpointPosition - measurement;
+    velocityError = (positionError - prevError) / period;
+    return output();
+  }
+
+  /**
+   * Step to the next setpoint and calculate the motor voltage from an estimated arm state. The
+   * derivative term and velocity tolerance use the estimated velocity instead of the change in
+   * position error.
+   *
+   * @param position The estimated arm position in radians.
+   * @param velocity The estimated arm velocity in radians per second.
+   * @return The PID output plus feedforward in volts.
+   */
+  public double calculate(double position, double velocity) {
+    step();
+    positionError = setpointPosition - position;
+    velocityError = setpointVelocity - velocity;
+    return output();
+  }
+
+  /** Step to the next setpoint of the path. */
+  private void step() {
+    if (index == trajectory.lastIndex() && waypointCount > 0) {
+      // Continue to the next waypoint. The new move starts at the current setpoint, so step past
+      // its first sample.
+      int slot = waypointHead;
+      waypointHead = (waypointHead + 1) & (MAX_WAYPOINTS - 1);
+      waypointCount--;
+      startMove(setpointPosition, setpointVelocity, waypointPositions[slot], waypointSpeeds[slot]);
+    }
+    index = trajectory.next(index);
+    setpointPosition = trajectory.getPosition(index);
+    setpointVelocity = trajectory.getVelocity(index);
+    feedforward = trajectory.getFeedforward(index);
+  }
+
+  /** Calculate the PID output from the errors and add the feedforward. */
+  private double output() {
+    haveMeasurement = true;
+    if (ki != 0) {
+      totalError =
+          Math.max(
+              -INTEGRATOR_RANGE_VOLTS / ki,
+              Math.min(INTEGRATOR_RANGE_VOLTS / ki, totalError + positionError * period));
+    }
+    pidOutput = kp * positionError + ki * totalError + kd * velocityError;
+    return pidOutput + feedforward;
+  }
+
+  /**
+   * Copy the setpoints from the current one on into arrays, one per period, for a controller that
+   * looks ahead. Past the end of the current move the last setpoint is repeated, even if the path
+   * continues to another waypoint.
+   *
+   * @param positions The setpoint positions in radians.
+   * @param velocities The setpoint velocities in radians per second, as many as positions.
+   * @param feedforwards The feedforward voltages for the setpoints, as many as positions.
+   */
+  public void getReference(double[] positions, double[] velocities, double[] feedforwards) {
+    int sample = index;
+    for (int k = 0; k < positions.length; k++) {
+      positions[k] = trajectory.getPosition(sample);
+      velocities[k] = trajectory.getVelocity(sample);
+      feedforwards[k] = trajectory.getFeedforward(sample);
+      sample = trajectory.next(sample);
+    }
+  }
+
+  /** Returns whether the path is complete and the error is within the tolerances. */
+  public boolean atGoal() {
+    return isMoveComplete()
+        && haveMeasurement
+        && Math.abs(positionError) < positionTolerance
+        && Math.abs(velocityError) < velocityTolerance;
+  }
+
+  /** Returns whether the setpoint has reached the last waypoint of the path. */
+  public boolean isMoveComplete() {
+    return trajectory != null && index == trajectory.lastIndex() && waypointCount == 0;
+  }
+
+  /** Returns the goal position in radians, the last waypoint of the path. */
+  public double getGoal() {
+    return goal;
+  }
+
+  /** Returns the current setpoint position in radians. */
+  public double getSetpointPosition() {
+    return setpointPosition;
+  }
+
+  /** Returns the current setpoint velocity in radians per second. */
+  public double getSetpointVelocity() {
+    return setpointVelocity;
+  }
+
+  /** Returns the PID output of the last calculation in volts. */
+  public double getPidOutput() {
+    return pidOutput;
+  }
+
+  /** Returns the feedforward of the last calculation in volts. */
+  public double getFeedforward() {
+    return feedforward;
+  }
+
+  /** Returns the proportional gain. */
+  public double getP() {
+    return kp;
+  }
+
+  /** Returns the planner, for checking cache statistics. */
+  public ArmTrajectoryPlanner getPlanner() {
+    return planner;
+  }
+}
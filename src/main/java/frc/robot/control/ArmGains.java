@@ -0,0 +1,110 @@
+package frc.robot.control;
+
+/**
+ * Immutable snapshot of the tunable arm gains and profile constraints.
+ *
+ * <p>Snapshots are built when the tuning values change and handed to the control loop as a whole,
+ * so the loop never sees a mix of old and new values. Each accepted snapshot has a higher version
+ * than the one it replaces.
+ */
+public final class ArmGains {
+  /** Version of the snapshot, starting at 1. */
+  public final long version;
+
+  /** PID proportional gain in volts per radian. */
+  public final double kp;
+
+  /** Static feedforward gain in volts. */
+  public final double ks;
+
+  /** Gravity feedforward gain in volts. */
+  public final double kg;
+
+  /** Velocity feedforward gain in volts per radian per second. */
+  public final double kv;
+
+  /** Profile maximum velocity in radians per second. */
+  public final double maxVelocity;
+
+  /** Profile maximum acceleration in radians per second squared. */
+  public final double maxAcceleration;
+
+  /**
+   * Create a validated snapshot.
+   *
+   * @param version The snapshot version.
+   * @param kp The proportional gain, zero or more.
+   * @param ks The static gain, zero or more.
+   * @param kg The gravity gain, zero or more.
+   * @param kv The velocity gain, zero or more.
+   * @param maxVelocity The maximum velocity, more than zero.
+   * @param maxAcceleration The maximum acceleration, more than zero.
+   * @throws IllegalArgumentException If a value is out of range or not finite.
+   */
+  public ArmGains(
+      long version,
+      double kp,
+      double ks,
+      double kg,
+      double kv,
+      double maxVelocity,
+      double maxAcceleration) {
+    requireAtLeastZero("kP", kp);
+    requireAtLeastZero("kS", ks);
+    requireAtLeastZero("kG", kg);
+    requireAtLeastZero("kV", kv);
+    requirePositive("max velocity", maxVelocity);
+    requirePositive("max acceleration", maxAcceleration);
+    this.version = version;
+    this.kp = kp;
+    this.ks = ks;
+    this.kg = kg;
+    this.kv = kv;
+    this.maxVelocity = maxVelocity;
+    this.maxAcceleration = maxAcceleration;
+  }
+
+  /**
+   * Returns whether another snapshot has the same values, ignoring the version.
+   *
+   * @param other The other snapshot.
+   */
+  public boolean sameValues(ArmGains other) {
+    return kp == other.kp
+        && ks == other.ks
+        && kg == other.kg
+        && kv == other.kv
+        && maxVelocity == other.maxVelocity
+        && maxAcceleration == other.maxAcceleration;
+  }
+
+  @Override
+  public String toString() {
+    return "v"
+        + version
+        + " kP="
+        + kp
+        + " kS="
+        + ks
+        + " kG="
+        + kg
+        + " kV="
+        + kv
+        + " maxVel="
+        + maxVelocity
+        + " maxAccel="
+        + maxAcceleration;
+  }
+
+  private static void requireAtLeastZero(String name, double value) {
+    if (!(value >= 0) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException(name + " must be zero or more, was " + value);
+    }
+  }
+
+  private static void requirePositive(String name, double value) {
+    if (!(value > 0) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException(name + " must be more than zero, was " + value);
+    }
+  }
+}
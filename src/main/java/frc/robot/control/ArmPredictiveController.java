@@ -0,0 +1,415 @@
+package frc.robot.control;
+
+import java.util.Arrays;
+
+/**
+ * Arm model predictive controller, which chooses the motor voltage by optimizing the voltages over
+ * a finite horizon each control cycle.
+ *
+ * <p>The arm is predicted with the feedforward model {@code V = kS * sgn(v) + kG * cos(p) + kV * v
+ * + kA * a}, discretized exactly for the loop period like {@link ArmStateEstimator}. Gravity and
+ * static friction are evaluated along the previous predicted path, and friction takes the sign of
+ * the reference velocity, so each solve is a quadratic program in the voltages. The cost is the
+ * squared position and velocity error from the reference plus the squared difference between each
+ * voltage and the reference feedforward. Positions past the angle limits are penalized.
+ *
+ * <p>Each voltage is limited to the supply voltage, and the voltage above the back EMF {@code kV *
+ * v} is limited to the current budget times the motor resistance. The current limit depends on the
+ * predicted velocity, so voltages are limited in a forward pass over the horizon, which keeps every
+ * predicted step within both limits.
+ *
+ * <p>The problem is solved by accelerated projected gradient descent with a fixed step size that is
+ * found when the model or weights change. Each solve starts from the previous solution shifted by
+ * one period and stops when the voltages stop changing, after a fixed number of iterations, or when
+ * the CPU budget is used, so a cycle never takes much more than the budget. The last solution is
+ * still valid when the solve stops early. Solving does not allocate.
+ */
+public final class ArmPredictiveController {
+
+  private static final int STEP_SIZE_ITERATIONS = 50;
+  private static final double STEP_SIZE_MARGIN = 1.1;
+  private static final double CONVERGED_VOLTS = 1e-4;
+
+  private final double period;
+  private final int horizon;
+
+  // Model
+  private double ks;
+  private double kg;
+  private double kv;
+  private double a01;
+  private double a11;
+  private double b0;
+  private double b1;
+
+  // Weights and limits
+  private double positionWeight;
+  private double velocityWeight;
+  private double voltageWeight;
+  private double limitWeight;
+  private double voltageLimit = Double.POSITIVE_INFINITY;
+  private double currentLimitVolts = Double.POSITIVE_INFINITY;
+  private double minPosition = Double.NEGATIVE_INFINITY;
+  private double maxPosition = Double.POSITIVE_INFINITY;
+  private int maxIterations = 1;
+  private long budgetNanos = Long.MAX_VALUE;
+  private double stepSize;
+
+  // Voltages over the horizon: the solution, the previous iterate and the extrapolated point
+  private final double[] voltages;
+  private final double[] previousVoltages;
+  private final double[] extrapolated;
+  private final double[] gradient;
+  private boolean warm;
+
+  // Predicted states, gravity and friction along the path and the adjoint of the cost
+  private final double[] positions;
+  private final double[] velocities;
+  private final double[] disturbances;
+  private final double[] positionCosts;
+  private final double[] velocityCosts;
+
+  private double solveTime;
+  private int iterations;
+
+  /**
+   * Create a controller.
+   *
+   * @param period The loop period in seconds.
+   * @param horizon The number of periods to optimize over.
+   * @throws IllegalArgumentException If the period or horizon is not positive.
+   */
+  public ArmPredictiveController(double period, int horizon) {
+    if (!(period > 0) || horizon < 1) {
+      throw new IllegalArgumentException(
+          "period and horizon must be more than zero, were " + period + " and " + horizon);
+    }
+    this.period = period;
+    this.horizon = horizon;
+    voltages = new double[horizon];
+    previousVoltages = new double[horizon];
+    extrapolated = new double[horizon];
+    gradient = new double[horizon];
+    disturbances = new double[horizon];
+    positions = new double[horizon + 1];
+    velocities = new double[horizon + 1];
+    positionCosts = new double[horizon + 2];
+    velocityCosts = new double[horizon + 2];
+  }
+
+  /** Returns the number of periods optimized over. References have one more sample than this. */
+  public int getHorizon() {
+    return horizon;
+  }
+
+  /**
+   * Set the plant model.
+   *
+   * @param staticGain The static gain in volts.
+   * @param gravityGain The gravity gain in volts.
+   * @param velocityGain The velocity gain in volts per radian per second, zero or more.
+   * @param accelerationGain The acceleration gain in volts per radian per second squared, more than
+   *     zero.
+   * @throws IllegalArgumentException If the velocity or acceleration gain is out of range.
+   */
+  public void setModel(
+      double staticGain, double gravityGain, double velocityGain, double accelerationGain) {
+    if (!(velocityGain >= 0) || !(accelerationGain > 0)) {
+      throw new IllegalArgumentException(
+          "kV must be zero or more and kA more than zero, were "
+              + velocityGain
+              + " and "
+              + accelerationGain);
+    }
+    ks = staticGain;
+    kg = gravityGain;
+    kv = velocityGain;
+
+    // Exact discretization of p' = v, v' = (u - kV v) / kA with u held over the period
+    double rate = kv / accelerationGain;
+    double decay = Math.exp(-rate * period);
+    if (rate * period > 1e-9) {
+      a01 = (1 - decay) / rate;
+      b0 = (period - a01) / kv;
+      b1 = (1 - decay) / kv;
+    } else {
+      a01 = period;
+      b0 = period * period / (2 * accelerationGain);
+      b1 = period / accelerationGain;
+    }
+    a11 = decay;
+    solveStepSize();
+  }
+
+  /**
+   * Set the cost weights.
+   *
+   * @param position The weight of the squared position error, per radian squared.
+   * @param velocity The weight of the squared velocity error, per radian per second squared.
+   * @param voltage The weight of the squared voltage change from the feedforward, per volt squared,
+   *     more than zero.
+   * @param limit The weight of the squared position past the angle limits, per radian squared.
+   * @throws IllegalArgumentException If a weight is out of range.
+   */
+  public void setWeights(double position, double velocity, double voltage, double limit) {
+    if (!(position >= 0) || !(velocity >= 0) || !(voltage > 0) || !(limit >= 0)) {
+      throw new IllegalArgumentException(
+          "Weights must be zero or more and the voltage weight more");
+    }
+    positionWeight = position;
+    velocityWeight = velocity;
+    voltageWeight = voltage;
+    limitWeight = limit;
+    solveStepSize();
+  }
+
+  /**
+   * Set the limits on the voltages and predicted positions.
+   *
+   * @param supplyVolts The largest voltage magnitude.
+   * @param currentVolts The largest voltage magnitude above the back EMF, the current budget times
+   *     the motor resistance.
+   * @param minAngle The lowest arm position in radians.
+   * @param maxAngle The highest arm position in radians.
+   * @throws IllegalArgumentException If a limit is out of range.
+   */
+  public void setLimits(double supplyVolts, double currentVolts, double minAngle, double maxAngle) {
+    if (!(supplyVolts > 0) || !(currentVolts > 0) || !(minAngle < maxAngle)) {
+      throw new IllegalArgumentException(
+          "Voltage limits must be more than zero and angles ordered");
+    }
+    voltageLimit = supplyVolts;
+    currentLimitVolts = currentVolts;
+    minPosition = minAngle;
+    maxPosition = maxAngle;
+  }
+
+  /**
+   * Set the limits on each solve.
+   *
+   * @param iterationLimit The most iterations per solve, at least one.
+   * @param budgetSeconds The CPU time after which no more iterations are started.
+   * @throws IllegalArgumentException If a limit is out of range.
+   */
+  public void setBudget(int iterationLimit, double budgetSeconds) {
+    if (iterationLimit < 1 || !(budgetSeconds > 0)) {
+      throw new IllegalArgumentException(
+          "Iteration limit and budget must be more than zero, were "
+              + iterationLimit
+              + " and "
+              + budgetSeconds);
+    }
+    maxIterations = iterationLimit;
+    budgetNanos = (long) (budgetSeconds * 1e9);
+  }
+
+  /**
+   * Find the gradient step size from the largest eigenvalue of the cost Hessian, by power
+   * iteration. The angle limit penalty is included as if every position were past a limit. Does
+   * nothing until both the model and weights are set.
+   */
+  private void solveStepSize() {
+    if (voltageWeight == 0 || b1 == 0) {
+      return;
+    }
+    double[] x = previousVoltages;
+    double[] hx = gradient;
+    Arrays.fill(x, 1);
+    double eigenvalue = 0;
+    for (int i = 0; i < STEP_SIZE_ITERATIONS; i++) {
+      hessianProduct(x, hx);
+      double norm = 0;
+      for (int k = 0; k < horizon; k++) {
+        norm += hx[k] * hx[k];
+      }
+      norm = Math.sqrt(norm);
+      double xNorm = 0;
+      for (int k = 0; k < horizon; k++) {
+        xNorm += x[k] * x[k];
+      }
+      eigenvalue = norm / Math.sqrt(xNorm);
+      for (int k = 0; k < horizon; k++) {
+        x[k] = hx[k] / norm;
+      }
+    }
+    stepSize = 1 / (STEP_SIZE_MARGIN * eigenvalue);
+    warm = false;
+  }
+
+  /** Multiply voltages by the cost Hessian, with the angle limit penalty at every step. */
+  private void hessianProduct(double[] x, double[] out) {
+    double p = 0;
+    double v = 0;
+    for (int k = 0; k < horizon; k++) {
+      double nextP = p + a01 * v + b0 * x[k];
+      v = a11 * v + b1 * x[k];
+      p = nextP;
+      positions[k + 1] = p;
+      velocities[k + 1] = v;
+    }
+    positionCosts[horizon + 1] = 0;
+    velocityCosts[horizon + 1] = 0;
+    for (int k = horizon; k >= 1; k--) {
+      positionCosts[k] = 2 * (positionWeight + limitWeight) * positions[k] + positionCosts[k + 1];
+      velocityCosts[k] =
+          2 * velocityWeight * velocities[k]
+              + a01 * positionCosts[k + 1]
+              + a11 * velocityCosts[k + 1];
+      out[k - 1] = b0 * positionCosts[k] + b1 * velocityCosts[k] + 2 * voltageWeight * x[k - 1];
+    }
+  }
+
+  /** Drop the previous solution, so the next solve starts from the reference feedforward. */
+  public void reset() {
+    warm = false;
+  }
+
+  /**
+   * Solve for the voltages over the horizon and return the first.
+   *
+   * @param position The arm position in radians.
+   * @param velocity The arm velocity in radians per second.
+   * @param referencePositions The setpoint positions in radians, from now on, one per period. At
+   *     least horizon + 1 samples.
+   * @param referenceVelocities The setpoint velocities in radians per second.
+   * @param referenceFeedforwards The feedforward voltages for the setpoints.
+   * @return The voltage to apply for this period.
+   */
+  public double calculate(
+      double position,
+      double velocity,
+      double[] referencePositions,
+      double[] referenceVelocities,
+      double[] referenceFeedforwards) {
+    long start = System.nanoTime();
+
+    // Start from the previous solution shifted by one period, or the feedforward. Gravity is
+    // evaluated along the previous predicted path.
+    if (warm) {
+      System.arraycopy(voltages, 1, voltages, 0, horizon - 1);
+      System.arraycopy(positions, 1, positions, 0, horizon);
+    } else {
+      for (int k = 0; k < horizon; k++) {
+        voltages[k] = referenceFeedforwards[k];
+        positions[k] = referencePositions[k];
+      }
+    }
+    positions[0] = position;
+    for (int k = 0; k < horizon; k++) {
+      disturbances[k] = kg * Math.cos(positions[k]) + ks * Math.signum(referenceVelocities[k]);
+    }
+    project(voltages, position, velocity);
+    System.arraycopy(voltages, 0, previousVoltages, 0, horizon);
+
+    // Accelerated projected gradient descent
+    double momentum = 1;
+    int count = 0;
+    while (count < maxIterations) {
+      double nextMomentum = (1 + Math.sqrt(1 + 4 * momentum * momentum)) / 2;
+      double extrapolation = (momentum - 1) / nextMomentum;
+      for (int k = 0; k < horizon; k++) {
+        extrapolated[k] = voltages[k] + extrapolation * (voltages[k] - previousVoltages[k]);
+      }
+      momentum = nextMomentum;
+
+      costGradient(
+          extrapolated,
+          position,
+          velocity,
+          referencePositions,
+          referenceVelocities,
+          referenceFeedforwards);
+      double change = 0;
+      for (int k = 0; k < horizon; k++) {
+        previousVoltages[k] = voltages[k];
+        voltages[k] = extrapolated[k] - stepSize * gradient[k];
+      }
+      project(voltages, position, velocity);
+      for (int k = 0; k < horizon; k++) {
+        change = Math.max(change, Math.abs(voltages[k] - previousVoltages[k]));
+      }
+      count++;
+      if (change < CONVERGED_VOLTS || System.nanoTime() - start > budgetNanos) {
+        break;
+      }
+    }
+
+    // Keep the predicted path of the solution for the next solve
+    predict(voltages, position, velocity);
+    warm = true;
+    iterations = count;
+    solveTime = (System.nanoTime() - start) * 1e-9;
+    return voltages[0];
+  }
+
+  /** Predict the arm states over the horizon for the voltages. */
+  private void predict(double[] u, double position, double velocity) {
+    positions[0] = position;
+    velocities[0] = velocity;
+    for (int k = 0; k < horizon; k++) {
+      double net = u[k] - disturbances[k];
+      positions[k + 1] = positions[k] + a01 * velocities[k] + b0 * net;
+      velocities[k + 1] = a11 * velocities[k] + b1 * net;
+    }
+  }
+
+  /** Limit the voltages to the supply and current limits along the predicted path. */
+  private void project(double[] u, double position, double velocity) {
+    double p = position;
+    double v = velocity;
+    for (int k = 0; k < horizon; k++) {
+      double backEmf = kv * v;
+      double low = Math.max(-voltageLimit, backEmf - currentLimitVolts);
+      double high = Math.min(voltageLimit, backEmf + currentLimitVolts);
+      u[k] = Math.max(low, Math.min(high, u[k]));
+      double net = u[k] - disturbances[k];
+      double nextP = p + a01 * v + b0 * net;
+      v = a11 * v + b1 * net;
+      p = nextP;
+    }
+  }
+
+  /** Calculate the cost gradient for the voltages into {@code gradient}. */
+  private void costGradient(
+      double[] u,
+      double position,
+      double velocity,
+      double[] referencePositions,
+      double[] referenceVelocities,
+      double[] referenceFeedforwards) {
+    predict(u, position, velocity);
+    positionCosts[horizon + 1] = 0;
+    velocityCosts[horizon + 1] = 0;
+    for (int k = horizon; k >= 1; k--) {
+      double p = positions[k];
+      double beyond = p > maxPosition ? p - maxPosition : p < minPosition ? p - minPosition : 0;
+      positionCosts[k] =
+          2 * positionWeight * (p - referencePositions[k])
+              + 2 * limitWeight * beyond
+              + positionCosts[k + 1];
+      velocityCosts[k] =
+          2 * velocityWeight * (velocities[k] - referenceVelocities[k])
+              + a01 * positionCosts[k + 1]
+              + a11 * velocityCosts[k + 1];
+      gradient[k - 1] =
+          b0 * positionCosts[k]
+              + b1 * velocityCosts[k]
+              + 2 * voltageWeight * (u[k - 1] - referenceFeedforwards[k - 1]);
+    }
+  }
+
+  /** Returns the predicted arm position in radians at a step of the horizon of the last solve. */
+  public double getPredictedPosition(int step) {
+    return positions[step];
+  }
+
+  /** Returns the CPU time of the last solve in seconds. */
+  public double getSolveTime() {
+    return solveTime;
+  }
+
+  /** Returns the number of iterations of the last solve. */
+  public int getIterations() {
+    return iterations;
+  }
+}
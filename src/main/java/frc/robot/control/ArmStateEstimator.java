@@ -0,0 +1,267 @@
+package frc.robot.control;
+
+/**
+ * Arm position and velocity estimator, a steady-state Kalman filter on a linear arm plant.
+ *
+ * <p>The plant is the arm feedforward model {@code V = kS * sgn(v) + kG * cos(p) + kV * v + kA *
+ * a}. The static and gravity terms are subtracted from the applied voltage using the current
+ * estimate, which leaves a linear system in position and velocity that is discretized exactly for
+ * the loop period. Static friction holds a stopped arm while the net voltage is less than {@code
+ * kS}.
+ *
+ * <p>Encoder positions arrive some cycles after the arm was at that position. The estimator keeps
+ * the estimates of the last cycles and compares each measurement with the estimate from when it was
+ * taken. The correction is applied to that estimate and carried forward to the current one through
+ * the plant, so the current estimate is compensated for the latency.
+ *
+ * <p>The Kalman gain is solved when the model or noise changes. Each {@link #predict(double)} and
+ * {@link #correct(double)} then takes a fixed number of operations that depends only on the delay,
+ * and does not allocate.
+ */
+public final class ArmStateEstimator {
+
+  /** The largest measurement delay in loop periods. */
+  public static final int MAX_DELAY_CYCLES = 8;
+
+  /** Estimated speeds below this, in radians per second, are treated as stopped. */
+  public static final double STOPPED_VELOCITY_RAD_PER_SEC = 1e-3;
+
+  private static final int MAX_GAIN_ITERATIONS = 10000;
+  private static final double GAIN_TOLERANCE = 1e-12;
+
+  private final double period;
+  private final int delayCycles;
+
+  // Model
+  private double ks;
+  private double kg;
+  private double kv;
+  private double ka;
+  private double a01;
+  private double a11;
+  private double b0;
+  private double b1;
+
+  // Noise
+  private double positionStd;
+  private double velocityStd;
+  private double measurementStd;
+
+  // Correction of the estimate from delayCycles ago and of each later estimate, the Kalman gain
+  // carried forward through the plant
+  private final double[] positionGains = new double[MAX_DELAY_CYCLES + 1];
+  private final double[] velocityGains = new double[MAX_DELAY_CYCLES + 1];
+
+  // Estimates of the last cycles in a ring, the newest at head
+  private final double[] positions = new double[MAX_DELAY_CYCLES + 1];
+  private final double[] velocities = new double[MAX_DELAY_CYCLES + 1];
+  private int head;
+
+  /**
+   * Create an estimator.
+   *
+   * @param period The loop period in seconds.
+   * @param delayCycles The number of loop periods between the arm being at a position and the
+   *     measurement of that position reaching {@link #correct(double)}.
+   * @throws IllegalArgumentException If the period is not positive or the delay is out of range.
+   */
+  public ArmStateEstimator(double period, int delayCycles) {
+    if (!(period > 0)) {
+      throw new IllegalArgumentException("period must be more than zero, was " + period);
+    }
+    if (delayCycles < 0 || delayCycles > MAX_DELAY_CYCLES) {
+      throw new IllegalArgumentException(
+          "delay must be 0 to " + MAX_DELAY_CYCLES + " cycles, was " + delayCycles);
+    }
+    this.period = period;
+    this.delayCycles = delayCycles;
+  }
+
+  /**
+   * Set the plant model and solve the Kalman gain.
+   *
+   * @param staticGain The static gain in volts.
+   * @param gravityGain The gravity gain in volts.
+   * @param velocityGain The velocity gain in volts per radian per second, zero or more.
+   * @param accelerationGain The acceleration gain in volts per radian per second squared, more than
+   *     zero.
+   * @throws IllegalArgumentException If the velocity or acceleration gain is out of range.
+   */
+  public void setModel(
+      double staticGain, double gravityGain, double velocityGain, double accelerationGain) {
+    if (!(velocityGain >= 0) || !(accelerationGain > 0)) {
+      throw new IllegalArgumentException(
+          "kV must be zero or more and kA more than zero, were "
+              + velocityGain
+              + " and "
+              + accelerationGain);
+    }
+    ks = staticGain;
+    kg = gravityGain;
+    kv = velocityGain;
+    ka = accelerationGain;
+
+    // Exact discretization of p' = v, v' = (u - kV v) / kA with u held over the period
+    double rate = kv / ka;
+    double decay = Math.exp(-rate * period);
+    if (rate * period > 1e-9) {
+      a01 = (1 - decay) / rate;
+      b0 = (period - a01) / kv;
+      b1 = (1 - decay) / kv;
+    } else {
+      a01 = period;
+      b0 = period * period / (2 * ka);
+      b1 = period / ka;
+    }
+    a11 = decay;
+    solveGains();
+  }
+
+  /**
+   * Set the noise and solve the Kalman gain. Larger model noise trusts the measurements more.
+   *
+   * @param positionNoise The standard deviation of the position model error in radians per root
+   *     second.
+   * @param velocityNoise The standard deviation of the velocity model error in radians per second
+   *     per root second.
+   * @param measurementNoise The standard deviation of the encoder position in radians.
+   * @throws IllegalArgumentException If a noise is not more than zero.
+   */
+  public void setNoise(double positionNoise, double velocityNoise, double measurementNoise) {
+    if (!(positionNoise > 0) || !(velocityNoise > 0) || !(measurementNoise > 0)) {
+      throw new IllegalArgumentException("Noise must be more than zero");
+    }
+    positionStd = positionNoise;
+    velocityStd = velocityNoise;
+    measurementStd = measurementNoise;
+    solveGains();
+  }
+
+  /**
+   * Iterate the Riccati equation to the steady-state gain and carry it forward over the delay. Does
+   * nothing until both the model and noise are set.
+   */
+  private void solveGains() {
+    if (ka == 0 || measurementStd == 0) {
+      return;
+    }
+    double q0 = positionStd * positionStd * period;
+    double q1 = velocityStd * velocityStd * period;
+    double r = measurementStd * measurementStd;
+
+    // Covariance after correction, starting from the measurement noise
+    double p00 = r;
+    double p01 = 0;
+    double p11 = q1 / period;
+    double k0 = 0;
+    double k1 = 0;
+    for (int i = 0; i < MAX_GAIN_ITERATIONS; i++) {
+      // Predict: A P A' + Q
+      double m00 = p00 + 2 * a01 * p01 + a01 * a01 * p11 + q0;
+      double m01 = a11 * (p01 + a01 * p11);
+      double m11 = a11 * a11 * p11 + q1;
+
+      // Correct with a position measurement
+      double innovation = m00 + r;
+      double newK0 = m00 / innovation;
+      double newK1 = m01 / innovation;
+      p00 = (1 - newK0) * m00;
+      p01 = (1 - newK0) * m01;
+      p11 = m11 - newK1 * m01;
+
+      boolean converged =
+          Math.abs(newK0 - k0) < GAIN_TOLERANCE && Math.abs(newK1 - k1) < GAIN_TOLERANCE;
+      k0 = newK0;
+      k1 = newK1;
+      if (converged) {
+        break;
+      }
+    }
+
+    positionGains[0] = k0;
+    velocityGains[0] = k1;
+    for (int j = 1; j <= delayCycles; j++) {
+      positionGains[j] = positionGains[j - 1] + a01 * velocityGains[j - 1];
+      velocityGains[j] = a11 * velocityGains[j - 1];
+    }
+  }
+
+  /**
+   * Start from a stopped arm at a position.
+   *
+   * @param position The arm position in radians.
+   */
+  public void reset(double position) {
+    for (int i = 0; i <= MAX_DELAY_CYCLES; i++) {
+      positions[i] = position;
+      velocities[i] = 0;
+    }
+  }
+
+  /**
+   * Correct the estimates with a measured position taken {@code delayCycles} periods ago.
+   *
+   * @param measuredPosition The encoder position in radians.
+   */
+  public void correct(double measuredPosition) {
+    int slot = (head - delayCycles + MAX_DELAY_CYCLES + 1) % (MAX_DELAY_CYCLES + 1);
+    double error = measuredPosition - positions[slot];
+    for (int j = 0; j <= delayCycles; j++) {
+      positions[slot] += positionGains[j] * error;
+      velocities[slot] += velocityGains[j] * error;
+      slot = slot == MAX_DELAY_CYCLES ? 0 : slot + 1;
+    }
+  }
+
+  /**
+   * Advance the estimate by one period.
+   *
+   * @param voltage The voltage applied to the motor over the period.
+   */
+  public void predict(double voltage) {
+    double position = positions[head];
+    double velocity = velocities[head];
+
+    // Voltage left to move the arm after gravity and friction. Static friction holds a stopped
+    // arm against a net voltage up to kS.
+    double drive = voltage - kg * Math.cos(position);
+    boolean moving = Math.abs(velocity) > STOPPED_VELOCITY_RAD_PER_SEC;
+    double net;
+    if (moving) {
+      net = drive - ks * Math.signum(velocity);
+    } else if (Math.abs(drive) <= ks) {
+      net = 0;
+    } else {
+      net = drive - ks * Math.signum(drive);
+    }
+
+    double nextVelocity = a11 * velocity + b1 * net;
+    if (moving && nextVelocity * velocity < 0 && Math.abs(drive) <= ks) {
+      // Friction stops the arm but does not reverse it
+      nextVelocity = 0;
+    }
+    head = head == MAX_DELAY_CYCLES ? 0 : head + 1;
+    positions[head] = position + a01 * velocity + b0 * net;
+    velocities[head] = nextVelocity;
+  }
+
+  /** Returns the estimated arm position in radians. */
+  public double getPosition() {
+    return positions[head];
+  }
+
+  /** Returns the estimated arm velocity in radians per second. */
+  public double getVelocity() {
+    return velocities[head];
+  }
+
+  /** Returns the position gain applied to the estimate a measurement is compared with. */
+  public double getPositionGain() {
+    return positionGains[0];
+  }
+
+  /** Returns the velocity gain applied to the estimate a measurement is compared with. */
+  public double getVelocityGain() {
+    return velocityGains[0];
+  }
+}
@@ -0,0 +1,108 @@
+package frc.robot.control;
+
+import java.util.Arrays;
+
+/**
+ * A planned arm move sampled at a fixed period.
+ *
+ * <p>Sample {@code i} is the profile setpoint at time {@code i * period} after the start of the
+ * move, with the feedforward voltage for that setpoint already calculated. Sample 0 is the start
+ * state and the last sample is the goal, which is held once the move is complete unless the move
+ * continues into another.
+ *
+ * <p>Trajectories are slots owned by an {@link ArmTrajectoryPlanner}. The arrays are allocated once
+ * and refilled when the slot is reused for a new plan, so a trajectory is only valid until the
+ * planner evicts it. Only the planner modifies a trajectory.
+ */
+public final class ArmTrajectory {
+  private final double period;
+  private double[] position;
+  private double[] velocity;
+  private double[] feedforward;
+  private int length;
+
+  // Quantized plan inputs, used by the planner as the cache key
+  long keyStartPosition;
+  long keyStartVelocity;
+  long keyGoal;
+  long keyGoalVelocity;
+  long keyVersion;
+  long lastUsed;
+  boolean valid;
+
+  ArmTrajectory(double period, int capacity) {
+    this.period = period;
+    position = new double[capacity];
+    velocity = new double[capacity];
+    feedforward = new double[capacity];
+  }
+
+  /**
+   * Make room for a plan of the given length. Only allocates if the plan is longer than any so far.
+   */
+  void resize(int newLength) {
+    if (newLength > position.length) {
+      position = Arrays.copyOf(position, newLength);
+      velocity = Arrays.copyOf(velocity, newLength);
+      feedforward = Arrays.copyOf(feedforward, newLength);
+    }
+    length = newLength;
+  }
+
+  void set(int index, double positionValue, double velocityValue, double feedforwardValue) {
+    position[index] = positionValue;
+    velocity[index] = velocityValue;
+    feedforward[index] = feedforwardValue;
+  }
+
+  /** Returns the time between samples in seconds. */
+  public double getPeriod() {
+    return period;
+  }
+
+  /** Returns the number of samples, including the start and goal. */
+  public int length() {
+    return length;
+  }
+
+  /** Returns the index of the goal sample. */
+  public int lastIndex() {
+    return length - 1;
+  }
+
+  /**
+   * Returns the index of the next sample, stopping at the goal.
+   *
+   * @param index The current sample index.
+   */
+  public int next(int index) {
+    return Math.min(index + 1, length - 1);
+  }
+
+  /**
+   * Returns the setpoint position in radians.
+   *
+   * @param index The sample index.
+   */
+  public double getPosition(int index) {
+    return position[index];
+  }
+
+  /**
+   * Returns the setpoint velocity in radians per second.
+   *
+   * @param index The sample index.
+   */
+  public double getVelocity(int index) {
+    return velocity[index];
+  }
+
+  /**
+   * Returns the feedforward voltage for the setpoint.
+   *
+   * @param index The sample index.
+   */
+  public double getFeedforward(int index) {
+    return feedforward[index];
+  }
+}
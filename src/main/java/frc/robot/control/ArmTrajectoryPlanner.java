@@ -0,0 +1,421 @@
+package frc.robot.control;
+
+/**
+ * Plans arm moves into {@link ArmTrajectory} tables so the control loop only has to look up the
+ * setpoint and feedforward for each cycle.
+ *
+ * <p>A move is planned once with a trapezoid profile and the arm feedforward. The profile and
+ * feedforward math is the same as WPILib {@code TrapezoidProfile} and {@code ArmFeedforward}, done
+ * on primitive fields so that planning does not create state objects.
+ *
+ * <p>With a voltage limit set, moves are instead planned time-optimally for the arm model. The
+ * acceleration available at each point is what the voltage limit leaves after static friction,
+ * gravity at that angle and back EMF, so the arm accelerates harder where gravity helps or is
+ * small. The move is split into {@link #GRID_SEGMENTS} equal steps of position. A backward pass
+ * finds the highest speed at each step from which the arm can still brake to the end velocity, and
+ * a forward pass accelerates as hard as possible up to that speed and the maximum velocity. The
+ * maximum acceleration constraint is not used. Moves that start moving away from the goal are
+ * planned with the trapezoid profile. Recently used plans are kept in a small LRU cache keyed by
+ * the start state and goal, quantized so that repeated moves such as low to high position reuse the
+ * same plan. Changing the constraints or gains invalidates the cache.
+ *
+ * <p>A move can end at a non-zero velocity so that it continues into the next move of a path. The
+ * caller must choose an end velocity that can be reached within the constraints.
+ *
+ * <p>The cache slots and their sample arrays are allocated up front. Planning a move only allocates
+ * if it needs more samples than any earlier plan in the same slot.
+ */
+public final class ArmTrajectoryPlanner {
+
+  /** Start and goal positions closer than this share a cached plan. */
+  public static final double POSITION_QUANTUM_RADS = 1e-3;
+
+  /** Start and goal velocities closer than this share a cached plan. */
+  public static final double VELOCITY_QUANTUM_RADS_PER_SEC = 1e-3;
+
+  /** The number of position steps of a time-optimal move. */
+  public static final int GRID_SEGMENTS = 256;
+
+  private final double period;
+  private final ArmTrajectory[] cache;
+  private long version;
+  private long useCount;
+  private long hitCount;
+  private long missCount;
+
+  private double maxVelocity;
+  private double maxAcceleration;
+  private double ks;
+  private double kg;
+  private double kv;
+  private double ka;
+  private double voltageLimit;
+
+  // Gravity factor, speed along the move and time at each position step of a time-optimal move
+  private final double[] gridCos = new double[GRID_SEGMENTS + 1];
+  private final double[] gridSpeed = new double[GRID_SEGMENTS + 1];
+  private final double[] gridTime = new double[GRID_SEGMENTS + 1];
+
+  // Profile parameters for the move being planned
+  private double direction;
+  private double startPosition;
+  private double startVelocity;
+  private double goalPosition;
+  private double goalVelocity;
+  private double endAccel;
+  private double endFullSpeed;
+  private double endDecel;
+  private double samplePosition;
+  private double sampleVelocity;
+  private double sampleAcceleration;
+
+  /**
+   * Create a planner.
+   *
+   * @param period The sample period, normally the control loop period.
+   * @param cacheSize The maximum number of plans to keep.
+   * @param capacity The number of samples to allocate for each plan.
+   */
+  public ArmTrajectoryPlanner(double period, int cacheSize, int capacity) {
+    this.period = period;
+    cache = new ArmTrajectory[cacheSize];
+    for (int i = 0; i < cacheSize; i++) {
+      cache[i] = new ArmTrajectory(period, capacity);
+    }
+  }
+
+  /**
+   * Set the profile constraints used for new plans.
+   *
+   * @param velocity The maximum velocity in radians per second.
+   * @param acceleration The maximum acceleration in radians per second squared.
+   */
+  public void setConstraints(double velocity, double acceleration) {
+    if (velocity != maxVelocity || acceleration != maxAcceleration) {
+      maxVelocity = velocity;
+      maxAcceleration = acceleration;
+      version++;
+    }
+  }
+
+  /**
+   * Set the feedforward gains used for new plans.
+   *
+   * @param staticGain The static gain in volts.
+   * @param gravityGain The gravity gain in volts.
+   * @param velocityGain The velocity gain in volts per radian per second.
+   */
+  public void setFeedforward(double staticGain, double gravityGain, double velocityGain) {
+    setFeedforward(staticGain, gravityGain, velocityGain, 0);
+  }
+
+  /**
+   * Set the feedforward gains used for new plans, including acceleration.
+   *
+   * @param staticGain The static gain in volts.
+   * @param gravityGain The gravity gain in volts.
+   * @param velocityGain The velocity gain in volts per radian per second.
+   * @param accelerationGain The acceleration gain in volts per radian per second squared.
+   */
+  public void setFeedforward(
+      double staticGain, double gravityGain, double velocityGain, double accelerationGain) {
+    if (staticGain != ks || gravityGain != kg || velocityGain != kv || accelerationGain != ka) {
+      ks = staticGain;
+      kg = gravityGain;
+      kv = velocityGain;
+      ka = accelerationGain;
+      version++;
+    }
+  }
+
+  /**
+   * Set the voltage available to follow time-optimal plans. The rest of the supply is left for the
+   * PID correction.
+   *
+   * @param volts The voltage limit, or 0 to plan trapezoid profiles. Time-optimal plans also need
+   *     an acceleration gain.
+   */
+  public void setVoltageLimit(double volts) {
+    if (volts != voltageLimit) {
+      voltageLimit = volts;
+      version++;
+    }
+  }
+
+  /** Returns whether new moves are planned time-optimally. */
+  public boolean isTimeOptimal() {
+    return voltageLimit > 0 && ka > 0;
+  }
+
+  /** Returns the maximum velocity in radians per second. */
+  public double getMaxVelocity() {
+    return maxVelocity;
+  }
+
+  /**
+   * Returns the acceleration in radians per second squared that every plan can reach. For
+   * time-optimal plans this is the acceleration available at the maximum velocity with gravity
+   * opposing the move.
+   */
+  public double getMaxAcceleration() {
+    if (isTimeOptimal()) {
+      return Math.max(0, (voltageLimit - kg - ks - kv * maxVelocity) / ka);
+    }
+    return maxAcceleration;
+  }
+
+  /**
+   * Get the plan for a move that stops at the goal, from the cache if a matching one was planned
+   * recently.
+   *
+   * <p>The returned trajectory is reused for a later plan once it is the least recently used.
+   *
+   * @param position The current setpoint position in radians.
+   * @param velocity The current setpoint velocity in radians per second.
+   * @param goal The goal position in radians. The goal velocity is zero.
+   * @return The plan.
+   */
+  public ArmTrajectory plan(double position, double velocity, double goal) {
+    return plan(position, velocity, goal, 0);
+  }
+
+  /**
+   * Get the plan for a move that passes through the goal at a velocity, from the cache if a
+   * matching one was planned recently.
+   *
+   * @param position The current setpoint position in radians.
+   * @param velocity The current setpoint velocity in radians per second.
+   * @param goal The goal position in radians.
+   * @param endVelocity The velocity at the goal in radians per second, in the direction of the move
+   *     and no more than can be reached within the constraints.
+   * @return The plan.
+   */
+  public ArmTrajectory plan(double position, double velocity, double goal, double endVelocity) {
+    long keyPosition = Math.round(position / POSITION_QUANTUM_RADS);
+    long keyVelocity = Math.round(velocity / VELOCITY_QUANTUM_RADS_PER_SEC);
+    long keyGoal = Math.round(goal / POSITION_QUANTUM_RADS);
+    long keyGoalVelocity = Math.round(endVelocity / VELOCITY_QUANTUM_RADS_PER_SEC);
+    useCount++;
+
+    ArmTrajectory oldest = cache[0];
+    for (ArmTrajectory trajectory : cache) {
+      if (trajectory.valid
+          && trajectory.keyVersion == version
+          && trajectory.keyStartPosition == keyPosition
+          && trajectory.keyStartVelocity == keyVelocity
+          && trajectory.keyGoal == keyGoal
+          && trajectory.keyGoalVelocity == keyGoalVelocity) {
+        hitCount++;
+        trajectory.lastUsed = useCount;
+        return trajectory;
+      }
+      // Unused slots have never been used so they are the oldest
+      if (trajectory.lastUsed < oldest.lastUsed) {
+        oldest = trajectory;
+      }
+    }
+
+    missCount++;
+    calculate(oldest, position, velocity, goal, endVelocity);
+    oldest.keyVersion = version;
+    oldest.keyStartPosition = keyPosition;
+    oldest.keyStartVelocity = keyVelocity;
+    oldest.keyGoal = keyGoal;
+    oldest.keyGoalVelocity = keyGoalVelocity;
+    oldest.lastUsed = useCount;
+    oldest.valid = true;
+    return oldest;
+  }
+
+  /** Returns the number of plans found in the cache. */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /** Returns the number of plans that had to be calculated. */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  private void calculate(
+      ArmTrajectory trajectory, double position, double velocity, double goal, double endVelocity) {
+    if (isTimeOptimal()
+        && calculateTimeOptimal(trajectory, position, velocity, goal, endVelocity)) {
+      return;
+    }
+    startProfile(position, velocity, goal, endVelocity);
+    int length = (int) Math.ceil(endDecel / period) + 1;
+    trajectory.resize(length);
+
+    for (int i = 0; i < length - 1; i++) {
+      sampleProfile(i * period);
+      trajectory.set(
+          i,
+          samplePosition,
+          sampleVelocity,
+          feedforward(samplePosition, sampleVelocity, sampleAcceleration));
+    }
+    trajectory.set(length - 1, goal, endVelocity, feedforward(goal, endVelocity, 0));
+  }
+
+  private double feedforward(double position, double velocity, double acceleration) {
+    return ks * Math.signum(velocity) + kg * Math.cos(position) + kv * velocity + ka * acceleration;
+  }
+
+  /**
+   * Plan a time-optimal move. The move is mirrored so it always runs in the positive direction.
+   *
+   * @return False if the move can't be planned this way and needs a trapezoid profile.
+   */
+  private boolean calculateTimeOptimal(
+      ArmTrajectory trajectory, double position, double velocity, double goal, double endVelocity) {
+    direction = position > goal ? -1 : 1;
+    double start = position * direction;
+    double distance = (goal - position) * direction;
+    double speed = velocity * direction;
+    if (distance < POSITION_QUANTUM_RADS || speed < 0) {
+      return false;
+    }
+    double step = distance / GRID_SEGMENTS;
+    for (int i = 0; i <= GRID_SEGMENTS; i++) {
+      gridCos[i] = Math.cos((start + i * step) * direction);
+    }
+
+    // Backward from the end velocity, braking as hard as possible
+    gridSpeed[GRID_SEGMENTS] = Math.min(endVelocity * direction, maxVelocity);
+    for (int i = GRID_SEGMENTS - 1; i >= 0; i--) {
+      double next = gridSpeed[i + 1];
+      double cos = gridCos[i + 1];
+      double faster = reach(next, brakingLimit(cos, next), step);
+      gridSpeed[i] =
+          Math.min(reach(next, brakingLimit(cos, (next + faster) / 2), step), maxVelocity);
+    }
+
+    // Forward from the start velocity, accelerating as hard as possible up to the braking curve
+    gridSpeed[0] = Math.min(speed, gridSpeed[0]);
+    gridTime[0] = 0;
+    for (int i = 0; i < GRID_SEGMENTS; i++) {
+      double current = gridSpeed[i];
+      double cos = gridCos[i];
+      double faster = reach(current, accelerationLimit(cos, current), step);
+      double next =
+          Math.min(
+              reach(current, accelerationLimit(cos, (current + faster) / 2), step),
+              gridSpeed[i + 1]);
+      if (current + next <= 0) {
+        // Not enough voltage to start moving
+        return false;
+      }
+      gridSpeed[i + 1] = next;
+      gridTime[i + 1] = gridTime[i] + 2 * step / (current + next);
+    }
+
+    // Sample each period with constant acceleration within each step
+    int length = (int) Math.ceil(gridTime[GRID_SEGMENTS] / period) + 1;
+    trajectory.resize(length);
+    int segment = 0;
+    for (int i = 0; i < length - 1; i++) {
+      double t = i * period;
+      while (segment < GRID_SEGMENTS - 1 && gridTime[segment + 1] <= t) {
+        segment++;
+      }
+      double u0 = gridSpeed[segment];
+      double acceleration =
+          (gridSpeed[segment + 1] * gridSpeed[segment + 1] - u0 * u0) / (2 * step);
+      double dt = Math.min(t - gridTime[segment], gridTime[segment + 1] - gridTime[segment]);
+      double u = Math.max(0, u0 + acceleration * dt);
+      double s = start + segment * step + u0 * dt + acceleration * dt * dt / 2;
+      // Acceleration is constant over each step, so the feedforward can be slightly over the limit
+      // where the speed changes a lot within one step
+      double feedforward = feedforward(s * direction, u * direction, acceleration * direction);
+      trajectory.set(
+          i,
+          s * direction,
+          u * direction,
+          Math.max(-voltageLimit, Math.min(voltageLimit, feedforward)));
+    }
+    double finalVelocity = gridSpeed[GRID_SEGMENTS] * direction;
+    trajectory.set(length - 1, goal, finalVelocity, feedforward(goal, finalVelocity, 0));
+    return true;
+  }
+
+  /** Returns the speed reached from a speed after a distance at an acceleration, at least zero. */
+  private static double reach(double speed, double acceleration, double distance) {
+    double squared = speed * speed + 2 * acceleration * distance;
+    return squared > 0 ? Math.sqrt(squared) : 0;
+  }
+
+  /** Returns the acceleration along the move at an angle, given by its cosine, and speed. */
+  private double accelerationLimit(double cos, double speed) {
+    return (voltageLimit - direction * kg * cos - ks - kv * speed) / ka;
+  }
+
+  /** Returns the deceleration along the move at an angle, given by its cosine, and speed. */
+  private double brakingLimit(double cos, double speed) {
+    return (voltageLimit + direction * kg * cos + ks + kv * speed) / ka;
+  }
+
+  /**
+   * Calculate the profile timing for a move. The move is mirrored so it always runs in the positive
+   * direction, and a start velocity above the limit is clamped.
+   */
+  private void startProfile(double position, double velocity, double goal, double endVelocity) {
+    direction = position > goal ? -1 : 1;
+    startPosition = position * direction;
+    startVelocity = Math.min(velocity * direction, maxVelocity);
+    goalPosition = goal * direction;
+    goalVelocity = endVelocity * direction;
+
+    // Calculate the parameters as if the profile started and ended at zero velocity, then cut off
+    // the parts that would have come before the start and after the end
+    double cutoffBegin = startVelocity / maxAcceleration;
+    double cutoffDistBegin = cutoffBegin * cutoffBegin * maxAcceleration / 2.0;
+    double cutoffEnd = goalVelocity / maxAcceleration;
+    double cutoffDistEnd = cutoffEnd * cutoffEnd * maxAcceleration / 2.0;
+    double fullTrapezoidDist = cutoffDistBegin + (goalPosition - startPosition) + cutoffDistEnd;
+    double accelerationTime = maxVelocity / maxAcceleration;
+    double fullSpeedDist =
+        fullTrapezoidDist - accelerationTime * accelerationTime * maxAcceleration;
+
+    // Handle the case where the profile never reaches full speed
+    if (fullSpeedDist < 0) {
+      accelerationTime = Math.sqrt(fullTrapezoidDist / maxAcceleration);
+      fullSpeedDist = 0;
+    }
+
+    endAccel = accelerationTime - cutoffBegin;
+    endFullSpeed = endAccel + fullSpeedDist / maxVelocity;
+    endDecel = endFullSpeed + accelerationTime - cutoffEnd;
+  }
+
+  /** Sample the profile at a time after the start of the move. */
+  private void sampleProfile(double t) {
+    double position;
+    double velocity;
+    double acceleration;
+    if (t < endAccel) {
+      velocity = startVelocity + t * maxAcceleration;
+      position = startPosition + (startVelocity + t * maxAcceleration / 2.0) * t;
+      acceleration = maxAcceleration;
+    } else if (t < endFullSpeed) {
+      velocity = maxVelocity;
+      acceleration = 0;
+      position =
+          startPosition
+              + (startVelocity + endAccel * maxAcceleration / 2.0) * endAccel
+              + maxVelocity * (t - endAccel);
+    } else if (t <= endDecel) {
+      double timeLeft = endDecel - t;
+      velocity = goalVelocity + timeLeft * maxAcceleration;
+      position = goalPosition - (goalVelocity + timeLeft * maxAcceleration / 2.0) * timeLeft;
+      acceleration = -maxAcceleration;
+    } else {
+      velocity = goalVelocity;
+      position = goalPosition;
+      acceleration = 0;
+    }
+    samplePosition = position * direction;
+    sampleVelocity = velocity * direction;
+    sampleAcceleration = acceleration * direction;
+  }
+}
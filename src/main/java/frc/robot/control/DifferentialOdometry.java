@@ -0,0 +1,108 @@
+package frc.robot.control;
+
+/**
+ * Pose of a differential drive integrated from its encoders and gyro.
+ *
+ * <p>The math is the same as WPILib {@code DifferentialDriveOdometry}: each update moves the robot
+ * along the arc given by the distance the wheels traveled and the change in gyro heading, and the
+ * heading is taken from the gyro rather than integrated. The pose is kept in primitive fields so
+ * {@link #update(double, double, double)} does not allocate, which lets it run on a fast loop
+ * without making garbage. This class is not thread safe.
+ */
+public final class DifferentialOdometry {
+
+  private double x;
+  private double y;
+  private double heading;
+  private double gyroOffset;
+  private double lastLeft;
+  private double lastRight;
+
+  /**
+   * Create odometry at the origin, facing along the x axis.
+   *
+   * @param gyroHeading The gyro heading in radians, counterclockwise positive.
+   * @param leftPosition The left wheel distance in meters.
+   * @param rightPosition The right wheel distance in meters.
+   */
+  public DifferentialOdometry(double gyroHeading, double leftPosition, double rightPosition) {
+    reset(gyroHeading, leftPosition, rightPosition, 0, 0, 0);
+  }
+
+  /**
+   * Set the pose. The encoders and gyro don't need to be reset, since only their changes are used.
+   *
+   * @param gyroHeading The gyro heading in radians, counterclockwise positive.
+   * @param leftPosition The left wheel distance in meters.
+   * @param rightPosition The right wheel distance in meters.
+   * @param poseX The x position in meters.
+   * @param poseY The y position in meters.
+   * @param poseHeading The heading in radians.
+   */
+  public void reset(
+      double gyroHeading,
+      double leftPosition,
+      double rightPosition,
+      double poseX,
+      double poseY,
+      double poseHeading) {
+    x = poseX;
+    y = poseY;
+    heading = wrap(poseHeading);
+    gyroOffset = poseHeading - gyroHeading;
+    lastLeft = leftPosition;
+    lastRight = rightPosition;
+  }
+
+  /**
+   * Move the pose by the change in the sensor readings since the last update or reset.
+   *
+   * @param gyroHeading The gyro heading in radians, counterclockwise positive.
+   * @param leftPosition The left wheel distance in meters.
+   * @param rightPosition The right wheel distance in meters.
+   */
+  public void update(double gyroHeading, double leftPosition, double rightPosition) {
+    double newHeading = wrap(gyroHeading + gyroOffset);
+    double distance = ((leftPosition - lastLeft) + (rightPosition - lastRight)) / 2;
+    double turn = wrap(newHeading - heading);
+    lastLeft = leftPosition;
+    lastRight = rightPosition;
+
+    // Forward and sideways travel along the arc, in the frame of the old heading. The series is
+    // used for small turns, where the exact terms divide by almost zero.
+    double forward;
+    double sideways;
+    if (Math.abs(turn) < 1e-9) {
+      forward = distance * (1 - turn * turn / 6);
+      sideways = distance * turn / 2;
+    } else {
+      forward = distance * Math.sin(turn) / turn;
+      sideways = distance * (1 - Math.cos(turn)) / turn;
+    }
+    double cos = Math.cos(heading);
+    double sin = Math.sin(heading);
+    x += forward * cos - sideways * sin;
+    y += forward * sin + sideways * cos;
+    heading = newHeading;
+  }
+
+  /** Returns the x position in meters. */
+  public double getX() {
+    return x;
+  }
+
+  /** Returns the y position in meters. */
+  public double getY() {
+    return y;
+  }
+
+  /** Returns the heading in radians, from -pi to pi. */
+  public double getHeading() {
+    return heading;
+  }
+
+  /** Returns an angle in radians wrapped to -pi to pi. */
+  private static double wrap(double angle) {
+    return Math.atan2(Math.sin(angle), Math.cos(angle));
+  }
+}
@@ -0,0 +1,242 @@
+package frc.robot.control;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Drive trajectory read directly from a binary trajectory file.
+ *
+ * <p>Trajectories are generated from path definitions at build time by {@code
+ * frc.tools.TrajectoryCompiler} and deployed with the robot code, so no trajectory is generated
+ * while the robot boots. Loading a file memory-maps it and checks its header. The samples are not
+ * parsed into objects: a lookup binary searches the sample times in the mapped buffer and
+ * interpolates between the samples on either side without allocating.
+ *
+ * <p>A file is little-endian. It starts with a header of four ints: {@link #MAGIC}, {@link
+ * #VERSION}, the number of samples and {@link #FIELDS}. Each sample follows as {@link #FIELDS}
+ * floats, in the order of the field indices below, with the times increasing from zero.
+ */
+public final class DriveTrajectory {
+
+  /** The bytes {@code TRAJ} at the start of every trajectory file. */
+  public static final int MAGIC = 0x4A415254;
+
+  /** Extension of trajectory files. */
+  public static final String FILE_EXTENSION = ".traj";
+
+  /** Version of the file format. */
+  public static final int VERSION = 1;
+
+  /** Size of the header in bytes. */
+  public static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+  // Field indices, in file order
+  /** Time from the start of the trajectory in seconds. */
+  public static final int TIME = 0;
+
+  /** X position in meters. */
+  public static final int X = 1;
+
+  /** Y position in meters. */
+  public static final int Y = 2;
+
+  /** Heading in radians, counterclockwise positive. */
+  public static final int HEADING = 3;
+
+  /** Velocity in meters per second, negative when driving backwards. */
+  public static final int VELOCITY = 4;
+
+  /** Acceleration in meters per second squared. */
+  public static final int ACCELERATION = 5;
+
+  /** Curvature in radians per meter, positive when turning counterclockwise. */
+  public static final int CURVATURE = 6;
+
+  /** Number of fields in each sample. */
+  public static final int FIELDS = 7;
+
+  private static final int SAMPLE_BYTES = FIELDS * Float.BYTES;
+
+  private final ByteBuffer samples;
+  private final int sampleCount;
+  private final double totalTime;
+
+  private DriveTrajectory(ByteBuffer samples, int sampleCount) {
+    this.samples = samples;
+    this.sampleCount = sampleCount;
+    totalTime = field(sampleCount - 1, TIME);
+  }
+
+  /**
+   * Memory-map a trajectory file.
+   *
+   * @param file The file to load.
+   * @return The trajectory, which reads the mapped file.
+   * @throws IOException If the file can't be read or is not a valid trajectory.
+   */
+  public static DriveTrajectory load(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(file + " is larger than 2 GB");
+      }
+      // The mapping stays valid after the channel is closed
+      return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+    }
+  }
+
+  /**
+   * Read a trajectory from a buffer.
+   *
+   * @param buffer The trajectory file contents, from the header to the last sample.
+   * @return The trajectory, which reads the buffer.
+   * @throws IOException If the buffer is not a valid trajectory.
+   */
+  public static DriveTrajectory load(ByteBuffer buffer) throws IOException {
+    ByteBuffer file = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    if (file.remaining() < HEADER_BYTES || file.getInt() != MAGIC) {
+      throw new IOException("Not a trajectory file");
+    }
+    int version = file.getInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported trajectory version " + version);
+    }
+    int sampleCount = file.getInt();
+    int fields = file.getInt();
+    if (fields != FIELDS) {
+      throw new IOException("Trajectory samples have " + fields + " fields, expected " + FIELDS);
+    }
+    if (sampleCount < 1 || (long) sampleCount * SAMPLE_BYTES != file.remaining()) {
+      throw new IOException(
+          "Trajectory has " + file.remaining() + " bytes of samples for " + sampleCount);
+    }
+    return new DriveTrajectory(file.slice().order(ByteOrder.LITTLE_ENDIAN), sampleCount);
+  }
+
+  /**
+   * Write a trajectory in the file format.
+   *
+   * @param samples The samples, {@link #FIELDS} values each in file order.
+   * @param buffer Receives the header and samples. Must have {@link #getFileSize(int)} bytes
+   *     remaining.
+   * @throws IllegalArgumentException If there are no samples, or the sample times don't start at
+   *     zero and increase.
+   */
+  public static void write(double[] samples, ByteBuffer buffer) {
+    if (samples.length == 0 || samples.length % FIELDS != 0) {
+      throw new IllegalArgumentException("samples must be a whole number of samples");
+    }
+    int sampleCount = samples.length / FIELDS;
+    if (samples[TIME] != 0) {
+      throw new IllegalArgumentException("The first sample must be at time zero");
+    }
+    for (int i = 1; i < sampleCount; i++) {
+      // Compare the times as they are stored
+      if (!((float) samples[i * FIELDS + TIME] > (float) samples[(i - 1) * FIELDS + TIME])) {
+        throw new IllegalArgumentException("Sample times must increase, sample " + i + " doesn't");
+      }
+    }
+
+    ByteBuffer file = buffer.order(ByteOrder.LITTLE_ENDIAN);
+    file.putInt(MAGIC).putInt(VERSION).putInt(sampleCount).putInt(FIELDS);
+    for (double value : samples) {
+      file.putFloat((float) value);
+    }
+  }
+
+  /**
+   * Returns the size of a trajectory file.
+   *
+   * @param sampleCount The number of samples in the trajectory.
+   * @return The size in bytes.
+   */
+  public static int getFileSize(int sampleCount) {
+    return HEADER_BYTES + sampleCount * SAMPLE_BYTES;
+  }
+
+  /** Returns the number of samples in the trajectory. */
+  public int getSampleCount() {
+    return sampleCount;
+  }
+
+  /** Returns the time to drive the trajectory in seconds. */
+  public double getTotalTime() {
+    return totalTime;
+  }
+
+  /**
+   * Find the state of the trajectory at a time. Times before the start return the first sample and
+   * times after the end return the last. Safe to call from any thread.
+   *
+   * <p>Between samples the acceleration is constant, so the velocity and distance travelled follow
+   * from the earlier sample. The pose is interpolated between the samples by the fraction of the
+   * distance between them, and the curvature by the fraction of the time.
+   *
+   * @param time The time from the start of the trajectory in seconds.
+   * @param state Set to the {@link #FIELDS} fields of the state, indexed like the samples.
+   */
+  public void sample(double time, double[] state) {
+    if (time <= 0) {
+      copy(0, state);
+      return;
+    }
+    if (time >= totalTime) {
+      copy(sampleCount - 1, state);
+      return;
+    }
+
+    // Keep field(low, TIME) <= time < field(high, TIME)
+    int low = 0;
+    int high = sampleCount - 1;
+    while (high - low > 1) {
+      int middle = (low + high) >>> 1;
+      if (field(middle, TIME) <= time) {
+        low = middle;
+      } else {
+        high = middle;
+      }
+    }
+
+    double startTime = field(low, TIME);
+    double velocity = field(low, VELOCITY);
+    double acceleration = field(low, ACCELERATION);
+    double dt = time - startTime;
+    double timeFraction = dt / (field(high, TIME) - startTime);
+
+    double startX = field(low, X);
+    double startY = field(low, Y);
+    double dx = field(high, X) - startX;
+    double dy = field(high, Y) - startY;
+    double gap = Math.hypot(dx, dy);
+    double distance = Math.abs(velocity * dt + 0.5 * acceleration * dt * dt);
+    double fraction = gap > 0 ? Math.min(distance / gap, 1) : timeFraction;
+
+    double startHeading = field(low, HEADING);
+    double turn = Math.IEEEremainder(field(high, HEADING) - startHeading, 2 * Math.PI);
+    double startCurvature = field(low, CURVATURE);
+
+    state[TIME] = time;
+    state[X] = startX + fraction * dx;
+    state[Y] = startY + fraction * dy;
+    state[HEADING] = Math.IEEEremainder(startHeading + fraction * turn, 2 * Math.PI);
+    state[VELOCITY] = velocity + acceleration * dt;
+    state[ACCELERATION] = acceleration;
+    state[CURVATURE] = startCurvature + timeFraction * (field(high, CURVATURE) - startCurvature);
+  }
+
+  /** Copy a sample to a state. */
+  private void copy(int sample, double[] state) {
+    for (int i = 0; i < FIELDS; i++) {
+      state[i] = field(sample, i);
+    }
+  }
+
+  /** Read a field of a sample from the buffer. */
+  private double field(int sample, int field) {
+    return samples.getFloat(sample * SAMPLE_BYTES + field * Float.BYTES);
+  }
+}
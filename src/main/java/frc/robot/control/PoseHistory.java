@@ -0,0 +1,172 @@
+package frc.robot.control;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Fixed-capacity history of timestamped robot poses, for finding where the robot was at a recent
+ * time.
+ *
+ * <p>Poses are kept in parallel primitive arrays used as a ring, and the oldest pose is overwritten
+ * when the ring is full. A lookup binary searches the timestamps and interpolates linearly between
+ * the poses on either side, turning the heading the shorter way around.
+ *
+ * <p>One thread adds poses while any thread looks them up. Lookups read optimistically under a
+ * {@link StampedLock} and only take the read lock if a pose was added during the read, so neither
+ * adding nor looking up a pose allocates.
+ */
+public final class PoseHistory {
+
+  private final int capacity;
+  private final double[] timestamps;
+  private final double[] xs;
+  private final double[] ys;
+  private final double[] headings;
+  private int start;
+  private int size;
+  private final StampedLock lock = new StampedLock();
+
+  /**
+   * Create an empty history.
+   *
+   * @param capacity The number of poses to keep.
+   * @throws IllegalArgumentException If the capacity is less than one.
+   */
+  public PoseHistory(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be at least one, was " + capacity);
+    }
+    this.capacity = capacity;
+    timestamps = new double[capacity];
+    xs = new double[capacity];
+    ys = new double[capacity];
+    headings = new double[capacity];
+  }
+
+  /** Returns the number of poses that can be kept. */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Add the newest pose. A pose no newer than the newest one replaces it, so the timestamps always
+   * increase.
+   *
+   * @param timestamp The time of the pose in seconds.
+   * @param x The x position in meters.
+   * @param y The y position in meters.
+   * @param heading The heading in radians.
+   */
+  public void add(double timestamp, double x, double y, double heading) {
+    long stamp = lock.writeLock();
+    try {
+      int slot;
+      if (size > 0 && timestamp <= timestamps[slot(size - 1)]) {
+        slot = slot(size - 1);
+      } else if (size < capacity) {
+        slot = slot(size);
+        size++;
+      } else {
+        slot = start;
+        start = start + 1 == capacity ? 0 : start + 1;
+      }
+      timestamps[slot] = timestamp;
+      xs[slot] = x;
+      ys[slot] = y;
+      headings[slot] = heading;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /** Remove all poses, for when the pose is reset to a new frame. */
+  public void clear() {
+    long stamp = lock.writeLock();
+    try {
+      start = 0;
+      size = 0;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /** Returns the number of poses in the history. */
+  public int size() {
+    long stamp = lock.tryOptimisticRead();
+    int count = size;
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        count = size;
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Find the pose at a time. Times after the newest pose return the newest pose.
+   *
+   * @param timestamp The time in seconds.
+   * @param pose Set to the x and y position in meters and the heading in radians, in that order.
+   *     Undefined if no pose is found.
+   * @return False if the history is empty or the time is before the oldest pose.
+   */
+  public boolean getPose(double timestamp, double[] pose) {
+    long stamp = lock.tryOptimisticRead();
+    boolean found = lookup(timestamp, pose);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        found = lookup(timestamp, pose);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Binary search for the poses on either side of a time and interpolate between them. May read a
+   * history that is being changed, in which case the caller discards the result.
+   */
+  private boolean lookup(double timestamp, double[] pose) {
+    int count = size;
+    if (count == 0 || timestamp < timestamps[slot(0)]) {
+      return false;
+    }
+    int high = count - 1;
+    if (timestamp >= timestamps[slot(high)]) {
+      int newest = slot(high);
+      pose[0] = xs[newest];
+      pose[1] = ys[newest];
+      pose[2] = headings[newest];
+      return true;
+    }
+
+    // Keep timestamps[low] <= timestamp < timestamps[high]
+    int low = 0;
+    while (high - low > 1) {
+      int middle = (low + high) >>> 1;
+      if (timestamps[slot(middle)] <= timestamp) {
+        low = middle;
+      } else {
+        high = middle;
+      }
+    }
+    int before = slot(low);
+    int after = slot(high);
+    double fraction = (timestamp - timestamps[before]) / (timestamps[after] - timestamps[before]);
+    double turn = Math.IEEEremainder(headings[after] - headings[before], 2 * Math.PI);
+    pose[0] = xs[before] + fraction * (xs[after] - xs[before]);
+    pose[1] = ys[before] + fraction * (ys[after] - ys[before]);
+    pose[2] = Math.IEEEremainder(headings[before] + fraction * turn, 2 * Math.PI);
+    return true;
+  }
+
+  /** Returns the array index of the pose that is {@code index} poses after the oldest. */
+  private int slot(int index) {
+    int slot = start + index;
+    return slot >= capacity ? slot - capacity : slot;
+  }
+}
@@ -0,0 +1,164 @@
+package frc.robot.control;
+
+/**
+ * Wheel speed controller for one side of a differential drive, with a PID correction and
+ * feedforward.
+ *
+ * <p>The speed setpoint moves toward the requested speed no faster than the maximum acceleration,
+ * so stick steps become the same acceleration whatever the battery voltage. The feedforward is the
+ * same as WPILib {@code SimpleMotorFeedforward} on the setpoint speed and its acceleration, and the
+ * PID terms match {@code PIDController} on the speed error, with the integral contribution limited
+ * to {@link #INTEGRATOR_RANGE_VOLTS}. When the caller has to limit the output to what the battery
+ * can supply, it reports the applied voltage with {@link #setAppliedVoltage(double)} and the
+ * integral stops growing while the output is limited, so it does not wind up. All state is kept in
+ * primitive fields so {@link #calculate(double, double)} does not allocate.
+ */
+public final class WheelSpeedController {
+
+  /** Limit on the integral term in volts, the same as the {@code PIDController} default. */
+  public static final double INTEGRATOR_RANGE_VOLTS = 1.0;
+
+  private final double period;
+
+  private double kp;
+  private double ki;
+  private double kd;
+  private double ks;
+  private double kv;
+  private double ka;
+  private double maxAcceleration = Double.POSITIVE_INFINITY;
+
+  private double setpoint;
+  private double acceleration;
+  private double error;
+  private double totalError;
+  private double lastIntegration;
+  private double lastOutput;
+  private boolean haveMeasurement;
+
+  /**
+   * Create a controller.
+   *
+   * @param period The control loop period in seconds.
+   */
+  public WheelSpeedController(double period) {
+    this.period = period;
+  }
+
+  /**
+   * Set the PID gains.
+   *
+   * @param proportional The proportional gain in volts per meter per second.
+   * @param integral The integral gain in volts per meter.
+   * @param derivative The derivative gain in volts per meter per second squared.
+   */
+  public void setPid(double proportional, double integral, double derivative) {
+    kp = proportional;
+    ki = integral;
+    kd = derivative;
+  }
+
+  /**
+   * Set the feedforward gains.
+   *
+   * @param staticGain The static gain in volts.
+   * @param velocityGain The velocity gain in volts per meter per second.
+   * @param accelerationGain The acceleration gain in volts per meter per second squared.
+   */
+  public void setFeedforward(double staticGain, double velocityGain, double accelerationGain) {
+    ks = staticGain;
+    kv = velocityGain;
+    ka = accelerationGain;
+  }
+
+  /**
+   * Set the maximum acceleration of the setpoint.
+   *
+   * @param acceleration The maximum acceleration in meters per second squared.
+   */
+  public void setMaxAcceleration(double acceleration) {
+    maxAcceleration = acceleration;
+  }
+
+  /**
+   * Start from a measured speed, so the setpoint continues smoothly from how the wheels are moving.
+   *
+   * @param speed The measured wheel speed in meters per second.
+   */
+  public void reset(double speed) {
+    setpoint = speed;
+    acceleration = 0;
+    error = 0;
+    totalError = 0;
+    lastIntegration = 0;
+    lastOutput = 0;
+    haveMeasurement = false;
+  }
+
+  /**
+   * Calculate the voltage for the next period.
+   *
+   * @param speed The requested wheel speed in meters per second.
+   * @param measuredSpeed The measured wheel speed in meters per second.
+   * @return The voltage, before limiting to the supply.
+   */
+  public double calculate(double speed, double measuredSpeed) {
+    double maxChange = maxAcceleration * period;
+    double change = Math.max(-maxChange, Math.min(maxChange, speed - setpoint));
+    setpoint += change;
+    acceleration = change / period;
+
+    double lastError = error;
+    error = setpoint - measuredSpeed;
+    double errorRate = haveMeasurement ? (error - lastError) / period : 0;
+    haveMeasurement = true;
+    lastIntegration = 0;
+    if (ki != 0) {
+      double limited =
+          Math.max(
+              -INTEGRATOR_RANGE_VOLTS / ki,
+              Math.min(INTEGRATOR_RANGE_VOLTS / ki, totalError + error * period));
+      lastIntegration = limited - totalError;
+      totalError = limited;
+    }
+
+    lastOutput =
+        ks * Math.signum(setpoint)
+            + kv * setpoint
+            + ka * acceleration
+            + kp * error
+            + ki * totalError
+            + kd * errorRate;
+    return lastOutput;
+  }
+
+  /**
+   * Report the voltage applied after the last calculation. If it was limited below the calculated
+   * voltage while the error pushes the output further the same way, the last period is taken back
+   * out of the integral.
+   *
+   * @param voltage The voltage applied to the motors.
+   */
+  public void setAppliedVoltage(double voltage) {
+    boolean limited = Math.abs(voltage) < Math.abs(lastOutput);
+    if (limited && lastIntegration * lastOutput > 0) {
+      totalError -= lastIntegration;
+      lastIntegration = 0;
+    }
+  }
+
+  /** Returns the speed setpoint in meters per second. */
+  public double getSetpoint() {
+    return setpoint;
+  }
+
+  /** Returns the acceleration of the setpoint over the last period in meters per second squared. */
+  public double getAcceleration() {
+    return acceleration;
+  }
+
+  /** Returns the speed error at the last calculation in meters per second. */
+  public double getError() {
+    return error;
+  }
+}
@@ -0,0 +1,390 @@
+package frc.robot.devices;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Assigns the periodic status frame periods of the Spark MAX motor controllers and estimates the
+ * CAN bus load they cause.
+ *
+ * <p>Each subsystem adds its controllers and declares the {@link StatusSignal}s it reads from them
+ * and how often. A status frame is sent as often as the most frequently needed signal it carries,
+ * and frames with no needed signal are slowed to {@link #UNUSED_PERIOD_MS}. A controller that
+ * another follows keeps its applied output frame at {@link #FOLLOWER_PERIOD_MS}, because followers
+ * follow that frame. Frames sent by the roboRIO to command a controller are part of the estimate
+ * too.
+ *
+ * <p>The estimate is updated as controllers and needs are declared, and a warning is reported the
+ * first time it goes over the warning threshold, so the subsystem that pushes the bus over the
+ * budget is the one being added. The periods are sent to each controller by {@link
+ * Controller#apply()}, as the last step of its boot configuration. A controller that needs faster
+ * frames for a while, such as during a system identification test, adds temporary needs with {@link
+ * Controller#needTemporarily(StatusSignal, double)} and sends them with {@link Controller#apply()},
+ * then {@link Controller#restore()} drops them and sends the declared periods again. The estimate
+ * does not touch any hardware, so it can be tested offline.
+ */
+public final class CanBusBudget {
+
+  /** The bit rate of the roboRIO CAN bus in bits per second. */
+  public static final double BIT_RATE = 1_000_000;
+
+  /**
+   * The average size of a frame on the bus in bits. An extended frame with eight data bytes is 128
+   * bits plus 3 bits between frames, and bit stuffing adds about 10% on average.
+   */
+  public static final double BITS_PER_FRAME = 144;
+
+  /** Frames per second on the bus from other devices, such as the power distribution panel. */
+  public static final double OTHER_FRAMES_PER_SEC = 150;
+
+  /** The period of frames with no needed signal in milliseconds. */
+  public static final int UNUSED_PERIOD_MS = 500;
+
+  /** The period of the applied output frame of a controller that is followed in milliseconds. */
+  public static final int FOLLOWER_PERIOD_MS = 10;
+
+  /** The shortest and longest periods a Spark MAX accepts in milliseconds. */
+  public static final int MIN_PERIOD_MS = 1;
+
+  public static final int MAX_PERIOD_MS = 65535;
+
+  /** The default warning threshold, as a fraction of the bus bit rate. */
+  public static final double DEFAULT_WARNING_UTILIZATION = 0.6;
+
+  /** Spark MAX periodic status frames and their default periods in milliseconds. */
+  public enum StatusFrame {
+    STATUS_0(10),
+    STATUS_1(20),
+    STATUS_2(20),
+    STATUS_3(50),
+    STATUS_4(20),
+    STATUS_5(200),
+    STATUS_6(200);
+
+    private final int defaultPeriodMs;
+
+    StatusFrame(int defaultPeriodMs) {
+      this.defaultPeriodMs = defaultPeriodMs;
+    }
+
+    /** Returns the period the controller uses unless it is configured, in milliseconds. */
+    public int getDefaultPeriodMs() {
+      return defaultPeriodMs;
+    }
+  }
+
+  /** Signals read from a Spark MAX and the status frame that carries each. */
+  public enum StatusSignal {
+    APPLIED_OUTPUT(StatusFrame.STATUS_0),
+    FAULTS(StatusFrame.STATUS_0),
+    VELOCITY(StatusFrame.STATUS_1),
+    BUS_VOLTAGE(StatusFrame.STATUS_1),
+    CURRENT(StatusFrame.STATUS_1),
+    TEMPERATURE(StatusFrame.STATUS_1),
+    POSITION(StatusFrame.STATUS_2),
+    ANALOG_SENSOR(StatusFrame.STATUS_3),
+    ALTERNATE_ENCODER(StatusFrame.STATUS_4),
+    ABSOLUTE_POSITION(StatusFrame.STATUS_5),
+    ABSOLUTE_VELOCITY(StatusFrame.STATUS_6);
+
+    private final StatusFrame frame;
+
+    StatusSignal(StatusFrame frame) {
+      this.frame = frame;
+    }
+
+    /** Returns the status frame that carries the signal. */
+    public StatusFrame getFrame() {
+      return frame;
+    }
+  }
+
+  /** Sends a status frame period to a controller. */
+  @FunctionalInterface
+  public interface FrameSetter {
+    /**
+     * Set the period of a status frame.
+     *
+     * @param frame The status frame.
+     * @param periodMs The period in milliseconds.
+     * @return False if the controller did not accept the period.
+     */
+    boolean setPeriod(StatusFrame frame, int periodMs);
+  }
+
+  private final double warningUtilization;
+  private final Map<String, Controller> controllers = new LinkedHashMap<>();
+  private Consumer<String> warningHandler = message -> {};
+  private boolean overBudget;
+
+  /**
+   * Create a budget. Most code should use {@link #getInstance()}.
+   *
+   * @param warningUtilization The fraction of the bus bit rate over which to warn.
+   */
+  public CanBusBudget(double warningUtilization) {
+    this.warningUtilization = warningUtilization;
+  }
+
+  private static class InstanceHolder {
+    private static final CanBusBudget instance = new CanBusBudget(DEFAULT_WARNING_UTILIZATION);
+  }
+
+  /**
+   * Gets the CAN bus budget Singleton object.
+   *
+   * @return CanBusBudget
+   */
+  public static CanBusBudget getInstance() {
+    return InstanceHolder.instance;
+  }
+
+  /**
+   * Set where warnings are reported.
+   *
+   * @param handler Receives the warning messages.
+   */
+  public synchronized void setWarningHandler(Consumer<String> handler) {
+    warningHandler = handler;
+  }
+
+  /**
+   * Add a controller with all its status frames unused. A controller added again with the same
+   * name, for example when the robot is built again in a test, replaces the earlier one.
+   *
+   * @param name The name of the controller, used in reports.
+   * @param setter Sends the status frame periods to the controller.
+   * @return The controller, for declaring its needs.
+   */
+  public synchronized Controller addController(String name, FrameSetter setter) {
+    Controller controller = new Controller(name, setter);
+    controllers.put(name, controller);
+    check(name);
+    return controller;
+  }
+
+  /**
+   * Remove every controller and forget any earlier warning, so the next robot a test builds starts
+   * from an empty budget.
+   */
+  synchronized void reset() {
+    controllers.clear();
+    overBudget = false;
+    warningHandler = message -> {};
+  }
+
+  /**
+   * Send the status frame periods to every controller.
+   *
+   * @return The names of the controllers that did not accept all their periods.
+   */
+  public synchronized List<String> apply() {
+    List<String> failed = new ArrayList<>();
+    for (Controller controller : controllers.values()) {
+      if (!controller.apply()) {
+        failed.add(controller.name);
+      }
+    }
+    return failed;
+  }
+
+  /** Returns the estimated frames per second on the bus. */
+  public synchronized double getFramesPerSecond() {
+    double frames = OTHER_FRAMES_PER_SEC;
+    for (Controller controller : controllers.values()) {
+      frames += controller.getFramesPerSecond();
+    }
+    return frames;
+  }
+
+  /** Returns the estimated fraction of the bus bit rate in use. */
+  public synchronized double getUtilization() {
+    return getFramesPerSecond() * BITS_PER_FRAME / BIT_RATE;
+  }
+
+  /** Returns the estimated fraction of the bus bit rate in use if every frame kept its default. */
+  public synchronized double getDefaultUtilization() {
+    double frames = OTHER_FRAMES_PER_SEC;
+    for (Controller controller : controllers.values()) {
+      frames += controller.getCommandFramesPerSecond();
+      for (StatusFrame frame : StatusFrame.values()) {
+        frames += 1000.0 / frame.getDefaultPeriodMs();
+      }
+    }
+    return frames * BITS_PER_FRAME / BIT_RATE;
+  }
+
+  /** Returns a table of the status frame periods of each controller and the estimated bus load. */
+  public synchronized String getReport() {
+    StringBuilder report = new StringBuilder("CAN status frame periods (ms):\n");
+    for (Controller controller : controllers.values()) {
+      report.append(String.format(Locale.ROOT, "  %-12s", controller.name));
+      for (StatusFrame frame : StatusFrame.values()) {
+        report.append(String.format(Locale.ROOT, " %5d", controller.getPeriodMs(frame)));
+      }
+      report.append(
+          String.format(Locale.ROOT, "  %6.1f frames/s%n", controller.getFramesPerSecond()));
+    }
+    report.append(
+        String.format(
+            Locale.ROOT,
+            "Estimated CAN bus load %.1f%% (%.1f%% with default periods)",
+            getUtilization() * 100,
+            getDefaultUtilization() * 100));
+    return report.toString();
+  }
+
+  /** Returns a period in whole milliseconds, within the periods a Spark MAX accepts. */
+  private static int toPeriodMs(double periodSeconds) {
+    return (int) Math.max(MIN_PERIOD_MS, Math.min(MAX_PERIOD_MS, Math.round(periodSeconds * 1000)));
+  }
+
+  /** Warn the first time the estimate goes over the threshold. Called with the lock held. */
+  private void check(String cause) {
+    double utilization = getUtilization();
+    boolean over = utilization > warningUtilization;
+    if (over && !overBudget) {
+      warningHandler.accept(
+          String.format(
+              Locale.ROOT,
+              "Estimated CAN bus load %.1f%% is over the %.0f%% budget after adding %s",
+              utilization * 100,
+              warningUtilization * 100,
+              cause));
+    }
+    overBudget = over;
+  }
+
+  /** The status frame periods of one controller and the needs they come from. */
+  public final class Controller {
+    private final String name;
+    private final FrameSetter setter;
+    private final Map<StatusFrame, Integer> periods = new EnumMap<>(StatusFrame.class);
+    private final Map<StatusFrame, Integer> temporaryPeriods = new EnumMap<>(StatusFrame.class);
+    private int commandPeriodMs;
+
+    private Controller(String name, FrameSetter setter) {
+      this.name = name;
+      this.setter = setter;
+      for (StatusFrame frame : StatusFrame.values()) {
+        periods.put(frame, UNUSED_PERIOD_MS);
+      }
+    }
+
+    /**
+     * Declare that a signal is read from the controller.
+     *
+     * @param signal The signal.
+     * @param periodSeconds How often the signal is read, in seconds.
+     * @return This controller, for chaining.
+     */
+    public Controller need(StatusSignal signal, double periodSeconds) {
+      synchronized (CanBusBudget.this) {
+        periods.merge(signal.getFrame(), toPeriodMs(periodSeconds), Math::min);
+        check(name + " " + signal);
+      }
+      return this;
+    }
+
+    /**
+     * Declare that a signal is read more often until {@link #restore()}. The new periods are sent
+     * by the next {@link #apply()}.
+     *
+     * @param signal The signal.
+     * @param periodSeconds How often the signal is read, in seconds.
+     * @return This controller, for chaining.
+     */
+    public Controller needTemporarily(StatusSignal signal, double periodSeconds) {
+      synchronized (CanBusBudget.this) {
+        temporaryPeriods.merge(signal.getFrame(), toPeriodMs(periodSeconds), Math::min);
+        check(name + " " + signal + " temporarily");
+      }
+      return this;
+    }
+
+    /**
+     * Drop the temporary needs and send the declared periods to the controller.
+     *
+     * @return False if the controller did not accept all the periods.
+     */
+    public boolean restore() {
+      synchronized (CanBusBudget.this) {
+        temporaryPeriods.clear();
+        check(name + " restored");
+      }
+      return apply();
+    }
+
+    /**
+     * Declare that this controller follows another, which then sends its applied output at the
+     * follower period.
+     *
+     * @param leader The controller that is followed.
+     * @return This controller, for chaining.
+     */
+    public Controller follow(Controller leader) {
+      leader.need(StatusSignal.APPLIED_OUTPUT, FOLLOWER_PERIOD_MS / 1000.0);
+      return this;
+    }
+
+    /**
+     * Declare that the roboRIO commands the controller, which sends a control frame each time.
+     *
+     * @param periodSeconds How often the controller is commanded, in seconds.
+     * @return This controller, for chaining.
+     */
+    public Controller commanded(double periodSeconds) {
+      int periodMs = (int) Math.max(MIN_PERIOD_MS, Math.round(periodSeconds * 1000));
+      synchronized (CanBusBudget.this) {
+        commandPeriodMs = commandPeriodMs == 0 ? periodMs : Math.min(commandPeriodMs, periodMs);
+        check(name + " commands");
+      }
+      return this;
+    }
+
+    /**
+     * Send the status frame periods to the controller.
+     *
+     * @return False if the controller did not accept all the periods.
+     */
+    public boolean apply() {
+      boolean ok = true;
+      for (StatusFrame frame : StatusFrame.values()) {
+        ok &= setter.setPeriod(frame, getPeriodMs(frame));
+      }
+      return ok;
+    }
+
+    /**
+     * Returns the period of a status frame.
+     *
+     * @param frame The status frame.
+     * @return The period in milliseconds.
+     */
+    public int getPeriodMs(StatusFrame frame) {
+      synchronized (CanBusBudget.this) {
+        return Math.min(periods.get(frame), temporaryPeriods.getOrDefault(frame, MAX_PERIOD_MS));
+      }
+    }
+
+    /** Returns the estimated frames per second sent to and from the controller. */
+    public double getFramesPerSecond() {
+      synchronized (CanBusBudget.this) {
+        double frames = getCommandFramesPerSecond();
+        for (StatusFrame frame : StatusFrame.values()) {
+          frames += 1000.0 / getPeriodMs(frame);
+        }
+        return frames;
+      }
+    }
+
+    private double getCommandFramesPerSecond() {
+      return commandPeriodMs > 0 ? 1000.0 / commandPeriodMs : 0;
+    }
+  }
+}
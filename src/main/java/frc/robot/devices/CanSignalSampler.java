@@ -0,0 +1,256 @@
+package frc.robot.devices;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Samples slow CAN signals, such as motor controller current, bus voltage and temperature, on a
+ * background thread so the robot loop never waits on vendor calls.
+ *
+ * <p>Signals are added to a {@link SignalGroup}, usually one per subsystem, each with its own
+ * sample period. The background thread runs every {@link #BASE_PERIOD_SECONDS} and reads the
+ * signals that are due. The values of a group are published as a snapshot guarded by a {@link
+ * StampedLock} used as a sequence lock, so readers on the robot thread never block while the
+ * sampler is reading from the devices.
+ *
+ * <pre>{@code
+ * SignalGroup group = CanSignalSampler.getInstance().createGroup("Arm", 2);
+ * Signal current = group.add(motor::getOutputCurrent, 0.02);
+ * ...
+ * currentSignal.set(current.get());
+ * }</pre>
+ */
+public final class CanSignalSampler {
+
+  /** The period of the background thread. Signal periods are rounded to a multiple of this. */
+  public static final double BASE_PERIOD_SECONDS = 0.01;
+
+  private final List<SignalGroup> groups = new CopyOnWriteArrayList<>();
+  private final AtomicLong sampleCount = new AtomicLong();
+  private final AtomicLong errorCount = new AtomicLong();
+  private ScheduledExecutorService executor;
+  private ScheduledFuture<?> samplerTask;
+  private long tickCount;
+
+  /** Create a sampler. Most code should use {@link #getInstance()}. */
+  public CanSignalSampler() {
+    // Sampling starts when start() is called
+  }
+
+  private static class InstanceHolder {
+    private static final CanSignalSampler instance = new CanSignalSampler();
+  }
+
+  /**
+   * Gets the CAN signal sampler Singleton object.
+   *
+   * @return CanSignalSampler
+   */
+  public static CanSignalSampler getInstance() {
+    return InstanceHolder.instance;
+  }
+
+  /**
+   * Create a group of signals that are published together.
+   *
+   * @param name The name of the group, used for diagnostics.
+   * @param capacity The maximum number of signals in the group.
+   * @return The new group.
+   */
+  public SignalGroup createGroup(String name, int capacity) {
+    SignalGroup group = new SignalGroup(name, capacity);
+    groups.add(group);
+    return group;
+  }
+
+  /** Start sampling on the background thread. Does nothing if already started. */
+  public synchronized void start() {
+    if (samplerTask != null) {
+      return;
+    }
+    executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "CanSignalSampler");
+              thread.setDaemon(true);
+              return thread;
+            });
+    long periodMicros = (long) (BASE_PERIOD_SECONDS * 1e6);
+    samplerTask =
+        executor.scheduleAtFixedRate(this::tick, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+  }
+
+  /** Stop sampling on the background thread. Cached values keep their last sample. */
+  public synchronized void stop() {
+    if (samplerTask != null) {
+      samplerTask.cancel(false);
+      executor.shutdown();
+      samplerTask = null;
+      executor = null;
+    }
+  }
+
+  /**
+   * Stop sampling and remove every group, so a robot built again in the same process starts from an
+   * empty sampler. Package-private, since only the tests build more than one robot.
+   */
+  synchronized void reset() {
+    stop();
+    groups.clear();
+  }
+
+  /** Read every signal now, on the calling thread, regardless of its period. */
+  public void sampleAll() {
+    for (SignalGroup group : groups) {
+      group.sample(0, true);
+    }
+  }
+
+  /** Returns the total number of signal reads. */
+  public long getSampleCount() {
+    return sampleCount.get();
+  }
+
+  /** Returns the number of signal reads that threw an exception. */
+  public long getErrorCount() {
+    return errorCount.get();
+  }
+
+  private void tick() {
+    tickCount++;
+    for (SignalGroup group : groups) {
+      group.sample(tickCount, false);
+    }
+  }
+
+  /** A group of signals that are sampled on the same thread and published as one snapshot. */
+  public final class SignalGroup implements AutoCloseable {
+    private final String name;
+    private final StampedLock lock = new StampedLock();
+    private final DoubleSupplier[] sources;
+    private final int[] periodTicks;
+    // Values read from the devices, guarded by the group monitor
+    private final double[] scratch;
+    // Published values, guarded by the lock
+    private final double[] values;
+    private volatile int count;
+
+    private SignalGroup(String name, int capacity) {
+      this.name = name;
+      sources = new DoubleSupplier[capacity];
+      periodTicks = new int[capacity];
+      scratch = new double[capacity];
+      values = new double[capacity];
+    }
+
+    /**
+     * Add a signal to the group. The source is not read here, since the device may not be
+     * configured yet, so the cached value is zero until the first successful sample.
+     *
+     * @param source The method that reads the value from the device.
+     * @param periodSeconds How often to read the value.
+     * @return The signal used to read the cached value.
+     */
+    public synchronized Signal add(DoubleSupplier source, double periodSeconds) {
+      int index = count;
+      if (index >= sources.length) {
+        throw new IllegalStateException("Signal group " + name + " is full");
+      }
+      sources[index] = source;
+      periodTicks[index] = Math.max(1, (int) Math.round(periodSeconds / BASE_PERIOD_SECONDS));
+      // The volatile write publishes the new slot to the sampling thread
+      count = index + 1;
+      return new Signal(this, index);
+    }
+
+    /**
+     * Copy a consistent snapshot of all values in the group.
+     *
+     * @param out Array to copy into, at least as long as the number of signals.
+     */
+    public void read(double[] out) {
+      int n = count;
+      long stamp = lock.tryOptimisticRead();
+      System.arraycopy(values, 0, out, 0, n);
+      if (!lock.validate(stamp)) {
+        stamp = lock.readLock();
+        try {
+          System.arraycopy(values, 0, out, 0, n);
+        } finally {
+          lock.unlockRead(stamp);
+        }
+      }
+    }
+
+    double read(int index) {
+      long stamp = lock.tryOptimisticRead();
+      double value = values[index];
+      if (!lock.validate(stamp)) {
+        stamp = lock.readLock();
+        try {
+          value = values[index];
+        } finally {
+          lock.unlockRead(stamp);
+        }
+      }
+      return value;
+    }
+
+    /** Stop sampling this group. */
+    @Override
+    public void close() {
+      groups.remove(this);
+    }
+
+    private synchronized void sample(long tick, boolean all) {
+      int n = count;
+      boolean changed = false;
+
+      // Read the devices without holding the lock so readers are never blocked by a slow call.
+      // Spread signals with the same period over different ticks using the index as the phase.
+      for (int i = 0; i < n; i++) {
+        if (all || (tick + i) % periodTicks[i] == 0) {
+          try {
+            scratch[i] = sources[i].getAsDouble();
+            changed = true;
+          } catch (RuntimeException e) {
+            errorCount.incrementAndGet();
+          }
+          sampleCount.incrementAndGet();
+        }
+      }
+
+      if (changed) {
+        long stamp = lock.writeLock();
+        try {
+          System.arraycopy(scratch, 0, values, 0, n);
+        } finally {
+          lock.unlockWrite(stamp);
+        }
+      }
+    }
+  }
+
+  /** A single sampled value. */
+  public static final class Signal {
+    private final SignalGroup group;
+    private final int index;
+
+    private Signal(SignalGroup group, int index) {
+      this.group = group;
+      this.index = index;
+    }
+
+    /** Returns the most recently sampled value. Never blocks on the device. */
+    public double get() {
+      return group.read(index);
+    }
+  }
+}
@@ -0,0 +1,357 @@
+package frc.robot.devices;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Configures devices at boot, all devices at the same time.
+ *
+ * <p>Configuring a motor controller is a series of blocking CAN round trips, so configuring the
+ * devices one after another makes startup grow with the number of devices. Instead, subsystems add
+ * the configuration steps of each device when they are created, and {@link #configureAll()} runs
+ * the steps of every device on its own thread and waits for them, so startup waits only for the
+ * slowest device. The steps of one device run in the order they were added. A step that fails is
+ * retried, and a device that takes longer than the timeout is reported as failed without waiting
+ * for it.
+ *
+ * <pre>{@code
+ * DeviceConfigurator.getInstance()
+ *     .device("Arm")
+ *     .step("Restore factory defaults", RevSteps.ok(motor::restoreFactoryDefaults))
+ *     .run("Reset encoder", () -> encoder.setPosition(0));
+ * }</pre>
+ *
+ * <p>Actions that need configured devices, such as starting a loop that reads the encoders, are
+ * added with {@link #whenConfigured(List, Consumer)} and run after all devices are configured, with
+ * the results of the devices they use. A device that failed may be left unconfigured, and a device
+ * that timed out may still be running a step on its configuration thread, so an action should only
+ * use its devices if {@link #allOk(List)}.
+ */
+public final class DeviceConfigurator {
+
+  /** The default time to wait for each device in seconds. */
+  public static final double DEFAULT_TIMEOUT_SECONDS = 5.0;
+
+  /** The default number of times each step is tried. */
+  public static final int DEFAULT_ATTEMPTS = 3;
+
+  /** One configuration call to a device. */
+  @FunctionalInterface
+  public interface Step {
+    /**
+     * Send the configuration.
+     *
+     * @return False if the device did not accept it.
+     */
+    boolean apply();
+  }
+
+  private final double timeoutSeconds;
+  private final int attempts;
+  private final Map<String, Device> devices = new LinkedHashMap<>();
+  private final List<ConfiguredAction> configuredActions = new ArrayList<>();
+
+  /**
+   * Create a configurator. Most code should use {@link #getInstance()}.
+   *
+   * @param timeoutSeconds The time to wait for each device in seconds.
+   * @param attempts The number of times each step is tried.
+   */
+  public DeviceConfigurator(double timeoutSeconds, int attempts) {
+    this.timeoutSeconds = timeoutSeconds;
+    this.attempts = attempts;
+  }
+
+  private static class InstanceHolder {
+    private static final DeviceConfigurator instance =
+        new DeviceConfigurator(DEFAULT_TIMEOUT_SECONDS, DEFAULT_ATTEMPTS);
+  }
+
+  /**
+   * Gets the device configurator Singleton object.
+   *
+   * @return DeviceConfigurator
+   */
+  public static DeviceConfigurator getInstance() {
+    return InstanceHolder.instance;
+  }
+
+  /**
+   * Add a device to configure. A device added again with the same name before it is configured, for
+   * example when the robot is built again in a test, replaces the earlier one.
+   *
+   * @param name The name of the device, used in results.
+   * @return The device, for adding its steps.
+   */
+  public synchronized Device device(String name) {
+    Device device = new Device(name);
+    devices.put(name, device);
+    return device;
+  }
+
+  /**
+   * Run an action once all devices are configured, on the thread that called {@link
+   * #configureAll()}. The action runs whether or not the devices were configured, and gets their
+   * results to check. A device that was replaced before it was configured is reported as failed.
+   *
+   * @param devices The devices the action uses.
+   * @param action Receives the results of the devices, in the same order.
+   */
+  public synchronized void whenConfigured(List<Device> devices, Consumer<List<Result>> action) {
+    configuredActions.add(new ConfiguredAction(List.copyOf(devices), action));
+  }
+
+  /**
+   * Returns true if every device was configured.
+   *
+   * @param results The results of the devices.
+   */
+  public static boolean allOk(List<Result> results) {
+    for (Result result : results) {
+      if (!result.isOk()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Remove the devices and actions that have not run, so a robot built by a later test does not
+   * configure devices left by an earlier one.
+   */
+  synchronized void reset() {
+    devices.clear();
+    configuredActions.clear();
+  }
+
+  /**
+   * Configure every device added since the last call, at the same time, and wait for them.
+   *
+   * @return The result for each device, in the order they were added.
+   */
+  public List<Result> configureAll() {
+    List<Device> pending;
+    List<ConfiguredAction> actions;
+    synchronized (this) {
+      pending = new ArrayList<>(devices.values());
+      actions = new ArrayList<>(configuredActions);
+      devices.clear();
+      configuredActions.clear();
+    }
+
+    List<Result> results = new ArrayList<>();
+    Map<Device, Result> resultsByDevice = new IdentityHashMap<>();
+    if (!pending.isEmpty()) {
+      ExecutorService executor =
+          Executors.newFixedThreadPool(
+              pending.size(),
+              task -> {
+                Thread thread = new Thread(task, "DeviceConfigurator");
+                thread.setDaemon(true);
+                return thread;
+              });
+      try {
+        long start = System.nanoTime();
+        List<Future<Result>> futures = new ArrayList<>();
+        for (Device device : pending) {
+          futures.add(executor.submit(device::configure));
+        }
+        // All devices start together, so each has until the same deadline
+        long deadline = start + (long) (timeoutSeconds * 1e9);
+        for (int i = 0; i < pending.size(); i++) {
+          Result result = await(pending.get(i), futures.get(i), start, deadline);
+          results.add(result);
+          resultsByDevice.put(pending.get(i), result);
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    for (ConfiguredAction action : actions) {
+      List<Result> deviceResults = new ArrayList<>();
+      for (Device device : action.devices) {
+        Result result = resultsByDevice.get(device);
+        deviceResults.add(result != null ? result : device.result(0, "not configured"));
+      }
+      action.action.accept(deviceResults);
+    }
+    return results;
+  }
+
+  /** An action and the devices it waits for. */
+  private static final class ConfiguredAction {
+    private final List<Device> devices;
+    private final Consumer<List<Result>> action;
+
+    private ConfiguredAction(List<Device> devices, Consumer<List<Result>> action) {
+      this.devices = devices;
+      this.action = action;
+    }
+  }
+
+  /** Wait for a device until the deadline. */
+  private Result await(Device device, Future<Result> future, long start, long deadline) {
+    try {
+      return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      return device.result(
+          (System.nanoTime() - start) / 1e9, "timed out during " + device.currentStep);
+    } catch (ExecutionException e) {
+      return device.result((System.nanoTime() - start) / 1e9, "failed: " + e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(true);
+      return device.result((System.nanoTime() - start) / 1e9, "interrupted");
+    }
+  }
+
+  /** The configuration steps of one device. */
+  public final class Device {
+    private final String name;
+    private final List<String> descriptions = new ArrayList<>();
+    private final List<Step> steps = new ArrayList<>();
+    private volatile String currentStep = "start";
+    private volatile int retries;
+
+    private Device(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Add a step that reports whether the device accepted it.
+     *
+     * @param description What the step configures, used in results.
+     * @param step The step.
+     * @return This device, for chaining.
+     */
+    public Device step(String description, Step step) {
+      synchronized (DeviceConfigurator.this) {
+        descriptions.add(description);
+        steps.add(step);
+      }
+      return this;
+    }
+
+    /**
+     * Add a step that always succeeds unless it throws.
+     *
+     * @param description What the step configures, used in results.
+     * @param step The step.
+     * @return This device, for chaining.
+     */
+    public Device run(String description, Runnable step) {
+      return step(
+          description,
+          () -> {
+            step.run();
+            return true;
+          });
+    }
+
+    /** Run the steps in order, retrying each that fails. Runs on a configuration thread. */
+    private Result configure() {
+      long start = System.nanoTime();
+      List<String> failed = new ArrayList<>();
+      for (int i = 0; i < steps.size(); i++) {
+        if (Thread.currentThread().isInterrupted()) {
+          break;
+        }
+        currentStep = descriptions.get(i);
+        if (!apply(steps.get(i))) {
+          // Later steps usually don't depend on earlier ones, so carry on
+          failed.add(currentStep);
+        }
+      }
+      return result(
+          (System.nanoTime() - start) / 1e9,
+          failed.isEmpty() ? null : "failed " + String.join(", ", failed));
+    }
+
+    private boolean apply(Step step) {
+      for (int attempt = 0; attempt < attempts; attempt++) {
+        if (attempt > 0) {
+          retries++;
+        }
+        try {
+          if (step.apply()) {
+            return true;
+          }
+        } catch (RuntimeException e) {
+          // Counts as a failed attempt
+        }
+        if (Thread.currentThread().isInterrupted()) {
+          return false;
+        }
+      }
+      return false;
+    }
+
+    private Result result(double seconds, String failure) {
+      return new Result(name, seconds, retries, failure);
+    }
+  }
+
+  /** How the configuration of one device went. */
+  public static final class Result {
+    private final String name;
+    private final double seconds;
+    private final int retries;
+    private final String failure;
+
+    private Result(String name, double seconds, int retries, String failure) {
+      this.name = name;
+      this.seconds = seconds;
+      this.retries = retries;
+      this.failure = failure;
+    }
+
+    /** Returns the name of the device. */
+    public String getName() {
+      return name;
+    }
+
+    /** Returns the time the device took to configure, or until it timed out, in seconds. */
+    public double getSeconds() {
+      return seconds;
+    }
+
+    /** Returns the number of times a step was tried again. */
+    public int getRetries() {
+      return retries;
+    }
+
+    /** Returns true if every step succeeded. */
+    public boolean isOk() {
+      return failure == null;
+    }
+
+    /** Returns what went wrong, or null if every step succeeded. */
+    public String getFailure() {
+      return failure;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          Locale.ROOT,
+          "%s configured in %.3f s with %d retries%s",
+          name,
+          seconds,
+          retries,
+          failure == null ? "" : ", " + failure);
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package frc.robot.devices;
+
+import com.revrobotics.REVLibError;
+import frc.robot.devices.DeviceConfigurator.Step;
+import java.util.function.Supplier;
+
+/** {@link DeviceConfigurator} steps for REVLib configuration calls. */
+public final class RevSteps {
+
+  private RevSteps() {
+    // Utility class
+  }
+
+  /**
+   * Returns a step that succeeds when a REVLib call returns {@link REVLibError#kOk}.
+   *
+   * @param call The configuration call.
+   * @return The step.
+   */
+  public static Step ok(Supplier<REVLibError> call) {
+    return () -> call.get() == REVLibError.kOk;
+  }
+}
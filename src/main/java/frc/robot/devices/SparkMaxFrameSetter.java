@@ -0,0 +1,53 @@
+package frc.robot.devices;
+
+import com.revrobotics.CANSparkLowLevel.PeriodicFrame;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.REVLibError;
+import frc.robot.devices.CanBusBudget.StatusFrame;
+
+/** Sends {@link CanBusBudget} status frame periods to a Spark MAX. */
+public final class SparkMaxFrameSetter implements CanBusBudget.FrameSetter {
+
+  private final CANSparkMax motor;
+
+  /**
+   * Create a frame setter.
+   *
+   * @param motor The motor controller.
+   */
+  public SparkMaxFrameSetter(CANSparkMax motor) {
+    this.motor = motor;
+  }
+
+  @Override
+  public boolean setPeriod(StatusFrame frame, int periodMs) {
+    return motor.setPeriodicFramePeriod(toPeriodicFrame(frame), periodMs) == REVLibError.kOk;
+  }
+
+  /**
+   * Returns the REVLib periodic frame for a status frame.
+   *
+   * @param frame The status frame.
+   * @return The periodic frame.
+   */
+  public static PeriodicFrame toPeriodicFrame(StatusFrame frame) {
+    switch (frame) {
+      case STATUS_0:
+        return PeriodicFrame.kStatus0;
+      case STATUS_1:
+        return PeriodicFrame.kStatus1;
+      case STATUS_2:
+        return PeriodicFrame.kStatus2;
+      case STATUS_3:
+        return PeriodicFrame.kStatus3;
+      case STATUS_4:
+        return PeriodicFrame.kStatus4;
+      case STATUS_5:
+        return PeriodicFrame.kStatus5;
+      case STATUS_6:
+        return PeriodicFrame.kStatus6;
+      default:
+        throw new IllegalArgumentException("Unknown status frame " + frame);
+    }
+  }
+}
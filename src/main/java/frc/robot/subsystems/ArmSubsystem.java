@@ -4,31 +4,98 @@
 
 package frc.robot.subsystems;
 
+import com.revrobotics.CANSparkBase.ControlType;
 import com.revrobotics.CANSparkBase.IdleMode;
 import com.revrobotics.CANSparkLowLevel.MotorType;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkPIDController;
+import com.revrobotics.SparkPIDController.ArbFFUnits;
 import edu.wpi.first.math.MathUtil;
-import edu.wpi.first.math.controller.ArmFeedforward;
-import edu.wpi.first.math.controller.ProfiledPIDController;
-import edu.wpi.first.math.trajectory.TrapezoidProfile;
-import edu.wpi.first.math.trajectory.TrapezoidProfile.State;
 import edu.wpi.first.math.util.Units;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.Preferences;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import edu.wpi.first.wpilibj2.command.FunctionalCommand;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import frc.robot.Constants;
 import frc.robot.Constants.ArmConstants;
+import frc.robot.control.ArmController;
+import frc.robot.control.ArmGains;
+import frc.robot.control.ArmPredictiveController;
+import frc.robot.control.ArmStateEstimator;
+import frc.robot.devices.CanBusBudget;
+import frc.robot.devices.CanBusBudget.StatusSignal;
+import frc.robot.devices.CanSignalSampler;
+import frc.robot.devices.CanSignalSampler.Signal;
+import frc.robot.devices.CanSignalSampler.SignalGroup;
+import frc.robot.devices.DeviceConfigurator;
+import frc.robot.devices.RevSteps;
+import frc.robot.devices.SparkMaxFrameSetter;
+import frc.robot.telemetry.ArmState;
+import frc.robot.telemetry.AsyncDataLog;
+import frc.robot.telemetry.LoopProfiler;
+import frc.robot.telemetry.TelemetryPublisher;
+import frc.robot.telemetry.TelemetryPublisher.BooleanSignal;
+import frc.robot.telemetry.TelemetryPublisher.DoubleSignal;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.StampedLock;
 
 /**
- * The {@code ArmSubsystem} class is a subsystem that controls the movement of an arm using a
- * Profiled PID Controller. It uses a CANSparkMax motor and a RelativeEncoder to measure the arm's
- * position. The class provides methods to move the arm to a specific position, hold the arm at the
- * current position, and shift the arm's position up or down by a fixed increment.
+ * The {@code ArmSubsystem} class is a subsystem that controls the movement of an arm using a PID
+ * controller following a planned trapezoid profile. It uses a CANSparkMax motor and a
+ * RelativeEncoder to measure the arm's position. The class provides methods to move the arm to a
+ * specific position, hold the arm at the current position, and shift the arm's position up or down
+ * by a fixed increment.
+ *
+ * <p>The control law can run on its own {@link Notifier} at a faster rate than the robot loop.
+ * Commands then only pass goals and enable requests to the control loop, and telemetry is read from
+ * a snapshot the control loop publishes each cycle. Without a control period the control law runs
+ * from {@code useOutput()} in the robot loop, which unit tests use to step it directly.
+ *
+ * <p>In {@link ControlMode#MOTOR_CONTROLLER} mode the PID loop is closed by the Spark MAX instead
+ * of the roboRIO. Each control cycle streams the profile setpoint to the motor controller as a
+ * position reference with the feedforward voltage as an arbitrary feedforward, and the motor
+ * controller runs the P term at 1 kHz on its own encoder.
+ *
+ * <p>In {@link ControlMode#MODEL_PREDICTIVE} mode an {@link ArmPredictiveController} replaces the
+ * PID correction. Each control cycle it optimizes the voltages over a short horizon of the planned
+ * move within the supply voltage, a current budget and the angle limits, from the estimated arm
+ * state. Each solve is limited to a fixed number of iterations and CPU time, which are published as
+ * telemetry.
+ *
+ * <p>{@link #moveThrough(double[], double[])} moves the arm through a sequence of waypoints as one
+ * continuous motion, passing through each waypoint at up to a requested speed instead of stopping.
+ * More waypoints can be added with {@link #appendWaypoint(double, double)} while the arm is moving.
+ * They are passed to the control loop through a single producer, single consumer ring.
+ *
+ * <p>Moves are planned time-optimally for the arm model: the profile accelerates and brakes with
+ * the voltage left after gravity at each angle, static friction and back EMF, up to the maximum
+ * velocity. The feedforward includes the acceleration term. {@link #setTimeOptimalProfile(boolean)}
+ * switches back to trapezoid profiles with the fixed maximum acceleration.
+ *
+ * <p>The control law can use an {@link ArmStateEstimator} instead of the raw encoder position. The
+ * estimator fuses each new encoder status frame with the applied voltage through the arm model and
+ * compensates for the age of the frame, so the position loop and the goal check use a current,
+ * smooth position and velocity.
+ *
+ * <p>The feedforward gains can be measured with the system identification commands. Each test
+ * drives a voltage ramp or step from its own 500 Hz {@link Notifier} and records voltage, position
+ * and velocity to {@code /arm/sysid/data}. The {@code fitArm} tool fits the gains to the log.
+ *
+ * <p>The gains and profile constraints are tunable through Preferences. A NetworkTables listener
+ * rebuilds a validated {@link ArmGains} snapshot whenever an arm preference changes, and the
+ * control loop switches to the newest snapshot between moves.
  *
  * <p>Example Usage:
  *
@@ -56,40 +123,49 @@ import frc.robot.Constants.ArmConstants;
  *
  * Code Analysis:
  * - Main functionalities:
- *   - Control the movement of an arm using a Profiled PID Controller
+ *   - Control the movement of an arm using a PID Controller following a planned profile
  *   - Move the arm to a specific position
  *   - Hold the arm at the current position
  *   - Shift the arm's position up or down by a fixed increment
  * - Methods:
- *   - {@code periodic()}: Updates the SmartDashboard with information about the arm's state.
- *   - {@code useOutput()}: Generates the motor command using the PID controller and feedforward.
+ *   - {@code periodic()}: Updates the telemetry signals with information about the arm's state.
+ *   - {@code useOutput()}: Generates the motor command using the PID controller and feedforward,
+ *     unless the control law runs on its own loop.
  *   - {@code moveToPosition(double goal)}: Returns a Command that moves the arm to a new position.
+ *   - {@code moveThrough(double[] positions, double[] speeds)}: Returns a Command that moves the
+ *     arm through waypoints without stopping at each one.
+ *   - {@code appendWaypoint(double position, double speed)}: Adds a waypoint to the current path.
  *   - {@code holdPosition()}: Returns a Command that holds the arm at the last goal position.
+ *   - {@code sysIdQuasistatic(Direction direction)}: Returns a Command that ramps the voltage and
+ *     records system identification samples.
+ *   - {@code sysIdDynamic(Direction direction)}: Returns a Command that steps the voltage and
+ *     records system identification samples.
  *   - {@code shiftUp()}: Returns a Command that shifts the arm's position up by a fixed increment.
  *   - {@code shiftDown()}: Returns a Command that shifts the arm's position down by a fixed
  *     increment.
  *   - {@code setGoalPosition(double goal)}: Sets the goal state for the subsystem.
  *   - {@code atGoalPosition()}: Returns whether the arm has reached the goal position.
+ *   - {@code setStateEstimation(boolean enabled)}: Selects the estimated or measured arm state.
+ *   - {@code setTimeOptimalProfile(boolean enabled)}: Selects time-optimal or trapezoid profiles.
  *   - {@code enable()}: Enables the PID control of the arm.
  *   - {@code disable()}: Disables the PID control of the arm.
  *   - {@code getMeasurement()}: Returns the arm position for PID control and logging.
  *   - {@code getVoltageCommand()}: Returns the motor commanded voltage.
  *   - {@code initPreferences()}: Initializes the preferences for tuning the controller.
- *   - {@code loadPreferences()}: Loads the preferences for tuning the controller.
+ *   - {@code loadGains()}: Builds a gains snapshot from the preferences when they change.
  *   - {@code close()}: Closes any objects that support it.
  * - Fields:
  *   - {@code private final CANSparkMax motor}: The motor used to control the arm.
  *   - {@code private final RelativeEncoder encoder}: The encoder used to measure the arm's
  *     position.
- *   - {@code private ProfiledPIDController armController}: The PID controller used to control the
- *     arm's movement.
- *   - {@code private ArmFeedforward feedforward}: The feedforward controller used to calculate the
- *     motor output.
- *   - {@code private double output}: The output of the PID controller.
- *   - {@code private TrapezoidProfile.State setpoint}: The setpoint of the PID controller.
- *   - {@code private double newFeedforward}: The calculated feedforward value.
- *   - {@code private boolean armEnabled}: A flag indicating whether the arm is enabled.
- *   - {@code private double voltageCommand}: The motor commanded voltage.
+ *   - {@code private final SparkPIDController pidController}: The motor controller position loop,
+ *     used in {@code MOTOR_CONTROLLER} mode.
+ *   - {@code private final ArmController armController}: The controller that plans each move and
+ *     follows it with a PID correction and feedforward, without allocating per loop.
+ *   - {@code private final Notifier controlLoop}: Runs the control law at the control period, or
+ *     null if it runs from the robot loop.
+ *   - {@code private boolean armEnabled}: A flag indicating whether the arm has been enabled.
+ *   - {@code private volatile double voltageCommand}: The motor commanded voltage.
  * </pre>
  */
 public class ArmSubsystem extends SubsystemBase implements AutoCloseable {
@@ -98,51 +174,265 @@ public class ArmSubsystem extends SubsystemBase implements AutoCloseable {
   public static class Hardware {
     CANSparkMax motor;
     RelativeEncoder encoder;
+    SparkPIDController pidController;
 
     public Hardware(CANSparkMax motor, RelativeEncoder encoder) {
+      this(motor, encoder, motor.getPIDController());
+    }
+
+    public Hardware(CANSparkMax motor, RelativeEncoder encoder, SparkPIDController pidController) {
       this.motor = motor;
       this.encoder = encoder;
+      this.pidController = pidController;
     }
   }
 
+  /** How and where the arm position loop is closed. */
+  public enum ControlMode {
+    /** The roboRIO runs the PID and sends a voltage to the motor controller. */
+    ROBORIO,
+    /** The motor controller runs the P term on a streamed position reference and feedforward. */
+    MOTOR_CONTROLLER,
+    /** The roboRIO runs a model predictive controller on the estimated state. */
+    MODEL_PREDICTIVE
+  }
+
   private final CANSparkMax motor;
   private final RelativeEncoder encoder;
+  private final SparkPIDController pidController;
+
+  // Each move is planned once into a table of setpoints and feedforward voltages, so each loop
+  // only looks up the next sample and adds the PID correction. All controller state is primitive
+  // and updated in place so the control loop does not allocate. The controller is only used by
+  // the control loop.
+  private final ArmController armController;
+  private final double controlPeriod;
+  private final Notifier controlLoop;
+  // Set if the motor controller was not configured. The arm then stays disabled, since the encoder
+  // may not be in radians.
+  private volatile boolean deviceFailed;
 
-  private ProfiledPIDController armController =
-      new ProfiledPIDController(
-          Constants.ArmConstants.DEFAULT_ARM_KP,
-          0,
-          0,
-          new TrapezoidProfile.Constraints(
-              ArmConstants.DEFAULT_MAX_VELOCITY_RAD_PER_SEC,
-              ArmConstants.DEFAULT_MAX_ACCELERATION_RAD_PER_SEC));
-
-  private ArmFeedforward feedforward =
-      new ArmFeedforward(
-          ArmConstants.DEFAULT_KS_VOLTS,
-          ArmConstants.DEFAULT_KG_VOLTS,
-          ArmConstants.DEFAULT_KV_VOLTS_PER_SEC_PER_RAD,
-          0.0); // Acceleration is not used in this implementation
-
-  private double output = 0.0;
-  private TrapezoidProfile.State setpoint = new State();
-  private double newFeedforward = 0;
+  // Requests from the robot thread to the control loop. Each goal is published as one immutable
+  // request, so the control loop never sees the position of one request with the speed or path
+  // start of another. The robot thread allocates a request once per move, and the control loop
+  // only reads the reference.
+  private double goalPosition = 0.0;
   private boolean armEnabled;
-  private double voltageCommand = 0.0;
+  private volatile GoalRequest goalRequest = new GoalRequest(0, 0.0, 0.0, 0);
+  private volatile boolean enableRequested;
+  private volatile int enableSequence;
+  private volatile ControlMode requestedMode =
+      ArmConstants.USE_ONBOARD_PID ? ControlMode.MOTOR_CONTROLLER : ControlMode.ROBORIO;
+
+  // Waypoints appended to the current path. The robot thread writes a waypoint and then publishes
+  // it by advancing the tail, the control loop passes waypoints to the controller and then advances
+  // the head. Each path starts at the goal request's path start, so waypoints of an older path are
+  // skipped.
+  private static final int WAYPOINT_MASK = ArmController.MAX_WAYPOINTS - 1;
+  private final double[] waypointPositions = new double[ArmController.MAX_WAYPOINTS];
+  private final double[] waypointSpeeds = new double[ArmController.MAX_WAYPOINTS];
+  private volatile int waypointTail;
+  private volatile int waypointHead;
+
+  // Control loop state, only used by the control loop
+  private boolean controlEnabled;
+  private int appliedGoalSequence;
+  private int appliedEnableSequence;
+  private volatile double voltageCommand = 0.0;
+
+  // State estimation. The control loop corrects the estimate when a new encoder frame arrives and
+  // advances it with the applied voltage. An unchanged position is taken as a new frame once a
+  // frame period has passed.
+  private final ArmStateEstimator estimator;
+  private final int frameCycles;
+  private volatile boolean estimatorRequested = ArmConstants.USE_STATE_ESTIMATOR;
+  private boolean estimatorActive;
+  private double lastMeasurement;
+  private int cyclesSinceMeasurement;
+
+  // Model predictive control, only used by the control loop. The reference arrays hold the
+  // planned setpoints over the horizon.
+  private final ArmPredictiveController predictiveController;
+  private final double[] referencePositions;
+  private final double[] referenceVelocities;
+  private final double[] referenceFeedforwards;
+  private boolean predictiveControlActive;
+
+  // Commands sent to the motor controller position loop, read by the simulation
+  private volatile boolean onboardControlActive;
+  private volatile double positionReference;
+  private volatile double arbFeedforward;
+  private volatile double onboardGain;
+
+  // Gains snapshot rebuilt by the NetworkTables listener thread when an arm preference changes.
+  // The control loop reads the reference once per cycle and only switches snapshots between moves.
+  private final AtomicReference<ArmGains> gains = new AtomicReference<>();
+  private ArmGains appliedGains;
+  private volatile boolean timeOptimalRequested = ArmConstants.USE_TIME_OPTIMAL_PROFILE;
+  private boolean timeOptimalApplied;
+  private int gainsListener;
+
+  // Control loop outputs are copied to the robot thread through a snapshot guarded by a sequence
+  // lock, so the robot thread never blocks the control loop.
+  private final StampedLock statusLock = new StampedLock();
+  private final ControlStatus controlStatus = new ControlStatus();
+  private final ControlStatus publishedStatus = new ControlStatus();
+  private final ControlStatus status = new ControlStatus();
+
+  // Telemetry deadbands. Changes smaller than these are not published.
+  private static final double ANGLE_DEADBAND_DEG = 0.01;
+  private static final double VELOCITY_DEADBAND_DEG_PER_SEC = 0.1;
+  private static final double VOLTAGE_DEADBAND = 0.01;
+  private static final double CURRENT_DEADBAND = 0.05;
+  private static final double SOLVE_TIME_DEADBAND_MS = 0.01;
+  private static final double ITERATIONS_DEADBAND = 0.5;
+
+  // All arm preference keys start with "Arm"
+  private static final String PREFERENCES_PREFIX = "/Preferences/Arm";
+
+  // Telemetry signals, published in a batch at the end of DataLogging.periodic()
+  private final TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+  private final BooleanSignal enabledSignal = telemetry.addBoolean("Arm Enabled");
+  private final DoubleSignal goalSignal = telemetry.addDouble("Arm Goal", ANGLE_DEADBAND_DEG);
+  private final DoubleSignal angleSignal = telemetry.addDouble("Arm Angle", ANGLE_DEADBAND_DEG);
+  private final DoubleSignal velocitySignal =
+      telemetry.addDouble("Arm Velocity", VELOCITY_DEADBAND_DEG_PER_SEC);
+  private final DoubleSignal voltageSignal = telemetry.addDouble("Arm Voltage", VOLTAGE_DEADBAND);
+  private final DoubleSignal currentSignal = telemetry.addDouble("Arm Current", CURRENT_DEADBAND);
+  private final DoubleSignal feedforwardSignal =
+      telemetry.addDouble("Arm Feedforward", VOLTAGE_DEADBAND);
+  private final DoubleSignal pidOutputSignal =
+      telemetry.addDouble("Arm PID output", VOLTAGE_DEADBAND);
+  private final DoubleSignal setpointPositionSignal =
+      telemetry.addDouble("Arm SetPt Pos", ANGLE_DEADBAND_DEG);
+  private final DoubleSignal setpointVelocitySignal =
+      telemetry.addDouble("Arm SetPt Vel", VELOCITY_DEADBAND_DEG_PER_SEC);
+  private final DoubleSignal solveTimeSignal =
+      telemetry.addDouble("Arm MPC Solve Time", SOLVE_TIME_DEADBAND_MS);
+  private final DoubleSignal iterationsSignal =
+      telemetry.addDouble("Arm MPC Iterations", ITERATIONS_DEADBAND);
+
+  // Telemetry-only CAN signals are read in the background and cached
+  private final SignalGroup canSignals = CanSignalSampler.getInstance().createGroup("Arm", 2);
+  private Signal velocitySample;
+  private Signal currentSample;
+
+  // Status frame periods from the CAN bus budget, restored after system identification
+  private CanBusBudget.Controller canBusController;
+
+  // The full arm state is logged as one time-aligned struct record per loop, written to the log
+  // file on the asynchronous log thread
+  private final ArmState state = new ArmState();
+  private final AsyncDataLog.StructEntry<ArmState> stateLog =
+      AsyncDataLog.getInstance().startStruct("/arm/state", ArmState.struct);
+
+  // Enable, disable and gains changes are logged as records rather than formatted messages
+  private final AsyncDataLog asyncLog = AsyncDataLog.getInstance();
+  private final int enabledLog = asyncLog.startBoolean("/arm/enabled");
+  private final int gainsVersionLog = asyncLog.startInteger("/arm/gainsVersion");
 
-  /** Create a new ArmSubsystem controlled by a Profiled PID COntroller . */
+  // System identification. While a test runs the control law is disabled and sysIdLoop applies the
+  // test voltage and records a sample each period, faster than the arm state record. The test
+  // parameters are guarded by sysIdLock so a stopped test can't drive the motor again.
+  private final Object sysIdLock = new Object();
+  private final Notifier sysIdLoop = new Notifier(this::runSysId);
+  private final double[] sysIdSample = new double[3];
+  private final AsyncDataLog.StructEntry<double[]> sysIdDataLog =
+      asyncLog.startDoubleArray("/arm/sysid/data", sysIdSample.length);
+  // Written through the same ring as the samples, so a test name is never written before the last
+  // samples of the test before it
+  private final int sysIdTestLog = asyncLog.startString("/arm/sysid/test");
+  private volatile boolean sysIdActive;
+  private volatile boolean sysIdAtLimit;
+  private double sysIdDirection;
+  private double sysIdStepVolts;
+  private double sysIdRampRate;
+  private double sysIdStartTime;
+
+  private final LoopProfiler profiler = LoopProfiler.getInstance();
+  private final int profilerPhase = profiler.registerPhase("Arm");
+
+  /**
+   * Create a new ArmSubsystem with the control law run from {@code useOutput()} in the robot loop.
+   */
   public ArmSubsystem(Hardware armHardware) {
+    this(armHardware, TimedRobot.kDefaultPeriod, false);
+  }
+
+  /**
+   * Create a new ArmSubsystem with the control law run on its own loop.
+   *
+   * @param armHardware The arm motor and encoder.
+   * @param controlPeriodSeconds The period of the control loop, normally {@link
+   *     ArmConstants#CONTROL_PERIOD_SEC}.
+   */
+  public ArmSubsystem(Hardware armHardware, double controlPeriodSeconds) {
+    this(armHardware, controlPeriodSeconds, true);
+  }
+
+  private ArmSubsystem(Hardware armHardware, double controlPeriodSeconds, boolean ownLoop) {
     this.motor = armHardware.motor;
     this.encoder = armHardware.encoder;
+    this.pidController = armHardware.pidController;
+    this.controlPeriod = controlPeriodSeconds;
+    armController =
+        new ArmController(
+            controlPeriodSeconds, ArmConstants.PLAN_CACHE_SIZE, ArmConstants.PLAN_CAPACITY);
+    controlLoop = ownLoop ? new Notifier(this::runControl) : null;
+    estimator =
+        new ArmStateEstimator(
+            controlPeriodSeconds,
+            (int) Math.round(ArmConstants.ESTIMATOR_DELAY_SEC / controlPeriodSeconds));
+    estimator.setNoise(
+        ArmConstants.ESTIMATOR_POSITION_NOISE,
+        ArmConstants.ESTIMATOR_VELOCITY_NOISE,
+        ArmConstants.ESTIMATOR_MEASUREMENT_NOISE_RADS);
+    predictiveController =
+        new ArmPredictiveController(
+            controlPeriodSeconds,
+            Math.max(1, (int) Math.round(ArmConstants.MPC_HORIZON_SEC / controlPeriodSeconds)));
+    predictiveController.setWeights(
+        ArmConstants.MPC_POSITION_WEIGHT,
+        ArmConstants.MPC_VELOCITY_WEIGHT,
+        ArmConstants.MPC_VOLTAGE_WEIGHT,
+        ArmConstants.MPC_LIMIT_WEIGHT);
+    predictiveController.setLimits(
+        ArmConstants.NOMINAL_VOLTAGE,
+        ArmConstants.MPC_CURRENT_LIMIT_AMPS * ArmConstants.MOTOR_RESISTANCE_OHMS,
+        ArmConstants.MIN_ANGLE_RADS,
+        ArmConstants.MAX_ANGLE_RADS);
+    predictiveController.setBudget(
+        ArmConstants.MPC_MAX_ITERATIONS, ArmConstants.MPC_CPU_BUDGET_SEC);
+    int references = predictiveController.getHorizon() + 1;
+    referencePositions = new double[references];
+    referenceVelocities = new double[references];
+    referenceFeedforwards = new double[references];
+    frameCycles =
+        Math.max(
+            1,
+            (int) Math.round(ArmConstants.DEFAULT_FRAME_PERIOD_MS / 1000.0 / controlPeriodSeconds));
 
     initializeArm();
+
+    sysIdLoop.setName("ArmSysId");
+    if (controlLoop != null) {
+      controlLoop.setName("ArmControl");
+    }
   }
 
   private void initializeArm() {
 
     initPreferences();
-    initEncoder();
-    initMotor();
+    initGainsListener();
+    // The motor controller is configured at the same time as the other devices, after all the
+    // subsystems are created. See DeviceConfigurator.
+    DeviceConfigurator.Device device = DeviceConfigurator.getInstance().device("Arm");
+    initMotor(device);
+    initEncoder(device);
+    initSignals(device);
+    // The control law reads the encoder and commands the motor, so it starts only once the motor
+    // controller is configured
+    DeviceConfigurator.getInstance().whenConfigured(List.of(device), this::deviceConfigured);
 
     // Set tolerances that will be used to determine when the arm is at the goal position.
     armController.setTolerance(
@@ -151,22 +441,64 @@ public class ArmSubsystem extends SubsystemBase implements AutoCloseable {
     disable();
   }
 
-  private void initMotor() {
-    motor.restoreFactoryDefaults();
-    // Maybe we should print the faults if non-zero before clearing?
-    motor.clearFaults();
-    // Configure the motor to use EMF braking when idle and set voltage to 0.
-    motor.setIdleMode(IdleMode.kBrake);
-    DataLogManager.log("Arm motor firmware version:" + motor.getFirmwareString());
+  /**
+   * Start the control loop if the motor controller was configured. Otherwise report it and keep the
+   * arm disabled.
+   */
+  private void deviceConfigured(List<DeviceConfigurator.Result> results) {
+    if (!DeviceConfigurator.allOk(results)) {
+      deviceFailed = true;
+      DriverStation.reportError("Arm disabled, " + results.get(0), false);
+      return;
+    }
+    if (controlLoop != null) {
+      controlLoop.startPeriodic(controlPeriod);
+    }
   }
 
-  private void initEncoder() {
+  private void initMotor(DeviceConfigurator.Device device) {
+    device
+        .step("Restore factory defaults", RevSteps.ok(motor::restoreFactoryDefaults))
+        // Maybe we should print the faults if non-zero before clearing?
+        .step("Clear faults", RevSteps.ok(motor::clearFaults))
+        // Configure the motor to use EMF braking when idle and set voltage to 0.
+        .step("Idle mode", RevSteps.ok(() -> motor.setIdleMode(IdleMode.kBrake)))
+        .run(
+            "Firmware version",
+            () -> DataLogManager.log("Arm motor firmware version:" + motor.getFirmwareString()));
+  }
+
+  private void initEncoder(DeviceConfigurator.Device device) {
     // Setup the encoder scale factors and reset encoder to 0. Since this is a relation encoder,
     // arm position will only be correct if the arm is in the starting rest position when the
-    // subsystem is constructed.
-    encoder.setPositionConversionFactor(ArmConstants.ARM_RAD_PER_ENCODER_ROTATION);
-    encoder.setVelocityConversionFactor(ArmConstants.RPM_TO_RAD_PER_SEC);
-    encoder.setPosition(0);
+    // robot boots.
+    device
+        .step(
+            "Position conversion",
+            RevSteps.ok(
+                () ->
+                    encoder.setPositionConversionFactor(ArmConstants.ARM_RAD_PER_ENCODER_ROTATION)))
+        .step(
+            "Velocity conversion",
+            RevSteps.ok(() -> encoder.setVelocityConversionFactor(ArmConstants.RPM_TO_RAD_PER_SEC)))
+        .step("Reset position", RevSteps.ok(() -> encoder.setPosition(0)));
+  }
+
+  private void initSignals(DeviceConfigurator.Device device) {
+    // The cached values are zero until the first sample. Robot starts the sampler after the
+    // devices are configured, so every sample is in the configured units.
+    velocitySample = canSignals.add(encoder::getVelocity, ArmConstants.VELOCITY_SAMPLE_PERIOD_SEC);
+    currentSample = canSignals.add(motor::getOutputCurrent, ArmConstants.CURRENT_SAMPLE_PERIOD_SEC);
+
+    // The state estimator expects a position frame every frame period
+    canBusController =
+        CanBusBudget.getInstance()
+            .addController("Arm", new SparkMaxFrameSetter(motor))
+            .need(StatusSignal.POSITION, ArmConstants.DEFAULT_FRAME_PERIOD_MS / 1000.0)
+            .need(StatusSignal.VELOCITY, ArmConstants.VELOCITY_SAMPLE_PERIOD_SEC)
+            .need(StatusSignal.CURRENT, ArmConstants.CURRENT_SAMPLE_PERIOD_SEC)
+            .commanded(controlPeriod);
+    device.step("Status frame periods", canBusController::apply);
   }
 
   /**
@@ -177,50 +509,385 @@ public class ArmSubsystem extends SubsystemBase implements AutoCloseable {
   public static Hardware initializeHardware() {
     CANSparkMax motor = new CANSparkMax(ArmConstants.MOTOR_PORT, MotorType.kBrushless);
     RelativeEncoder encoder = motor.getEncoder();
+    SparkPIDController pidController = motor.getPIDController();
 
-    return new Hardware(motor, encoder);
+    return new Hardware(motor, encoder, pidController);
   }
 
   @Override
   public void periodic() {
+    profiler.startPhase(profilerPhase);
+
+    readStatus();
+    state.goal = goalPosition;
+    if (status.estimating) {
+      state.position = status.estimatedPosition;
+      state.velocity = status.estimatedVelocity;
+    } else {
+      state.position = getMeasurement();
+      state.velocity = velocitySample.get();
+    }
+    state.setpointPosition = status.setpointPosition;
+    state.setpointVelocity = status.setpointVelocity;
+    state.pidOutput = status.pidOutput;
+    state.feedforward = status.feedforward;
+    state.voltage = status.voltage;
+    state.current = currentSample.get();
+    state.enabled = status.enabled;
+    stateLog.append(state);
+
+    enabledSignal.set(state.enabled);
+    goalSignal.set(Units.radiansToDegrees(state.goal));
+    angleSignal.set(Units.radiansToDegrees(state.position));
+    velocitySignal.set(Units.radiansToDegrees(state.velocity));
+    voltageSignal.set(state.voltage);
+    currentSignal.set(state.current);
+    feedforwardSignal.set(state.feedforward);
+    pidOutputSignal.set(state.pidOutput);
+    setpointPositionSignal.set(Units.radiansToDegrees(state.setpointPosition));
+    setpointVelocitySignal.set(Units.radiansToDegrees(state.setpointVelocity));
+    solveTimeSignal.set(status.solveTime * 1000);
+    iterationsSignal.set(status.iterations);
 
-    SmartDashboard.putBoolean("Arm Enabled", armEnabled);
-    SmartDashboard.putNumber("Arm Goal", Units.radiansToDegrees(armController.getGoal().position));
-    SmartDashboard.putNumber("Arm Angle", Units.radiansToDegrees(getMeasurement()));
-    SmartDashboard.putNumber("Arm Velocity", Units.radiansToDegrees(encoder.getVelocity()));
-    SmartDashboard.putNumber("Arm Voltage", voltageCommand);
-    SmartDashboard.putNumber("Arm Current", motor.getOutputCurrent());
-    SmartDashboard.putNumber("Arm Feedforward", newFeedforward);
-    SmartDashboard.putNumber("Arm PID output", output);
-    SmartDashboard.putNumber("Arm SetPt Pos", Units.radiansToDegrees(setpoint.position));
-    SmartDashboard.putNumber("Arm SetPt Vel", Units.radiansToDegrees(setpoint.velocity));
+    profiler.endPhase(profilerPhase);
   }
 
-  /** Generate the motor command using the PID controller and feedforward. */
+  /**
+   * Generate the motor command using the PID controller and feedforward. When the control law runs
+   * on its own loop this does nothing, and commands call it only to keep the arm required.
+   */
   public void useOutput() {
-    if (armEnabled) {
-      // Calculate the next set point along the profile to the goal and the next PID output based
-      // on the set point and current position.
-      output = armController.calculate(getMeasurement());
-      setpoint = armController.getSetpoint();
+    if (controlLoop == null) {
+      runControl();
+    }
+  }
+
+  /** Run one cycle of the control law. Called by the control loop or from useOutput(). */
+  private void runControl() {
+    // Read before the requests, so that waypoints of a path the control loop has not started yet
+    // are not added to the current one
+    int tail = waypointTail;
+    ArmGains latest = gains.get();
+    if ((latest != appliedGains || timeOptimalRequested != timeOptimalApplied)
+        && (!controlEnabled || armController.isMoveComplete() || hasNewRequest())) {
+      applyGains(latest);
+    }
+    applyRequests();
+    applyWaypoints(tail);
+    double measurement = getMeasurement();
+    correctEstimate(measurement);
 
-      // Calculate the feedforward to move the arm at the desired velocity and offset
-      // the effect of gravity at the desired position. Voltage for acceleration is not
-      // used.
-      newFeedforward = feedforward.calculate(setpoint.position, setpoint.velocity);
+    if (sysIdActive) {
+      // A system identification test is driving the motor
+      predictEstimate(voltageCommand);
+      publishStatus(voltageCommand);
+      return;
+    }
+
+    double voltage;
+    if (controlEnabled) {
+      // Step to the next set point of the planned move and add the PID correction for the current
+      // position to the feedforward. The feedforward to move the arm at the desired velocity and
+      // acceleration and offset the effect of gravity at the desired position was calculated when
+      // the move was planned.
+      voltage =
+          estimatorActive
+              ? armController.calculate(estimator.getPosition(), estimator.getVelocity())
+              : armController.calculate(measurement);
 
-      // Add the feedforward to the PID output to get the motor output
-      voltageCommand = output + newFeedforward;
+      if (predictiveControlActive) {
+        // Replace the PID correction with the first voltage of the optimized sequence over the
+        // planned setpoints from here on. The PID calculation above still steps the setpoint and
+        // finds the errors for the goal check.
+        armController.getReference(referencePositions, referenceVelocities, referenceFeedforwards);
+        voltage =
+            predictiveController.calculate(
+                estimator.getPosition(),
+                estimator.getVelocity(),
+                referencePositions,
+                referenceVelocities,
+                referenceFeedforwards);
+        motor.setVoltage(voltage);
+      } else if (onboardControlActive) {
+        // Send the set point and feedforward to the motor controller, which closes the loop on
+        // its own encoder. The voltage calculated here is only an estimate of what it applies.
+        double reference = armController.getSetpointPosition() - ArmConstants.ARM_OFFSET_RADS;
+        double feedforward = armController.getFeedforward();
+        pidController.setReference(
+            reference,
+            ControlType.kPosition,
+            ArmConstants.ONBOARD_PID_SLOT,
+            feedforward,
+            ArbFFUnits.kVoltage);
+        positionReference = reference;
+        arbFeedforward = feedforward;
+      } else {
+        motor.setVoltage(voltage);
+      }
 
     } else {
       // If the arm isn't enabled, set the motor command to 0. In this state the arm
       // will move down until it hits the rest position. Motor EMF braking will slow movement
       // if that mode is used.
-      output = 0;
-      newFeedforward = 0;
-      voltageCommand = 0;
+      voltage = 0;
+      onboardControlActive = false;
+      predictiveControlActive = false;
+      motor.setVoltage(voltage);
+    }
+    voltageCommand = voltage;
+    predictEstimate(voltage);
+    publishStatus(voltage);
+  }
+
+  /**
+   * Start or stop the estimator as requested and correct it when a new encoder frame arrives. The
+   * predictive controller always uses the estimator.
+   */
+  private void correctEstimate(double measurement) {
+    boolean requested = estimatorRequested || predictiveControlActive;
+    if (requested != estimatorActive) {
+      estimatorActive = requested;
+      estimator.reset(measurement);
+      lastMeasurement = measurement;
+      cyclesSinceMeasurement = 0;
+      return;
+    }
+    if (!estimatorActive) {
+      return;
+    }
+    cyclesSinceMeasurement++;
+    if (measurement != lastMeasurement || cyclesSinceMeasurement >= frameCycles) {
+      estimator.correct(measurement);
+      lastMeasurement = measurement;
+      cyclesSinceMeasurement = 0;
+    }
+  }
+
+  /** Advance the estimate by one control period with the voltage applied in it. */
+  private void predictEstimate(double voltage) {
+    if (estimatorActive) {
+      estimator.predict(voltage);
+    }
+  }
+
+  /**
+   * Switch the controller to a new gains snapshot or profile type. Called only between moves, so a
+   * move is always followed with the gains it was planned with.
+   */
+  private void applyGains(ArmGains newGains) {
+    appliedGains = newGains;
+    timeOptimalApplied = timeOptimalRequested;
+    armController.setPid(newGains.kp, 0, 0);
+    armController.setConstraints(newGains.maxVelocity, newGains.maxAcceleration);
+    armController.setFeedforward(
+        newGains.ks, newGains.kg, newGains.kv, ArmConstants.KA_VOLTS_PER_RAD_PER_SEC_SQUARED);
+    armController.setVoltageLimit(timeOptimalApplied ? ArmConstants.PROFILE_VOLTAGE_LIMIT : 0);
+    estimator.setModel(
+        newGains.ks, newGains.kg, newGains.kv, ArmConstants.KA_VOLTS_PER_RAD_PER_SEC_SQUARED);
+    predictiveController.setModel(
+        newGains.ks, newGains.kg, newGains.kv, ArmConstants.KA_VOLTS_PER_RAD_PER_SEC_SQUARED);
+    if (onboardControlActive) {
+      configureOnboardPid();
+    }
+  }
+
+  /** Returns whether the robot thread has made a request the control loop has not applied. */
+  private boolean hasNewRequest() {
+    return enableSequence != appliedEnableSequence || goalRequest.sequence != appliedGoalSequence;
+  }
+
+  /** Apply the newest enable, disable and goal requests from the robot thread. */
+  private void applyRequests() {
+    int enableRequest = enableSequence;
+    GoalRequest request = goalRequest;
+    if (enableRequest != appliedEnableSequence) {
+      appliedEnableSequence = enableRequest;
+      appliedGoalSequence = request.sequence;
+      controlEnabled = enableRequested;
+      if (controlEnabled) {
+        // Clear any previous controller state and plan the move from the current position
+        armController.reset(getMeasurement(), request.goal, request.speed);
+        waypointHead = request.pathStart;
+        if (requestedMode == ControlMode.MOTOR_CONTROLLER) {
+          configureOnboardPid();
+        }
+        onboardControlActive = requestedMode == ControlMode.MOTOR_CONTROLLER;
+        predictiveControlActive = requestedMode == ControlMode.MODEL_PREDICTIVE;
+        predictiveController.reset();
+      }
+    } else if (request.sequence != appliedGoalSequence) {
+      appliedGoalSequence = request.sequence;
+      if (controlEnabled) {
+        // Plan from the current set point so the arm moves smoothly to the new goal
+        armController.setGoal(request.goal, request.speed);
+        waypointHead = request.pathStart;
+      }
+    }
+  }
+
+  /**
+   * Pass waypoints from the robot thread to the controller, up to a tail read at the start of the
+   * cycle. Waypoints stay in the ring while the controller queue is full. They are dropped while
+   * the arm is disabled.
+   */
+  private void applyWaypoints(int tail) {
+    int head = waypointHead;
+    if (!controlEnabled) {
+      head = tail;
+    }
+    while (head - tail < 0
+        && armController.addWaypoint(
+            waypointPositions[head & WAYPOINT_MASK], waypointSpeeds[head & WAYPOINT_MASK])) {
+      head++;
+    }
+    waypointHead = head;
+  }
+
+  private void publishStatus(double voltage) {
+    ControlStatus out = controlStatus;
+    out.enabled = controlEnabled;
+    out.goalSequence = appliedGoalSequence;
+    out.waypointHead = waypointHead;
+    out.atGoal = controlEnabled && armController.atGoal();
+    out.setpointPosition = armController.getSetpointPosition();
+    out.setpointVelocity = armController.getSetpointVelocity();
+    out.feedforward = controlEnabled ? armController.getFeedforward() : 0;
+    // The predictive controller correction is reported as the PID output
+    out.pidOutput =
+        !controlEnabled
+            ? 0
+            : predictiveControlActive ? voltage - out.feedforward : armController.getPidOutput();
+    out.voltage = voltage;
+    out.gainsVersion = appliedGains.version;
+    out.estimating = estimatorActive;
+    out.estimatedPosition = estimator.getPosition();
+    out.estimatedVelocity = estimator.getVelocity();
+    out.predictive = predictiveControlActive;
+    out.solveTime = predictiveControlActive ? predictiveController.getSolveTime() : 0;
+    out.iterations = predictiveControlActive ? predictiveController.getIterations() : 0;
+
+    long stamp = statusLock.writeLock();
+    try {
+      publishedStatus.copyFrom(out);
+    } finally {
+      statusLock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Load the P gain into the motor controller position loop. The motor controller gain is in duty
+   * cycle per radian, so the gain in volts is divided by the nominal battery voltage. The
+   * feedforward is sent in volts with each reference and is compensated for the bus voltage.
+   */
+  private void configureOnboardPid() {
+    onboardGain = armController.getP();
+    pidController.setP(onboardGain / ArmConstants.NOMINAL_VOLTAGE, ArmConstants.ONBOARD_PID_SLOT);
+    pidController.setI(0, ArmConstants.ONBOARD_PID_SLOT);
+    pidController.setD(0, ArmConstants.ONBOARD_PID_SLOT);
+    pidController.setFF(0, ArmConstants.ONBOARD_PID_SLOT);
+  }
+
+  /**
+   * Select where the position loop is closed. The mode is applied the next time the arm is enabled.
+   *
+   * @param mode The control mode.
+   */
+  public void setControlMode(ControlMode mode) {
+    requestedMode = mode;
+  }
+
+  /**
+   * Select whether the control law and goal check use the estimated arm state or the encoder
+   * readings. The estimator starts from the current position on the next control cycle.
+   *
+   * @param enabled True to use the estimated state.
+   */
+  public void setStateEstimation(boolean enabled) {
+    estimatorRequested = enabled;
+  }
+
+  /**
+   * Select time-optimal or trapezoid profiles for new moves. The change is applied between moves.
+   *
+   * @param enabled True to plan time-optimal profiles.
+   */
+  public void setTimeOptimalProfile(boolean enabled) {
+    timeOptimalRequested = enabled;
+  }
+
+  /** Returns whether the control loop is using the estimated arm state. */
+  public boolean isStateEstimationActive() {
+    readStatus();
+    return status.estimating;
+  }
+
+  /** Returns whether the control loop is using the model predictive controller. */
+  public boolean isPredictiveControlActive() {
+    readStatus();
+    return status.predictive;
+  }
+
+  /** Returns the profile setpoint position of the last control cycle in radians. */
+  public double getSetpointPosition() {
+    readStatus();
+    return status.setpointPosition;
+  }
+
+  /** Returns the estimated arm position of the last control cycle in radians. */
+  public double getEstimatedPosition() {
+    readStatus();
+    return status.estimatedPosition;
+  }
+
+  /** Returns the CPU time of the last predictive controller solve in seconds. */
+  public double getSolveTime() {
+    readStatus();
+    return status.solveTime;
+  }
+
+  /** Returns whether the motor controller is currently closing the position loop. */
+  public boolean isOnboardControlActive() {
+    return onboardControlActive;
+  }
+
+  /** Returns the position reference last sent to the motor controller, in encoder radians. */
+  public double getPositionReference() {
+    return positionReference;
+  }
+
+  /** Returns the arbitrary feedforward last sent to the motor controller, in volts. */
+  public double getArbFeedforward() {
+    return arbFeedforward;
+  }
+
+  /** Returns the motor controller position gain in volts per radian. */
+  public double getOnboardGain() {
+    return onboardGain;
+  }
+
+  /** Returns the newest gains snapshot built from the preferences. */
+  public ArmGains getGains() {
+    return gains.get();
+  }
+
+  /** Returns the version of the gains snapshot the control loop is using. */
+  public long getAppliedGainsVersion() {
+    readStatus();
+    return status.gainsVersion;
+  }
+
+  /** Copy the newest control loop status for use on the robot thread. */
+  private void readStatus() {
+    long stamp = statusLock.tryOptimisticRead();
+    status.copyFrom(publishedStatus);
+    if (!statusLock.validate(stamp)) {
+      stamp = statusLock.readLock();
+      try {
+        status.copyFrom(publishedStatus);
+      } finally {
+        statusLock.unlockRead(stamp);
+      }
     }
-    motor.setVoltage(voltageCommand);
   }
 
   /** Returns a Command that moves the arm to a new position. */
@@ -240,6 +907,177 @@ public class ArmSubsystem extends SubsystemBase implements AutoCloseable {
         this);
   }
 
+  /**
+   * Returns a Command that moves the arm through a sequence of waypoints as one continuous motion.
+   * The arm passes through each waypoint at up to its speed, limited so it can follow the rest of
+   * the path within the profile constraints, and stops at the last waypoint and where the path
+   * reverses. The command finishes when the arm is at the last waypoint, including any appended
+   * with {@link #appendWaypoint(double, double)}.
+   *
+   * @param positions The waypoint positions in radians.
+   * @param speeds The speeds to pass through each waypoint in radians per second.
+   * @throws IllegalArgumentException If there are no waypoints, too many, or the arrays differ in
+   *     length.
+   */
+  public Command moveThrough(double[] positions, double[] speeds) {
+    if (positions.length == 0
+        || positions.length != speeds.length
+        || positions.length > ArmController.MAX_WAYPOINTS) {
+      throw new IllegalArgumentException(
+          "Expected 1 to "
+              + ArmController.MAX_WAYPOINTS
+              + " waypoints with a speed for each, got "
+              + positions.length
+              + " positions and "
+              + speeds.length
+              + " speeds");
+    }
+    double[] pathPositions = positions.clone();
+    double[] pathSpeeds = speeds.clone();
+    return new FunctionalCommand(
+            () -> startPath(pathPositions, pathSpeeds),
+            this::useOutput,
+            interrupted -> {},
+            this::atGoalPosition,
+            this)
+        .withName("Arm: Move Through Waypoints");
+  }
+
+  private void startPath(double[] positions, double[] speeds) {
+    setGoalPosition(positions[0], speeds[0]);
+    for (int i = 1; i < positions.length; i++) {
+      if (!appendWaypoint(positions[i], speeds[i])) {
+        DataLogManager.log("Arm waypoint queue full, path ends at waypoint " + i);
+        break;
+      }
+    }
+  }
+
+  /**
+   * Add a waypoint to the end of the current path, limited to the allowable range. The arm
+   * continues through the previous last waypoint instead of stopping there if the path allows it.
+   * If the arm is not enabled a new path is started.
+   *
+   * @param position The waypoint position in radians.
+   * @param speed The speed to pass through the waypoint if more are added, in radians per second.
+   * @return False if the waypoint could not be queued because the control loop has not caught up.
+   */
+  public boolean appendWaypoint(double position, double speed) {
+    if (!armEnabled) {
+      setGoalPosition(position, speed);
+      return true;
+    }
+    int tail = waypointTail;
+    if (tail - waypointHead >= ArmController.MAX_WAYPOINTS) {
+      return false;
+    }
+    goalPosition =
+        MathUtil.clamp(
+            position, Constants.ArmConstants.MIN_ANGLE_RADS, Constants.ArmConstants.MAX_ANGLE_RADS);
+    waypointPositions[tail & WAYPOINT_MASK] = goalPosition;
+    waypointSpeeds[tail & WAYPOINT_MASK] = Math.abs(speed);
+    waypointTail = tail + 1;
+    return true;
+  }
+
+  /**
+   * Returns a Command that ramps the motor voltage from zero for a quasistatic system
+   * identification test. The test ends near the end of travel.
+   *
+   * @param direction The direction to move the arm.
+   */
+  public Command sysIdQuasistatic(SysIdRoutine.Direction direction) {
+    return sysIdTest("quasistatic", direction, 0, ArmConstants.SYSID_RAMP_VOLTS_PER_SEC);
+  }
+
+  /**
+   * Returns a Command that steps the motor voltage for a dynamic system identification test. The
+   * test ends near the end of travel.
+   *
+   * @param direction The direction to move the arm.
+   */
+  public Command sysIdDynamic(SysIdRoutine.Direction direction) {
+    return sysIdTest("dynamic", direction, ArmConstants.SYSID_STEP_VOLTS, 0);
+  }
+
+  private Command sysIdTest(
+      String test, SysIdRoutine.Direction direction, double stepVolts, double rampRate) {
+    boolean forward = direction == SysIdRoutine.Direction.kForward;
+    String name = test + (forward ? "-forward" : "-reverse");
+    return startEnd(() -> startSysId(name, forward ? 1 : -1, stepVolts, rampRate), this::stopSysId)
+        .until(() -> sysIdAtLimit)
+        .withTimeout(ArmConstants.SYSID_TIMEOUT_SEC)
+        .withName("Arm: SysId " + name);
+  }
+
+  private void startSysId(String test, double direction, double stepVolts, double rampRate) {
+    // Stop the control law without cancelling the test command. The next move enables it again.
+    if (armEnabled) {
+      armEnabled = false;
+      enableRequested = false;
+      enableSequence++;
+      asyncLog.appendBoolean(enabledLog, false);
+    }
+    removeDefaultCommand();
+
+    // Send position and velocity as often as they are sampled, until the test stops
+    canBusController
+        .needTemporarily(StatusSignal.POSITION, ArmConstants.SYSID_FRAME_PERIOD_MS / 1000.0)
+        .needTemporarily(StatusSignal.VELOCITY, ArmConstants.SYSID_FRAME_PERIOD_MS / 1000.0)
+        .apply();
+
+    synchronized (sysIdLock) {
+      sysIdDirection = direction;
+      sysIdStepVolts = stepVolts;
+      sysIdRampRate = rampRate;
+      sysIdStartTime = Timer.getFPGATimestamp();
+      sysIdAtLimit = false;
+      sysIdActive = true;
+    }
+    asyncLog.appendString(sysIdTestLog, test);
+    sysIdLoop.startPeriodic(ArmConstants.SYSID_PERIOD_SEC);
+  }
+
+  /** Apply the test voltage and record a sample. Runs on the system identification loop. */
+  private void runSysId() {
+    synchronized (sysIdLock) {
+      if (!sysIdActive) {
+        return;
+      }
+      double position = getMeasurement();
+      boolean atLimit =
+          sysIdDirection > 0
+              ? position >= ArmConstants.MAX_ANGLE_RADS - ArmConstants.SYSID_LIMIT_MARGIN_RADS
+              : position <= ArmConstants.MIN_ANGLE_RADS + ArmConstants.SYSID_LIMIT_MARGIN_RADS;
+      if (atLimit) {
+        sysIdAtLimit = true;
+      }
+
+      // Stop at the limit and don't record samples after it, so the stop is not in the data
+      double voltage = 0;
+      if (!sysIdAtLimit) {
+        double elapsed = Timer.getFPGATimestamp() - sysIdStartTime;
+        voltage = sysIdDirection * (sysIdStepVolts + sysIdRampRate * elapsed);
+        sysIdSample[0] = voltage;
+        sysIdSample[1] = position;
+        sysIdSample[2] = encoder.getVelocity();
+        sysIdDataLog.append(sysIdSample);
+      }
+      motor.setVoltage(voltage);
+      voltageCommand = voltage;
+    }
+  }
+
+  private void stopSysId() {
+    sysIdLoop.stop();
+    synchronized (sysIdLock) {
+      sysIdActive = false;
+      motor.setVoltage(0);
+      voltageCommand = 0;
+    }
+    canBusController.restore();
+  }
+
   /**
    * Returns a Command that holds the arm at the last goal position using the PID Controller driving
    * the motor.
@@ -250,10 +1088,7 @@ public class ArmSubsystem extends SubsystemBase implements AutoCloseable {
 
   /** Returns a Command that shifts arm position up by a fixed increment. */
   public Command shiftUp() {
-    return runOnce(
-            () ->
-                setGoalPosition(
-                    armController.getGoal().position + Constants.ArmConstants.POS_INCREMENT))
+    return runOnce(() -> setGoalPosition(goalPosition + Constants.ArmConstants.POS_INCREMENT))
         .andThen(run(this::useOutput))
         .until(this::atGoalPosition)
         .withName("Arm: Shift Position Up");
@@ -261,10 +1096,7 @@ public class ArmSubsystem extends SubsystemBase implements AutoCloseable {
 
   /** Returns a Command that shifts arm position down by a fixed increment. */
   public Command shiftDown() {
-    return runOnce(
-            () ->
-                setGoalPosition(
-                    armController.getGoal().position - Constants.ArmConstants.POS_INCREMENT))
+    return runOnce(() -> setGoalPosition(goalPosition - Constants.ArmConstants.POS_INCREMENT))
         .andThen(run(this::useOutput))
         .until(this::atGoalPosition)
         .withName("Arm: Shift Position Down");
@@ -272,50 +1104,59 @@ public class ArmSubsystem extends SubsystemBase implements AutoCloseable {
 
   /**
    * Set the goal state for the subsystem, limited to allowable range. Goal velocity is set to zero.
-   * The ProfiledPIDController drives the arm to this position and holds it there.
+   * The move to the goal is planned and the PID controller drives the arm along it and holds it at
+   * the goal.
    */
   private void setGoalPosition(double goal) {
-    armController.setGoal(
-        new TrapezoidProfile.State(
-            MathUtil.clamp(
-                goal, Constants.ArmConstants.MIN_ANGLE_RADS, Constants.ArmConstants.MAX_ANGLE_RADS),
-            0));
+    setGoalPosition(goal, 0);
+  }
+
+  /**
+   * Start a new path at a first waypoint, limited to allowable range. Waypoints appended after this
+   * are part of the new path.
+   */
+  private void setGoalPosition(double goal, double speed) {
+    goalPosition =
+        MathUtil.clamp(
+            goal, Constants.ArmConstants.MIN_ANGLE_RADS, Constants.ArmConstants.MAX_ANGLE_RADS);
+
+    // The control loop plans from the current set point if already enabled so the arm moves
+    // smoothly to the new goal. Otherwise enable() plans from the current position.
+    goalRequest = new GoalRequest(goalRequest.sequence + 1, goalPosition, speed, waypointTail);
 
     // Call enable() to configure and start the controller in case it is not already enabled.
     enable();
   }
 
-  /** Returns whether the arm has reached the goal position and velocity is within limits. */
+  /**
+   * Returns whether the arm has reached the goal position and velocity is within limits. Status
+   * from before the control loop has applied the newest goal and waypoints is ignored.
+   */
   public boolean atGoalPosition() {
-    return armController.atGoal();
+    readStatus();
+    return status.goalSequence == goalRequest.sequence
+        && status.waypointHead == waypointTail
+        && status.atGoal;
   }
 
   /**
    * Sets up the PID controller to move the arm to the defined goal position and hold at that
-   * position. Preferences for tuning the controller are applied.
+   * position. The newest gains snapshot is applied.
    */
   private void enable() {
 
-    // Don't enable if already enabled since this may cause control transients
-    if (!armEnabled) {
-      loadPreferences();
+    // Don't enable if already enabled since this may cause control transients, or if the motor
+    // controller was not configured
+    if (!armEnabled && !deviceFailed) {
       setDefaultCommand(holdPosition());
 
-      // Reset the PID controller to clear any previous state
-      armController.reset(getMeasurement());
+      // The control loop applies the newest gains and resets the controller on its next cycle
       armEnabled = true;
+      enableRequested = true;
+      enableSequence++;
 
-      DataLogManager.log(
-          "Arm Enabled - kP="
-              + armController.getP()
-              + " kI="
-              + armController.getI()
-              + " kD="
-              + armController.getD()
-              + " PosGoal="
-              + Units.radiansToDegrees(armController.getGoal().position)
-              + " CurPos="
-              + Units.radiansToDegrees(getMeasurement()));
+      // The goal and position are in the arm state record
+      asyncLog.appendBoolean(enabledLog, true);
     }
   }
 
@@ -325,8 +1166,11 @@ public class ArmSubsystem extends SubsystemBase implements AutoCloseable {
    */
   public void disable() {
 
-    // Clear the enabled flag and call useOutput to zero the motor command
+    // Clear the enabled flag and call useOutput to zero the motor command. The control loop zeros
+    // it on its next cycle if it runs on its own.
     armEnabled = false;
+    enableRequested = false;
+    enableSequence++;
     useOutput();
 
     // Remove the default command and cancel any command that is active
@@ -335,11 +1179,7 @@ public class ArmSubsystem extends SubsystemBase implements AutoCloseable {
     if (currentCommand != null) {
       CommandScheduler.getInstance().cancel(currentCommand);
     }
-    DataLogManager.log(
-        "Arm Disabled CurPos="
-            + Units.radiansToDegrees(getMeasurement())
-            + " CurVel="
-            + Units.radiansToDegrees(encoder.getVelocity()));
+    asyncLog.appendBoolean(enabledLog, false);
   }
 
   /** Returns the Arm position for PID control and logging (Units are Radians from horizontal). */
@@ -382,45 +1222,136 @@ public class ArmSubsystem extends SubsystemBase implements AutoCloseable {
   }
 
   /**
-   * Load Preferences for values that can be tuned at runtime. This should only be called when the
-   * controller is disabled - for example from enable().
+   * Build the first gains snapshot and listen for changes to the arm preferences. Preferences are
+   * stored in NetworkTables, so changes from the dashboard and from code both notify the listener.
    */
-  private void loadPreferences() {
-
-    // Read Preferences for PID controller
-    armController.setP(
-        Preferences.getDouble(
-            Constants.ArmConstants.ARM_KP_KEY, Constants.ArmConstants.DEFAULT_ARM_KP));
-
-    // Read Preferences for Trapezoid Profile and update
-    double velocityMax =
-        Preferences.getDouble(
-            Constants.ArmConstants.ARM_VELOCITY_MAX_KEY,
-            Constants.ArmConstants.DEFAULT_MAX_VELOCITY_RAD_PER_SEC);
-    double accelerationMax =
-        Preferences.getDouble(
-            Constants.ArmConstants.ARM_ACCELERATION_MAX_KEY,
-            Constants.ArmConstants.DEFAULT_MAX_ACCELERATION_RAD_PER_SEC);
-    armController.setConstraints(new TrapezoidProfile.Constraints(velocityMax, accelerationMax));
-
-    // Read Preferences for Feedforward and create a new instance
-    double staticGain =
-        Preferences.getDouble(
-            Constants.ArmConstants.ARM_KS_KEY, Constants.ArmConstants.DEFAULT_KS_VOLTS);
-    double gravityGain =
-        Preferences.getDouble(
-            Constants.ArmConstants.ARM_KG_KEY, Constants.ArmConstants.DEFAULT_KG_VOLTS);
-    double velocityGain =
-        Preferences.getDouble(
-            Constants.ArmConstants.ARM_KV_KEY,
-            Constants.ArmConstants.DEFAULT_KV_VOLTS_PER_SEC_PER_RAD);
-
-    feedforward = new ArmFeedforward(staticGain, gravityGain, velocityGain, 0);
+  private void initGainsListener() {
+    loadGains();
+    gainsListener =
+        NetworkTableInstance.getDefault()
+            .addListener(
+                new String[] {PREFERENCES_PREFIX},
+                EnumSet.of(NetworkTableEvent.Kind.kValueAll),
+                event -> loadGains());
+  }
+
+  /**
+   * Load Preferences for values that can be tuned at runtime into a new gains snapshot. Called on
+   * the NetworkTables listener thread when an arm preference changes. The snapshot is published
+   * only if all values are valid and at least one has changed, and each published version is
+   * logged.
+   */
+  private synchronized void loadGains() {
+    ArmGains current = gains.get();
+    long version = current == null ? 1 : current.version + 1;
+
+    ArmGains newGains;
+    try {
+      newGains =
+          new ArmGains(
+              version,
+              Preferences.getDouble(
+                  Constants.ArmConstants.ARM_KP_KEY, Constants.ArmConstants.DEFAULT_ARM_KP),
+              Preferences.getDouble(
+                  Constants.ArmConstants.ARM_KS_KEY, Constants.ArmConstants.DEFAULT_KS_VOLTS),
+              Preferences.getDouble(
+                  Constants.ArmConstants.ARM_KG_KEY, Constants.ArmConstants.DEFAULT_KG_VOLTS),
+              Preferences.getDouble(
+                  Constants.ArmConstants.ARM_KV_KEY,
+                  Constants.ArmConstants.DEFAULT_KV_VOLTS_PER_SEC_PER_RAD),
+              Preferences.getDouble(
+                  Constants.ArmConstants.ARM_VELOCITY_MAX_KEY,
+                  Constants.ArmConstants.DEFAULT_MAX_VELOCITY_RAD_PER_SEC),
+              Preferences.getDouble(
+                  Constants.ArmConstants.ARM_ACCELERATION_MAX_KEY,
+                  Constants.ArmConstants.DEFAULT_MAX_ACCELERATION_RAD_PER_SEC));
+    } catch (IllegalArgumentException e) {
+      // Keep the current gains until the value is corrected
+      asyncLog.log("Arm gains rejected: " + e.getMessage());
+      return;
+    }
+
+    if (current != null && newGains.sameValues(current)) {
+      return;
+    }
+    gains.set(newGains);
+    asyncLog.appendInteger(gainsVersionLog, version);
+    asyncLog.log("Arm gains " + newGains);
+  }
+
+  /** Returns the period of the control law in seconds. */
+  public double getControlPeriod() {
+    return controlPeriod;
+  }
+
+  /** Returns whether the control law runs on its own loop rather than the robot loop. */
+  public boolean hasControlLoop() {
+    return controlLoop != null;
   }
 
   /** Close any objects that support it. */
   @Override
   public void close() {
+    NetworkTableInstance.getDefault().removeListener(gainsListener);
+    if (controlLoop != null) {
+      controlLoop.close();
+    }
+    sysIdLoop.close();
+    canSignals.close();
     motor.close();
   }
+
+  /** A goal and the start of its path in the waypoint ring, numbered in request order. */
+  private static final class GoalRequest {
+    final int sequence;
+    final double goal;
+    final double speed;
+    final int pathStart;
+
+    GoalRequest(int sequence, double goal, double speed, int pathStart) {
+      this.sequence = sequence;
+      this.goal = goal;
+      this.speed = speed;
+      this.pathStart = pathStart;
+    }
+  }
+
+  /** Outputs of one control cycle. */
+  private static final class ControlStatus {
+    boolean enabled;
+    boolean atGoal;
+    int goalSequence;
+    int waypointHead;
+    double setpointPosition;
+    double setpointVelocity;
+    double pidOutput;
+    double feedforward;
+    double voltage;
+    long gainsVersion;
+    boolean estimating;
+    double estimatedPosition;
+    double estimatedVelocity;
+    boolean predictive;
+    double solveTime;
+    int iterations;
+
+    void copyFrom(ControlStatus other) {
+      enabled = other.enabled;
+      atGoal = other.atGoal;
+      goalSequence = other.goalSequence;
+      waypointHead = other.waypointHead;
+      setpointPosition = other.setpointPosition;
+      setpointVelocity = other.setpointVelocity;
+      pidOutput = other.pidOutput;
+      feedforward = other.feedforward;
+      voltage = other.voltage;
+      gainsVersion = other.gainsVersion;
+      estimating = other.estimating;
+      estimatedPosition = other.estimatedPosition;
+      estimatedVelocity = other.estimatedVelocity;
+      predictive = other.predictive;
+      solveTime = other.solveTime;
+      iterations = other.iterations;
+    }
+  }
 }
@@ -8,17 +8,56 @@ import com.revrobotics.CANSparkBase.IdleMode;
 import com.revrobotics.CANSparkLowLevel.MotorType;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.RelativeEncoder;
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Pose2d;
-import edu.wpi.first.math.kinematics.DifferentialDriveOdometry;
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.DifferentialDriveWheelSpeeds;
 import edu.wpi.first.wpilibj.ADXRS450_Gyro;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.drive.DifferentialDrive;
+import edu.wpi.first.wpilibj.drive.RobotDriveBase;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants.DriveConstants;
-
-/** Drive subsystem using differential drive. */
-public class DriveSubsystem extends SubsystemBase {
+import frc.robot.control.DifferentialOdometry;
+import frc.robot.control.PoseHistory;
+import frc.robot.control.WheelSpeedController;
+import frc.robot.devices.CanBusBudget;
+import frc.robot.devices.CanBusBudget.StatusSignal;
+import frc.robot.devices.CanSignalSampler;
+import frc.robot.devices.CanSignalSampler.Signal;
+import frc.robot.devices.CanSignalSampler.SignalGroup;
+import frc.robot.devices.DeviceConfigurator;
+import frc.robot.devices.RevSteps;
+import frc.robot.devices.SparkMaxFrameSetter;
+import frc.robot.telemetry.AsyncDataLog;
+import frc.robot.telemetry.DriveState;
+import frc.robot.telemetry.LoopProfiler;
+import frc.robot.telemetry.TelemetryPublisher;
+import frc.robot.telemetry.TelemetryPublisher.DoubleSignal;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Drive subsystem using differential drive.
+ *
+ * <p>Odometry is integrated on its own {@link Notifier} at {@link
+ * DriveConstants#ODOMETRY_PERIOD_SEC}, faster than the robot loop, so the estimated path follows
+ * the robot through fast turns. Each update samples the gyro and the front encoders together and
+ * publishes the timestamped samples and pose through a sequence lock, so the update doesn't
+ * allocate and {@link #getPose()} never blocks it. Each pose is also added to a {@link
+ * PoseHistory}, so features that compensate for latency can find the pose at a recent timestamp.
+ *
+ * <p>In velocity drive mode, selected with {@link #setVelocityDrive(boolean)}, the sticks set wheel
+ * speeds instead of duty cycles. Each side is driven to its speed by a {@link
+ * WheelSpeedController}, and the voltage is divided by the measured battery voltage, so the robot
+ * accelerates and drives the same with a fresh or a sagging battery.
+ */
+public class DriveSubsystem extends SubsystemBase implements AutoCloseable {
   private final CANSparkMax frontLeft =
       new CANSparkMax(DriveConstants.FRONT_LEFT_MOTOR_PORT, MotorType.kBrushless);
   private final CANSparkMax rearLeft =
@@ -45,12 +84,31 @@ public class DriveSubsystem extends SubsystemBase {
   // The gyro sensor
   private final ADXRS450_Gyro gyro = new ADXRS450_Gyro();
 
-  // Odometry class for tracking robot pose
-  DifferentialDriveOdometry odometry =
-      new DifferentialDriveOdometry(
-          this.gyro.getRotation2d(),
-          frontLeftEncoder.getPosition(),
-          frontRightEncoder.getPosition());
+  // Odometry for tracking robot pose, updated by the odometry loop. Updates and resets are
+  // serialized by odometryLock so a reset is never overwritten by an update that sampled the
+  // sensors before it. The newest sample is copied to readers through a snapshot guarded by a
+  // sequence lock, so the odometry loop doesn't allocate.
+  private final Object odometryLock = new Object();
+  private final DifferentialOdometry odometry;
+  private final Notifier odometryLoop = new Notifier(this::updateOdometry);
+  private final StampedLock sampleLock = new StampedLock();
+  private final OdometrySample publishedSample = new OdometrySample();
+  // The copy periodic() reads on the robot thread
+  private final OdometrySample sample = new OdometrySample();
+  private final PoseHistory poseHistory =
+      new PoseHistory(
+          (int) Math.ceil(DriveConstants.POSE_HISTORY_SEC / DriveConstants.ODOMETRY_PERIOD_SEC));
+
+  // Closed-loop wheel speed control, used by tankDrive() in velocity drive mode and by trajectory
+  // following. The setpoints are NaN while the drive is open loop.
+  private final WheelSpeedController leftSpeedController =
+      new WheelSpeedController(TimedRobot.kDefaultPeriod);
+  private final WheelSpeedController rightSpeedController =
+      new WheelSpeedController(TimedRobot.kDefaultPeriod);
+  private volatile boolean velocityDrive = DriveConstants.USE_VELOCITY_DRIVE;
+  private double lastSpeedControlTime = Double.NEGATIVE_INFINITY;
+  private volatile double leftSpeedSetpoint = Double.NaN;
+  private volatile double rightSpeedSetpoint = Double.NaN;
 
   // drive constants
   /** The scaling factor between the joystick value and the speed controller. */
@@ -62,86 +120,443 @@ public class DriveSubsystem extends SubsystemBase {
   /** The scale factor for crawl mode. */
   private static final double CRAWL = 0.3;
 
+  // Telemetry deadbands. Changes smaller than these are not published.
+  private static final double POSITION_DEADBAND_METERS = 0.001;
+  private static final double ANGLE_DEADBAND_DEG = 0.01;
+  private static final double RATE_DEADBAND_DEG_PER_SEC = 0.1;
+  private static final double VOLTAGE_DEADBAND = 0.05;
+  private static final double CURRENT_DEADBAND = 0.1;
+  private static final double TEMPERATURE_DEADBAND = 0.5;
+  private static final double SPEED_DEADBAND = 0.01;
+
+  // Telemetry signals, published in a batch at the end of DataLogging.periodic()
+  private final TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+  private final DoubleSignal leftPositionSignal =
+      telemetry.addDouble("temp left pos", POSITION_DEADBAND_METERS);
+  private final DoubleSignal rightPositionSignal =
+      telemetry.addDouble("temp right pos", POSITION_DEADBAND_METERS);
+  private final DoubleSignal gyroAngleSignal =
+      telemetry.addDouble("temp gyro angle", ANGLE_DEADBAND_DEG);
+  private final DoubleSignal gyroRateSignal =
+      telemetry.addDouble("temp gyro rate", RATE_DEADBAND_DEG_PER_SEC);
+  private final DoubleSignal leftSpeedErrorSignal =
+      telemetry.addDouble("Drive Left Speed Error", SPEED_DEADBAND);
+  private final DoubleSignal rightSpeedErrorSignal =
+      telemetry.addDouble("Drive Right Speed Error", SPEED_DEADBAND);
+
+  // Motor controller telemetry is read in the background and cached
+  private final SignalGroup canSignals = CanSignalSampler.getInstance().createGroup("Drive", 12);
+  private final MotorSignals frontLeftSignals =
+      new MotorSignals("FL", DriveState.FRONT_LEFT, frontLeft);
+  private final MotorSignals rearLeftSignals =
+      new MotorSignals("RL", DriveState.REAR_LEFT, rearLeft);
+  private final MotorSignals frontRightSignals =
+      new MotorSignals("FR", DriveState.FRONT_RIGHT, frontRight);
+  private final MotorSignals rearRightSignals =
+      new MotorSignals("RR", DriveState.REAR_RIGHT, rearRight);
+
+  // The full drive state is logged as one time-aligned struct record per loop, written to the log
+  // file on the asynchronous log thread
+  private final DriveState state = new DriveState();
+  private final AsyncDataLog.StructEntry<DriveState> stateLog =
+      AsyncDataLog.getInstance().startStruct("/drive/state", DriveState.struct);
+
+  private final LoopProfiler profiler = LoopProfiler.getInstance();
+  private final int profilerPhase = profiler.registerPhase("Drive");
+
+  /** Sampled values and telemetry signals for a single drive motor controller. */
+  private final class MotorSignals {
+    private final int index;
+    private final Signal voltageSample;
+    private final Signal currentSample;
+    private final Signal temperatureSample;
+    private final DoubleSignal voltage;
+    private final DoubleSignal current;
+    private final DoubleSignal temperature;
+
+    MotorSignals(String prefix, int index, CANSparkMax motor) {
+      this.index = index;
+      voltageSample =
+          canSignals.add(motor::getBusVoltage, DriveConstants.VOLTAGE_SAMPLE_PERIOD_SEC);
+      currentSample =
+          canSignals.add(motor::getOutputCurrent, DriveConstants.CURRENT_SAMPLE_PERIOD_SEC);
+      temperatureSample =
+          canSignals.add(motor::getMotorTemperature, DriveConstants.TEMPERATURE_SAMPLE_PERIOD_SEC);
+      voltage = telemetry.addDouble(prefix + "-Voltage", VOLTAGE_DEADBAND);
+      current = telemetry.addDouble(prefix + "-Current", CURRENT_DEADBAND);
+      temperature = telemetry.addDouble(prefix + "-Temp", TEMPERATURE_DEADBAND);
+    }
+
+    void update() {
+      state.voltage[index] = voltageSample.get();
+      state.current[index] = currentSample.get();
+      state.temperature[index] = temperatureSample.get();
+      voltage.set(state.voltage[index]);
+      current.set(state.current[index]);
+      temperature.set(state.temperature[index]);
+    }
+  }
+
+  /** Gyro and encoder samples taken together and the pose integrated from them. */
+  private static final class OdometrySample {
+    double timestamp;
+    double gyroAngle;
+    double leftPosition;
+    double rightPosition;
+    double x;
+    double y;
+    double heading;
+
+    void copyFrom(OdometrySample other) {
+      timestamp = other.timestamp;
+      gyroAngle = other.gyroAngle;
+      leftPosition = other.leftPosition;
+      rightPosition = other.rightPosition;
+      x = other.x;
+      y = other.y;
+      heading = other.heading;
+    }
+  }
+
   /** Creates a new DriveSubsystem. */
   public DriveSubsystem() {
 
-    this.frontLeft.restoreFactoryDefaults();
-    this.frontRight.restoreFactoryDefaults();
-    this.rearLeft.restoreFactoryDefaults();
-    this.rearRight.restoreFactoryDefaults();
-
-    this.frontLeft.setIdleMode(IdleMode.kCoast);
-    this.frontRight.setIdleMode(IdleMode.kCoast);
-    this.rearLeft.setIdleMode(IdleMode.kCoast);
-    this.rearRight.setIdleMode(IdleMode.kCoast);
-
-    rearLeft.follow(frontLeft);
-    rearRight.follow(frontRight);
-
-    // Sets the distance per pulse for the encoders
-    this.frontLeftEncoder.setPositionConversionFactor(DriveConstants.ENCODER_DISTANCE_PER_PULSE);
-    this.rearLeftEncoder.setPositionConversionFactor(DriveConstants.ENCODER_DISTANCE_PER_PULSE);
-    this.frontRightEncoder.setPositionConversionFactor(DriveConstants.ENCODER_DISTANCE_PER_PULSE);
-    this.rearRightEncoder.setPositionConversionFactor(DriveConstants.ENCODER_DISTANCE_PER_PULSE);
-    this.frontLeftEncoder.setVelocityConversionFactor(DriveConstants.ENCODER_VELOCITY_CONVERSION);
-    this.rearLeftEncoder.setVelocityConversionFactor(DriveConstants.ENCODER_VELOCITY_CONVERSION);
-    this.frontRightEncoder.setVelocityConversionFactor(DriveConstants.ENCODER_VELOCITY_CONVERSION);
-    this.rearRightEncoder.setVelocityConversionFactor(DriveConstants.ENCODER_VELOCITY_CONVERSION);
-
+    // The motor controllers are configured at the same time as the other devices, after all the
+    // subsystems are created. See DeviceConfigurator.
+    CanBusBudget budget = CanBusBudget.getInstance();
+    CanBusBudget.Controller frontLeftBudget =
+        budget.addController("DriveFL", new SparkMaxFrameSetter(frontLeft));
+    CanBusBudget.Controller frontRightBudget =
+        budget.addController("DriveFR", new SparkMaxFrameSetter(frontRight));
+    CanBusBudget.Controller rearLeftBudget =
+        budget.addController("DriveRL", new SparkMaxFrameSetter(rearLeft)).follow(frontLeftBudget);
+    CanBusBudget.Controller rearRightBudget =
+        budget
+            .addController("DriveRR", new SparkMaxFrameSetter(rearRight))
+            .follow(frontRightBudget);
+
+    // The front encoders are read by the odometry loop and the speed controllers, and the rear
+    // motors only for telemetry.
+    for (CanBusBudget.Controller leader :
+        new CanBusBudget.Controller[] {frontLeftBudget, frontRightBudget}) {
+      leader
+          .need(StatusSignal.POSITION, DriveConstants.ODOMETRY_PERIOD_SEC)
+          .need(StatusSignal.VELOCITY, TimedRobot.kDefaultPeriod)
+          .commanded(TimedRobot.kDefaultPeriod);
+    }
+    for (CanBusBudget.Controller controller :
+        new CanBusBudget.Controller[] {
+          frontLeftBudget, frontRightBudget, rearLeftBudget, rearRightBudget
+        }) {
+      controller
+          .need(StatusSignal.BUS_VOLTAGE, DriveConstants.VOLTAGE_SAMPLE_PERIOD_SEC)
+          .need(StatusSignal.CURRENT, DriveConstants.CURRENT_SAMPLE_PERIOD_SEC)
+          .need(StatusSignal.TEMPERATURE, DriveConstants.TEMPERATURE_SAMPLE_PERIOD_SEC);
+    }
+
+    DeviceConfigurator configurator = DeviceConfigurator.getInstance();
+    DeviceConfigurator.Device frontLeftDevice = configurator.device("DriveFL");
+    configureMotor(frontLeftDevice, frontLeft, frontLeftEncoder)
+        .step("Status frame periods", frontLeftBudget::apply);
     // We need to invert one side of the drivetrain so that positive voltages
     // result in both sides moving forward. Depending on how your robot's
     // gearbox is constructed, you might have to invert the left side instead.
-    frontRight.setInverted(true);
+    DeviceConfigurator.Device frontRightDevice = configurator.device("DriveFR");
+    configureMotor(frontRightDevice, frontRight, frontRightEncoder)
+        .run("Invert", () -> frontRight.setInverted(true))
+        .step("Status frame periods", frontRightBudget::apply);
+    configureMotor(configurator.device("DriveRL"), rearLeft, rearLeftEncoder)
+        .step("Follow", RevSteps.ok(() -> rearLeft.follow(frontLeft)))
+        .step("Status frame periods", rearLeftBudget::apply);
+    configureMotor(configurator.device("DriveRR"), rearRight, rearRightEncoder)
+        .step("Follow", RevSteps.ok(() -> rearRight.follow(frontRight)))
+        .step("Status frame periods", rearRightBudget::apply);
+
+    configureSpeedController(leftSpeedController);
+    configureSpeedController(rightSpeedController);
 
     SmartDashboard.putData(this.drive);
+
+    // Start the odometry from the current sensor readings
+    double angle = gyro.getAngle();
+    double left = frontLeftEncoder.getPosition();
+    double right = frontRightEncoder.getPosition();
+    odometry = new DifferentialOdometry(heading(angle), left, right);
+    publish(Timer.getFPGATimestamp(), angle, left, right);
+    odometryLoop.setName("DriveOdometry");
+    // The odometry reads the front encoders
+    configurator.whenConfigured(List.of(frontLeftDevice, frontRightDevice), this::startOdometry);
   }
 
-  @Override
-  public void periodic() {
-    // Update the odometry in the periodic block
-    this.odometry.update(
-        this.gyro.getRotation2d(), frontLeftEncoder.getPosition(), frontRightEncoder.getPosition());
+  /**
+   * Add the configuration shared by all the drive motors.
+   *
+   * @param device The device to add the steps to.
+   * @param motor The motor controller.
+   * @param encoder The motor encoder.
+   * @return The device, for adding more steps.
+   */
+  private static DeviceConfigurator.Device configureMotor(
+      DeviceConfigurator.Device device, CANSparkMax motor, RelativeEncoder encoder) {
+    return device
+        .step("Restore factory defaults", RevSteps.ok(motor::restoreFactoryDefaults))
+        .step("Idle mode", RevSteps.ok(() -> motor.setIdleMode(IdleMode.kCoast)))
+        // Sets the distance per pulse for the encoders
+        .step(
+            "Position conversion",
+            RevSteps.ok(
+                () ->
+                    encoder.setPositionConversionFactor(DriveConstants.ENCODER_DISTANCE_PER_PULSE)))
+        .step(
+            "Velocity conversion",
+            RevSteps.ok(
+                () ->
+                    encoder.setVelocityConversionFactor(
+                        DriveConstants.ENCODER_VELOCITY_CONVERSION)));
+  }
+
+  /**
+   * Start the odometry loop once the encoders are configured. The odometry is restarted at the
+   * origin, because readings taken before the conversion factors were set may be in other units. If
+   * an encoder was not configured the odometry is not started.
+   */
+  private void startOdometry(List<DeviceConfigurator.Result> results) {
+    if (!DeviceConfigurator.allOk(results)) {
+      DriverStation.reportError("Drive odometry not started, " + results, false);
+      return;
+    }
+    resetOdometry(new Pose2d());
+    odometryLoop.startPeriodic(DriveConstants.ODOMETRY_PERIOD_SEC);
+  }
+
+  /** Set the wheel speed controller gains and acceleration limit. */
+  private static void configureSpeedController(WheelSpeedController controller) {
+    controller.setFeedforward(
+        DriveConstants.KS_VOLTS,
+        DriveConstants.KV_VOLTS_PER_METER_PER_SEC,
+        DriveConstants.KA_VOLTS_PER_METER_PER_SEC_SQUARED);
+    controller.setPid(
+        DriveConstants.KP_VOLTS_PER_METER_PER_SEC,
+        DriveConstants.KI_VOLTS_PER_METER,
+        DriveConstants.KD_VOLTS_PER_METER_PER_SEC_SQUARED);
+    controller.setMaxAcceleration(DriveConstants.MAX_DRIVE_ACCELERATION_METERS_PER_SEC_SQUARED);
+  }
 
-    SmartDashboard.putNumber("temp left pos", frontLeftEncoder.getPosition());
-    SmartDashboard.putNumber("temp right pos", frontRightEncoder.getPosition());
-    SmartDashboard.putNumber("temp gyro angle", gyro.getAngle());
-    SmartDashboard.putNumber("temp gyro rate", gyro.getRate());
+  /**
+   * Sample the gyro and encoders, update the odometry and publish the new pose. Runs on the
+   * odometry loop, and is public so the benchmarks can measure one update without the loop running.
+   */
+  public void updateOdometry() {
+    synchronized (odometryLock) {
+      double timestamp = Timer.getFPGATimestamp();
+      double angle = gyro.getAngle();
+      double left = frontLeftEncoder.getPosition();
+      double right = frontRightEncoder.getPosition();
+      odometry.update(heading(angle), left, right);
+      publish(timestamp, angle, left, right);
+    }
+  }
 
-    SmartDashboard.putNumber("FL-Voltage", frontLeft.getBusVoltage());
-    SmartDashboard.putNumber("FL-Current", frontLeft.getOutputCurrent());
-    SmartDashboard.putNumber("FL-Temp", frontLeft.getMotorTemperature());
+  /**
+   * Publish the sensor samples with the current odometry pose and add the pose to the history.
+   * Called with odometryLock held.
+   */
+  private void publish(double timestamp, double gyroAngle, double left, double right) {
+    long stamp = sampleLock.writeLock();
+    try {
+      publishedSample.timestamp = timestamp;
+      publishedSample.gyroAngle = gyroAngle;
+      publishedSample.leftPosition = left;
+      publishedSample.rightPosition = right;
+      publishedSample.x = odometry.getX();
+      publishedSample.y = odometry.getY();
+      publishedSample.heading = odometry.getHeading();
+    } finally {
+      sampleLock.unlockWrite(stamp);
+    }
+    poseHistory.add(timestamp, odometry.getX(), odometry.getY(), odometry.getHeading());
+  }
 
-    SmartDashboard.putNumber("RL-Voltage", rearLeft.getBusVoltage());
-    SmartDashboard.putNumber("RL-Current", rearLeft.getOutputCurrent());
-    SmartDashboard.putNumber("RL-Temp", rearLeft.getMotorTemperature());
+  /** Copy the newest odometry sample. */
+  private void readSample(OdometrySample out) {
+    long stamp = sampleLock.tryOptimisticRead();
+    out.copyFrom(publishedSample);
+    if (!sampleLock.validate(stamp)) {
+      stamp = sampleLock.readLock();
+      try {
+        out.copyFrom(publishedSample);
+      } finally {
+        sampleLock.unlockRead(stamp);
+      }
+    }
+  }
 
-    SmartDashboard.putNumber("FR-Voltage", frontRight.getBusVoltage());
-    SmartDashboard.putNumber("FR-Current", frontRight.getOutputCurrent());
-    SmartDashboard.putNumber("FR-Temp", frontRight.getMotorTemperature());
+  /**
+   * Returns the heading in radians for a gyro angle, counterclockwise positive like the gyro
+   * rotation.
+   */
+  private static double heading(double gyroAngle) {
+    return Math.toRadians(-gyroAngle);
+  }
 
-    SmartDashboard.putNumber("RR-Voltage", rearRight.getBusVoltage());
-    SmartDashboard.putNumber("RR-Current", rearRight.getOutputCurrent());
-    SmartDashboard.putNumber("RR-Temp", rearRight.getMotorTemperature());
+  @Override
+  public void periodic() {
+    profiler.startPhase(profilerPhase);
+
+    // The odometry loop has already sampled the sensors
+    readSample(sample);
+    state.pose = new Pose2d(sample.x, sample.y, new Rotation2d(sample.heading));
+    state.leftPosition = sample.leftPosition;
+    state.rightPosition = sample.rightPosition;
+    state.gyroAngle = sample.gyroAngle;
+    state.gyroRate = gyro.getRate();
+
+    leftPositionSignal.set(state.leftPosition);
+    rightPositionSignal.set(state.rightPosition);
+    gyroAngleSignal.set(state.gyroAngle);
+    gyroRateSignal.set(state.gyroRate);
+    boolean speedControlled = !Double.isNaN(leftSpeedSetpoint);
+    leftSpeedErrorSignal.set(speedControlled ? leftSpeedController.getError() : 0);
+    rightSpeedErrorSignal.set(speedControlled ? rightSpeedController.getError() : 0);
+
+    frontLeftSignals.update();
+    rearLeftSignals.update();
+    frontRightSignals.update();
+    rearRightSignals.update();
+
+    stateLog.append(state);
+
+    profiler.endPhase(profilerPhase);
   }
 
   /**
-   * Drives the robot using arcade controls.
+   * Drives the robot using tank controls. In velocity drive mode the stick positions set the wheel
+   * speeds, otherwise they set the duty cycles.
    *
    * @param leftSpeed The left joystick controller speed -1 to 1
    * @param rightSpeed The right joystick controller speed -1 to 1
+   * @param isCrawl Drive at the crawl speed
    */
   public void tankDrive(double leftSpeed, double rightSpeed, boolean isCrawl) {
     speedMultiplier = isCrawl ? CRAWL : NORMAL;
-    drive.tankDrive(leftSpeed * speedMultiplier, rightSpeed * speedMultiplier, true);
+    if (velocityDrive) {
+      double maxSpeed = DriveConstants.MAX_DRIVE_SPEED_METERS_PER_SEC * speedMultiplier;
+      setWheelSpeeds(stickToSpeed(leftSpeed) * maxSpeed, stickToSpeed(rightSpeed) * maxSpeed);
+    } else {
+      endSpeedControl();
+      drive.tankDrive(leftSpeed * speedMultiplier, rightSpeed * speedMultiplier, true);
+    }
   }
 
   /**
-   * Returns the currently-estimated pose of the robot.
+   * Select whether {@link #tankDrive(double, double, boolean)} sets wheel speeds or duty cycles.
+   * Starts as {@link DriveConstants#USE_VELOCITY_DRIVE}.
+   *
+   * @param enable True to drive the sticks with closed-loop wheel speeds.
+   */
+  public void setVelocityDrive(boolean enable) {
+    velocityDrive = enable;
+  }
+
+  /**
+   * Returns the fraction of full speed for a stick position, with the same deadband and squared
+   * response as {@link DifferentialDrive#tankDrive(double, double, boolean)}.
+   */
+  private static double stickToSpeed(double stick) {
+    double input = MathUtil.applyDeadband(stick, RobotDriveBase.kDefaultDeadband);
+    return Math.copySign(input * input, input);
+  }
+
+  /**
+   * Drives each side of the robot at a speed with closed-loop control. Call every loop; the
+   * setpoints continue from the measured speeds when this was not called in the last loop.
+   *
+   * @param leftSpeed The left wheel speed in meters per second
+   * @param rightSpeed The right wheel speed in meters per second
+   */
+  public void setWheelSpeeds(double leftSpeed, double rightSpeed) {
+    double leftMeasured = frontLeftEncoder.getVelocity();
+    double rightMeasured = frontRightEncoder.getVelocity();
+    double time = Timer.getFPGATimestamp();
+    if (time - lastSpeedControlTime > 2 * TimedRobot.kDefaultPeriod) {
+      leftSpeedController.reset(leftMeasured);
+      rightSpeedController.reset(rightMeasured);
+    }
+    lastSpeedControlTime = time;
+
+    double leftVolts = leftSpeedController.calculate(leftSpeed, leftMeasured);
+    double rightVolts = rightSpeedController.calculate(rightSpeed, rightMeasured);
+    leftSpeedSetpoint = leftSpeedController.getSetpoint();
+    rightSpeedSetpoint = rightSpeedController.getSetpoint();
+
+    // Convert to duty cycles for the measured battery voltage. When a side needs more than the
+    // battery can supply, both sides are scaled down together so the robot keeps its curvature.
+    double battery = RobotController.getBatteryVoltage();
+    double supply = Math.max(battery, Math.max(Math.abs(leftVolts), Math.abs(rightVolts)));
+    frontLeft.set(leftVolts / supply);
+    frontRight.set(rightVolts / supply);
+    drive.feed();
+
+    // The integrators stop growing while the output is limited
+    leftSpeedController.setAppliedVoltage(leftVolts * battery / supply);
+    rightSpeedController.setAppliedVoltage(rightVolts * battery / supply);
+  }
+
+  /** Stop closed-loop speed control, for when the motors are driven open loop. */
+  private void endSpeedControl() {
+    lastSpeedControlTime = Double.NEGATIVE_INFINITY;
+    leftSpeedSetpoint = Double.NaN;
+    rightSpeedSetpoint = Double.NaN;
+  }
+
+  /**
+   * Returns the left wheel speed setpoint. Safe to call from any thread.
+   *
+   * @return The setpoint in meters per second, or NaN if the drive is not speed controlled.
+   */
+  public double getLeftSpeedSetpoint() {
+    return leftSpeedSetpoint;
+  }
+
+  /**
+   * Returns the right wheel speed setpoint. Safe to call from any thread.
+   *
+   * @return The setpoint in meters per second, or NaN if the drive is not speed controlled.
+   */
+  public double getRightSpeedSetpoint() {
+    return rightSpeedSetpoint;
+  }
+
+  /**
+   * Returns the currently-estimated pose of the robot. Safe to call from any thread.
    *
    * @return The pose.
    */
   public Pose2d getPose() {
-    return this.odometry.getPoseMeters();
+    OdometrySample current = new OdometrySample();
+    readSample(current);
+    return new Pose2d(current.x, current.y, new Rotation2d(current.heading));
+  }
+
+  /**
+   * Returns the time the sensors were sampled for the current pose.
+   *
+   * @return The FPGA timestamp in seconds.
+   */
+  public double getPoseTimestamp() {
+    OdometrySample current = new OdometrySample();
+    readSample(current);
+    return current.timestamp;
+  }
+
+  /**
+   * Returns the history of recent poses, which can be searched by timestamp from any thread without
+   * allocating.
+   *
+   * @return The pose history.
+   */
+  public PoseHistory getPoseHistory() {
+    return poseHistory;
   }
 
   /**
@@ -151,7 +566,7 @@ public class DriveSubsystem extends SubsystemBase {
    */
   public DifferentialDriveWheelSpeeds getWheelSpeeds() {
     return new DifferentialDriveWheelSpeeds(
-        frontLeftEncoder.getPosition(), frontRightEncoder.getPosition());
+        frontLeftEncoder.getVelocity(), frontRightEncoder.getVelocity());
   }
 
   /**
@@ -161,22 +576,29 @@ public class DriveSubsystem extends SubsystemBase {
    * @param rightVolts the commanded right output
    */
   public void tankDriveVolts(double leftVolts, double rightVolts) {
+    endSpeedControl();
     frontLeft.setVoltage(leftVolts);
     frontRight.setVoltage(rightVolts);
     drive.feed();
   }
 
   /**
-   * Resets the odometry to the specified pose.
+   * Resets the odometry to the specified pose. Safe to call from any thread, and {@link #getPose()}
+   * returns the new pose as soon as this returns.
    *
    * @param pose The pose to which to set the odometry.
    */
   public void resetOdometry(Pose2d pose) {
-    this.odometry.resetPosition(
-        this.gyro.getRotation2d(),
-        frontLeftEncoder.getPosition(),
-        frontRightEncoder.getPosition(),
-        pose);
+    synchronized (odometryLock) {
+      double angle = gyro.getAngle();
+      double left = frontLeftEncoder.getPosition();
+      double right = frontRightEncoder.getPosition();
+      odometry.reset(
+          heading(angle), left, right, pose.getX(), pose.getY(), pose.getRotation().getRadians());
+      // Poses from before the reset are in a different frame
+      poseHistory.clear();
+      publish(Timer.getFPGATimestamp(), angle, left, right);
+    }
   }
 
   /** Resets the drive encoders to currently read a position of 0. */
@@ -229,6 +651,11 @@ public class DriveSubsystem extends SubsystemBase {
     return -this.gyro.getRate();
   }
 
+  /** Returns the period of the odometry loop in seconds. */
+  public double getOdometryPeriod() {
+    return DriveConstants.ODOMETRY_PERIOD_SEC;
+  }
+
   /* The following fields and methods are used during simulation mode.
    *  Get subsystem outputs to the real hardware to drive the simulation
    */
@@ -268,4 +695,17 @@ public class DriveSubsystem extends SubsystemBase {
   public void disable() {
     tankDriveVolts(0, 0);
   }
+
+  /** Stop the odometry loop and sampling, then release the motors and gyro. */
+  @Override
+  public void close() {
+    odometryLoop.close();
+    canSignals.close();
+    drive.close();
+    frontLeft.close();
+    rearLeft.close();
+    frontRight.close();
+    rearRight.close();
+    gyro.close();
+  }
 }
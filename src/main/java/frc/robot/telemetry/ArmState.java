@@ -0,0 +1,84 @@
+package frc.robot.telemetry;
+
+import edu.wpi.first.util.struct.Struct;
+import java.nio.ByteBuffer;
+
+/**
+ * One sample of the arm controller state, logged once per loop as a single struct record.
+ *
+ * <p>The object is mutable so the subsystem can reuse one instance every loop. Angles are in
+ * radians and rates in radians per second.
+ */
+public final class ArmState {
+
+  /** Struct serializer, registered with the DataLog schema so log viewers can decode records. */
+  public static final ArmStateStruct struct = new ArmStateStruct();
+
+  public double goal;
+  public double position;
+  public double velocity;
+  public double setpointPosition;
+  public double setpointVelocity;
+  public double pidOutput;
+  public double feedforward;
+  public double voltage;
+  public double current;
+  public boolean enabled;
+
+  /** Packs and unpacks {@link ArmState} records. */
+  public static final class ArmStateStruct implements Struct<ArmState> {
+    private static final int DOUBLE_FIELDS = 9;
+
+    @Override
+    public Class<ArmState> getTypeClass() {
+      return ArmState.class;
+    }
+
+    @Override
+    public String getTypeString() {
+      return "struct:ArmState";
+    }
+
+    @Override
+    public int getSize() {
+      return kSizeDouble * DOUBLE_FIELDS + kSizeBool;
+    }
+
+    @Override
+    public String getSchema() {
+      return "double goal;double position;double velocity;double setpointPosition;"
+          + "double setpointVelocity;double pidOutput;double feedforward;double voltage;"
+          + "double current;bool enabled";
+    }
+
+    @Override
+    public ArmState unpack(ByteBuffer bb) {
+      ArmState state = new ArmState();
+      state.goal = bb.getDouble();
+      state.position = bb.getDouble();
+      state.velocity = bb.getDouble();
+      state.setpointPosition = bb.getDouble();
+      state.setpointVelocity = bb.getDouble();
+      state.pidOutput = bb.getDouble();
+      state.feedforward = bb.getDouble();
+      state.voltage = bb.getDouble();
+      state.current = bb.getDouble();
+      state.enabled = bb.get() != 0;
+      return state;
+    }
+
+    @Override
+    public void pack(ByteBuffer bb, ArmState value) {
+      bb.putDouble(value.goal);
+      bb.putDouble(value.position);
+      bb.putDouble(value.velocity);
+      bb.putDouble(value.setpointPosition);
+      bb.putDouble(value.setpointVelocity);
+      bb.putDouble(value.pidOutput);
+      bb.putDouble(value.feedforward);
+      bb.putDouble(value.voltage);
+      bb.putDouble(value.current);
+      bb.put((byte) (value.enabled ? 1 : 0));
+    }
+  }
+}
@@ -0,0 +1,328 @@
+package frc.robot.telemetry;
+
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.struct.Struct;
+import edu.wpi.first.wpilibj.DataLogManager;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * DataLog writer that moves log I/O off the calling thread.
+ *
+ * <p>Entries are started once, usually from a constructor, and the returned id is used to append
+ * values. Appends are timestamped and placed in a preallocated {@link RecordRing}, and a dedicated
+ * writer thread drains the ring into the WPILib {@link DataLog}. Appends never block and may be
+ * made from any thread, so background threads such as samplers can log safely. When the ring is
+ * full the record is dropped and counted.
+ *
+ * <p>Struct values, and double arrays of a fixed length, are packed on the calling thread into one
+ * of a few buffers preallocated for the entry, and the writer thread returns the buffer once the
+ * record is written, so appending a struct does not allocate either.
+ *
+ * <pre>{@code
+ * private final AsyncDataLog log = AsyncDataLog.getInstance();
+ * private final int loopTimeEntry = log.startDouble("/robot/LoopTime");
+ *
+ * public void periodic() {
+ *   log.appendDouble(loopTimeEntry, loopTime);
+ * }
+ * }</pre>
+ */
+public final class AsyncDataLog {
+
+  private static final int RING_CAPACITY = 4096;
+  private static final int MAX_DRAIN_RECORDS = 256;
+  private static final long IDLE_PARK_NANOS = 1_000_000;
+  private static final int STRUCT_BUFFERS = 8;
+
+  private final DataLog log;
+  private final RecordRing ring = new RecordRing(RING_CAPACITY);
+  private final int messageEntry;
+  private final RecordRing.RecordHandler writer = this::write;
+  private final AtomicLong droppedStructs = new AtomicLong();
+  private final Thread thread;
+  private volatile boolean running = true;
+
+  /**
+   * Create a writer and start its thread. Most code should use {@link #getInstance()}.
+   *
+   * @param log The DataLog to write to.
+   */
+  public AsyncDataLog(DataLog log) {
+    this.log = log;
+    // Shares the entry used by DataLogManager.log() so messages from both appear together
+    messageEntry = log.start("messages", "string");
+
+    thread = new Thread(this::run, "AsyncDataLog");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private static class InstanceHolder {
+    private static final AsyncDataLog instance = new AsyncDataLog(DataLogManager.getLog());
+  }
+
+  /**
+   * Gets the asynchronous data log Singleton object.
+   *
+   * @return AsyncDataLog
+   */
+  public static AsyncDataLog getInstance() {
+    return InstanceHolder.instance;
+  }
+
+  /** Returns the DataLog written to, for entries that are written directly. */
+  public DataLog getDataLog() {
+    return log;
+  }
+
+  /**
+   * Start a double entry.
+   *
+   * @param name The entry name.
+   * @return The entry id to append with.
+   */
+  public int startDouble(String name) {
+    return log.start(name, "double");
+  }
+
+  /**
+   * Start an integer entry.
+   *
+   * @param name The entry name.
+   * @return The entry id to append with.
+   */
+  public int startInteger(String name) {
+    return log.start(name, "int64");
+  }
+
+  /**
+   * Start a boolean entry.
+   *
+   * @param name The entry name.
+   * @return The entry id to append with.
+   */
+  public int startBoolean(String name) {
+    return log.start(name, "boolean");
+  }
+
+  /**
+   * Start a string entry.
+   *
+   * @param name The entry name.
+   * @return The entry id to append with.
+   */
+  public int startString(String name) {
+    return log.start(name, "string");
+  }
+
+  /**
+   * Start a struct entry.
+   *
+   * @param <T> The struct type.
+   * @param name The entry name.
+   * @param struct Packs the values.
+   * @return The entry to append with.
+   */
+  public <T> StructEntry<T> startStruct(String name, Struct<T> struct) {
+    log.addSchema(struct);
+    return new StructEntry<>(
+        log.start(name, struct.getTypeString()), struct.getSize(), struct::pack);
+  }
+
+  /**
+   * Start a double array entry whose values always have the same length. The arrays are written
+   * from preallocated buffers, like struct values.
+   *
+   * @param name The entry name.
+   * @param length The number of values in each array.
+   * @return The entry to append with.
+   */
+  public StructEntry<double[]> startDoubleArray(String name, int length) {
+    return new StructEntry<>(
+        log.start(name, "double[]"),
+        length * Double.BYTES,
+        (data, values) -> {
+          for (int i = 0; i < length; i++) {
+            data.putDouble(values[i]);
+          }
+        });
+  }
+
+  /**
+   * Append a double value with the current time.
+   *
+   * @param entry The id returned by {@link #startDouble(String)}.
+   * @param value The value.
+   */
+  public void appendDouble(int entry, double value) {
+    ring.offer(
+        entry, RecordRing.TYPE_DOUBLE, Double.doubleToRawLongBits(value), null, WPIUtilJNI.now());
+  }
+
+  /**
+   * Append an integer value with the current time.
+   *
+   * @param entry The id returned by {@link #startInteger(String)}.
+   * @param value The value.
+   */
+  public void appendInteger(int entry, long value) {
+    ring.offer(entry, RecordRing.TYPE_INTEGER, value, null, WPIUtilJNI.now());
+  }
+
+  /**
+   * Append a boolean value with the current time.
+   *
+   * @param entry The id returned by {@link #startBoolean(String)}.
+   * @param value The value.
+   */
+  public void appendBoolean(int entry, boolean value) {
+    ring.offer(entry, RecordRing.TYPE_BOOLEAN, value ? 1 : 0, null, WPIUtilJNI.now());
+  }
+
+  /**
+   * Append a string value with the current time.
+   *
+   * @param entry The id returned by {@link #startString(String)}.
+   * @param value The value.
+   */
+  public void appendString(int entry, String value) {
+    ring.offer(entry, RecordRing.TYPE_STRING, 0, value, WPIUtilJNI.now());
+  }
+
+  /**
+   * Log a message to the "messages" entry and print it to the console, in place of {@link
+   * DataLogManager#log(String)}. Both happen on the writer thread.
+   *
+   * @param message The message.
+   */
+  public void log(String message) {
+    appendString(messageEntry, message);
+  }
+
+  /**
+   * Returns the number of records dropped because the ring was full or a struct entry had no free
+   * buffer.
+   */
+  public long getDroppedCount() {
+    return ring.getDroppedCount() + droppedStructs.get();
+  }
+
+  /** Returns the largest number of records that have been waiting to be written at once. */
+  public long getHighWaterMark() {
+    return ring.getHighWaterMark();
+  }
+
+  /**
+   * Write the records already appended, stop the writer thread and flush the DataLog. Records
+   * appended after this are not written.
+   */
+  public void close() {
+    running = false;
+    LockSupport.unpark(thread);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    log.flush();
+  }
+
+  private void run() {
+    while (running) {
+      if (ring.drain(writer, MAX_DRAIN_RECORDS) == 0) {
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    }
+    while (ring.drain(writer, MAX_DRAIN_RECORDS) > 0) {
+      // Write what was appended before closing
+    }
+  }
+
+  private void write(int entry, byte type, long payload, Object message, long timestamp) {
+    switch (type) {
+      case RecordRing.TYPE_DOUBLE:
+        log.appendDouble(entry, Double.longBitsToDouble(payload), timestamp);
+        break;
+      case RecordRing.TYPE_INTEGER:
+        log.appendInteger(entry, payload, timestamp);
+        break;
+      case RecordRing.TYPE_BOOLEAN:
+        log.appendBoolean(entry, payload != 0, timestamp);
+        break;
+      case RecordRing.TYPE_STRING:
+        log.appendString(entry, (String) message, timestamp);
+        if (entry == messageEntry) {
+          System.out.println(message);
+        }
+        break;
+      case RecordRing.TYPE_RAW:
+        StructBuffer buffer = (StructBuffer) message;
+        log.appendRaw(entry, buffer.bytes, timestamp);
+        buffer.release();
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * A struct or fixed length array entry, which packs values into buffers that the writer thread
+   * gives back.
+   */
+  public final class StructEntry<T> {
+    private final int entry;
+    private final BiConsumer<ByteBuffer, T> packer;
+    private final ArrayBlockingQueue<StructBuffer> free = new ArrayBlockingQueue<>(STRUCT_BUFFERS);
+
+    private StructEntry(int entry, int size, BiConsumer<ByteBuffer, T> packer) {
+      this.entry = entry;
+      this.packer = packer;
+      for (int i = 0; i < STRUCT_BUFFERS; i++) {
+        free.add(new StructBuffer(size, free));
+      }
+    }
+
+    /**
+     * Append a value with the current time. The value is packed before this returns, so it may be
+     * reused. The value is dropped if every buffer is still waiting to be written.
+     *
+     * @param value The value.
+     */
+    public void append(T value) {
+      StructBuffer buffer = free.poll();
+      if (buffer == null) {
+        droppedStructs.incrementAndGet();
+        return;
+      }
+      buffer.data.clear();
+      packer.accept(buffer.data, value);
+      if (!ring.offer(entry, RecordRing.TYPE_RAW, 0, buffer, WPIUtilJNI.now())) {
+        buffer.release();
+      }
+    }
+  }
+
+  /** A preallocated buffer for one packed struct value. */
+  private static final class StructBuffer {
+    private final byte[] bytes;
+    private final ByteBuffer data;
+    private final ArrayBlockingQueue<StructBuffer> pool;
+
+    StructBuffer(int size, ArrayBlockingQueue<StructBuffer> pool) {
+      bytes = new byte[size];
+      data = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+      this.pool = pool;
+    }
+
+    /** Give the buffer back to its entry. */
+    void release() {
+      pool.offer(this);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package frc.robot.telemetry;
+
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.util.datalog.IntegerArrayLogEntry;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Structured, allocation-free log of command scheduler events.
+ *
+ * <p>The first time a command is seen it is assigned an integer id and a {@code "<id>,<name>"}
+ * record is written to {@code /command/dictionary}. Ids are assigned per command object, so
+ * commands that share a name, such as two instances of the same factory, are counted separately and
+ * each has its own dictionary record. Initialize, interrupt and finish events are written to {@code
+ * /command/event} as a single integer: {@code (id << 2) | event}, using the {@code EVENT_}
+ * constants in this class. Execute calls are only counted in memory and once per second {@code
+ * /command/executeCounts} is written with the number of execute calls for each id in that second,
+ * indexed by id.
+ *
+ * <p>Dictionary and event records are written by the {@link AsyncDataLog} thread. The execute
+ * counts are written directly since the array is reused and only written once per second.
+ */
+public final class CommandEventLog {
+
+  /** Event code for a command being initialized. */
+  public static final int EVENT_INITIALIZE = 0;
+
+  /** Event code for a command being interrupted. */
+  public static final int EVENT_INTERRUPT = 1;
+
+  /** Event code for a command finishing normally. */
+  public static final int EVENT_FINISH = 2;
+
+  /** Number of low bits of an event record that hold the event code. */
+  public static final int EVENT_BITS = 2;
+
+  private static final long COUNT_PERIOD_MICROS = 1_000_000;
+
+  private final AsyncDataLog asyncLog;
+  private final int dictionaryEntry;
+  private final int eventEntry;
+  private final IntegerArrayLogEntry executeLog;
+
+  private final Map<Command, Integer> ids = new IdentityHashMap<>();
+  private long[] executeCounts = new long[0];
+  private long lastCountTime;
+
+  /**
+   * Create the command log entries.
+   *
+   * @param asyncLog The asynchronous writer of the DataLog to write to.
+   */
+  public CommandEventLog(AsyncDataLog asyncLog) {
+    this.asyncLog = asyncLog;
+    DataLog log = asyncLog.getDataLog();
+    dictionaryEntry = log.start("/command/dictionary", "string", "id,name");
+    eventEntry =
+        log.start(
+            "/command/event", "int64", "(id<<2)|event; event 0=initialize 1=interrupt 2=finish");
+    executeLog = new IntegerArrayLogEntry(log, "/command/executeCounts", "executes/s by id");
+    lastCountTime = RobotController.getFPGATime();
+  }
+
+  /**
+   * Register the event callbacks with a command scheduler.
+   *
+   * @param scheduler The scheduler to log events from.
+   */
+  public void attach(CommandScheduler scheduler) {
+    scheduler.onCommandInitialize(command -> logEvent(command, EVENT_INITIALIZE));
+    scheduler.onCommandInterrupt(command -> logEvent(command, EVENT_INTERRUPT));
+    scheduler.onCommandFinish(command -> logEvent(command, EVENT_FINISH));
+    scheduler.onCommandExecute(this::countExecute);
+  }
+
+  /**
+   * Writes the execute counts once per second. Call from {@code DataLogging.periodic()}.
+   *
+   * <p>The counts array is only reallocated when a new command is seen.
+   */
+  public void periodic() {
+    long now = RobotController.getFPGATime();
+    if (now - lastCountTime < COUNT_PERIOD_MICROS) {
+      return;
+    }
+    lastCountTime = now;
+
+    if (executeCounts.length > 0) {
+      executeLog.append(executeCounts);
+      Arrays.fill(executeCounts, 0);
+    }
+  }
+
+  private void logEvent(Command command, int event) {
+    asyncLog.appendInteger(eventEntry, ((long) getId(command) << EVENT_BITS) | event);
+  }
+
+  private void countExecute(Command command) {
+    executeCounts[getId(command)]++;
+  }
+
+  private int getId(Command command) {
+    Integer id = ids.get(command);
+    if (id == null) {
+      id = ids.size();
+      ids.put(command, id);
+      executeCounts = Arrays.copyOf(executeCounts, id + 1);
+      asyncLog.appendString(dictionaryEntry, id + "," + command.getName());
+    }
+    return id;
+  }
+}
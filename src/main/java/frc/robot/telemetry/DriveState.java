@@ -0,0 +1,102 @@
+package frc.robot.telemetry;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.util.struct.Struct;
+import java.nio.ByteBuffer;
+
+/**
+ * One sample of the drivetrain state, logged once per loop as a single struct record.
+ *
+ * <p>The object is mutable so the subsystem can reuse one instance every loop. The motor arrays are
+ * indexed by the {@code FRONT_LEFT} to {@code REAR_RIGHT} constants. Positions are in meters and
+ * the gyro in degrees.
+ */
+public final class DriveState {
+
+  /** Struct serializer, registered with the DataLog schema so log viewers can decode records. */
+  public static final DriveStateStruct struct = new DriveStateStruct();
+
+  public static final int FRONT_LEFT = 0;
+  public static final int REAR_LEFT = 1;
+  public static final int FRONT_RIGHT = 2;
+  public static final int REAR_RIGHT = 3;
+  public static final int MOTOR_COUNT = 4;
+
+  public Pose2d pose = new Pose2d();
+  public double leftPosition;
+  public double rightPosition;
+  public double gyroAngle;
+  public double gyroRate;
+  public final double[] voltage = new double[MOTOR_COUNT];
+  public final double[] current = new double[MOTOR_COUNT];
+  public final double[] temperature = new double[MOTOR_COUNT];
+
+  /** Packs and unpacks {@link DriveState} records. */
+  public static final class DriveStateStruct implements Struct<DriveState> {
+    private static final int DOUBLE_FIELDS = 4 + 3 * MOTOR_COUNT;
+
+    @Override
+    public Class<DriveState> getTypeClass() {
+      return DriveState.class;
+    }
+
+    @Override
+    public String getTypeString() {
+      return "struct:DriveState";
+    }
+
+    @Override
+    public int getSize() {
+      return Pose2d.struct.getSize() + kSizeDouble * DOUBLE_FIELDS;
+    }
+
+    @Override
+    public String getSchema() {
+      return "Pose2d pose;double leftPosition;double rightPosition;double gyroAngle;"
+          + "double gyroRate;double voltage[4];double current[4];double temperature[4]";
+    }
+
+    @Override
+    public Struct<?>[] getNested() {
+      return new Struct<?>[] {Pose2d.struct};
+    }
+
+    @Override
+    public DriveState unpack(ByteBuffer bb) {
+      DriveState state = new DriveState();
+      state.pose = Pose2d.struct.unpack(bb);
+      state.leftPosition = bb.getDouble();
+      state.rightPosition = bb.getDouble();
+      state.gyroAngle = bb.getDouble();
+      state.gyroRate = bb.getDouble();
+      unpackArray(bb, state.voltage);
+      unpackArray(bb, state.current);
+      unpackArray(bb, state.temperature);
+      return state;
+    }
+
+    @Override
+    public void pack(ByteBuffer bb, DriveState value) {
+      Pose2d.struct.pack(bb, value.pose);
+      bb.putDouble(value.leftPosition);
+      bb.putDouble(value.rightPosition);
+      bb.putDouble(value.gyroAngle);
+      bb.putDouble(value.gyroRate);
+      packArray(bb, value.voltage);
+      packArray(bb, value.current);
+      packArray(bb, value.temperature);
+    }
+
+    private static void unpackArray(ByteBuffer bb, double[] values) {
+      for (int i = 0; i < values.length; i++) {
+        values[i] = bb.getDouble();
+      }
+    }
+
+    private static void packArray(ByteBuffer bb, double[] values) {
+      for (double value : values) {
+        bb.putDouble(value);
+      }
+    }
+  }
+}
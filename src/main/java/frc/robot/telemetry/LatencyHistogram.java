@@ -0,0 +1,99 @@
+package frc.robot.telemetry;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-bucket histogram of durations in microseconds. All storage is allocated in the constructor
+ * so recording a sample never allocates. Samples beyond the last bucket are counted in an overflow
+ * bucket and still update the maximum.
+ */
+public final class LatencyHistogram {
+
+  private final long bucketWidthMicros;
+  private final long budgetMicros;
+  // The last element is the overflow bucket
+  private final long[] counts;
+  private long sampleCount;
+  private long maxMicros;
+  private long overBudgetCount;
+
+  /**
+   * Create a histogram.
+   *
+   * @param bucketWidthMicros The width of each bucket in microseconds.
+   * @param bucketCount The number of buckets, not counting the overflow bucket.
+   * @param budgetMicros Samples longer than this are counted as overruns.
+   */
+  public LatencyHistogram(long bucketWidthMicros, int bucketCount, long budgetMicros) {
+    if (bucketWidthMicros <= 0 || bucketCount <= 0) {
+      throw new IllegalArgumentException("Bucket width and count must be positive");
+    }
+    this.bucketWidthMicros = bucketWidthMicros;
+    this.budgetMicros = budgetMicros;
+    this.counts = new long[bucketCount + 1];
+  }
+
+  /**
+   * Record a sample.
+   *
+   * @param micros The duration in microseconds.
+   */
+  public void record(long micros) {
+    long value = Math.max(micros, 0);
+    int bucket = (int) Math.min(value / bucketWidthMicros, counts.length - 1L);
+    counts[bucket]++;
+    sampleCount++;
+    if (value > maxMicros) {
+      maxMicros = value;
+    }
+    if (value > budgetMicros) {
+      overBudgetCount++;
+    }
+  }
+
+  /**
+   * Returns an upper bound for the given percentile. The result is the upper edge of the bucket
+   * holding the percentile sample, or the maximum if that sample is in the overflow bucket or the
+   * maximum is lower.
+   *
+   * @param fraction The percentile as a fraction from 0 to 1.
+   * @return The percentile in microseconds, or 0 if there are no samples.
+   */
+  public long getPercentile(double fraction) {
+    if (sampleCount == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(fraction * sampleCount));
+    long seen = 0;
+    for (int i = 0; i < counts.length - 1; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min((i + 1) * bucketWidthMicros, maxMicros);
+      }
+    }
+    return maxMicros;
+  }
+
+  /** Returns the largest sample in microseconds. */
+  public long getMax() {
+    return maxMicros;
+  }
+
+  /** Returns the number of samples recorded. */
+  public long getCount() {
+    return sampleCount;
+  }
+
+  /** Returns the number of samples that exceeded the budget. */
+  public long getOverBudgetCount() {
+    return overBudgetCount;
+  }
+
+  /** Clear all samples. */
+  public void reset() {
+    Arrays.fill(counts, 0);
+    sampleCount = 0;
+    maxMicros = 0;
+    overBudgetCount = 0;
+  }
+}
@@ -0,0 +1,232 @@
+package frc.robot.telemetry;
+
+import edu.wpi.first.wpilibj.TimedRobot;
+import frc.robot.Constants;
+import frc.robot.telemetry.TelemetryPublisher.DoubleSignal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Times each phase of the robot loop and reports latency statistics.
+ *
+ * <p>Each phase keeps a {@link LatencyHistogram}. Once per second the p50, p99 and maximum of every
+ * phase, the number of samples over the phase budget, and the start-to-start loop period jitter are
+ * written to the DataLog under {@code /profiler} and published to NetworkTables under {@code
+ * SmartDashboard/Profiler}. Recording a sample does not allocate, and the DataLog records are
+ * written by the {@link AsyncDataLog} thread.
+ *
+ * <p>Phases are registered once and then timed with their id:
+ *
+ * <pre>{@code
+ * private final LoopProfiler profiler = LoopProfiler.getInstance();
+ * private final int profilerPhase = profiler.registerPhase("Arm");
+ *
+ * public void periodic() {
+ *   profiler.startPhase(profilerPhase);
+ *   ...
+ *   profiler.endPhase(profilerPhase);
+ * }
+ * }</pre>
+ *
+ * <p>Phases may be nested, for example the scheduler phase includes the subsystem phases. This
+ * class should only be used from the robot main thread.
+ */
+public final class LoopProfiler {
+
+  /** The budget used for phases registered without one. */
+  public static final double DEFAULT_PHASE_BUDGET_SECONDS = 0.002;
+
+  private static final double REPORT_PERIOD_SECONDS = 1.0;
+  private static final int MAX_PHASES = 16;
+  private static final long BUCKET_WIDTH_MICROS = 50;
+  private static final int BUCKET_COUNT = 1000;
+  private static final long NANOS_PER_MICRO = 1000;
+  private static final double MICROS_PER_MS = 1000.0;
+  // Loop periods longer than nominal by more than this are counted as late
+  private static final long PERIOD_TOLERANCE_MICROS = 1000;
+
+  private final boolean enabled = Constants.LOOP_TIMING_LOG;
+  private final long nominalPeriodMicros = (long) (TimedRobot.kDefaultPeriod * 1e6);
+  private final long reportPeriodNanos = (long) (REPORT_PERIOD_SECONDS * 1e9);
+
+  private final Map<String, Integer> phaseIds = new HashMap<>();
+  private final PhaseStats[] phases = new PhaseStats[MAX_PHASES];
+  private final long[] phaseStartNanos = new long[MAX_PHASES];
+  private int phaseCount;
+
+  private final PhaseStats loopStats;
+  private final PhaseStats periodStats;
+  private final int jitterEntry;
+  private final DoubleSignal jitterSignal;
+  private long maxJitterMicros;
+
+  private long loopStartNanos;
+  private long lastLoopStartNanos;
+  private long reportStartNanos;
+
+  private LoopProfiler() {
+    loopStats = new PhaseStats("Loop", nominalPeriodMicros);
+    periodStats = new PhaseStats("Period", nominalPeriodMicros + PERIOD_TOLERANCE_MICROS);
+    jitterEntry = AsyncDataLog.getInstance().startDouble("/profiler/Period/maxJitterMs");
+    jitterSignal = TelemetryPublisher.getInstance().addDouble("Profiler/Period/maxJitterMs", 0);
+    reportStartNanos = System.nanoTime();
+  }
+
+  private static class InstanceHolder {
+    private static final LoopProfiler instance = new LoopProfiler();
+  }
+
+  /**
+   * Gets the loop profiler Singleton object.
+   *
+   * @return LoopProfiler
+   */
+  public static LoopProfiler getInstance() {
+    return InstanceHolder.instance;
+  }
+
+  /**
+   * Register a phase with the default budget, or return the id of an existing phase with the same
+   * name.
+   *
+   * @param name The name of the phase.
+   * @return The id used to time the phase.
+   */
+  public int registerPhase(String name) {
+    return registerPhase(name, DEFAULT_PHASE_BUDGET_SECONDS);
+  }
+
+  /**
+   * Register a phase, or return the id of an existing phase with the same name.
+   *
+   * @param name The name of the phase.
+   * @param budgetSeconds Samples longer than this are counted as overruns.
+   * @return The id used to time the phase.
+   */
+  public int registerPhase(String name, double budgetSeconds) {
+    Integer existing = phaseIds.get(name);
+    if (existing != null) {
+      return existing;
+    }
+    if (phaseCount >= MAX_PHASES) {
+      throw new IllegalStateException("Too many profiler phases: " + name);
+    }
+    int id = phaseCount++;
+    phases[id] = new PhaseStats(name, (long) (budgetSeconds * 1e6));
+    phaseIds.put(name, id);
+    return id;
+  }
+
+  /**
+   * Mark the start of a phase.
+   *
+   * @param id The id returned by {@link #registerPhase(String)}.
+   */
+  public void startPhase(int id) {
+    if (enabled) {
+      phaseStartNanos[id] = System.nanoTime();
+    }
+  }
+
+  /**
+   * Mark the end of a phase and record its duration.
+   *
+   * @param id The id returned by {@link #registerPhase(String)}.
+   */
+  public void endPhase(int id) {
+    if (enabled) {
+      phases[id].histogram.record((System.nanoTime() - phaseStartNanos[id]) / NANOS_PER_MICRO);
+    }
+  }
+
+  /** Mark the start of a robot loop. Call before anything else runs in the loop. */
+  public void startLoop() {
+    if (!enabled) {
+      return;
+    }
+    loopStartNanos = System.nanoTime();
+    if (lastLoopStartNanos != 0) {
+      long periodMicros = (loopStartNanos - lastLoopStartNanos) / NANOS_PER_MICRO;
+      periodStats.histogram.record(periodMicros);
+      maxJitterMicros = Math.max(maxJitterMicros, Math.abs(periodMicros - nominalPeriodMicros));
+    }
+    lastLoopStartNanos = loopStartNanos;
+  }
+
+  /** Mark the end of a robot loop. Statistics are reported once per second from here. */
+  public void endLoop() {
+    if (!enabled) {
+      return;
+    }
+    long now = System.nanoTime();
+    loopStats.histogram.record((now - loopStartNanos) / NANOS_PER_MICRO);
+
+    if (now - reportStartNanos >= reportPeriodNanos) {
+      report();
+      reportStartNanos = now;
+    }
+  }
+
+  private void report() {
+    loopStats.report();
+    periodStats.report();
+    for (int i = 0; i < phaseCount; i++) {
+      phases[i].report();
+    }
+
+    double jitterMs = maxJitterMicros / MICROS_PER_MS;
+    AsyncDataLog.getInstance().appendDouble(jitterEntry, jitterMs);
+    jitterSignal.set(jitterMs);
+    maxJitterMicros = 0;
+  }
+
+  /** The histogram and report destinations for one phase. */
+  private static final class PhaseStats {
+    final LatencyHistogram histogram;
+    final AsyncDataLog log = AsyncDataLog.getInstance();
+    final int p50Entry;
+    final int p99Entry;
+    final int maxEntry;
+    final int overrunEntry;
+    final DoubleSignal p50Signal;
+    final DoubleSignal p99Signal;
+    final DoubleSignal maxSignal;
+    final DoubleSignal overrunSignal;
+
+    PhaseStats(String name, long budgetMicros) {
+      histogram = new LatencyHistogram(BUCKET_WIDTH_MICROS, BUCKET_COUNT, budgetMicros);
+
+      String logPrefix = "/profiler/" + name + "/";
+      p50Entry = log.startDouble(logPrefix + "p50Ms");
+      p99Entry = log.startDouble(logPrefix + "p99Ms");
+      maxEntry = log.startDouble(logPrefix + "maxMs");
+      overrunEntry = log.startInteger(logPrefix + "overruns");
+
+      TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+      String ntPrefix = "Profiler/" + name + "/";
+      p50Signal = telemetry.addDouble(ntPrefix + "p50Ms", 0);
+      p99Signal = telemetry.addDouble(ntPrefix + "p99Ms", 0);
+      maxSignal = telemetry.addDouble(ntPrefix + "maxMs", 0);
+      overrunSignal = telemetry.addDouble(ntPrefix + "overruns", 0);
+    }
+
+    void report() {
+      double p50 = histogram.getPercentile(0.5) / MICROS_PER_MS;
+      double p99 = histogram.getPercentile(0.99) / MICROS_PER_MS;
+      double max = histogram.getMax() / MICROS_PER_MS;
+      long overruns = histogram.getOverBudgetCount();
+
+      log.appendDouble(p50Entry, p50);
+      log.appendDouble(p99Entry, p99);
+      log.appendDouble(maxEntry, max);
+      log.appendInteger(overrunEntry, overruns);
+
+      p50Signal.set(p50);
+      p99Signal.set(p99);
+      maxSignal.set(max);
+      overrunSignal.set(overruns);
+
+      histogram.reset();
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package frc.robot.telemetry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free, multi-producer single-consumer ring of primitive log records.
+ *
+ * <p>Each record is a timestamp, an entry id, a type code and a 64 bit payload, plus an optional
+ * object for string and raw records. All slots are allocated in the constructor and each slot has a
+ * sequence number that producers and the consumer use to hand it over, so {@link #offer} never
+ * blocks and never allocates. When the ring is full the record is dropped and counted.
+ */
+public final class RecordRing {
+
+  /** Payload holds the raw bits of a double. */
+  public static final byte TYPE_DOUBLE = 0;
+
+  /** Payload holds a long. */
+  public static final byte TYPE_INTEGER = 1;
+
+  /** Payload is 1 for true and 0 for false. */
+  public static final byte TYPE_BOOLEAN = 2;
+
+  /** The message object holds a String. */
+  public static final byte TYPE_STRING = 3;
+
+  /** The message object holds bytes owned by the producer until the record is drained. */
+  public static final byte TYPE_RAW = 4;
+
+  /** Receives records drained from the ring. */
+  @FunctionalInterface
+  public interface RecordHandler {
+    /**
+     * Handle one record.
+     *
+     * @param entry The entry id.
+     * @param type The type code.
+     * @param payload The primitive payload.
+     * @param message The message for string and raw records, otherwise null.
+     * @param timestamp The timestamp supplied by the producer.
+     */
+    void accept(int entry, byte type, long payload, Object message, long timestamp);
+  }
+
+  private final int capacity;
+  private final int mask;
+  private final AtomicLongArray sequences;
+  private final long[] timestamps;
+  private final int[] entries;
+  private final byte[] types;
+  private final long[] payloads;
+  private final Object[] messages;
+
+  private final AtomicLong tail = new AtomicLong();
+  private volatile long head;
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong highWaterMark = new AtomicLong();
+
+  /**
+   * Create a ring.
+   *
+   * @param capacity The number of records, rounded up to a power of two.
+   */
+  public RecordRing(int capacity) {
+    if (capacity <= 0 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("Invalid ring capacity " + capacity);
+    }
+    this.capacity = nextPowerOfTwo(capacity);
+    mask = this.capacity - 1;
+    sequences = new AtomicLongArray(this.capacity);
+    for (int i = 0; i < this.capacity; i++) {
+      sequences.set(i, i);
+    }
+    timestamps = new long[this.capacity];
+    entries = new int[this.capacity];
+    types = new byte[this.capacity];
+    payloads = new long[this.capacity];
+    messages = new Object[this.capacity];
+  }
+
+  private static int nextPowerOfTwo(int value) {
+    int power = Integer.highestOneBit(value);
+    return power == value ? value : power << 1;
+  }
+
+  /**
+   * Add a record. Safe to call from any number of threads.
+   *
+   * @param entry The entry id.
+   * @param type The type code.
+   * @param payload The primitive payload.
+   * @param message The message for string and raw records, otherwise null.
+   * @param timestamp The record timestamp.
+   * @return False if the ring was full and the record was dropped.
+   */
+  public boolean offer(int entry, byte type, long payload, Object message, long timestamp) {
+    long position = tail.get();
+    int index;
+    while (true) {
+      index = (int) (position & mask);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          break;
+        }
+        position = tail.get();
+      } else if (difference < 0) {
+        // The consumer has not freed this slot yet, so the ring is full
+        droppedCount.incrementAndGet();
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+
+    timestamps[index] = timestamp;
+    entries[index] = entry;
+    types[index] = type;
+    payloads[index] = payload;
+    messages[index] = message;
+    // Publishes the slot contents to the consumer
+    sequences.set(index, position + 1);
+
+    long used = position + 1 - head;
+    long mark = highWaterMark.get();
+    while (used > mark && !highWaterMark.compareAndSet(mark, used)) {
+      mark = highWaterMark.get();
+    }
+    return true;
+  }
+
+  /**
+   * Remove records and pass them to the handler. Must only be called from one thread.
+   *
+   * @param handler Receives each record in order.
+   * @param maxRecords The maximum number of records to remove.
+   * @return The number of records removed.
+   */
+  public int drain(RecordHandler handler, int maxRecords) {
+    int drained = 0;
+    long position = head;
+    while (drained < maxRecords) {
+      int index = (int) (position & mask);
+      if (sequences.get(index) != position + 1) {
+        break;
+      }
+      Object message = messages[index];
+      messages[index] = null;
+      handler.accept(entries[index], types[index], payloads[index], message, timestamps[index]);
+      // Frees the slot for the producer one lap later
+      sequences.set(index, position + capacity);
+      position++;
+      head = position;
+      drained++;
+    }
+    return drained;
+  }
+
+  /** Returns the number of slots in the ring. */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /** Returns the number of records dropped because the ring was full. */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /** Returns the largest number of records that have been waiting in the ring at once. */
+  public long getHighWaterMark() {
+    return highWaterMark.get();
+  }
+}
@@ -0,0 +1,220 @@
+package frc.robot.telemetry;
+
+import edu.wpi.first.networktables.BooleanPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTablesJNI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Change-detecting telemetry publisher used in place of per-loop {@code SmartDashboard.put*} calls.
+ *
+ * <p>Each signal resolves its typed NetworkTables publisher once, when it is added. Subsystems set
+ * signal values from their {@code periodic()} methods, and {@link #flush()} publishes every value
+ * that moved outside its deadband in one batch with a shared timestamp. Values that stayed inside
+ * the deadband are skipped and counted so the savings can be monitored.
+ *
+ * <p>Signals are published in the SmartDashboard table so existing dashboards and tests keep
+ * working. This class is not thread safe and should only be used from the robot main thread.
+ *
+ * <pre>{@code
+ * private final DoubleSignal angleSignal =
+ *     TelemetryPublisher.getInstance().addDouble("Arm Angle", 0.01);
+ *
+ * public void periodic() {
+ *   angleSignal.set(Units.radiansToDegrees(getMeasurement()));
+ * }
+ * }</pre>
+ */
+public final class TelemetryPublisher {
+
+  private static final String SIGNAL_TABLE = "SmartDashboard";
+  private static final String STATS_TABLE = "Telemetry";
+
+  private final NetworkTable table;
+  private final Map<String, Signal> signalsByName = new HashMap<>();
+  private final List<Signal> signals = new ArrayList<>();
+
+  private final IntegerPublisher publishCountPublisher;
+  private final IntegerPublisher skipCountPublisher;
+  private long publishCount;
+  private long skipCount;
+
+  private TelemetryPublisher() {
+    NetworkTableInstance inst = NetworkTableInstance.getDefault();
+    table = inst.getTable(SIGNAL_TABLE);
+
+    NetworkTable statsTable = inst.getTable(STATS_TABLE);
+    publishCountPublisher = statsTable.getIntegerTopic("PublishCount").publish();
+    skipCountPublisher = statsTable.getIntegerTopic("SkipCount").publish();
+  }
+
+  private static class InstanceHolder {
+    private static final TelemetryPublisher instance = new TelemetryPublisher();
+  }
+
+  /**
+   * Gets the telemetry publisher Singleton object.
+   *
+   * @return TelemetryPublisher
+   */
+  public static TelemetryPublisher getInstance() {
+    return InstanceHolder.instance;
+  }
+
+  /**
+   * Add a numeric signal, or return the existing signal if one with the same name was already
+   * added. A new value is only published when it differs from the last published value by more than
+   * the deadband.
+   *
+   * @param name The key in the SmartDashboard table.
+   * @param deadband The change from the last published value that is ignored. Use 0 to publish
+   *     every change.
+   * @return The signal to set values on.
+   */
+  public DoubleSignal addDouble(String name, double deadband) {
+    Signal existing = signalsByName.get(name);
+    if (existing != null) {
+      return (DoubleSignal) existing;
+    }
+    DoubleSignal signal = new DoubleSignal(table.getDoubleTopic(name).publish(), deadband);
+    register(name, signal);
+    return signal;
+  }
+
+  /**
+   * Add a boolean signal, or return the existing signal if one with the same name was already
+   * added. A new value is only published when it changes.
+   *
+   * @param name The key in the SmartDashboard table.
+   * @return The signal to set values on.
+   */
+  public BooleanSignal addBoolean(String name) {
+    Signal existing = signalsByName.get(name);
+    if (existing != null) {
+      return (BooleanSignal) existing;
+    }
+    BooleanSignal signal = new BooleanSignal(table.getBooleanTopic(name).publish());
+    register(name, signal);
+    return signal;
+  }
+
+  private void register(String name, Signal signal) {
+    signalsByName.put(name, signal);
+    signals.add(signal);
+  }
+
+  /**
+   * Publish all signals whose values changed since the last flush. This should be called once per
+   * loop at the end of {@code DataLogging.periodic()}.
+   */
+  public void flush() {
+    final long timestamp = NetworkTablesJNI.now();
+
+    for (int i = 0; i < signals.size(); i++) {
+      Signal signal = signals.get(i);
+      if (!signal.updated) {
+        continue;
+      }
+      if (signal.dirty) {
+        signal.publish(timestamp);
+        publishCount++;
+      } else {
+        skipCount++;
+      }
+      signal.updated = false;
+      signal.dirty = false;
+    }
+
+    publishCountPublisher.set(publishCount, timestamp);
+    skipCountPublisher.set(skipCount, timestamp);
+  }
+
+  /** Returns the total number of values published since startup. */
+  public long getPublishCount() {
+    return publishCount;
+  }
+
+  /** Returns the total number of values skipped because they stayed inside their deadband. */
+  public long getSkipCount() {
+    return skipCount;
+  }
+
+  /** Base class with the state shared by all signal types. */
+  private abstract static class Signal {
+    // Set when a value was supplied since the last flush
+    boolean updated;
+    // Set when the supplied value must be published
+    boolean dirty;
+    // Cleared after the first value is published so it is always sent
+    boolean neverPublished = true;
+
+    abstract void publish(long timestamp);
+  }
+
+  /** A numeric telemetry value with a deadband. */
+  public static final class DoubleSignal extends Signal {
+    private final DoublePublisher publisher;
+    private final double deadband;
+    private double lastPublished;
+    private double pending;
+
+    private DoubleSignal(DoublePublisher publisher, double deadband) {
+      this.publisher = publisher;
+      this.deadband = deadband;
+    }
+
+    /**
+     * Set the value to publish on the next flush.
+     *
+     * @param value The new value.
+     */
+    public void set(double value) {
+      pending = value;
+      updated = true;
+      // Written so that a NaN value is always treated as a change
+      dirty = neverPublished || !(Math.abs(value - lastPublished) <= deadband);
+    }
+
+    @Override
+    void publish(long timestamp) {
+      publisher.set(pending, timestamp);
+      lastPublished = pending;
+      neverPublished = false;
+    }
+  }
+
+  /** A boolean telemetry value. */
+  public static final class BooleanSignal extends Signal {
+    private final BooleanPublisher publisher;
+    private boolean lastPublished;
+    private boolean pending;
+
+    private BooleanSignal(BooleanPublisher publisher) {
+      this.publisher = publisher;
+    }
+
+    /**
+     * Set the value to publish on the next flush.
+     *
+     * @param value The new value.
+     */
+    public void set(boolean value) {
+      pending = value;
+      updated = true;
+      dirty = neverPublished || value != lastPublished;
+    }
+
+    @Override
+    void publish(long timestamp) {
+      publisher.set(pending, timestamp);
+      lastPublished = pending;
+      neverPublished = false;
+    }
+  }
+}
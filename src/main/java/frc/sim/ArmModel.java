@@ -7,6 +7,8 @@ package frc.sim;
 import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.simulation.BatterySim;
 import edu.wpi.first.wpilibj.simulation.RoboRioSim;
 import edu.wpi.first.wpilibj.simulation.SingleJointedArmSim;
@@ -20,12 +22,30 @@ import frc.robot.Constants.ArmConstants;
 import frc.robot.subsystems.ArmSubsystem;
 import frc.sim.Constants.ArmSim;
 
-/** A robot arm simulation based on a linear system model with Mech2d display. */
+/**
+ * A robot arm simulation based on a linear system model with Mech2d display.
+ *
+ * <p>The physics are stepped at the arm control period. When the arm control law runs on its own
+ * loop the model is stepped by its own {@link Notifier} at the same rate, or at the system
+ * identification rate if that is faster so every sample sees a new state. The effect of the faster
+ * loop can be measured in simulation. The display is updated from the robot loop.
+ *
+ * <p>The simulated encoder is updated every step unless a sensor frame period is set, in which case
+ * it holds each reading for the frame period like the motor controller status frames.
+ *
+ * <p>When the arm position loop is closed on the motor controller, the model runs the emulated
+ * onboard controller at its own 1 kHz rate between arm control cycles.
+ */
 public class ArmModel implements AutoCloseable {
 
   private final ArmSubsystem armSubsystem;
-  private double simCurrent = 0.0;
+  private final double stepPeriod;
+  private final Notifier stepLoop;
+  private volatile double simAngle = ArmConstants.ARM_OFFSET_RADS;
+  private volatile double simCurrent = 0.0;
   private CANSparkMaxSim sparkSim;
+  private volatile double sensorFramePeriod;
+  private double sinceSensorFrame;
 
   // The arm gearbox represents a gearbox containing two Vex 775pro motors.
   private final DCMotor armGearbox = DCMotor.getVex775Pro(2);
@@ -64,11 +84,23 @@ public class ArmModel implements AutoCloseable {
   public ArmModel(ArmSubsystem armSubsystemToSimulate) {
 
     armSubsystem = armSubsystemToSimulate;
+    stepPeriod =
+        armSubsystem.hasControlLoop()
+            ? Math.min(armSubsystem.getControlPeriod(), ArmConstants.SYSID_PERIOD_SEC)
+            : armSubsystem.getControlPeriod();
     simulationInit();
 
     // Put Mechanism 2d to SmartDashboard
     SmartDashboard.putData("Arm Sim", mech2d);
     mechArmTower.setColor(new Color8Bit(Color.kBlue));
+
+    if (armSubsystem.hasControlLoop()) {
+      stepLoop = new Notifier(this::step);
+      stepLoop.setName("ArmModel");
+      stepLoop.startPeriodic(stepPeriod);
+    } else {
+      stepLoop = null;
+    }
   }
 
   /** Initialize the arm simulation. */
@@ -81,32 +113,80 @@ public class ArmModel implements AutoCloseable {
     armSim.setState(ArmConstants.ARM_OFFSET_RADS, 0);
   }
 
-  /** Update the simulation model. */
+  /** Update the simulation model. Called from the robot loop. */
   public void updateSim() {
-    // In this method, we update our simulation of what our arm is doing
-    // First, we set our "inputs" (voltages)
-    armSim.setInput(armSubsystem.getVoltageCommand());
-
-    // Next, we update it. The standard loop time is 20ms.
-    armSim.update(0.020);
-
-    // Finally, we set our simulated encoder's readings and simulated battery voltage and
-    // save the current so it can be retrieved later.
-    sparkSim.setPosition(armSim.getAngleRads() - ArmConstants.ARM_OFFSET_RADS);
-    sparkSim.setVelocity(armSim.getVelocityRadPerSec());
-    simCurrent = armSim.getCurrentDrawAmps();
-    sparkSim.setCurrent(simCurrent);
+    // Step the physics here unless they are stepped at the arm control rate
+    if (stepLoop == null) {
+      step();
+    }
 
     // SimBattery estimates loaded battery voltages
-    RoboRioSim.setVInVoltage(
-        BatterySim.calculateDefaultBatteryLoadedVoltage(armSim.getCurrentDrawAmps()));
+    RoboRioSim.setVInVoltage(BatterySim.calculateDefaultBatteryLoadedVoltage(simCurrent));
 
     // Update the Mechanism Arm angle based on the simulated arm angle
-    mechArm.setAngle(Units.radiansToDegrees(armSim.getAngleRads()));
+    mechArm.setAngle(Units.radiansToDegrees(simAngle));
 
     updateShuffleboard();
   }
 
+  /** Step the arm physics by one step period. */
+  private void step() {
+    if (armSubsystem.isOnboardControlActive()) {
+      stepOnboardControl();
+    } else {
+      // In this method, we update our simulation of what our arm is doing
+      // First, we set our "inputs" (voltages)
+      armSim.setInput(armSubsystem.getVoltageCommand());
+
+      // Next, we update it by one step period.
+      armSim.update(stepPeriod);
+    }
+
+    // Finally, we set our simulated encoder's readings and save the angle and current so they can
+    // be retrieved from the robot loop.
+    sinceSensorFrame += stepPeriod;
+    if (sinceSensorFrame >= sensorFramePeriod - 1e-9) {
+      sinceSensorFrame = 0;
+      sparkSim.setPosition(armSim.getAngleRads() - ArmConstants.ARM_OFFSET_RADS);
+      sparkSim.setVelocity(armSim.getVelocityRadPerSec());
+    }
+    sparkSim.setCurrent(armSim.getCurrentDrawAmps());
+    simAngle = armSim.getAngleRads();
+    simCurrent = armSim.getCurrentDrawAmps();
+  }
+
+  /** Step the physics with the emulated motor controller position loop closed on the model. */
+  private void stepOnboardControl() {
+    double reference = armSubsystem.getPositionReference();
+    double feedforward = armSubsystem.getArbFeedforward();
+    // The motor controller gain is in duty cycle, so the output scales with the bus voltage
+    double busVoltage = RobotController.getBatteryVoltage();
+    double gain = armSubsystem.getOnboardGain() * busVoltage / ArmConstants.NOMINAL_VOLTAGE;
+    int substeps = Math.max(1, (int) Math.round(stepPeriod / CANSparkMaxSim.ONBOARD_PERIOD_SEC));
+    double substepPeriod = stepPeriod / substeps;
+    for (int i = 0; i < substeps; i++) {
+      double position = armSim.getAngleRads() - ArmConstants.ARM_OFFSET_RADS;
+      armSim.setInput(
+          sparkSim.calculatePositionOutput(reference, position, gain, feedforward, busVoltage));
+      armSim.update(substepPeriod);
+    }
+  }
+
+  /**
+   * Hold the simulated encoder readings for a status frame period instead of updating them every
+   * step.
+   *
+   * @param seconds The frame period, or 0 to update the readings every step.
+   */
+  public void setSensorFramePeriod(double seconds) {
+    sensorFramePeriod = seconds;
+  }
+
+  /** Return the simulated arm angle in radians. */
+  public double getSimAngle() {
+    return simAngle;
+  }
+
   /** Return the simulated current. */
   public double getSimCurrent() {
     return simCurrent;
@@ -114,11 +194,14 @@ public class ArmModel implements AutoCloseable {
 
   public void updateShuffleboard() {
 
-    SmartDashboard.putNumber("Arm Sim Angle", Units.radiansToDegrees(armSim.getAngleRads())); // sim
+    SmartDashboard.putNumber("Arm Sim Angle", Units.radiansToDegrees(simAngle)); // sim
   }
 
   @Override
   public void close() {
+    if (stepLoop != null) {
+      stepLoop.close();
+    }
     mech2d.close();
     mechArmPivot.close();
     mechArm.close();
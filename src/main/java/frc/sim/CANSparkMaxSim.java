@@ -9,10 +9,14 @@ import edu.wpi.first.wpilibj.simulation.SimDeviceSim;
 
 /**
  * Wrapper for a simulation interface to a CANSparkMax motor controller. Provides methods to set
- * simulated values in the controller to use in place of real values during simulation.
+ * simulated values in the controller to use in place of real values during simulation, and emulates
+ * the onboard position controller, which the simulated device does not run.
  */
 public class CANSparkMaxSim {
 
+  /** Period of the onboard position controller. */
+  public static final double ONBOARD_PERIOD_SEC = 0.001;
+
   // Methods to set motor controller variables
   private SimDouble simPosition;
   private SimDouble simVelocity;
@@ -39,4 +43,21 @@ public class CANSparkMaxSim {
   public void setCurrent(double current) {
     simMotorCurrent.set(current);
   }
+
+  /**
+   * Calculate the output of the onboard position controller for one period: a P term on the
+   * position error plus the arbitrary feedforward, limited to the bus voltage.
+   *
+   * @param reference The position reference in encoder units.
+   * @param position The encoder position.
+   * @param gain The P gain in volts per encoder unit.
+   * @param arbFeedforward The arbitrary feedforward in volts.
+   * @param busVoltage The bus voltage.
+   * @return The output voltage.
+   */
+  public double calculatePositionOutput(
+      double reference, double position, double gain, double arbFeedforward, double busVoltage) {
+    double output = gain * (reference - position) + arbFeedforward;
+    return Math.max(-busVoltage, Math.min(busVoltage, output));
+  }
 }
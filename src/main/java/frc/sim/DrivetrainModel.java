@@ -4,10 +4,12 @@
 
 package frc.sim;
 
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.numbers.N2;
 import edu.wpi.first.math.system.LinearSystem;
 import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.simulation.ADXRS450_GyroSim;
 import edu.wpi.first.wpilibj.simulation.DifferentialDrivetrainSim;
@@ -15,10 +17,28 @@ import frc.robot.Constants.DriveConstants;
 import frc.robot.subsystems.DriveSubsystem;
 import frc.sim.Constants.DriveSimConstants;
 
-/** Model of a differential drivetrain. */
-public class DrivetrainModel {
+/**
+ * Model of a differential drivetrain.
+ *
+ * <p>The physics are stepped by a {@link Notifier} at the drive odometry period, so the simulated
+ * encoders and gyro are updated at the rate the odometry samples them.
+ *
+ * <p>While the drive is speed controlled, each step compares the wheel speed setpoints with the
+ * simulated wheel speeds, so tests can measure how well the drive tracks its setpoints.
+ */
+public class DrivetrainModel implements AutoCloseable {
 
   private final DriveSubsystem driveSubsystem;
+  private final double stepPeriod;
+  private final Notifier stepLoop;
+  private volatile double leftCurrent;
+  private volatile double rightCurrent;
+  private volatile Pose2d simPose = new Pose2d();
+
+  // Wheel speed tracking error since the last reset, guarded by this
+  private double speedErrorSquaredSum;
+  private double maxSpeedError;
+  private int speedErrorCount;
 
   private CANSparkMaxSim frontLeftSparkSim;
   private CANSparkMaxSim rearLeftSparkSim;
@@ -48,8 +68,13 @@ public class DrivetrainModel {
   public DrivetrainModel(DriveSubsystem driveSubsystemToSimulate) {
     driveSubsystem = driveSubsystemToSimulate;
     gyroSim = new ADXRS450_GyroSim(driveSubsystem.getGyro());
+    stepPeriod = driveSubsystem.getOdometryPeriod();
 
     simulationInit();
+
+    stepLoop = new Notifier(this::step);
+    stepLoop.setName("DrivetrainModel");
+    stepLoop.startPeriodic(stepPeriod);
   }
 
   /** Initialize the drivetrain simulation. */
@@ -62,8 +87,8 @@ public class DrivetrainModel {
     rearRightSparkSim = new CANSparkMaxSim(DriveConstants.REAR_RIGHT_MOTOR_PORT);
   }
 
-  /** Update our simulation. This should be run every robot loop in simulation. */
-  public void updateSim() {
+  /** Step the drivetrain physics by one step period. */
+  private void step() {
     // To update our simulation, we set motor voltage inputs, update the
     // simulation, and write the simulated positions and velocities to our
     // simulated encoder and gyro. We negate the right side so that positive
@@ -76,7 +101,7 @@ public class DrivetrainModel {
             * RobotController.getInputVoltage()
             * DriveSimConstants.VOLT_SCALE_FACTOR);
 
-    drivetrainSimulator.update(0.02);
+    drivetrainSimulator.update(stepPeriod);
 
     // Set our simulated encoder's position and rate
     double leftSimPosition = drivetrainSimulator.getLeftPositionMeters();
@@ -95,9 +120,18 @@ public class DrivetrainModel {
     frontRightSparkSim.setVelocity(encoderRightSimRate);
     rearRightSparkSim.setVelocity(encoderRightSimRate);
 
+    double leftSetpoint = driveSubsystem.getLeftSpeedSetpoint();
+    double rightSetpoint = driveSubsystem.getRightSpeedSetpoint();
+    if (!Double.isNaN(leftSetpoint) && !Double.isNaN(rightSetpoint)) {
+      addSpeedError(leftSetpoint - encoderLeftSimRate);
+      addSpeedError(rightSetpoint - encoderRightSimRate);
+    }
+
     // Set our simulated motor current based on the simulated drivetrain
     double leftSimCurrent = drivetrainSimulator.getLeftCurrentDrawAmps();
     double rightSimCurrent = drivetrainSimulator.getRightCurrentDrawAmps();
+    leftCurrent = leftSimCurrent;
+    rightCurrent = rightSimCurrent;
 
     /* Current in simulation is total per side so set individual motor current based on number of
      * motors per side */
@@ -109,17 +143,51 @@ public class DrivetrainModel {
     // Set gyro angle and rate based on change in angle since last iteration
     double newAngle = -drivetrainSimulator.getHeading().getDegrees();
     gyroSim.setAngle(newAngle);
-    gyroSim.setRate(((newAngle - lastAngle) / 0.02));
+    gyroSim.setRate(((newAngle - lastAngle) / stepPeriod));
     lastAngle = newAngle;
+    simPose = drivetrainSimulator.getPose();
   }
 
   /** Return the left side total simulated current. */
   public double getLeftSimCurrent() {
-    return drivetrainSimulator.getLeftCurrentDrawAmps();
+    return leftCurrent;
   }
 
   /** Return the right side total simulated current. */
   public double getRightSimCurrent() {
-    return drivetrainSimulator.getRightCurrentDrawAmps();
+    return rightCurrent;
+  }
+
+  /** Return the simulated pose of the drivetrain. */
+  public Pose2d getSimPose() {
+    return simPose;
+  }
+
+  private synchronized void addSpeedError(double error) {
+    speedErrorSquaredSum += error * error;
+    maxSpeedError = Math.max(maxSpeedError, Math.abs(error));
+    speedErrorCount++;
+  }
+
+  /** Start measuring the wheel speed tracking error again. */
+  public synchronized void resetSpeedError() {
+    speedErrorSquaredSum = 0;
+    maxSpeedError = 0;
+    speedErrorCount = 0;
+  }
+
+  /** Return the RMS wheel speed tracking error in meters per second since the last reset. */
+  public synchronized double getRmsSpeedError() {
+    return speedErrorCount > 0 ? Math.sqrt(speedErrorSquaredSum / speedErrorCount) : 0;
+  }
+
+  /** Return the largest wheel speed tracking error in meters per second since the last reset. */
+  public synchronized double getMaxSpeedError() {
+    return maxSpeedError;
+  }
+
+  @Override
+  public void close() {
+    stepLoop.close();
   }
 }
@@ -7,6 +7,7 @@ import edu.wpi.first.wpilibj.simulation.BatterySim;
 import edu.wpi.first.wpilibj.simulation.PDPSim;
 import edu.wpi.first.wpilibj.simulation.RoboRioSim;
 import frc.robot.Robot;
+import frc.robot.telemetry.LoopProfiler;
 import java.util.Random;
 
 public class RobotModel {
@@ -26,7 +27,10 @@ public class RobotModel {
   static final double BATTERY_NOMINAL_VOLTAGE = 13.2; // Nicely charged battery
   static final double BATTERY_NOMINAL_RESISTANCE = 0.040; // 40mOhm - average battery + cabling
   double currentDrawA = QUIESCENT_CURRENT_DRAW_A;
-  double batteryVoltageV = BATTERY_NOMINAL_VOLTAGE;
+  volatile double batteryVoltageV = BATTERY_NOMINAL_VOLTAGE;
+
+  private final LoopProfiler profiler = LoopProfiler.getInstance();
+  private final int armModelPhase = profiler.registerPhase("ArmModel");
 
   /**
    * Create robot simulation. Does nothing if not running a simulation. Called from Robot.java as a
@@ -57,8 +61,9 @@ public class RobotModel {
     }
 
     // Update subsystem simulations
+    profiler.startPhase(armModelPhase);
     simArm.updateSim();
-    simDrivetrain.updateSim();
+    profiler.endPhase(armModelPhase);
 
     // Simulate battery voltage drop based on total simulated current
     double armCurrent = Math.abs(simArm.getSimCurrent());
@@ -82,6 +87,35 @@ public class RobotModel {
     simpdp.setTemperature(26.5);
   }
 
+  /**
+   * Set the unloaded battery voltage, to simulate a fresh or a tired battery.
+   *
+   * @param voltage The voltage with no current drawn.
+   */
+  public void setBatteryVoltage(double voltage) {
+    batteryVoltageV = voltage;
+  }
+
+  /** Returns the arm simulation. */
+  public ArmModel getArmModel() {
+    return simArm;
+  }
+
+  /** Returns the drivetrain simulation. */
+  public DrivetrainModel getDrivetrainModel() {
+    return simDrivetrain;
+  }
+
+  /** Stop the parts of the simulation that run on their own loops. */
+  public void close() {
+    if (simArm != null) {
+      simArm.close();
+    }
+    if (simDrivetrain != null) {
+      simDrivetrain.close();
+    }
+  }
+
   /** Reset the simulation data. */
   public final void reset() {
     if (isReal) {
@@ -0,0 +1,25 @@
+package frc.robot;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares how many bytes the robot thread and the control loop threads may allocate per loop in a
+ * {@link RobotLoopExtension} test. {@link RobotLoopExtension.SimRobot#measureAllocation()} fails
+ * the test when the average over the measured loops is larger.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface AllocationBudget {
+
+  /** The maximum average bytes allocated on the robot and control threads per loop. */
+  long bytesPerLoop();
+
+  /** The number of loops to measure. */
+  int loops() default 250;
+
+  /** The number of loops to run first so one-time setup and JIT compilation are not measured. */
+  int warmupLoops() default 100;
+}
@@ -0,0 +1,248 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.sun.management.ThreadMXBean;
+import edu.wpi.first.math.controller.ArmFeedforward;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import frc.robot.Constants.ArmConstants;
+import frc.robot.control.ArmController;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ArmControllerTest {
+  private static final double PERIOD = 0.02;
+  private static final double KP = 3.0;
+  private static final double KI = 0.5;
+  private static final double KD = 0.1;
+  private static final double TOLERANCE = 1e-6;
+
+  private final ArmController controller = new ArmController(PERIOD, 4, 128);
+
+  @BeforeEach
+  void setup() {
+    controller.setPid(KP, KI, KD);
+    controller.setConstraints(
+        ArmConstants.DEFAULT_MAX_VELOCITY_RAD_PER_SEC,
+        ArmConstants.DEFAULT_MAX_ACCELERATION_RAD_PER_SEC);
+    controller.setFeedforward(
+        ArmConstants.DEFAULT_KS_VOLTS,
+        ArmConstants.DEFAULT_KG_VOLTS,
+        ArmConstants.DEFAULT_KV_VOLTS_PER_SEC_PER_RAD);
+    controller.setTolerance(ArmConstants.POSITION_TOLERANCE, ArmConstants.VELOCITY_TOLERANCE);
+  }
+
+  @Test
+  @DisplayName("Test output matches the profiled PID controller and arm feedforward.")
+  void testMatchesProfiledController() {
+    ProfiledPIDController expected =
+        new ProfiledPIDController(
+            KP,
+            KI,
+            KD,
+            new TrapezoidProfile.Constraints(
+                ArmConstants.DEFAULT_MAX_VELOCITY_RAD_PER_SEC,
+                ArmConstants.DEFAULT_MAX_ACCELERATION_RAD_PER_SEC),
+            PERIOD);
+    expected.setTolerance(ArmConstants.POSITION_TOLERANCE, ArmConstants.VELOCITY_TOLERANCE);
+    ArmFeedforward feedforward =
+        new ArmFeedforward(
+            ArmConstants.DEFAULT_KS_VOLTS,
+            ArmConstants.DEFAULT_KG_VOLTS,
+            ArmConstants.DEFAULT_KV_VOLTS_PER_SEC_PER_RAD);
+
+    double measurement = ArmConstants.ARM_LOW_POSITION;
+    expected.reset(measurement);
+    expected.setGoal(ArmConstants.ARM_HIGH_POSITION);
+    controller.reset(measurement, ArmConstants.ARM_HIGH_POSITION);
+
+    // Change the goal part way through the move, then run until both are settled. The
+    // measurement lags the setpoint so all PID terms are exercised.
+    for (int i = 0; i < 200; i++) {
+      if (i == 30) {
+        expected.setGoal(0);
+        controller.setGoal(0);
+      }
+      double expectedVoltage = expected.calculate(measurement);
+      TrapezoidProfile.State setpoint = expected.getSetpoint();
+      expectedVoltage += feedforward.calculate(setpoint.position, setpoint.velocity);
+
+      assertThat(controller.calculate(measurement)).isCloseTo(expectedVoltage, within(TOLERANCE));
+      assertThat(controller.getSetpointPosition()).isCloseTo(setpoint.position, within(TOLERANCE));
+      assertThat(controller.getSetpointVelocity()).isCloseTo(setpoint.velocity, within(TOLERANCE));
+
+      measurement += (setpoint.position - measurement) * 0.5;
+    }
+    assertThat(expected.atGoal()).isTrue();
+    assertThat(controller.atGoal()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Test the control loop and repeated moves do not allocate.")
+  void testNoAllocation() {
+    final double low = ArmConstants.ARM_LOW_POSITION;
+    final double high = ArmConstants.ARM_HIGH_POSITION;
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    // Warm up so the moves are planned and the loop is compiled
+    double measurement = runMoves(low, high, 1000);
+
+    long before = threads.getThreadAllocatedBytes(threadId);
+    runMoves(measurement, high, 10);
+    long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+    assertThat(allocated).isZero();
+    assertThat(controller.getPlanner().getMissCount()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Test an estimated state gives the velocity error directly.")
+  void testEstimatedState() {
+    final double low = ArmConstants.ARM_LOW_POSITION;
+    controller.reset(low, ArmConstants.ARM_HIGH_POSITION);
+    double output = controller.calculate(low, 0);
+
+    double positionError = controller.getSetpointPosition() - low;
+    double expectedPid =
+        KP * positionError + KI * positionError * PERIOD + KD * controller.getSetpointVelocity();
+    assertThat(controller.getPidOutput()).isCloseTo(expectedPid, within(TOLERANCE));
+    assertThat(output).isCloseTo(expectedPid + controller.getFeedforward(), within(TOLERANCE));
+
+    // At the goal the arm must also be stopped
+    int steps = 0;
+    while (!controller.isMoveComplete()) {
+      controller.calculate(controller.getSetpointPosition(), controller.getSetpointVelocity());
+      steps++;
+    }
+    assertThat(steps).isPositive();
+    controller.calculate(ArmConstants.ARM_HIGH_POSITION, 1.0);
+    assertThat(controller.atGoal()).isFalse();
+    controller.calculate(ArmConstants.ARM_HIGH_POSITION, 0);
+    assertThat(controller.atGoal()).isTrue();
+  }
+
+  @Test
+  @DisplayName("Test a path continues through waypoints within the constraints.")
+  void testWaypointPath() {
+    final double low = ArmConstants.ARM_LOW_POSITION;
+    final double high = ArmConstants.ARM_HIGH_POSITION;
+    final double middle = (low + high) / 2;
+    final double maxVelocity = ArmConstants.DEFAULT_MAX_VELOCITY_RAD_PER_SEC;
+
+    // Stopping at the middle position takes longer than passing through it
+    controller.reset(low, middle);
+    int stoppedSteps = runToGoal(low) + 1;
+    controller.setGoal(high);
+    stoppedSteps += runToGoal(middle);
+
+    controller.reset(low, middle, maxVelocity);
+    assertThat(controller.addWaypoint(high, 0)).isTrue();
+    assertThat(controller.getGoal()).isEqualTo(high);
+    double speedAtMiddle = 0;
+    double measurement = low;
+    double lastVelocity = 0;
+    int steps = 0;
+    while (!controller.atGoal()) {
+      controller.calculate(measurement);
+      double velocity = controller.getSetpointVelocity();
+      assertThat(Math.abs(velocity)).isLessThanOrEqualTo(maxVelocity + TOLERANCE);
+      assertThat(Math.abs(velocity - lastVelocity))
+          .isLessThanOrEqualTo(
+              ArmConstants.DEFAULT_MAX_ACCELERATION_RAD_PER_SEC * PERIOD + TOLERANCE);
+      if (controller.getSetpointPosition() == middle) {
+        speedAtMiddle = velocity;
+      }
+      measurement = controller.getSetpointPosition();
+      lastVelocity = velocity;
+      steps++;
+    }
+    assertThat(speedAtMiddle).isPositive();
+    assertThat(measurement).isEqualTo(high);
+    assertThat(steps).isLessThan(stoppedSteps);
+  }
+
+  @Test
+  @DisplayName("Test waypoints added while moving and reversing paths.")
+  void testAddWaypointWhileMoving() {
+    final double low = ArmConstants.ARM_LOW_POSITION;
+    final double high = ArmConstants.ARM_HIGH_POSITION;
+    final double middle = (low + high) / 2;
+    final double maxVelocity = ArmConstants.DEFAULT_MAX_VELOCITY_RAD_PER_SEC;
+
+    // Start a move that would stop at the middle, then extend the path while moving. The move is
+    // planned again from the current setpoint so the setpoint does not jump.
+    controller.reset(low, middle, maxVelocity);
+    double measurement = low;
+    for (int i = 0; i < 5; i++) {
+      controller.calculate(measurement);
+      measurement = controller.getSetpointPosition();
+    }
+    assertThat(controller.addWaypoint(high, maxVelocity)).isTrue();
+    assertThat(controller.addWaypoint(middle, 0)).isTrue();
+    assertThat(controller.getWaypointCount()).isEqualTo(2);
+
+    // The arm passes through the middle, stops where the path reverses at the high position and
+    // comes back to the middle
+    double speedAtMiddle = 0;
+    double speedAtHigh = -1;
+    for (int i = 0; i < 500 && !controller.atGoal(); i++) {
+      controller.calculate(measurement);
+      assertThat(Math.abs(controller.getSetpointPosition() - measurement))
+          .isLessThanOrEqualTo(maxVelocity * PERIOD + TOLERANCE);
+      measurement = controller.getSetpointPosition();
+      if (measurement == middle && speedAtMiddle == 0) {
+        speedAtMiddle = controller.getSetpointVelocity();
+      }
+      if (measurement == high) {
+        speedAtHigh = controller.getSetpointVelocity();
+      }
+    }
+    assertThat(speedAtMiddle).isPositive();
+    assertThat(speedAtHigh).isZero();
+    assertThat(controller.atGoal()).isTrue();
+    assertThat(measurement).isEqualTo(middle);
+
+    // A new goal drops the rest of the path
+    controller.reset(low, middle, maxVelocity);
+    controller.addWaypoint(high, 0);
+    controller.setGoal(low);
+    assertThat(controller.getWaypointCount()).isZero();
+    assertThat(controller.getGoal()).isEqualTo(low);
+  }
+
+  /** Run the controller with perfect tracking until it is at the goal. */
+  private int runToGoal(double start) {
+    double measurement = start;
+    int steps = 0;
+    while (!controller.atGoal()) {
+      controller.calculate(measurement);
+      measurement = controller.getSetpointPosition();
+      steps++;
+    }
+    return steps;
+  }
+
+  /** Run moves back and forth between two positions, reusing the planned moves. */
+  private double runMoves(double start, double goal, int moves) {
+    double measurement = start;
+    double other = start;
+    double target = goal;
+    controller.reset(measurement, target);
+    for (int move = 0; move < moves; move++) {
+      for (int i = 0; i < 80; i++) {
+        controller.calculate(measurement);
+        measurement = controller.getSetpointPosition();
+      }
+      double next = other;
+      other = target;
+      target = next;
+      controller.setGoal(target);
+    }
+    return measurement;
+  }
+}
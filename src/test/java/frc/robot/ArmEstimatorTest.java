@@ -0,0 +1,68 @@
+package frc.robot;
+
+import static frc.robot.RobotLoopExtension.SimRobot.ARM_HIGH;
+import static frc.robot.RobotLoopExtension.SimRobot.ARM_LOW;
+import static frc.robot.RobotLoopExtension.SimRobot.ARM_POS_DELTA;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import frc.robot.Constants.ArmConstants;
+import frc.robot.RobotLoopExtension.SimRobot;
+import frc.robot.subsystems.ArmSubsystem;
+import frc.sim.ArmModel;
+import java.util.function.DoubleSupplier;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+/** Arm state estimation against the encoder readings, run on the simulated arm. */
+@ExtendWith(RobotLoopExtension.class)
+@ResourceLock("timing")
+class ArmEstimatorTest {
+  private static final double FRAME_PERIOD = ArmConstants.DEFAULT_FRAME_PERIOD_MS / 1000.0;
+
+  @Test
+  @DisplayName("Test the estimated position is closer to the arm than delayed encoder readings.")
+  void testDelayedReadings(SimRobot robot) {
+    ArmSubsystem arm = robot.enableArm();
+    // The encoder readings are only updated once per status frame, so they lag the moving arm
+    robot.getArmModel().setSensorFramePeriod(FRAME_PERIOD);
+
+    arm.setStateEstimation(false);
+    Result raw = move(robot, arm, arm::getMeasurement);
+
+    arm.setStateEstimation(true);
+    robot.step(1);
+    assertThat(arm.isStateEstimationActive()).isTrue();
+    Result estimated = move(robot, arm, arm::getEstimatedPosition);
+
+    // The estimator predicts the arm between frames, so it should be well inside the lag
+    assertThat(estimated.positionError).isLessThan(raw.positionError / 2);
+    assertThat(estimated.settleLoops).isLessThanOrEqualTo(raw.settleLoops);
+    assertThat(arm.getMeasurement()).isCloseTo(ARM_HIGH, within(ARM_POS_DELTA));
+  }
+
+  /** The largest distance from the simulated arm during a move and the loops until it settled. */
+  private static final class Result {
+    double positionError;
+    int settleLoops;
+  }
+
+  /** Move the arm from the low to the high position, comparing a position with the model. */
+  private Result move(SimRobot robot, ArmSubsystem arm, DoubleSupplier position) {
+    ArmModel model = robot.getArmModel();
+    robot.moveArmTo(ARM_LOW);
+
+    arm.moveToPosition(ARM_HIGH).schedule();
+    Result result = new Result();
+    result.settleLoops =
+        robot.loopsToSettle(
+            () ->
+                result.positionError =
+                    Math.max(
+                        result.positionError,
+                        Math.abs(position.getAsDouble() - model.getSimAngle())));
+    return result;
+  }
+}
@@ -0,0 +1,44 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import frc.robot.control.ArmGains;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ArmGainsTest {
+
+  @Test
+  @DisplayName("Test valid gains are accepted and compared by value.")
+  void testValidGains() {
+    ArmGains gains = new ArmGains(1, 3.0, 0.5, 1.25, 0.8, 1.5, 6.0);
+    assertThat(gains.version).isEqualTo(1);
+    assertThat(gains.kp).isEqualTo(3.0);
+    assertThat(gains.maxAcceleration).isEqualTo(6.0);
+
+    // The version is not part of the comparison. Zero gains are allowed so a term can be turned
+    // off while tuning.
+    ArmGains same = new ArmGains(2, 3.0, 0.5, 1.25, 0.8, 1.5, 6.0);
+    assertThat(gains.sameValues(same)).isTrue();
+    assertThat(gains.sameValues(new ArmGains(3, 0.0, 0.5, 1.25, 0.8, 1.5, 6.0))).isFalse();
+  }
+
+  @Test
+  @DisplayName("Test invalid gains and constraints are rejected.")
+  void testInvalidGains() {
+    assertThatThrownBy(() -> new ArmGains(1, -1.0, 0.5, 1.25, 0.8, 1.5, 6.0))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("kP");
+    assertThatThrownBy(() -> new ArmGains(1, 3.0, Double.NaN, 1.25, 0.8, 1.5, 6.0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ArmGains(1, 3.0, 0.5, Double.POSITIVE_INFINITY, 0.8, 1.5, 6.0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new ArmGains(1, 3.0, 0.5, 1.25, 0.8, 0.0, 6.0))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("max velocity");
+    assertThatThrownBy(() -> new ArmGains(1, 3.0, 0.5, 1.25, 0.8, 1.5, -6.0))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("max acceleration");
+  }
+}
@@ -0,0 +1,80 @@
+package frc.robot;
+
+import static frc.robot.RobotLoopExtension.SimRobot.ARM_HIGH;
+import static frc.robot.RobotLoopExtension.SimRobot.ARM_LOW;
+import static frc.robot.RobotLoopExtension.SimRobot.ARM_MAX_LOOPS;
+import static frc.robot.RobotLoopExtension.SimRobot.ARM_POS_DELTA;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.robot.Constants.ArmConstants;
+import frc.robot.RobotLoopExtension.SimRobot;
+import frc.robot.subsystems.ArmSubsystem;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+/** Arm paths through several waypoints, run against the simulated arm. */
+@ExtendWith(RobotLoopExtension.class)
+@ResourceLock("timing")
+class ArmPathTest {
+  private static final double MIDDLE = (ARM_LOW + ARM_HIGH) / 2;
+  private static final double POS_DELTA = Units.degreesToRadians(5);
+
+  @Test
+  @DisplayName("Test passing through a waypoint is faster than stopping at it.")
+  void testBlendedPath(SimRobot robot) {
+    ArmSubsystem arm = robot.enableArm();
+
+    runPath(robot, arm, new double[] {ARM_LOW}, new double[] {0});
+    robot.step(50);
+    int stoppedLoops = runPath(robot, arm, new double[] {MIDDLE, ARM_HIGH}, new double[] {0, 0});
+
+    runPath(robot, arm, new double[] {ARM_LOW}, new double[] {0});
+    robot.step(50);
+    int blendedLoops =
+        runPath(
+            robot,
+            arm,
+            new double[] {MIDDLE, ARM_HIGH},
+            new double[] {ArmConstants.DEFAULT_MAX_VELOCITY_RAD_PER_SEC, 0});
+
+    assertThat(blendedLoops).isLessThan(stoppedLoops);
+    robot.step(50);
+    assertThat(arm.getMeasurement()).isCloseTo(ARM_HIGH, within(POS_DELTA));
+  }
+
+  @Test
+  @DisplayName("Test waypoints appended while the arm is moving extend the path.")
+  void testAppendWaypoint(SimRobot robot) {
+    ArmSubsystem arm = robot.enableArm();
+
+    Command command =
+        arm.moveThrough(
+            new double[] {MIDDLE}, new double[] {ArmConstants.DEFAULT_MAX_VELOCITY_RAD_PER_SEC});
+    command.schedule();
+    robot.step(5);
+    assertThat(arm.appendWaypoint(ARM_HIGH, 0)).isTrue();
+
+    // The arm does not stop at the first waypoint, so it keeps moving up past it
+    double previous = arm.getMeasurement();
+    for (int i = 0; i < ARM_MAX_LOOPS && arm.getMeasurement() < ARM_HIGH - ARM_POS_DELTA; i++) {
+      robot.step(1);
+      if (arm.getMeasurement() > MIDDLE - ARM_POS_DELTA && previous < MIDDLE + ARM_POS_DELTA) {
+        assertThat(arm.getMeasurement()).isGreaterThan(previous);
+      }
+      previous = arm.getMeasurement();
+    }
+    robot.step(50);
+    assertThat(arm.getMeasurement()).isCloseTo(ARM_HIGH, within(POS_DELTA));
+  }
+
+  /** Run a path and return the number of loops until the arm is near the last waypoint. */
+  private int runPath(SimRobot robot, ArmSubsystem arm, double[] positions, double[] speeds) {
+    arm.moveThrough(positions, speeds).schedule();
+    return robot.loopsToReach(positions[positions.length - 1]);
+  }
+}
@@ -0,0 +1,113 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import frc.robot.control.ArmPredictiveController;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ArmPredictiveControllerTest {
+  private static final double PERIOD = 0.005;
+  private static final int HORIZON = 50;
+  private static final int SUBSTEPS = 10;
+  private static final double KS = 0.5;
+  private static final double KG = 1.25;
+  private static final double KV = 0.8;
+  private static final double KA = 0.07;
+  private static final double SUPPLY_VOLTS = 12.0;
+  private static final double CURRENT_VOLTS = 4.0;
+  private static final double MIN_ANGLE = -0.8;
+  private static final double MAX_ANGLE = 2.0;
+
+  private final ArmPredictiveController controller = new ArmPredictiveController(PERIOD, HORIZON);
+  private final double[] positions = new double[HORIZON + 1];
+  private final double[] velocities = new double[HORIZON + 1];
+  private final double[] feedforwards = new double[HORIZON + 1];
+
+  // Simulated arm
+  private double position;
+  private double velocity;
+
+  @BeforeEach
+  void setup() {
+    controller.setModel(KS, KG, KV, KA);
+    controller.setWeights(1000, 10, 1, 10000);
+    controller.setLimits(SUPPLY_VOLTS, CURRENT_VOLTS, MIN_ANGLE, MAX_ANGLE);
+    controller.setBudget(50, 0.001);
+  }
+
+  @Test
+  @DisplayName("Test the arm moves to a held reference within the voltage and current limits.")
+  void testHoldsReference() {
+    hold(0.5);
+    position = 0;
+    velocity = 0;
+    for (int i = 0; i < 300; i++) {
+      double voltage =
+          controller.calculate(position, velocity, positions, velocities, feedforwards);
+      assertThat(Math.abs(voltage)).isLessThanOrEqualTo(SUPPLY_VOLTS);
+      assertThat(Math.abs(voltage - KV * velocity)).isLessThanOrEqualTo(CURRENT_VOLTS + 1e-9);
+      assertThat(controller.getIterations()).isBetween(1, 50);
+      step(voltage);
+    }
+    // Static friction can hold the arm just short of the reference
+    assertThat(position).isCloseTo(0.5, within(0.02));
+    assertThat(velocity).isCloseTo(0, within(0.01));
+  }
+
+  @Test
+  @DisplayName("Test the predicted path stays near the angle limit past a reference beyond it.")
+  void testAngleLimit() {
+    hold(MAX_ANGLE + 0.2);
+    controller.setBudget(1000, 1);
+    controller.calculate(MAX_ANGLE - 0.1, 0, positions, velocities, feedforwards);
+    assertThat(controller.getPredictedPosition(HORIZON)).isCloseTo(MAX_ANGLE, within(0.05));
+  }
+
+  @Test
+  @DisplayName("Test solves are warm started and limited to the iteration budget.")
+  void testBudget() {
+    hold(0.5);
+    controller.setBudget(1000, 1);
+    controller.calculate(0, 0, positions, velocities, feedforwards);
+    int coldIterations = controller.getIterations();
+    controller.calculate(0, 0, positions, velocities, feedforwards);
+    assertThat(controller.getIterations()).isLessThan(coldIterations);
+
+    controller.reset();
+    controller.setBudget(3, 1);
+    controller.calculate(0, 0, positions, velocities, feedforwards);
+    assertThat(controller.getIterations()).isEqualTo(3);
+    assertThat(controller.getSolveTime()).isPositive();
+
+    assertThatThrownBy(() -> controller.setBudget(0, 1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> controller.setWeights(1, 1, 0, 1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> controller.setModel(KS, KG, KV, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /** Set a reference that holds the arm at a position. */
+  private void hold(double goal) {
+    Arrays.fill(positions, goal);
+    Arrays.fill(velocities, 0);
+    Arrays.fill(feedforwards, KG * Math.cos(goal));
+  }
+
+  /** Step the simulated arm by one period. */
+  private void step(double voltage) {
+    double dt = PERIOD / SUBSTEPS;
+    for (int i = 0; i < SUBSTEPS; i++) {
+      double net = voltage - KG * Math.cos(position);
+      double friction = Math.abs(velocity) > 1e-3 ? KS * Math.signum(velocity) : 0;
+      double acceleration = (net - friction - KV * velocity) / KA;
+      velocity += acceleration * dt;
+      position += velocity * dt;
+    }
+  }
+}
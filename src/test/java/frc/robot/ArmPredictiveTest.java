@@ -0,0 +1,67 @@
+package frc.robot;
+
+import static frc.robot.RobotLoopExtension.SimRobot.ARM_HIGH;
+import static frc.robot.RobotLoopExtension.SimRobot.ARM_LOW;
+import static frc.robot.RobotLoopExtension.SimRobot.ARM_POS_DELTA;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import frc.robot.RobotLoopExtension.SimRobot;
+import frc.robot.subsystems.ArmSubsystem;
+import frc.robot.subsystems.ArmSubsystem.ControlMode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+/** Model predictive and PID control of the simulated arm, compared on the same move. */
+@ExtendWith(RobotLoopExtension.class)
+@ResourceLock("timing")
+class ArmPredictiveTest {
+
+  @Test
+  @DisplayName("Test the predictive controller tracks and settles no worse than the PID.")
+  void testTrackingAndSettleTime(SimRobot robot) {
+    ArmSubsystem arm = robot.enableArm();
+
+    arm.setControlMode(ControlMode.ROBORIO);
+    Result pid = move(robot, arm);
+    assertThat(arm.isPredictiveControlActive()).isFalse();
+
+    arm.setControlMode(ControlMode.MODEL_PREDICTIVE);
+    Result predictive = move(robot, arm);
+    assertThat(arm.isPredictiveControlActive()).isTrue();
+    assertThat(arm.getSolveTime()).isPositive();
+
+    assertThat(predictive.trackingError).isLessThan(pid.trackingError);
+    assertThat(predictive.settleLoops).isLessThanOrEqualTo(pid.settleLoops);
+    assertThat(arm.getMeasurement()).isCloseTo(ARM_HIGH, within(ARM_POS_DELTA));
+  }
+
+  /** The largest distance from the setpoint during a move and the loops until it settled. */
+  private static final class Result {
+    double trackingError;
+    int settleLoops;
+  }
+
+  /**
+   * Move the arm from the low to the high position. The control mode is applied when the move to
+   * the low position enables the arm.
+   */
+  private Result move(SimRobot robot, ArmSubsystem arm) {
+    arm.disable();
+    robot.step(1);
+    robot.moveArmTo(ARM_LOW);
+
+    arm.moveToPosition(ARM_HIGH).schedule();
+    Result result = new Result();
+    result.settleLoops =
+        robot.loopsToSettle(
+            () ->
+                result.trackingError =
+                    Math.max(
+                        result.trackingError,
+                        Math.abs(arm.getMeasurement() - arm.getSetpointPosition())));
+    return result;
+  }
+}
@@ -0,0 +1,47 @@
+package frc.robot;
+
+import static frc.robot.RobotLoopExtension.SimRobot.ARM_HIGH;
+import static frc.robot.RobotLoopExtension.SimRobot.ARM_LOW;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import edu.wpi.first.math.util.Units;
+import frc.robot.RobotLoopExtension.SimRobot;
+import frc.robot.subsystems.ArmSubsystem;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+/** Time-optimal and trapezoid arm profiles, run against the simulated arm. */
+@ExtendWith(RobotLoopExtension.class)
+@ResourceLock("timing")
+class ArmProfileTest {
+  private static final double POS_DELTA = Units.degreesToRadians(5);
+
+  @Test
+  @DisplayName("Test time-optimal moves between the low and high positions are faster.")
+  void testMoveTimes(SimRobot robot) {
+    ArmSubsystem arm = robot.enableArm();
+
+    arm.setTimeOptimalProfile(false);
+    int trapezoidUp = moveTime(robot, arm, ARM_LOW, ARM_HIGH);
+    int trapezoidDown = moveTime(robot, arm, ARM_HIGH, ARM_LOW);
+
+    arm.setTimeOptimalProfile(true);
+    int optimalUp = moveTime(robot, arm, ARM_LOW, ARM_HIGH);
+    int optimalDown = moveTime(robot, arm, ARM_HIGH, ARM_LOW);
+
+    assertThat(optimalUp).isLessThan(trapezoidUp);
+    assertThat(optimalDown).isLessThan(trapezoidDown);
+    robot.step(50);
+    assertThat(arm.getMeasurement()).isCloseTo(ARM_LOW, within(POS_DELTA));
+  }
+
+  /** Move the arm to a start position, then return the number of loops to move to the goal. */
+  private int moveTime(SimRobot robot, ArmSubsystem arm, double start, double goal) {
+    robot.moveArmTo(start);
+    arm.moveToPosition(goal).schedule();
+    return robot.loopsToReach(goal);
+  }
+}
@@ -0,0 +1,129 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import frc.robot.control.ArmStateEstimator;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ArmStateEstimatorTest {
+  private static final double PERIOD = 0.005;
+  private static final int DELAY_CYCLES = 2;
+  private static final int FRAME_CYCLES = 4;
+  private static final int SUBSTEPS = 10;
+  private static final double KS = 0.3;
+  private static final double KG = 1.25;
+  private static final double KV = 0.8;
+  private static final double KA = 0.07;
+  private static final double MEASUREMENT_STD = 0.002;
+  private static final double START = -0.7;
+
+  private final ArmStateEstimator estimator = new ArmStateEstimator(PERIOD, DELAY_CYCLES);
+  private final Random random = new Random(17);
+
+  // Simulated arm, and its positions of the last cycles
+  private double position;
+  private double velocity;
+  private final double[] history = new double[DELAY_CYCLES + 1];
+
+  @BeforeEach
+  void setup() {
+    estimator.setModel(KS, KG, KV, KA);
+    estimator.setNoise(0.01, 1.0, MEASUREMENT_STD);
+    estimator.reset(START);
+    position = START;
+    velocity = 0;
+    java.util.Arrays.fill(history, START);
+  }
+
+  @Test
+  @DisplayName("Test the estimate follows a moving arm with delayed, held measurements.")
+  void testTracksMovingArm() {
+    double maxPositionError = 0;
+    double maxVelocityError = 0;
+    double maxRawVelocityError = 0;
+    double previousMeasurement = START;
+    int cyclesSinceMeasurement = 0;
+    int cycles = (int) (1.5 / PERIOD);
+    for (int i = 0; i < cycles; i++) {
+      // Measurement of the arm DELAY_CYCLES ago, updated once per status frame
+      if (i % FRAME_CYCLES == 0) {
+        double measurement =
+            history[(i + 1) % history.length] + random.nextGaussian() * MEASUREMENT_STD;
+        estimator.correct(measurement);
+        if (i > 0) {
+          // The raw velocity is the change in the held measurement over the frame
+          double rawVelocity =
+              (measurement - previousMeasurement) / (PERIOD * (cyclesSinceMeasurement));
+          if (i * PERIOD > 0.2) {
+            maxRawVelocityError = Math.max(maxRawVelocityError, Math.abs(rawVelocity - velocity));
+          }
+        }
+        previousMeasurement = measurement;
+        cyclesSinceMeasurement = 0;
+      }
+      cyclesSinceMeasurement++;
+
+      if (i * PERIOD > 0.2) {
+        maxPositionError = Math.max(maxPositionError, Math.abs(estimator.getPosition() - position));
+        maxVelocityError = Math.max(maxVelocityError, Math.abs(estimator.getVelocity() - velocity));
+      }
+
+      // Accelerate up, slow down and hold
+      double time = i * PERIOD;
+      double drive = time < 0.4 ? 2.0 : time < 0.8 ? -2.0 : 0;
+      double voltage =
+          drive
+              + KG * Math.cos(position)
+              + (Math.abs(velocity) > 1e-3 ? KS * Math.signum(velocity) : 0);
+      estimator.predict(voltage);
+      step(voltage);
+      history[(i + 1) % history.length] = position;
+    }
+
+    assertThat(maxPositionError).isLessThan(0.01);
+    assertThat(maxVelocityError).isLessThan(0.3);
+    assertThat(maxVelocityError).isLessThan(maxRawVelocityError);
+    assertThat(estimator.getVelocity()).isCloseTo(0, within(0.05));
+  }
+
+  @Test
+  @DisplayName("Test the estimate converges to a held arm from a wrong start.")
+  void testConvergesWhenHeld() {
+    estimator.reset(START + 0.1);
+    for (int i = 0; i < 200; i++) {
+      estimator.correct(START);
+      estimator.predict(KG * Math.cos(START));
+    }
+    assertThat(estimator.getPosition()).isCloseTo(START, within(1e-3));
+    assertThat(estimator.getVelocity()).isCloseTo(0, within(1e-3));
+  }
+
+  @Test
+  @DisplayName("Test the gains are in range and invalid settings are rejected.")
+  void testGains() {
+    assertThat(estimator.getPositionGain()).isBetween(0.0, 1.0);
+    assertThat(estimator.getVelocityGain()).isPositive();
+    assertThatThrownBy(() -> new ArmStateEstimator(PERIOD, ArmStateEstimator.MAX_DELAY_CYCLES + 1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> estimator.setModel(KS, KG, KV, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> estimator.setNoise(0.01, 0, MEASUREMENT_STD))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /** Step the simulated arm by one period. */
+  private void step(double voltage) {
+    double dt = PERIOD / SUBSTEPS;
+    for (int i = 0; i < SUBSTEPS; i++) {
+      double net = voltage - KG * Math.cos(position) - KS * Math.signum(velocity);
+      double acceleration = (net - KV * velocity) / KA;
+      velocity += acceleration * dt;
+      position += velocity * dt;
+    }
+  }
+}
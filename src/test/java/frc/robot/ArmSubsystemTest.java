@@ -7,21 +7,35 @@ package frc.robot;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.revrobotics.CANSparkBase.ControlType;
 import com.revrobotics.CANSparkMax;
+import com.revrobotics.REVLibError;
 import com.revrobotics.RelativeEncoder;
+import com.revrobotics.SparkPIDController;
+import com.revrobotics.SparkPIDController.ArbFFUnits;
+import edu.wpi.first.hal.HAL;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.networktables.NetworkTableType;
+import edu.wpi.first.wpilibj.Preferences;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.Constants.ArmConstants;
+import frc.robot.devices.CanSignalSampler;
+import frc.robot.devices.DeviceConfigurator;
 import frc.robot.subsystems.ArmSubsystem;
+import frc.robot.telemetry.TelemetryPublisher;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -29,7 +43,10 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceLock;
 import org.mockito.AdditionalMatchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 
 class ArmSubsystemTest {
   private static final double DELTA = 5e-3;
@@ -55,6 +72,7 @@ class ArmSubsystemTest {
   @AfterEach
   public void closeArm() {
     arm.close(); // motor is closed from the arm close method
+    RobotLoopExtension.resetSingletons();
   }
 
   @Test
@@ -114,19 +132,22 @@ class ArmSubsystemTest {
     final double fakeVelocity = 0.123;
     when(mockEncoder.getVelocity()).thenReturn(fakeVelocity);
 
-    // The motor voltage should be set twice: once to 0 when configured and once  to a
-    // positive value when controller is run.
+    // Current and velocity telemetry come from the background sampler, so sample them now
+    CanSignalSampler.getInstance().sampleAll();
+
+    // The motor voltage should be set twice: once to 0 when configured and once to a
+    // negative value when controller is run, to accelerate the arm down to the low position.
     Command moveCommand = arm.moveToPosition(Constants.ArmConstants.ARM_LOW_POSITION);
     moveCommand.initialize();
     moveCommand.execute();
     verify(mockMotor, times(2)).setVoltage(anyDouble());
     verify(mockMotor).setVoltage(0.0);
-    verify(mockMotor, times(1)).setVoltage(AdditionalMatchers.gt(0.0));
+    verify(mockMotor, times(1)).setVoltage(AdditionalMatchers.lt(0.0));
 
     // This value was cheated by running working code as an example.  May be better to just
     // check direction of command for complex controllers and leave controller response tests
     // to simulation checking desired response over time.
-    final double expectedCommand = 0.33199;
+    final double expectedCommand = -1.01295;
     verify(mockMotor, times(1)).setVoltage(AdditionalMatchers.eq(expectedCommand, DELTA));
 
     // Alternative method: capture values and then use them in a test criteria
@@ -210,6 +231,157 @@ class ArmSubsystemTest {
         DELTA);
   }
 
+  @Test
+  @ResourceLock("timing")
+  @DisplayName("Test the control law running on its own loop.")
+  void testControlLoop() {
+    CANSparkMax fastMotor = mock(CANSparkMax.class, ArmSubsystemTest::revOk);
+    RelativeEncoder fastEncoder = mock(RelativeEncoder.class, ArmSubsystemTest::revOk);
+    HAL.initialize(500, 0);
+    SimHooks.pauseTiming();
+    try (ArmSubsystem fastArm =
+        new ArmSubsystem(
+            new ArmSubsystem.Hardware(fastMotor, fastEncoder), ArmConstants.CONTROL_PERIOD_SEC)) {
+      assertThat(fastArm.hasControlLoop()).isTrue();
+
+      // The control loop starts once the motor controller is configured
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+      verify(fastMotor, never()).setVoltage(AdditionalMatchers.not(eq(0.0)));
+      DeviceConfigurator.getInstance().configureAll();
+      SimHooks.stepTiming(0.0); // Wait for Notifiers
+
+      // The goal is handed to the control loop, so the arm is not at the goal until the loop has
+      // run, even though the stopped arm is within tolerance of a goal near its position
+      // A trapezoid profile keeps the voltage positive while the arm brakes at the end of the move
+      fastArm.setTimeOptimalProfile(false);
+      Command moveCommand = fastArm.moveToPosition(ArmConstants.ARM_OFFSET_RADS + 0.001);
+      moveCommand.initialize();
+      assertThat(fastArm.atGoalPosition()).isFalse();
+
+      // The control loop runs several times per robot loop without the command executing
+      final int cycles =
+          (int) Math.round(TimedRobot.kDefaultPeriod / ArmConstants.CONTROL_PERIOD_SEC);
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+      verify(fastMotor, atLeast(cycles)).setVoltage(AdditionalMatchers.gt(0.0));
+      assertThat(fastArm.getVoltageCommand()).isPositive();
+
+      // Status comes back through the snapshot once the short move is complete
+      SimHooks.stepTiming(0.1);
+      assertThat(fastArm.atGoalPosition()).isTrue();
+      fastArm.periodic();
+      readTelemetry();
+      assertThat(telemetryBooleanMap.get("Arm Enabled")).isTrue();
+
+      // Disable is applied on the next control cycle
+      fastArm.disable();
+      SimHooks.stepTiming(ArmConstants.CONTROL_PERIOD_SEC);
+      assertThat(fastArm.getVoltageCommand()).isZero();
+    } finally {
+      SimHooks.resumeTiming();
+    }
+  }
+
+  @Test
+  @ResourceLock("timing")
+  @DisplayName("Test the arm stays disabled when its motor controller is not configured.")
+  void testConfigurationFailed() {
+    // Plain mocks return null instead of kOk, so every configuration step fails
+    CANSparkMax failedMotor = mock(CANSparkMax.class);
+    RelativeEncoder failedEncoder = mock(RelativeEncoder.class);
+    HAL.initialize(500, 0);
+    SimHooks.pauseTiming();
+    try (ArmSubsystem failedArm =
+        new ArmSubsystem(
+            new ArmSubsystem.Hardware(failedMotor, failedEncoder),
+            ArmConstants.CONTROL_PERIOD_SEC)) {
+      DeviceConfigurator.getInstance().configureAll();
+      SimHooks.stepTiming(0.0); // Wait for Notifiers
+
+      // A move enables the arm only if the motor controller is configured
+      failedArm.setTimeOptimalProfile(false);
+      failedArm.moveToPosition(ArmConstants.ARM_OFFSET_RADS + 0.001).initialize();
+      SimHooks.stepTiming(TimedRobot.kDefaultPeriod);
+      verify(failedMotor, never()).setVoltage(AdditionalMatchers.not(eq(0.0)));
+      failedArm.periodic();
+      readTelemetry();
+      assertThat(telemetryBooleanMap.get("Arm Enabled")).isFalse();
+    } finally {
+      SimHooks.resumeTiming();
+    }
+  }
+
+  @Test
+  @DisplayName("Test the position loop closed on the motor controller.")
+  void testOnboardControl() {
+    CANSparkMax onboardMotor = mock(CANSparkMax.class);
+    RelativeEncoder onboardEncoder = mock(RelativeEncoder.class);
+    SparkPIDController pidController = mock(SparkPIDController.class);
+    try (ArmSubsystem onboardArm =
+        new ArmSubsystem(new ArmSubsystem.Hardware(onboardMotor, onboardEncoder, pidController))) {
+      onboardArm.setControlMode(ArmSubsystem.ControlMode.MOTOR_CONTROLLER);
+      Command moveCommand = onboardArm.moveToPosition(ArmConstants.ARM_HIGH_POSITION);
+      moveCommand.initialize();
+      moveCommand.execute();
+      assertThat(onboardArm.isOnboardControlActive()).isTrue();
+
+      // The gain is loaded when enabled, then the first set point of the move up is sent with
+      // feedforward to hold the arm against gravity
+      verify(pidController).setP(AdditionalMatchers.gt(0.0), eq(ArmConstants.ONBOARD_PID_SLOT));
+      verify(pidController)
+          .setReference(
+              AdditionalMatchers.gt(0.0),
+              eq(ControlType.kPosition),
+              eq(ArmConstants.ONBOARD_PID_SLOT),
+              AdditionalMatchers.gt(0.0),
+              eq(ArbFFUnits.kVoltage));
+      verify(onboardMotor, never()).setVoltage(AdditionalMatchers.not(eq(0.0)));
+      assertThat(onboardArm.getPositionReference()).isPositive();
+
+      // Disabling stops the motor with a voltage command again
+      onboardArm.disable();
+      assertThat(onboardArm.isOnboardControlActive()).isFalse();
+      verify(onboardMotor, times(2)).setVoltage(0.0);
+    }
+  }
+
+  @Test
+  @DisplayName("Test gains tuned through Preferences while enabled.")
+  void testLiveTuning() {
+    NetworkTableInstance inst = NetworkTableInstance.getDefault();
+    double staticGain = arm.getGains().ks;
+    double maxVelocity = arm.getGains().maxVelocity;
+    try {
+      Command moveCommand = arm.moveToPosition(ArmConstants.ARM_LOW_POSITION);
+      moveCommand.initialize();
+      moveCommand.execute();
+      long version = arm.getAppliedGainsVersion();
+      assertThat(arm.getGains().version).isEqualTo(version);
+
+      // A change publishes a new snapshot, but the move in progress keeps its gains
+      Preferences.setDouble(ArmConstants.ARM_KS_KEY, staticGain + 0.1);
+      assertThat(inst.waitForListenerQueue(1.0)).isTrue();
+      assertThat(arm.getGains().version).isEqualTo(version + 1);
+      assertEquals(staticGain + 0.1, arm.getGains().ks, DELTA);
+      moveCommand.execute();
+      assertThat(arm.getAppliedGainsVersion()).isEqualTo(version);
+
+      // The next move uses the new snapshot
+      Command highCommand = arm.moveToPosition(ArmConstants.ARM_HIGH_POSITION);
+      highCommand.initialize();
+      highCommand.execute();
+      assertThat(arm.getAppliedGainsVersion()).isEqualTo(version + 1);
+
+      // Invalid values are rejected and the current snapshot is kept
+      Preferences.setDouble(ArmConstants.ARM_VELOCITY_MAX_KEY, -1.0);
+      assertThat(inst.waitForListenerQueue(1.0)).isTrue();
+      assertThat(arm.getGains().version).isEqualTo(version + 1);
+      assertEquals(maxVelocity, arm.getGains().maxVelocity, DELTA);
+    } finally {
+      Preferences.setDouble(ArmConstants.ARM_KS_KEY, staticGain);
+      Preferences.setDouble(ArmConstants.ARM_VELOCITY_MAX_KEY, maxVelocity);
+    }
+  }
+
   @Test
   @DisplayName("Test Preferences Table")
   void testPrefs() {
@@ -226,6 +398,9 @@ class ArmSubsystemTest {
 
   /* Read in telemetry values from the network table and store in maps */
   private int readTelemetry() {
+    // Telemetry is published in a batch, normally at the end of DataLogging.periodic()
+    TelemetryPublisher.getInstance().flush();
+
     NetworkTable telemetryTable = NetworkTableInstance.getDefault().getTable("SmartDashboard");
     Set<String> telemetryKeys = telemetryTable.getKeys();
 
@@ -240,6 +415,14 @@ class ArmSubsystemTest {
     }
     return telemetryKeys.size();
   }
+
+  /** Mock answer that accepts every REVLib configuration call. */
+  private static Object revOk(InvocationOnMock invocation) throws Throwable {
+    if (invocation.getMethod().getReturnType() == REVLibError.class) {
+      return REVLibError.kOk;
+    }
+    return Mockito.RETURNS_DEFAULTS.answer(invocation);
+  }
 }
 
   // *** Available Telemetry Keys ***
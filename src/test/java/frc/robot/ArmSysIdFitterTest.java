@@ -0,0 +1,85 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import frc.tools.ArmSysIdFitter;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ArmSysIdFitterTest {
+  private static final double PERIOD = 0.002;
+  private static final double KS = 0.3;
+  private static final double KG = 1.2;
+  private static final double KV = 1.1;
+  private static final double KA = 0.08;
+  private static final double MIN_ANGLE = Math.toRadians(-45);
+  private static final double MAX_ANGLE = Math.toRadians(120);
+
+  private final Random random = new Random(151);
+  private double time;
+
+  @Test
+  @DisplayName("Test the gains of a simulated arm are recovered from the four tests.")
+  void testFit() {
+    ArmSysIdFitter fitter = new ArmSysIdFitter();
+    runTest(fitter, MIN_ANGLE, 1, 0, 1.0);
+    runTest(fitter, MAX_ANGLE, -1, 0, 1.0);
+    runTest(fitter, MIN_ANGLE, 1, 4.0, 0);
+    runTest(fitter, MAX_ANGLE, -1, 4.0, 0);
+
+    ArmSysIdFitter.Result result = fitter.fit();
+    assertThat(result.samples).isEqualTo(fitter.getSampleCount()).isGreaterThan(1000);
+    assertThat(result.ks).isCloseTo(KS, within(0.02));
+    assertThat(result.kg).isCloseTo(KG, within(0.02));
+    assertThat(result.kv).isCloseTo(KV, within(0.02));
+    assertThat(result.ka).isCloseTo(KA, within(0.01));
+    assertThat(result.rSquared).isGreaterThan(0.99);
+    assertThat(result.toString()).contains("ArmKS=", "ArmKG=", "ArmKV=");
+  }
+
+  @Test
+  @DisplayName("Test a fit without enough variation is rejected.")
+  void testNotEnoughData() {
+    ArmSysIdFitter fitter = new ArmSysIdFitter();
+    for (int i = 0; i < 100; i++) {
+      fitter.addSample(i * PERIOD, 2.0, 0.0, 1.0);
+    }
+    assertThatThrownBy(fitter::fit).isInstanceOf(IllegalStateException.class);
+  }
+
+  /**
+   * Run one test on a simulated arm, starting at rest against a stop, until the arm is 10 degrees
+   * from the other end of travel.
+   */
+  private void runTest(
+      ArmSysIdFitter fitter, double start, double direction, double step, double ramp) {
+    fitter.startTest();
+    double position = start;
+    double velocity = 0;
+    for (double t = 0; t < 10; t += PERIOD) {
+      double voltage = direction * (step + ramp * t);
+      if (direction > 0 ? position > MAX_ANGLE - 0.17 : position < MIN_ANGLE + 0.17) {
+        break;
+      }
+      // Velocity measurement noise
+      fitter.addSample(time, voltage, position, velocity + random.nextGaussian() * 0.002);
+
+      double acceleration =
+          (voltage - KS * Math.signum(velocity) - KG * Math.cos(position) - KV * velocity) / KA;
+      if (velocity == 0 && Math.abs(voltage - KG * Math.cos(position)) < KS) {
+        acceleration = 0;
+      }
+      velocity += acceleration * PERIOD;
+      position += velocity * PERIOD;
+      if (position < MIN_ANGLE || position > MAX_ANGLE) {
+        position = Math.max(MIN_ANGLE, Math.min(MAX_ANGLE, position));
+        velocity = 0;
+      }
+      time += PERIOD;
+    }
+    time += 1.0;
+  }
+}
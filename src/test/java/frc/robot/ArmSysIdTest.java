@@ -0,0 +1,113 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine.Direction;
+import frc.robot.Constants.ArmConstants;
+import frc.robot.RobotLoopExtension.Mode;
+import frc.robot.RobotLoopExtension.SimRobot;
+import frc.robot.subsystems.ArmSubsystem;
+import frc.sim.Constants.ArmSim;
+import frc.tools.ArmSysIdFitter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+/** System identification of the simulated arm, from the tests to the fitted gains. */
+@ExtendWith(RobotLoopExtension.class)
+@ResourceLock("timing")
+class ArmSysIdTest {
+  private static final int MAX_TEST_LOOPS =
+      (int) Math.ceil(ArmConstants.SYSID_TIMEOUT_SEC / 0.02) + 10;
+  private static final int MOVE_LOOPS = 150;
+
+  @Test
+  @DisplayName("Test the fitted gains match the simulated arm.")
+  void testFitSimulatedArm(SimRobot robot) throws IOException, InterruptedException {
+    robot.setMode(Mode.TELEOP);
+    robot.step(5);
+    ArmSubsystem arm = robot.getContainer().getArmSubsystem();
+
+    runTest(robot, arm.sysIdQuasistatic(Direction.kForward));
+    robot.step(50);
+    runTest(robot, arm.sysIdDynamic(Direction.kForward));
+    robot.step(50);
+    moveUp(robot, arm);
+    runTest(robot, arm.sysIdQuasistatic(Direction.kReverse));
+    moveUp(robot, arm);
+    runTest(robot, arm.sysIdDynamic(Direction.kReverse));
+
+    ArmSysIdFitter.Result result = fitNewestLog();
+
+    // Gains of the simulated arm: two 775pro motors through the gear reduction driving a uniform
+    // rod about one end
+    DCMotor motor = DCMotor.getVex775Pro(2);
+    double torquePerVolt = ArmSim.ARM_REDUCTION * motor.KtNMPerAmp / motor.rOhms;
+    double moment = ArmSim.ARM_MASS_KG * Math.pow(ArmSim.ARM_LENGTH_METERS, 2) / 3;
+    double expectedKg = ArmSim.ARM_MASS_KG * 9.8 * ArmSim.ARM_LENGTH_METERS / 2 / torquePerVolt;
+    double expectedKv = ArmSim.ARM_REDUCTION / motor.KvRadPerSecPerVolt;
+    double expectedKa = moment / torquePerVolt;
+
+    assertThat(result.rSquared).isGreaterThan(0.95);
+    assertThat(result.ks).isCloseTo(0, within(0.2));
+    assertThat(result.kg).isCloseTo(expectedKg, within(0.1 * expectedKg));
+    assertThat(result.kv).isCloseTo(expectedKv, within(0.15 * expectedKv));
+    assertThat(result.ka).isCloseTo(expectedKa, within(0.5 * expectedKa));
+  }
+
+  /** Run a test until it stops near the end of travel. */
+  private void runTest(SimRobot robot, Command test) {
+    test.schedule();
+    for (int i = 0; i < MAX_TEST_LOOPS && test.isScheduled(); i++) {
+      robot.step(1);
+    }
+    assertThat(test.isScheduled()).isFalse();
+  }
+
+  /** Move the arm up so a reverse test has room to run. */
+  private void moveUp(SimRobot robot, ArmSubsystem arm) {
+    arm.moveToPosition(ArmConstants.ARM_HIGH_POSITION).schedule();
+    robot.step(MOVE_LOOPS);
+  }
+
+  /** Fit the newest log, once the log writer has written all samples to it. */
+  private ArmSysIdFitter.Result fitNewestLog() throws IOException, InterruptedException {
+    DataLogManager.getLog().flush();
+    int previousCount = -1;
+    for (int attempt = 0; attempt < 50; attempt++) {
+      Thread.sleep(100);
+      ArmSysIdFitter fitter = new ArmSysIdFitter();
+      try {
+        fitter.read(newestLog());
+      } catch (IOException e) {
+        // The log may be renamed or partly written, try again
+        continue;
+      }
+      if (fitter.getSampleCount() > 0 && fitter.getSampleCount() == previousCount) {
+        return fitter.fit();
+      }
+      previousCount = fitter.getSampleCount();
+    }
+    throw new AssertionError("System identification samples were not written to the log");
+  }
+
+  private static Path newestLog() throws IOException {
+    try (Stream<Path> files = Files.list(Paths.get(DataLogManager.getLogDir()))) {
+      return files
+          .filter(file -> file.toString().endsWith(".wpilog"))
+          .max(Comparator.comparingLong(file -> file.toFile().lastModified()))
+          .orElseThrow(() -> new IOException("No log in " + DataLogManager.getLogDir()));
+    }
+  }
+}
@@ -0,0 +1,215 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import edu.wpi.first.math.controller.ArmFeedforward;
+import edu.wpi.first.math.controller.ProfiledPIDController;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import frc.robot.Constants.ArmConstants;
+import frc.robot.control.ArmTrajectory;
+import frc.robot.control.ArmTrajectoryPlanner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ArmTrajectoryPlannerTest {
+  private static final double PERIOD = 0.02;
+  private static final double KP = 3.0;
+  private static final double TOLERANCE = 1e-6;
+
+  private final TrapezoidProfile.Constraints constraints =
+      new TrapezoidProfile.Constraints(
+          ArmConstants.DEFAULT_MAX_VELOCITY_RAD_PER_SEC,
+          ArmConstants.DEFAULT_MAX_ACCELERATION_RAD_PER_SEC);
+  private final ArmFeedforward feedforward =
+      new ArmFeedforward(
+          ArmConstants.DEFAULT_KS_VOLTS,
+          ArmConstants.DEFAULT_KG_VOLTS,
+          ArmConstants.DEFAULT_KV_VOLTS_PER_SEC_PER_RAD);
+  private final ArmTrajectoryPlanner planner = new ArmTrajectoryPlanner(PERIOD, 2, 16);
+
+  @BeforeEach
+  void setup() {
+    planner.setConstraints(constraints.maxVelocity, constraints.maxAcceleration);
+    planner.setFeedforward(feedforward.ks, feedforward.kg, feedforward.kv);
+  }
+
+  @Test
+  @DisplayName("Test planned setpoints match the profiled PID controller.")
+  void testMatchesProfiledController() {
+    final double start = ArmConstants.ARM_LOW_POSITION;
+    final double goal = ArmConstants.ARM_HIGH_POSITION;
+    ProfiledPIDController controller = new ProfiledPIDController(KP, 0, 0, constraints, PERIOD);
+    controller.reset(start);
+    controller.setGoal(goal);
+
+    ArmTrajectory trajectory = planner.plan(start, 0, goal);
+    assertThat(trajectory.getPosition(0)).isEqualTo(start);
+    assertThat(trajectory.getPosition(trajectory.lastIndex())).isEqualTo(goal);
+
+    // Run past the end of the move to check the goal is held. The measurement lags the setpoint
+    // so the PID term is exercised too.
+    double measurement = start;
+    int index = 0;
+    for (int i = 0; i < trajectory.length() + 10; i++) {
+      double expectedOutput = controller.calculate(measurement);
+      TrapezoidProfile.State setpoint = controller.getSetpoint();
+      double expectedFeedforward = feedforward.calculate(setpoint.position, setpoint.velocity);
+
+      index = trajectory.next(index);
+      double position = trajectory.getPosition(index);
+      assertThat(position).isCloseTo(setpoint.position, within(TOLERANCE));
+      assertThat(trajectory.getVelocity(index)).isCloseTo(setpoint.velocity, within(TOLERANCE));
+      assertThat(KP * (position - measurement)).isCloseTo(expectedOutput, within(TOLERANCE));
+      assertThat(trajectory.getFeedforward(index))
+          .isCloseTo(expectedFeedforward, within(TOLERANCE));
+
+      measurement = setpoint.position - 0.01;
+    }
+    assertThat(index).isEqualTo(trajectory.lastIndex());
+  }
+
+  @Test
+  @DisplayName("Test moves that end moving match the trapezoid profile.")
+  void testEndVelocity() {
+    final double start = ArmConstants.ARM_LOW_POSITION;
+    final double goal = (ArmConstants.ARM_LOW_POSITION + ArmConstants.ARM_HIGH_POSITION) / 2;
+    final double endVelocity = constraints.maxVelocity / 2;
+    TrapezoidProfile profile = new TrapezoidProfile(constraints);
+    TrapezoidProfile.State current = new TrapezoidProfile.State(start, 0);
+    TrapezoidProfile.State goalState = new TrapezoidProfile.State(goal, endVelocity);
+
+    ArmTrajectory trajectory = planner.plan(start, 0, goal, endVelocity);
+    for (int i = 0; i < trajectory.lastIndex(); i++) {
+      TrapezoidProfile.State setpoint = profile.calculate(i * PERIOD, current, goalState);
+      assertThat(trajectory.getPosition(i)).isCloseTo(setpoint.position, within(TOLERANCE));
+      assertThat(trajectory.getVelocity(i)).isCloseTo(setpoint.velocity, within(TOLERANCE));
+    }
+    assertThat(trajectory.getPosition(trajectory.lastIndex())).isEqualTo(goal);
+    assertThat(trajectory.getVelocity(trajectory.lastIndex())).isEqualTo(endVelocity);
+    assertThat(trajectory.getFeedforward(trajectory.lastIndex()))
+        .isCloseTo(feedforward.calculate(goal, endVelocity), within(TOLERANCE));
+
+    // The end velocity is part of the cache key
+    assertThat(planner.plan(start, 0, goal)).isNotSameAs(trajectory);
+    assertThat(planner.plan(start, 0, goal, endVelocity)).isSameAs(trajectory);
+  }
+
+  @Test
+  @DisplayName("Test repeated moves are reused from the cache.")
+  void testCache() {
+    final double low = ArmConstants.ARM_LOW_POSITION;
+    final double high = ArmConstants.ARM_HIGH_POSITION;
+
+    ArmTrajectory up = planner.plan(low, 0, high);
+    ArmTrajectory down = planner.plan(high, 0, low);
+    assertThat(planner.getMissCount()).isEqualTo(2);
+
+    // Starts within the quantum share the plan
+    assertThat(planner.plan(low + 1e-5, 0, high)).isSameAs(up);
+    assertThat(planner.plan(high, 0, low)).isSameAs(down);
+    assertThat(planner.getHitCount()).isEqualTo(2);
+
+    // A third plan reuses the slot of the least recently used one
+    ArmTrajectory third = planner.plan(0, 0, high);
+    assertThat(third).isSameAs(up);
+    assertThat(third.getPosition(0)).isZero();
+    assertThat(planner.plan(high, 0, low)).isSameAs(down);
+    assertThat(planner.getMissCount()).isEqualTo(3);
+
+    // Setting the same gains keeps the plans, new constraints need a new plan
+    planner.setFeedforward(feedforward.ks, feedforward.kg, feedforward.kv);
+    planner.plan(high, 0, low);
+    assertThat(planner.getMissCount()).isEqualTo(3);
+    planner.setConstraints(1.0, 2.0);
+    planner.plan(high, 0, low);
+    assertThat(planner.getMissCount()).isEqualTo(4);
+  }
+
+  @Test
+  @DisplayName("Test moves longer than the capacity are planned in full.")
+  void testLongMove() {
+    // Slow constraints so the move needs many more samples than were allocated
+    planner.setConstraints(0.1, 0.1);
+    ArmTrajectory trajectory = planner.plan(0, 0, 1);
+    assertThat(trajectory.length()).isGreaterThan(16);
+    assertThat(trajectory.getPosition(trajectory.lastIndex())).isEqualTo(1);
+    assertThat(trajectory.getPosition(trajectory.lastIndex() - 1)).isCloseTo(1, within(1e-3));
+  }
+
+  @Test
+  @DisplayName("Test time-optimal moves stay within the voltage limit and beat the trapezoid.")
+  void testTimeOptimal() {
+    final double low = ArmConstants.ARM_LOW_POSITION;
+    final double high = ArmConstants.ARM_HIGH_POSITION;
+    final double ka = ArmConstants.KA_VOLTS_PER_RAD_PER_SEC_SQUARED;
+    final double limit = ArmConstants.PROFILE_VOLTAGE_LIMIT;
+    int trapezoidLength = planner.plan(low, 0, high).length();
+
+    planner.setFeedforward(feedforward.ks, feedforward.kg, feedforward.kv, ka);
+    planner.setVoltageLimit(limit);
+    assertThat(planner.isTimeOptimal()).isTrue();
+    ArmFeedforward withAcceleration =
+        new ArmFeedforward(feedforward.ks, feedforward.kg, feedforward.kv, ka);
+    for (double[] move : new double[][] {{low, high}, {high, low}}) {
+      ArmTrajectory trajectory = planner.plan(move[0], 0, move[1]);
+      assertThat(trajectory.length()).isLessThan(trapezoidLength);
+      assertThat(trajectory.getPosition(trajectory.lastIndex())).isEqualTo(move[1]);
+      assertThat(trajectory.getVelocity(trajectory.lastIndex())).isZero();
+
+      double direction = Math.signum(move[1] - move[0]);
+      for (int i = 0; i < trajectory.lastIndex(); i++) {
+        double velocity = trajectory.getVelocity(i);
+        assertThat(velocity * direction).isBetween(0.0, constraints.maxVelocity + TOLERANCE);
+        assertThat(Math.abs(trajectory.getFeedforward(i))).isLessThanOrEqualTo(limit + TOLERANCE);
+        assertThat((trajectory.getPosition(i + 1) - trajectory.getPosition(i)) * direction)
+            .isGreaterThanOrEqualTo(0.0);
+      }
+
+      // At full speed the feedforward is the arm model without acceleration
+      int cruise = trajectory.length() / 2;
+      assertThat(trajectory.getFeedforward(cruise))
+          .isCloseTo(
+              withAcceleration.calculate(
+                  trajectory.getPosition(cruise), trajectory.getVelocity(cruise), 0),
+              within(TOLERANCE));
+    }
+
+    // Gravity slows the start of a move up from horizontal but not from vertical
+    planner.setConstraints(10 * constraints.maxVelocity, constraints.maxAcceleration);
+    double fromHorizontal = planner.plan(0, 0, 1).getVelocity(1);
+    double fromVertical = planner.plan(Math.PI / 2, 0, Math.PI / 2 + 1).getVelocity(1);
+    assertThat(fromVertical).isGreaterThan(fromHorizontal);
+  }
+
+  @Test
+  @DisplayName("Test time-optimal moves are planned in well under a millisecond.")
+  void testTimeOptimalPlanTime() {
+    ArmTrajectoryPlanner fastPlanner =
+        new ArmTrajectoryPlanner(
+            ArmConstants.CONTROL_PERIOD_SEC,
+            ArmConstants.PLAN_CACHE_SIZE,
+            ArmConstants.PLAN_CAPACITY);
+    fastPlanner.setConstraints(constraints.maxVelocity, constraints.maxAcceleration);
+    fastPlanner.setFeedforward(
+        feedforward.ks,
+        feedforward.kg,
+        feedforward.kv,
+        ArmConstants.KA_VOLTS_PER_RAD_PER_SEC_SQUARED);
+    fastPlanner.setVoltageLimit(ArmConstants.PROFILE_VOLTAGE_LIMIT);
+
+    // Every move is different so none come from the cache
+    final int moves = 2000;
+    long start = 0;
+    for (int i = 0; i < 2 * moves; i++) {
+      if (i == moves) {
+        start = System.nanoTime();
+      }
+      fastPlanner.plan(ArmConstants.ARM_LOW_POSITION + i * 1e-4, 0, ArmConstants.ARM_HIGH_POSITION);
+    }
+    double averageSeconds = (System.nanoTime() - start) * 1e-9 / moves;
+    assertThat(fastPlanner.getHitCount()).isZero();
+    assertThat(averageSeconds).isLessThan(2e-4);
+  }
+}
@@ -0,0 +1,160 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import frc.robot.devices.CanBusBudget;
+import frc.robot.devices.CanBusBudget.StatusFrame;
+import frc.robot.devices.CanBusBudget.StatusSignal;
+import frc.robot.devices.DeviceSingletons;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CanBusBudgetTest {
+  private static final double WARNING_UTILIZATION = 0.3;
+
+  private final CanBusBudget budget = new CanBusBudget(WARNING_UTILIZATION);
+  private final List<String> warnings = new ArrayList<>();
+
+  @BeforeEach
+  void setup() {
+    budget.setWarningHandler(warnings::add);
+  }
+
+  @Test
+  @DisplayName("Test each frame is sent as often as its most frequently needed signal.")
+  void testFramePeriods() {
+    CanBusBudget.Controller leader =
+        budget
+            .addController("Leader", (frame, periodMs) -> true)
+            .need(StatusSignal.CURRENT, 0.1)
+            .need(StatusSignal.VELOCITY, 0.02)
+            .need(StatusSignal.POSITION, 0.005);
+    CanBusBudget.Controller follower =
+        budget.addController("Follower", (frame, periodMs) -> true).follow(leader);
+
+    assertThat(leader.getPeriodMs(StatusFrame.STATUS_0)).isEqualTo(CanBusBudget.FOLLOWER_PERIOD_MS);
+    assertThat(leader.getPeriodMs(StatusFrame.STATUS_1)).isEqualTo(20);
+    assertThat(leader.getPeriodMs(StatusFrame.STATUS_2)).isEqualTo(5);
+    assertThat(leader.getPeriodMs(StatusFrame.STATUS_5)).isEqualTo(CanBusBudget.UNUSED_PERIOD_MS);
+    for (StatusFrame frame : StatusFrame.values()) {
+      assertThat(follower.getPeriodMs(frame)).isEqualTo(CanBusBudget.UNUSED_PERIOD_MS);
+    }
+  }
+
+  @Test
+  @DisplayName("Test the bus load estimate adds the status and command frames of each controller.")
+  void testUtilization() {
+    double baseFrames = CanBusBudget.OTHER_FRAMES_PER_SEC;
+    assertThat(budget.getFramesPerSecond()).isCloseTo(baseFrames, within(1e-9));
+
+    CanBusBudget.Controller controller =
+        budget
+            .addController("Motor", (frame, periodMs) -> true)
+            .need(StatusSignal.POSITION, 0.01)
+            .commanded(0.02);
+    double unusedFrames = 6 * 1000.0 / CanBusBudget.UNUSED_PERIOD_MS;
+    double controllerFrames = 100 + 50 + unusedFrames;
+    assertThat(controller.getFramesPerSecond()).isCloseTo(controllerFrames, within(1e-9));
+    assertThat(budget.getUtilization())
+        .isCloseTo(
+            (baseFrames + controllerFrames) * CanBusBudget.BITS_PER_FRAME / CanBusBudget.BIT_RATE,
+            within(1e-9));
+    assertThat(budget.getUtilization()).isLessThan(budget.getDefaultUtilization());
+
+    // Adding a controller with the same name replaces it
+    budget.addController("Motor", (frame, periodMs) -> true);
+    assertThat(budget.getFramesPerSecond())
+        .isCloseTo(baseFrames + 7 * 1000.0 / CanBusBudget.UNUSED_PERIOD_MS, within(1e-9));
+  }
+
+  @Test
+  @DisplayName("Test a warning names the need that pushes the estimate over the budget, once.")
+  void testWarning() {
+    // Each controller with status 2 at 1 ms uses about 14% of the bus
+    budget.addController("First", (frame, periodMs) -> true).need(StatusSignal.POSITION, 0.001);
+    assertThat(warnings).isEmpty();
+
+    CanBusBudget.Controller second = budget.addController("Second", (frame, periodMs) -> true);
+    assertThat(warnings).isEmpty();
+    second.need(StatusSignal.POSITION, 0.001);
+    assertThat(warnings).hasSize(1);
+    assertThat(warnings.get(0)).contains("Second POSITION");
+
+    second.need(StatusSignal.VELOCITY, 0.001);
+    assertThat(warnings).hasSize(1);
+    assertThat(budget.getUtilization()).isGreaterThan(WARNING_UTILIZATION);
+  }
+
+  @Test
+  @DisplayName("Test reset removes the controllers and warns again for the next robot.")
+  void testReset() {
+    budget.addController("First", (frame, periodMs) -> true).need(StatusSignal.POSITION, 0.001);
+    budget.addController("Second", (frame, periodMs) -> true).need(StatusSignal.POSITION, 0.001);
+    assertThat(warnings).hasSize(1);
+
+    DeviceSingletons.reset(budget);
+    assertThat(budget.getFramesPerSecond())
+        .isCloseTo(CanBusBudget.OTHER_FRAMES_PER_SEC, within(1e-9));
+    budget.setWarningHandler(warnings::add);
+    budget.addController("First", (frame, periodMs) -> true).need(StatusSignal.POSITION, 0.001);
+    budget.addController("Second", (frame, periodMs) -> true).need(StatusSignal.POSITION, 0.001);
+    assertThat(warnings).hasSize(2);
+  }
+
+  @Test
+  @DisplayName("Test apply sends every frame period and reports controllers that reject them.")
+  void testApply() {
+    Map<StatusFrame, Integer> sent = new EnumMap<>(StatusFrame.class);
+    budget
+        .addController(
+            "Good",
+            (frame, periodMs) -> {
+              sent.put(frame, periodMs);
+              return true;
+            })
+        .need(StatusSignal.ANALOG_SENSOR, 0.05);
+    budget.addController("Bad", (frame, periodMs) -> frame != StatusFrame.STATUS_3);
+
+    assertThat(budget.apply()).containsExactly("Bad");
+    assertThat(sent).hasSize(StatusFrame.values().length);
+    assertThat(sent.get(StatusFrame.STATUS_3)).isEqualTo(50);
+    assertThat(sent.get(StatusFrame.STATUS_0)).isEqualTo(CanBusBudget.UNUSED_PERIOD_MS);
+  }
+
+  @Test
+  @DisplayName("Test temporary needs are sent until restored and count in the estimate meanwhile.")
+  void testTemporaryNeeds() {
+    Map<StatusFrame, Integer> sent = new EnumMap<>(StatusFrame.class);
+    CanBusBudget.Controller controller =
+        budget
+            .addController(
+                "Arm",
+                (frame, periodMs) -> {
+                  sent.put(frame, periodMs);
+                  return true;
+                })
+            .need(StatusSignal.POSITION, 0.02);
+    double declaredFrames = budget.getFramesPerSecond();
+
+    assertThat(
+            controller
+                .needTemporarily(StatusSignal.POSITION, 0.002)
+                .needTemporarily(StatusSignal.VELOCITY, 0.002)
+                .apply())
+        .isTrue();
+    assertThat(sent.get(StatusFrame.STATUS_1)).isEqualTo(2);
+    assertThat(sent.get(StatusFrame.STATUS_2)).isEqualTo(2);
+    assertThat(budget.getFramesPerSecond()).isGreaterThan(declaredFrames);
+
+    assertThat(controller.restore()).isTrue();
+    assertThat(sent.get(StatusFrame.STATUS_1)).isEqualTo(CanBusBudget.UNUSED_PERIOD_MS);
+    assertThat(sent.get(StatusFrame.STATUS_2)).isEqualTo(20);
+    assertThat(budget.getFramesPerSecond()).isCloseTo(declaredFrames, within(1e-9));
+  }
+}
@@ -0,0 +1,70 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import frc.robot.devices.CanSignalSampler;
+import frc.robot.devices.CanSignalSampler.Signal;
+import frc.robot.devices.CanSignalSampler.SignalGroup;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CanSignalSamplerTest {
+  private final CanSignalSampler sampler = new CanSignalSampler();
+
+  @AfterEach
+  void stopSampler() {
+    sampler.stop();
+  }
+
+  @Test
+  @DisplayName("Test values are cached until sampled.")
+  void testCachedValues() {
+    AtomicInteger reads = new AtomicInteger();
+    SignalGroup group = sampler.createGroup("Test", 2);
+    Signal signal = group.add(reads::incrementAndGet, 0.02);
+
+    // The signal is not read when added, since the device may not be configured yet
+    assertThat(signal.get()).isZero();
+    assertThat(reads.get()).isZero();
+
+    // Reading the cached value does not read the device
+    sampler.sampleAll();
+    assertThat(signal.get()).isEqualTo(1.0);
+    assertThat(signal.get()).isEqualTo(1.0);
+    assertThat(reads.get()).isEqualTo(1);
+
+    // A closed group is no longer sampled
+    group.close();
+    sampler.sampleAll();
+    assertThat(signal.get()).isEqualTo(1.0);
+  }
+
+  @Test
+  @DisplayName("Test background sampling and errors.")
+  void testBackgroundSampling() throws InterruptedException {
+    AtomicInteger reads = new AtomicInteger();
+    SignalGroup group = sampler.createGroup("Test", 2);
+    Signal fast = group.add(reads::incrementAndGet, CanSignalSampler.BASE_PERIOD_SECONDS);
+    group.add(
+        () -> {
+          throw new IllegalStateException("CAN timeout");
+        },
+        1.0e-9);
+
+    sampler.start();
+    long deadline = System.nanoTime() + 2_000_000_000L;
+    while (fast.get() < 5 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+
+    // The failing signal does not stop the others from being sampled
+    assertThat(fast.get()).isGreaterThanOrEqualTo(5.0);
+    assertThat(sampler.getErrorCount()).isPositive();
+
+    double[] snapshot = new double[2];
+    group.read(snapshot);
+    assertThat(snapshot[0]).isPositive();
+  }
+}
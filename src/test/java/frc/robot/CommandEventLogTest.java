@@ -0,0 +1,162 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.util.datalog.DataLog;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Commands;
+import frc.robot.telemetry.AsyncDataLog;
+import frc.robot.telemetry.CommandEventLog;
+import frc.tools.WpiLogReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+@ResourceLock("timing")
+class CommandEventLogTest {
+  @TempDir Path tempDir;
+
+  @BeforeEach
+  void setup() {
+    HAL.initialize(500, 0);
+    RobotLoopExtension.resetSingletons();
+  }
+
+  @AfterEach
+  void shutdown() {
+    RobotLoopExtension.resetSingletons();
+  }
+
+  @Test
+  @DisplayName("Test command initialize, interrupt and finish events are recorded.")
+  void testEvents() throws IOException {
+    DataLog log = new DataLog(tempDir.toString(), "commands.wpilog");
+    AsyncDataLog asyncLog = new AsyncDataLog(log);
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    new CommandEventLog(asyncLog).attach(scheduler);
+
+    // Interrupted while running
+    Command run = Commands.run(() -> {}).ignoringDisable(true).withName("Test: Run");
+    run.schedule();
+    scheduler.run();
+    scheduler.run();
+    run.cancel();
+
+    // Finishes on its first execute
+    Command once = Commands.runOnce(() -> {}).ignoringDisable(true).withName("Test: Once");
+    once.schedule();
+    scheduler.run();
+
+    asyncLog.close();
+    log.close();
+
+    Map<Integer, String> entries = new HashMap<>();
+    List<String> dictionary = new ArrayList<>();
+    List<Long> events = new ArrayList<>();
+    WpiLogReader.read(
+        tempDir.resolve("commands.wpilog"),
+        new WpiLogReader.Visitor() {
+          @Override
+          public void start(int entry, String name, String type, long timestamp) {
+            entries.put(entry, name);
+          }
+
+          @Override
+          public void record(int entry, long timestamp, ByteBuffer payload) {
+            String name = entries.get(entry);
+            if ("/command/dictionary".equals(name)) {
+              dictionary.add(WpiLogReader.getString(payload));
+            } else if ("/command/event".equals(name)) {
+              events.add(payload.getLong());
+            }
+          }
+        });
+
+    assertThat(dictionary).containsExactly("0,Test: Run", "1,Test: Once");
+    assertThat(events)
+        .containsExactly(
+            event(0, CommandEventLog.EVENT_INITIALIZE),
+            event(0, CommandEventLog.EVENT_INTERRUPT),
+            event(1, CommandEventLog.EVENT_INITIALIZE),
+            event(1, CommandEventLog.EVENT_FINISH));
+  }
+
+  @Test
+  @DisplayName("Test execute calls are counted per command, including commands with one name.")
+  void testExecuteCounts() throws IOException {
+    final int loops = 5;
+    DataLog log = new DataLog(tempDir.toString(), "executes.wpilog");
+    AsyncDataLog asyncLog = new AsyncDataLog(log);
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    SimHooks.pauseTiming();
+    try {
+      CommandEventLog commandLog = new CommandEventLog(asyncLog);
+      commandLog.attach(scheduler);
+
+      Command first = Commands.run(() -> {}).ignoringDisable(true).withName("Test: Run");
+      Command second = Commands.run(() -> {}).ignoringDisable(true).withName("Test: Run");
+      first.schedule();
+      for (int i = 0; i < loops; i++) {
+        scheduler.run();
+        if (i == 1) {
+          second.schedule();
+        }
+      }
+
+      // The counts are written once a second has passed
+      commandLog.periodic();
+      SimHooks.stepTiming(1.0);
+      commandLog.periodic();
+    } finally {
+      SimHooks.resumeTiming();
+    }
+    asyncLog.close();
+    log.close();
+
+    Map<Integer, String> entries = new HashMap<>();
+    List<String> dictionary = new ArrayList<>();
+    List<long[]> counts = new ArrayList<>();
+    WpiLogReader.read(
+        tempDir.resolve("executes.wpilog"),
+        new WpiLogReader.Visitor() {
+          @Override
+          public void start(int entry, String name, String type, long timestamp) {
+            entries.put(entry, name);
+          }
+
+          @Override
+          public void record(int entry, long timestamp, ByteBuffer payload) {
+            String name = entries.get(entry);
+            if ("/command/dictionary".equals(name)) {
+              dictionary.add(WpiLogReader.getString(payload));
+            } else if ("/command/executeCounts".equals(name)) {
+              long[] values = new long[payload.remaining() / Long.BYTES];
+              payload.asLongBuffer().get(values);
+              counts.add(values);
+            }
+          }
+        });
+
+    assertThat(dictionary).containsExactly("0,Test: Run", "1,Test: Run");
+    assertThat(counts).hasSize(1);
+    assertThat(counts.get(0)).containsExactly(loops, loops - 2);
+  }
+
+  /** Returns the event record of a command id and event code. */
+  private static long event(int id, int code) {
+    return ((long) id << CommandEventLog.EVENT_BITS) | code;
+  }
+}
@@ -0,0 +1,139 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import frc.robot.devices.DeviceConfigurator;
+import frc.robot.devices.DeviceConfigurator.Result;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class DeviceConfiguratorTest {
+  private static final double TIMEOUT_SECONDS = 1.0;
+  private static final int ATTEMPTS = 3;
+  private static final long STEP_MILLIS = 100;
+
+  private final DeviceConfigurator configurator = new DeviceConfigurator(TIMEOUT_SECONDS, ATTEMPTS);
+
+  @Test
+  @DisplayName("Test devices are configured at the same time and steps run in order.")
+  void testConcurrent() {
+    int deviceCount = 4;
+    List<List<Integer>> order = new ArrayList<>();
+    for (int i = 0; i < deviceCount; i++) {
+      List<Integer> steps = new ArrayList<>();
+      order.add(steps);
+      configurator
+          .device("Motor" + i)
+          .run("First", () -> slowStep(steps, 1))
+          .run("Second", () -> slowStep(steps, 2));
+    }
+
+    long start = System.nanoTime();
+    List<Result> results = configurator.configureAll();
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    // Each device takes two steps, so the devices must have overlapped
+    assertThat(seconds).isLessThan(deviceCount * STEP_MILLIS / 1000.0);
+    assertThat(results)
+        .extracting(Result::getName)
+        .containsExactly("Motor0", "Motor1", "Motor2", "Motor3");
+    for (int i = 0; i < deviceCount; i++) {
+      assertThat(results.get(i).isOk()).isTrue();
+      assertThat(results.get(i).getSeconds()).isGreaterThanOrEqualTo(2 * STEP_MILLIS / 1000.0);
+      assertThat(order.get(i)).containsExactly(1, 2);
+    }
+
+    // Configured devices are not configured again
+    assertThat(configurator.configureAll()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Test failed steps are retried and a step that keeps failing is reported.")
+  void testRetries() {
+    AtomicInteger calls = new AtomicInteger();
+    configurator.device("Flaky").step("Idle mode", () -> calls.incrementAndGet() == ATTEMPTS);
+    configurator
+        .device("Broken")
+        .step(
+            "Restore factory defaults",
+            () -> {
+              throw new IllegalStateException("No response");
+            })
+        .run("Follow", () -> {});
+
+    List<Result> results = configurator.configureAll();
+    assertThat(results.get(0).isOk()).isTrue();
+    assertThat(results.get(0).getRetries()).isEqualTo(ATTEMPTS - 1);
+    assertThat(results.get(1).isOk()).isFalse();
+    assertThat(results.get(1).getRetries()).isEqualTo(ATTEMPTS - 1);
+    assertThat(results.get(1).getFailure()).contains("Restore factory defaults");
+  }
+
+  @Test
+  @DisplayName("Test a device that hangs times out without holding up the others.")
+  void testTimeout() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    DeviceConfigurator.Device hung = configurator.device("Hung");
+    hung.run(
+        "Restore factory defaults",
+        () -> {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+    DeviceConfigurator.Device good = configurator.device("Good").run("Idle mode", () -> {});
+    List<List<Result>> done = new ArrayList<>();
+    configurator.whenConfigured(List.of(good), done::add);
+    configurator.whenConfigured(List.of(good, hung), done::add);
+
+    long start = System.nanoTime();
+    List<Result> results = configurator.configureAll();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    release.countDown();
+
+    assertThat(seconds).isBetween(TIMEOUT_SECONDS, 2 * TIMEOUT_SECONDS);
+    assertThat(results.get(0).isOk()).isFalse();
+    assertThat(results.get(0).getFailure()).contains("timed out", "Restore factory defaults");
+    assertThat(results.get(1).isOk()).isTrue();
+    // Each action gets the results of its own devices, so only the second waits on a failure
+    assertThat(done).hasSize(2);
+    assertThat(DeviceConfigurator.allOk(done.get(0))).isTrue();
+    assertThat(DeviceConfigurator.allOk(done.get(1))).isFalse();
+    assertThat(done.get(1)).extracting(Result::getName).containsExactly("Good", "Hung");
+  }
+
+  @Test
+  @DisplayName("Test an action is told when a step of its device failed.")
+  void testFailedAction() {
+    DeviceConfigurator.Device broken =
+        configurator.device("Broken").step("Status frame periods", () -> false);
+    List<List<Result>> done = new ArrayList<>();
+    configurator.whenConfigured(List.of(broken), done::add);
+
+    configurator.configureAll();
+
+    assertThat(done).hasSize(1);
+    assertThat(DeviceConfigurator.allOk(done.get(0))).isFalse();
+    assertThat(done.get(0).get(0).getFailure()).contains("Status frame periods");
+
+    // An action only runs once
+    configurator.configureAll();
+    assertThat(done).hasSize(1);
+  }
+
+  /** A step that takes a while, like a CAN round trip. */
+  private static void slowStep(List<Integer> steps, int step) {
+    try {
+      Thread.sleep(STEP_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    steps.add(step);
+  }
+}
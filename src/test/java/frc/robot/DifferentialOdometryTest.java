@@ -0,0 +1,58 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import frc.robot.control.DifferentialOdometry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class DifferentialOdometryTest {
+  private static final double DELTA = 1e-9;
+  private static final int STEPS = 100;
+
+  @Test
+  @DisplayName("Test driving straight moves along the heading.")
+  void testStraight() {
+    DifferentialOdometry odometry = new DifferentialOdometry(0.3, 1.0, 2.0);
+    odometry.reset(0.3, 1.0, 2.0, 1.0, 2.0, Math.PI / 2);
+
+    odometry.update(0.3, 1.5, 2.5);
+
+    assertThat(odometry.getX()).isCloseTo(1.0, within(DELTA));
+    assertThat(odometry.getY()).isCloseTo(2.5, within(DELTA));
+    assertThat(odometry.getHeading()).isCloseTo(Math.PI / 2, within(DELTA));
+  }
+
+  @Test
+  @DisplayName("Test a half circle ends at the diameter, whatever the number of updates.")
+  void testHalfCircle() {
+    double radius = 2.0;
+    double trackWidth = 0.6;
+    DifferentialOdometry odometry = new DifferentialOdometry(0, 0, 0);
+    for (int i = 1; i <= STEPS; i++) {
+      double turned = Math.PI * i / STEPS;
+      odometry.update(
+          turned, turned * (radius - trackWidth / 2), turned * (radius + trackWidth / 2));
+    }
+
+    // Turning left from the origin, facing along x, around the center at (0, radius)
+    assertThat(odometry.getX()).isCloseTo(0, within(1e-6));
+    assertThat(odometry.getY()).isCloseTo(2 * radius, within(1e-6));
+    assertThat(Math.abs(odometry.getHeading())).isCloseTo(Math.PI, within(DELTA));
+  }
+
+  @Test
+  @DisplayName("Test the heading follows the gyro from the reset pose and wraps.")
+  void testHeading() {
+    DifferentialOdometry odometry = new DifferentialOdometry(0, 0, 0);
+    odometry.reset(1.0, 0, 0, 0, 0, 3.0);
+
+    // Turning in place doesn't move the robot
+    odometry.update(1.5, -0.1, 0.1);
+
+    assertThat(odometry.getHeading()).isCloseTo(3.5 - 2 * Math.PI, within(DELTA));
+    assertThat(odometry.getX()).isCloseTo(0, within(DELTA));
+    assertThat(odometry.getY()).isCloseTo(0, within(DELTA));
+  }
+}
@@ -0,0 +1,76 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import frc.robot.RobotLoopExtension.Mode;
+import frc.robot.RobotLoopExtension.SimRobot;
+import frc.robot.subsystems.DriveSubsystem;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+/** Odometry integrated on its own loop, run against the simulated drivetrain. */
+@ExtendWith(RobotLoopExtension.class)
+@ResourceLock("timing")
+class DriveOdometryTest {
+  private static final double POSITION_DELTA = 0.05;
+  private static final double ANGLE_DELTA_DEG = 2.0;
+
+  @Test
+  @DisplayName("Test the pose follows the simulated drivetrain through a fast turn.")
+  void testFollowsTurn(SimRobot robot) {
+    robot.setMode(Mode.TELEOP);
+    robot.step(5);
+    DriveSubsystem drive = robot.getContainer().getDriveSubsystem();
+    Pose2d start = robot.getDrivetrainModel().getSimPose();
+
+    // Full speed on the left and less on the right turns right
+    robot.getDriverController().setLeftY(-1.0);
+    robot.getDriverController().setRightY(-0.4);
+    robot.getDriverController().notifyNewData();
+    robot.step(20);
+
+    // Compare the moves from the start, since the odometry starts at the origin
+    Transform2d simMove = robot.getDrivetrainModel().getSimPose().minus(start);
+    Pose2d pose = drive.getPose();
+    assertThat(simMove.getRotation().getDegrees()).isLessThan(-30);
+    assertThat(pose.getX()).isCloseTo(simMove.getX(), within(POSITION_DELTA));
+    assertThat(pose.getY()).isCloseTo(simMove.getY(), within(POSITION_DELTA));
+    assertThat(pose.getRotation().getDegrees())
+        .isCloseTo(simMove.getRotation().getDegrees(), within(ANGLE_DELTA_DEG));
+    assertThat(drive.getPoseTimestamp()).isPositive();
+
+    // The newest pose in the history is the current pose
+    double[] historyPose = new double[3];
+    assertThat(drive.getPoseHistory().getPose(drive.getPoseTimestamp(), historyPose)).isTrue();
+    assertThat(historyPose[0]).isCloseTo(pose.getX(), within(1e-9));
+    assertThat(historyPose[1]).isCloseTo(pose.getY(), within(1e-9));
+    assertThat(historyPose[2]).isCloseTo(pose.getRotation().getRadians(), within(1e-9));
+  }
+
+  @Test
+  @DisplayName("Test a reset pose is read at once and the odometry continues from it.")
+  void testReset(SimRobot robot) {
+    robot.setMode(Mode.TELEOP);
+    robot.step(5);
+    DriveSubsystem drive = robot.getContainer().getDriveSubsystem();
+
+    Pose2d reset = new Pose2d(2.0, 3.0, Rotation2d.fromDegrees(90));
+    drive.resetOdometry(reset);
+    assertThat(drive.getPose()).isEqualTo(reset);
+
+    // Driving straight ahead from the reset pose moves along +y
+    robot.getDriverController().setLeftY(-0.5);
+    robot.getDriverController().setRightY(-0.5);
+    robot.getDriverController().notifyNewData();
+    robot.step(50);
+    Pose2d pose = drive.getPose();
+    assertThat(pose.getY()).isGreaterThan(reset.getY() + 0.1);
+    assertThat(pose.getX()).isCloseTo(reset.getX(), within(POSITION_DELTA));
+  }
+}
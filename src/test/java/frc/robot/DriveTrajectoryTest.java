@@ -0,0 +1,122 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import com.sun.management.ThreadMXBean;
+import frc.robot.control.DriveTrajectory;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DriveTrajectoryTest {
+  private static final double DELTA = 1e-5;
+
+  // Accelerate at 1 m/s/s along x for a second, then drive at 1 m/s with the heading and
+  // curvature changing across the second segment
+  private static final double[] SAMPLES =
+      flatten(
+          new double[][] {
+            // time, x, y, heading, velocity, acceleration, curvature
+            {0.0, 0.0, 0.0, 0.0, 0.0, 1.0, 0.0},
+            {1.0, 0.5, 0.0, Math.PI - 0.1, 1.0, 0.0, 0.0},
+            {2.0, 1.5, 0.0, -Math.PI + 0.1, 1.0, 0.0, 1.0}
+          });
+
+  @TempDir Path directory;
+
+  private final double[] state = new double[DriveTrajectory.FIELDS];
+
+  @Test
+  @DisplayName("Test a written trajectory is memory-mapped and sampled between samples.")
+  void testSample() throws IOException {
+    DriveTrajectory trajectory = DriveTrajectory.load(writeFile(SAMPLES));
+    assertThat(trajectory.getSampleCount()).isEqualTo(3);
+    assertThat(trajectory.getTotalTime()).isCloseTo(2.0, within(DELTA));
+
+    // Constant acceleration from rest covers a quarter of the distance in half the time
+    trajectory.sample(0.5, state);
+    assertThat(state[DriveTrajectory.TIME]).isEqualTo(0.5);
+    assertThat(state[DriveTrajectory.X]).isCloseTo(0.125, within(DELTA));
+    assertThat(state[DriveTrajectory.VELOCITY]).isCloseTo(0.5, within(DELTA));
+    assertThat(state[DriveTrajectory.ACCELERATION]).isCloseTo(1.0, within(DELTA));
+
+    // The heading turns the short way across +/- pi
+    trajectory.sample(1.25, state);
+    assertThat(state[DriveTrajectory.X]).isCloseTo(0.75, within(DELTA));
+    assertThat(state[DriveTrajectory.HEADING]).isCloseTo(Math.PI - 0.05, within(DELTA));
+    assertThat(state[DriveTrajectory.CURVATURE]).isCloseTo(0.25, within(DELTA));
+    assertThat(state[DriveTrajectory.VELOCITY]).isCloseTo(1.0, within(DELTA));
+
+    trajectory.sample(-1, state);
+    assertThat(state[DriveTrajectory.X]).isZero();
+    trajectory.sample(10, state);
+    assertThat(state[DriveTrajectory.X]).isCloseTo(1.5, within(DELTA));
+    assertThat(state[DriveTrajectory.CURVATURE]).isCloseTo(1.0, within(DELTA));
+  }
+
+  @Test
+  @DisplayName("Test invalid trajectories are not written or loaded.")
+  void testInvalid() throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(DriveTrajectory.getFileSize(2));
+    assertThatThrownBy(() -> DriveTrajectory.write(new double[] {1, 0, 0, 0, 0, 0, 0}, buffer))
+        .isInstanceOf(IllegalArgumentException.class);
+    double[] backwards = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    assertThatThrownBy(() -> DriveTrajectory.write(backwards, buffer))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    Path file = writeFile(SAMPLES);
+    byte[] contents = Files.readAllBytes(file);
+    Path truncated = directory.resolve("truncated.traj");
+    Files.write(truncated, Arrays.copyOf(contents, contents.length - 4));
+    assertThatThrownBy(() -> DriveTrajectory.load(truncated)).isInstanceOf(IOException.class);
+    Path text = directory.resolve("text.traj");
+    Files.writeString(text, "not a trajectory file");
+    assertThatThrownBy(() -> DriveTrajectory.load(text)).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  @DisplayName("Test sampling does not allocate.")
+  void testNoAllocation() throws IOException {
+    DriveTrajectory trajectory = DriveTrajectory.load(writeFile(SAMPLES));
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    double sum = 0;
+    for (int i = 0; i < 20000; i++) {
+      trajectory.sample((i % 300) * 0.01, state);
+      sum += state[DriveTrajectory.X];
+    }
+    long start = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 20000; i++) {
+      trajectory.sample((i % 300) * 0.01, state);
+      sum += state[DriveTrajectory.X];
+    }
+    long allocated = threads.getThreadAllocatedBytes(threadId) - start;
+    assertThat(sum).isPositive();
+    assertThat(allocated).isLessThan(1024);
+  }
+
+  private Path writeFile(double[] samples) throws IOException {
+    ByteBuffer buffer =
+        ByteBuffer.allocate(DriveTrajectory.getFileSize(samples.length / DriveTrajectory.FIELDS));
+    DriveTrajectory.write(samples, buffer);
+    Path file = directory.resolve("test.traj");
+    Files.write(file, buffer.array());
+    return file;
+  }
+
+  private static double[] flatten(double[][] samples) {
+    double[] flat = new double[samples.length * DriveTrajectory.FIELDS];
+    for (int i = 0; i < samples.length; i++) {
+      System.arraycopy(samples[i], 0, flat, i * DriveTrajectory.FIELDS, DriveTrajectory.FIELDS);
+    }
+    return flat;
+  }
+}
@@ -0,0 +1,76 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import edu.wpi.first.math.kinematics.DifferentialDriveWheelSpeeds;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.RobotLoopExtension.Mode;
+import frc.robot.RobotLoopExtension.SimRobot;
+import frc.robot.subsystems.DriveSubsystem;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+/** Closed-loop wheel speed drive, run against the simulated drivetrain and battery. */
+@ExtendWith(RobotLoopExtension.class)
+@ResourceLock("timing")
+class DriveVelocityTest {
+  private static final double FRESH_BATTERY_VOLTS = 12.8;
+  private static final double TIRED_BATTERY_VOLTS = 11.0;
+  private static final double SPEED_DELTA = 0.1;
+
+  @Test
+  @DisplayName("Test full stick gives the same acceleration and top speed at any battery voltage.")
+  void testBatteryCompensation(SimRobot robot) {
+    robot.getContainer().getDriveSubsystem().setVelocityDrive(true);
+    robot.setMode(Mode.TELEOP);
+    robot.step(5);
+
+    double[] fresh = driveFullSpeed(robot, FRESH_BATTERY_VOLTS);
+    double[] tired = driveFullSpeed(robot, TIRED_BATTERY_VOLTS);
+
+    // Halfway through accelerating and at top speed
+    assertThat(fresh[0]).isCloseTo(tired[0], within(SPEED_DELTA));
+    assertThat(fresh[1])
+        .isCloseTo(DriveConstants.MAX_DRIVE_SPEED_METERS_PER_SEC, within(SPEED_DELTA));
+    assertThat(tired[1])
+        .isCloseTo(DriveConstants.MAX_DRIVE_SPEED_METERS_PER_SEC, within(SPEED_DELTA));
+    assertThat(robot.getDrivetrainModel().getRmsSpeedError()).isLessThan(0.15);
+    assertThat(robot.getDrivetrainModel().getMaxSpeedError()).isLessThan(0.5);
+  }
+
+  /**
+   * Drive forward at full stick from a stop and stop again.
+   *
+   * @return The speed after 0.4 seconds and after 1.5 seconds.
+   */
+  private static double[] driveFullSpeed(SimRobot robot, double batteryVolts) {
+    DriveSubsystem drive = robot.getContainer().getDriveSubsystem();
+    robot.setBatteryVoltage(batteryVolts);
+    robot.getDrivetrainModel().resetSpeedError();
+    double[] speeds = new double[2];
+
+    robot.getDriverController().setLeftY(-1.0);
+    robot.getDriverController().setRightY(-1.0);
+    robot.getDriverController().notifyNewData();
+    robot.step(20);
+    speeds[0] = averageSpeed(drive.getWheelSpeeds());
+    robot.step(55);
+    speeds[1] = averageSpeed(drive.getWheelSpeeds());
+    assertThat(drive.getLeftSpeedSetpoint())
+        .isCloseTo(DriveConstants.MAX_DRIVE_SPEED_METERS_PER_SEC, within(1e-9));
+
+    robot.getDriverController().setLeftY(0);
+    robot.getDriverController().setRightY(0);
+    robot.getDriverController().notifyNewData();
+    robot.step(75);
+    assertThat(averageSpeed(drive.getWheelSpeeds())).isCloseTo(0, within(SPEED_DELTA));
+    return speeds;
+  }
+
+  private static double averageSpeed(DifferentialDriveWheelSpeeds speeds) {
+    return (speeds.leftMetersPerSecond + speeds.rightMetersPerSecond) / 2;
+  }
+}
@@ -0,0 +1,47 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import frc.robot.telemetry.LatencyHistogram;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  @DisplayName("Test percentiles, maximum and overruns.")
+  void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram(100, 100, 5000);
+
+    // 98 short samples and two long ones
+    for (int i = 0; i < 98; i++) {
+      histogram.record(250);
+    }
+    histogram.record(6000);
+    histogram.record(7050);
+
+    assertThat(histogram.getCount()).isEqualTo(100);
+    assertThat(histogram.getPercentile(0.5)).isEqualTo(300);
+    assertThat(histogram.getPercentile(0.99)).isEqualTo(6100);
+    assertThat(histogram.getMax()).isEqualTo(7050);
+    assertThat(histogram.getOverBudgetCount()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Test overflow samples and reset.")
+  void testOverflowAndReset() {
+    LatencyHistogram histogram = new LatencyHistogram(100, 10, 500);
+    assertThat(histogram.getPercentile(0.5)).isZero();
+
+    // Beyond the last bucket the maximum is reported
+    histogram.record(50_000);
+    assertThat(histogram.getPercentile(0.5)).isEqualTo(50_000);
+
+    // The percentile never exceeds the largest sample
+    histogram.reset();
+    histogram.record(10);
+    assertThat(histogram.getPercentile(0.99)).isEqualTo(10);
+    assertThat(histogram.getCount()).isEqualTo(1);
+    assertThat(histogram.getOverBudgetCount()).isZero();
+  }
+}
@@ -0,0 +1,168 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import edu.wpi.first.util.datalog.DataLog;
+import frc.robot.telemetry.ArmState;
+import frc.robot.telemetry.CommandEventLog;
+import frc.tools.LogAnalyzer;
+import frc.tools.LogSummary;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LogAnalyzerTest {
+  @TempDir Path tempDir;
+
+  @Test
+  @DisplayName("Test statistics read from a log file.")
+  void testSummary() throws IOException {
+    Path log = tempDir.resolve("match.wpilog");
+    Files.write(log, createLog());
+
+    LogSummary summary = LogAnalyzer.analyze(log);
+
+    assertThat(summary.getLoopCount()).isEqualTo(100);
+    assertThat(summary.getLoopTimePercentile(0.5)).isEqualTo(0.005);
+    assertThat(summary.getLoopTimePercentile(1.0)).isEqualTo(0.030);
+
+    assertThat(summary.getCommandCount("Arm: Hold Position")).isEqualTo(2);
+
+    // The first goal settles after 0.5 s, after an overshoot, and the second is never reached
+    assertThat(summary.getSettleCount()).isEqualTo(1);
+    assertThat(summary.getSettleTimePercentile(1.0)).isCloseTo(0.5, within(1e-9));
+    assertThat(summary.getUnsettledGoals()).isEqualTo(1);
+
+    // The second brownout is still active at the end of the log
+    assertThat(summary.getBrownoutCount()).isEqualTo(2);
+    assertThat(summary.getBrownoutSeconds()).isCloseTo(0.3, within(1e-9));
+    assertThat(summary.getMismatchedEntries()).isZero();
+  }
+
+  @Test
+  @DisplayName("Test entries with a known name but another type are skipped.")
+  void testTypeMismatch() throws IOException {
+    Path directory = Files.createDirectories(tempDir.resolve("mismatch"));
+    DataLog log = new DataLog(directory.toString(), "mismatch.wpilog");
+    int loopTime = log.start("/robot/LoopTime", "int64");
+    int brownout = log.start("/robot/BrownedOut", "double");
+    log.appendInteger(loopTime, 5, 20_000);
+    log.appendDouble(brownout, 1.0, 40_000);
+    log.close();
+
+    LogSummary summary = LogAnalyzer.analyze(directory.resolve("mismatch.wpilog"));
+
+    assertThat(summary.getMismatchedEntries()).isEqualTo(2);
+    assertThat(summary.getLoopCount()).isZero();
+    assertThat(summary.getBrownoutCount()).isZero();
+  }
+
+  @Test
+  @DisplayName("Test a directory of logs is analyzed in parallel and combined.")
+  void testDirectory() throws IOException {
+    byte[] contents = createLog();
+    for (int i = 0; i < 4; i++) {
+      Files.write(tempDir.resolve("log" + i + ".wpilog"), contents);
+    }
+    Files.write(tempDir.resolve("notes.txt"), new byte[] {1});
+
+    List<Path> logs = LogAnalyzer.findLogs(List.of(tempDir));
+    assertThat(logs).hasSize(4);
+
+    LogSummary[] summaries = LogAnalyzer.analyze(logs, new ForkJoinPool(2));
+    LogSummary total = new LogSummary("total");
+    for (LogSummary summary : summaries) {
+      total.merge(summary);
+    }
+    assertThat(total.getLoopCount()).isEqualTo(400);
+    assertThat(total.getBrownoutCount()).isEqualTo(8);
+  }
+
+  @Test
+  @DisplayName("Test a log cut off in a record header is read up to that record.")
+  void testTruncatedLog() throws IOException {
+    byte[] contents = createLog();
+    // The start of a record header with four byte ids and sizes and eight byte timestamps
+    byte[] truncated = Arrays.copyOf(contents, contents.length + 3);
+    truncated[contents.length] = 0x7f;
+    Path log = tempDir.resolve("truncated.wpilog");
+    Files.write(log, truncated);
+
+    LogSummary summary = LogAnalyzer.analyze(log);
+
+    assertThat(summary.getLoopCount()).isEqualTo(100);
+    assertThat(summary.getBrownoutCount()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Test files that are not logs are rejected.")
+  void testInvalidLog() throws IOException {
+    Path file = tempDir.resolve("bad.wpilog");
+    Files.write(file, "not a log".getBytes(StandardCharsets.US_ASCII));
+    assertThatThrownBy(() -> LogAnalyzer.analyze(file)).isInstanceOf(IOException.class);
+  }
+
+  /** Write a log with the WPILib DataLog and return its contents. */
+  private byte[] createLog() throws IOException {
+    Path directory = Files.createDirectories(tempDir.resolve("fixture"));
+    DataLog log = new DataLog(directory.toString(), "fixture.wpilog");
+    int loopTime = log.start("/robot/LoopTime", "double");
+    int dictionary = log.start("/command/dictionary", "string");
+    int event = log.start("/command/event", "int64");
+    int armState = log.start("/arm/state", ArmState.struct.getTypeString());
+    int brownout = log.start("/robot/BrownedOut", "boolean");
+
+    for (int i = 0; i < 100; i++) {
+      log.appendDouble(loopTime, i == 99 ? 0.030 : 0.005, i * 20_000L);
+    }
+
+    log.appendString(dictionary, "0,Arm: Hold Position", 0);
+    // Events of command id 0
+    log.appendInteger(event, CommandEventLog.EVENT_INITIALIZE, 100_000);
+    log.appendInteger(event, CommandEventLog.EVENT_FINISH, 400_000);
+    log.appendInteger(event, CommandEventLog.EVENT_INITIALIZE, 500_000);
+    log.appendInteger(event, CommandEventLog.EVENT_INTERRUPT, 900_000);
+
+    // Goal 1.0 passes through the tolerance at 0.3 s, overshoots and settles from 0.6 s. Goal 2.0
+    // is never reached.
+    log.appendRaw(armState, armState(1.0, 0.0), 100_000);
+    log.appendRaw(armState, armState(1.0, 0.995), 300_000);
+    log.appendRaw(armState, armState(1.0, 1.05), 400_000);
+    log.appendRaw(armState, armState(1.0, 1.002), 600_000);
+    log.appendRaw(armState, armState(1.0, 1.001), 700_000);
+    log.appendRaw(armState, armState(1.0, 0.999), 800_000);
+    log.appendRaw(armState, armState(2.0, 1.0), 900_000);
+
+    log.appendBoolean(brownout, true, 200_000);
+    log.appendBoolean(brownout, false, 400_000);
+    log.appendBoolean(brownout, true, 1_880_000);
+    log.close();
+
+    // Removed so only the logs written by the tests are found in tempDir
+    Path file = directory.resolve("fixture.wpilog");
+    byte[] contents = Files.readAllBytes(file);
+    Files.delete(file);
+    return contents;
+  }
+
+  /** Returns a packed arm state record. */
+  private static byte[] armState(double goal, double position) {
+    ArmState state = new ArmState();
+    state.goal = goal;
+    state.position = position;
+    ByteBuffer bb = ByteBuffer.allocate(ArmState.struct.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+    ArmState.struct.pack(bb, state);
+    return bb.array();
+  }
+}
@@ -0,0 +1,57 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import frc.robot.RobotLoopExtension.Mode;
+import frc.robot.RobotLoopExtension.SimRobot;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+/**
+ * Allocation budgets for the robot loop in each mode. Garbage collection pauses cause loop overruns
+ * on the roboRIO, so a test fails when a change makes the robot thread, or the arm control and
+ * drive odometry threads beside it, allocate more. The control and logging code does not allocate,
+ * so the budgets leave room only for the WPILib scheduler and driver station code. Tighten the
+ * budgets as the loop gets leaner.
+ */
+@ExtendWith(RobotLoopExtension.class)
+@ResourceLock("timing")
+class LoopAllocationTest {
+
+  @Test
+  @DisplayName("Test allocation per loop while disabled.")
+  @AllocationBudget(bytesPerLoop = 4 * 1024)
+  void testDisabled(SimRobot robot) {
+    robot.setMode(Mode.DISABLED);
+    robot.measureAllocation();
+  }
+
+  @Test
+  @DisplayName("Test allocation per loop in autonomous.")
+  @AllocationBudget(bytesPerLoop = 4 * 1024)
+  void testAutonomous(SimRobot robot) {
+    robot.setMode(Mode.AUTONOMOUS);
+    robot.measureAllocation();
+  }
+
+  @Test
+  @DisplayName("Test allocation per loop in teleop with the arm holding position.")
+  @AllocationBudget(bytesPerLoop = 8 * 1024)
+  void testTeleopArmHolding(SimRobot robot) {
+    robot.setMode(Mode.TELEOP);
+    robot.step(5);
+
+    // Press and release B to move the arm to the high position, then let it settle and hold
+    robot.getDriverController().setBButton(true);
+    robot.getDriverController().notifyNewData();
+    robot.step(5);
+    robot.getDriverController().setBButton(false);
+    robot.getDriverController().notifyNewData();
+    robot.step(100);
+
+    robot.measureAllocation();
+    assertThat(robot.getContainer().getArmSubsystem().getCurrentCommand()).isNotNull();
+  }
+}
@@ -0,0 +1,94 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import com.sun.management.ThreadMXBean;
+import frc.robot.control.PoseHistory;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class PoseHistoryTest {
+  private static final double DELTA = 1e-9;
+
+  private final PoseHistory history = new PoseHistory(4);
+  private final double[] pose = new double[3];
+
+  @Test
+  @DisplayName("Test poses are interpolated between samples and the newest is held after them.")
+  void testInterpolation() {
+    assertThat(history.getPose(1.0, pose)).isFalse();
+    history.add(1.0, 0.0, 0.0, 0.0);
+    history.add(1.1, 1.0, 2.0, 0.4);
+
+    assertThat(history.getPose(1.025, pose)).isTrue();
+    assertThat(pose[0]).isCloseTo(0.25, within(DELTA));
+    assertThat(pose[1]).isCloseTo(0.5, within(DELTA));
+    assertThat(pose[2]).isCloseTo(0.1, within(DELTA));
+
+    assertThat(history.getPose(0.99, pose)).isFalse();
+    assertThat(history.getPose(5.0, pose)).isTrue();
+    assertThat(pose[0]).isCloseTo(1.0, within(DELTA));
+  }
+
+  @Test
+  @DisplayName("Test the heading turns the short way across +/- pi.")
+  void testHeadingWrap() {
+    history.add(0.0, 0.0, 0.0, Math.PI - 0.1);
+    history.add(1.0, 0.0, 0.0, -Math.PI + 0.1);
+    history.getPose(0.25, pose);
+    assertThat(pose[2]).isCloseTo(Math.PI - 0.05, within(DELTA));
+    history.getPose(0.75, pose);
+    assertThat(pose[2]).isCloseTo(-Math.PI + 0.05, within(DELTA));
+  }
+
+  @Test
+  @DisplayName("Test the oldest poses are overwritten and out of order poses replace the newest.")
+  void testRing() {
+    for (int i = 0; i < 6; i++) {
+      history.add(i, i, 0, 0);
+    }
+    assertThat(history.size()).isEqualTo(4);
+    assertThat(history.getPose(1.5, pose)).isFalse();
+    assertThat(history.getPose(2.5, pose)).isTrue();
+    assertThat(pose[0]).isCloseTo(2.5, within(DELTA));
+    assertThat(history.getPose(4.5, pose)).isTrue();
+    assertThat(pose[0]).isCloseTo(4.5, within(DELTA));
+
+    history.add(5.0, 10, 0, 0);
+    assertThat(history.size()).isEqualTo(4);
+    history.getPose(5.0, pose);
+    assertThat(pose[0]).isCloseTo(10, within(DELTA));
+
+    history.clear();
+    assertThat(history.size()).isZero();
+    assertThat(history.getPose(5.0, pose)).isFalse();
+    assertThatThrownBy(() -> new PoseHistory(0)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  @DisplayName("Test lookups do not allocate.")
+  void testNoAllocation() {
+    PoseHistory full = new PoseHistory(300);
+    for (int i = 0; i < 300; i++) {
+      full.add(i * 0.005, i, -i, 0.01 * i);
+    }
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    double sum = 0;
+    for (int i = 0; i < 20000; i++) {
+      full.getPose((i % 1500) * 0.001, pose);
+      sum += pose[0];
+    }
+    long start = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 20000; i++) {
+      full.getPose((i % 1500) * 0.001, pose);
+      sum += pose[0];
+    }
+    long allocated = threads.getThreadAllocatedBytes(threadId) - start;
+    assertThat(sum).isPositive();
+    assertThat(allocated).isLessThan(1024);
+  }
+}
@@ -0,0 +1,98 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import frc.robot.telemetry.RecordRing;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class RecordRingTest {
+
+  @Test
+  @DisplayName("Test records are drained in order with their payloads.")
+  void testOrderAndPayloads() {
+    RecordRing ring = new RecordRing(5);
+    assertThat(ring.getCapacity()).isEqualTo(8);
+
+    ring.offer(1, RecordRing.TYPE_DOUBLE, Double.doubleToRawLongBits(1.5), null, 100);
+    ring.offer(2, RecordRing.TYPE_STRING, 0, "hello", 200);
+
+    List<String> records = new ArrayList<>();
+    int drained =
+        ring.drain(
+            (entry, type, payload, message, timestamp) ->
+                records.add(entry + ":" + type + ":" + payload + ":" + message + ":" + timestamp),
+            10);
+
+    assertThat(drained).isEqualTo(2);
+    assertThat(records)
+        .containsExactly("1:0:" + Double.doubleToRawLongBits(1.5) + ":null:100", "2:3:0:hello:200");
+    assertThat(ring.drain((entry, type, payload, message, timestamp) -> {}, 10)).isZero();
+  }
+
+  @Test
+  @DisplayName("Test full ring drops and counts records.")
+  void testDropWhenFull() {
+    RecordRing ring = new RecordRing(4);
+    for (int i = 0; i < 6; i++) {
+      ring.offer(0, RecordRing.TYPE_INTEGER, i, null, i);
+    }
+    assertThat(ring.getDroppedCount()).isEqualTo(2);
+    assertThat(ring.getHighWaterMark()).isEqualTo(4);
+
+    // Space is available again after draining
+    assertThat(ring.drain((entry, type, payload, message, timestamp) -> {}, 2)).isEqualTo(2);
+    assertThat(ring.offer(0, RecordRing.TYPE_INTEGER, 7, null, 7)).isTrue();
+  }
+
+  @Test
+  @DisplayName("Test concurrent producers with a concurrent consumer.")
+  void testMultipleProducers() throws InterruptedException {
+    final int producers = 4;
+    final int perProducer = 50_000;
+    RecordRing ring = new RecordRing(1024);
+    long[] lastSeen = new long[producers];
+    long[] received = new long[1];
+    boolean[] outOfOrder = new boolean[1];
+    java.util.Arrays.fill(lastSeen, -1);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      final int producer = p;
+      Thread thread =
+          new Thread(
+              () -> {
+                for (int i = 0; i < perProducer; i++) {
+                  while (!ring.offer(producer, RecordRing.TYPE_INTEGER, i, null, i)) {
+                    Thread.onSpinWait();
+                  }
+                }
+              });
+      threads.add(thread);
+      thread.start();
+    }
+
+    long expected = (long) producers * perProducer;
+    while (received[0] < expected) {
+      ring.drain(
+          (entry, type, payload, message, timestamp) -> {
+            // Records from one producer must arrive in the order they were offered
+            if (payload != lastSeen[entry] + 1) {
+              outOfOrder[0] = true;
+            }
+            lastSeen[entry] = payload;
+            received[0]++;
+          },
+          256);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(outOfOrder[0]).isFalse();
+    assertThat(received[0]).isEqualTo(expected);
+    assertThat(ring.getHighWaterMark()).isLessThanOrEqualTo(ring.getCapacity());
+  }
+}
@@ -62,6 +62,7 @@ class RobotCommandTest {
       Thread.currentThread().interrupt();
     }
     robot.close();
+    RobotLoopExtension.resetSingletons();
     RoboRioSim.resetData();
     DriverStationSim.resetData();
     DriverStationSim.notifyNewData();
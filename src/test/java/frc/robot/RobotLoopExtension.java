@@ -0,0 +1,334 @@
+package frc.robot;
+
+import com.sun.management.ThreadMXBean;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants.ArmConstants;
+import frc.robot.devices.DeviceSingletons;
+import frc.robot.subsystems.ArmSubsystem;
+import frc.sim.ArmModel;
+import frc.sim.DrivetrainModel;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+/**
+ * JUnit extension that runs the whole robot in simulation, like {@code RobotCommandTest}, and
+ * measures how much the robot thread and the control loop threads allocate per loop.
+ *
+ * <p>The robot is started before each test and stopped after it. Tests get a {@link SimRobot}
+ * parameter to change mode, step loops and measure allocation against the {@link AllocationBudget}
+ * on the test method:
+ *
+ * <pre>{@code
+ * @ExtendWith(RobotLoopExtension.class)
+ * @ResourceLock("timing")
+ * class LoopAllocationTest {
+ *   @Test
+ *   @AllocationBudget(bytesPerLoop = 4096)
+ *   void teleop(RobotLoopExtension.SimRobot robot) {
+ *     robot.setMode(RobotLoopExtension.Mode.TELEOP);
+ *     robot.measureAllocation();
+ *   }
+ * }
+ * }</pre>
+ *
+ * <p>The arm tests share the positions and move helpers on {@link SimRobot}.
+ */
+public class RobotLoopExtension
+    implements BeforeEachCallback, AfterEachCallback, ParameterResolver {
+
+  private static final ExtensionContext.Namespace NAMESPACE =
+      ExtensionContext.Namespace.create(RobotLoopExtension.class);
+
+  /** Driver station modes the robot can be put in. */
+  public enum Mode {
+    DISABLED,
+    AUTONOMOUS,
+    TELEOP
+  }
+
+  @Override
+  public void beforeEach(ExtensionContext context) {
+    context.getStore(NAMESPACE).put(SimRobot.class, new SimRobot(context));
+  }
+
+  @Override
+  public void afterEach(ExtensionContext context) {
+    SimRobot robot = context.getStore(NAMESPACE).remove(SimRobot.class, SimRobot.class);
+    if (robot != null) {
+      robot.stop();
+    }
+  }
+
+  @Override
+  public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext context) {
+    return parameterContext.getParameter().getType() == SimRobot.class;
+  }
+
+  @Override
+  public Object resolveParameter(ParameterContext parameterContext, ExtensionContext context) {
+    return context.getStore(NAMESPACE).get(SimRobot.class, SimRobot.class);
+  }
+
+  /**
+   * Reset the process-wide singletons a robot registers with, so each test starts from a fresh
+   * robot even though every test runs in the same JVM.
+   */
+  static void resetSingletons() {
+    CommandScheduler scheduler = CommandScheduler.getInstance();
+    scheduler.cancelAll();
+    scheduler.unregisterAllSubsystems();
+    scheduler.getDefaultButtonLoop().clear();
+    DeviceSingletons.resetAll();
+  }
+
+  /** A robot running on its own thread with paused simulation timing. */
+  public static final class SimRobot {
+    /** The arm positions the arm tests move between. */
+    public static final double ARM_LOW = ArmConstants.ARM_LOW_POSITION;
+
+    public static final double ARM_HIGH = ArmConstants.ARM_HIGH_POSITION;
+
+    /** How close the arm must be to a position to have arrived. */
+    public static final double ARM_POS_DELTA = Units.degreesToRadians(2);
+
+    /** The loops an arm move may take before the test fails. */
+    public static final int ARM_MAX_LOOPS = 300;
+
+    /** The loops the arm must stay at the goal to have settled. */
+    public static final int ARM_SETTLED_LOOPS = 10;
+
+    /**
+     * Names of the Notifier threads that run control loops beside the robot thread. Their garbage
+     * pauses the robot thread too, so their allocation counts against the budget.
+     */
+    private static final List<String> CONTROL_THREADS = List.of("ArmControl", "DriveOdometry");
+
+    private final ExtensionContext context;
+    private final Robot robot;
+    private final Thread competitionThread;
+    private final XboxControllerSim driverController;
+    private final ThreadMXBean threads;
+
+    private SimRobot(ExtensionContext context) {
+      this.context = context;
+      threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+      threads.setThreadAllocatedMemoryEnabled(true);
+
+      HAL.initialize(500, 0);
+      SimHooks.pauseTiming();
+      DriverStationSim.resetData();
+      // Start clean even if a test without this extension left registrations behind
+      resetSingletons();
+      robot = new Robot();
+      competitionThread = new Thread(robot::startCompetition, "RobotLoopExtension");
+      driverController = new XboxControllerSim(Constants.OIConstants.DRIVER_CONTROLLER_PORT);
+
+      competitionThread.start();
+      SimHooks.stepTiming(0.0); // Wait for Notifiers
+    }
+
+    /** Returns the robot container. */
+    public RobotContainer getContainer() {
+      return robot.getRobotContainer();
+    }
+
+    /** Returns the arm simulation. */
+    public ArmModel getArmModel() {
+      return robot.simModel.getArmModel();
+    }
+
+    /** Returns the drivetrain simulation. */
+    public DrivetrainModel getDrivetrainModel() {
+      return robot.simModel.getDrivetrainModel();
+    }
+
+    /**
+     * Set the unloaded voltage of the simulated battery.
+     *
+     * @param voltage The voltage with no current drawn.
+     */
+    public void setBatteryVoltage(double voltage) {
+      robot.simModel.setBatteryVoltage(voltage);
+    }
+
+    /** Returns the simulated driver controller. */
+    public XboxControllerSim getDriverController() {
+      return driverController;
+    }
+
+    /**
+     * Put the robot in a driver station mode.
+     *
+     * @param mode The new mode.
+     */
+    public void setMode(Mode mode) {
+      DriverStationSim.setAutonomous(mode == Mode.AUTONOMOUS);
+      DriverStationSim.setEnabled(mode != Mode.DISABLED);
+      DriverStationSim.notifyNewData();
+    }
+
+    /**
+     * Run robot loops.
+     *
+     * @param loops The number of loops.
+     */
+    public void step(int loops) {
+      SimHooks.stepTiming(loops * TimedRobot.kDefaultPeriod);
+    }
+
+    /**
+     * Enable the robot in teleop and let the arm control loop start.
+     *
+     * @return The arm.
+     */
+    public ArmSubsystem enableArm() {
+      setMode(Mode.TELEOP);
+      step(5);
+      return getContainer().getArmSubsystem();
+    }
+
+    /**
+     * Move the arm to a start position and run loops until it has stopped there.
+     *
+     * @param position The start position in radians.
+     */
+    public void moveArmTo(double position) {
+      getContainer().getArmSubsystem().moveToPosition(position).schedule();
+      step(ARM_MAX_LOOPS / 2);
+    }
+
+    /**
+     * Run loops until the arm is within {@link #ARM_POS_DELTA} of a position.
+     *
+     * @param position The position in radians.
+     * @return The number of loops it took.
+     */
+    public int loopsToReach(double position) {
+      ArmSubsystem arm = getContainer().getArmSubsystem();
+      for (int loops = 0; loops < ARM_MAX_LOOPS; loops++) {
+        if (Math.abs(arm.getMeasurement() - position) <= ARM_POS_DELTA) {
+          return loops;
+        }
+        step(1);
+      }
+      throw new AssertionError("Arm did not reach " + position);
+    }
+
+    /**
+     * Run loops until the arm is at its goal and stays there for {@link #ARM_SETTLED_LOOPS} loops.
+     *
+     * @param eachLoop Called after every loop, to record the move.
+     * @return The number of loops until the arm reached the goal for the last time.
+     */
+    public int loopsToSettle(Runnable eachLoop) {
+      ArmSubsystem arm = getContainer().getArmSubsystem();
+      int settledSince = -1;
+      for (int loops = 0; loops < ARM_MAX_LOOPS; loops++) {
+        step(1);
+        eachLoop.run();
+        if (!arm.atGoalPosition()) {
+          settledSince = -1;
+        } else if (settledSince < 0) {
+          settledSince = loops;
+        } else if (loops - settledSince >= ARM_SETTLED_LOOPS) {
+          return settledSince;
+        }
+      }
+      throw new AssertionError("Arm did not settle at the goal");
+    }
+
+    /**
+     * Run the loops declared in the test's {@link AllocationBudget} and fail if the robot thread
+     * and the control loop threads together allocated more than the budget per loop.
+     *
+     * @return The average bytes allocated per loop.
+     */
+    public long measureAllocation() {
+      AllocationBudget budget =
+          context.getRequiredTestMethod().getAnnotation(AllocationBudget.class);
+      if (budget == null) {
+        throw new IllegalStateException("Test method has no @AllocationBudget");
+      }
+
+      step(budget.warmupLoops());
+      List<Thread> measured = findMeasuredThreads();
+      long start = readAllocatedBytes(measured);
+      step(budget.loops());
+      long bytesPerLoop = (readAllocatedBytes(measured) - start) / budget.loops();
+
+      context.publishReportEntry("bytesPerLoop", Long.toString(bytesPerLoop));
+      if (bytesPerLoop > budget.bytesPerLoop()) {
+        throw new AssertionError(
+            context.getDisplayName()
+                + " allocated "
+                + bytesPerLoop
+                + " bytes per loop on the robot and control threads, budget is "
+                + budget.bytesPerLoop());
+      }
+      return bytesPerLoop;
+    }
+
+    /**
+     * Returns the robot thread and the running control loop threads. A control loop that runs on
+     * the robot thread in this configuration, like the arm without its own Notifier, has no thread.
+     */
+    private List<Thread> findMeasuredThreads() {
+      List<Thread> measured = new ArrayList<>();
+      measured.add(competitionThread);
+      for (Thread thread : Thread.getAllStackTraces().keySet()) {
+        if (CONTROL_THREADS.contains(thread.getName())) {
+          measured.add(thread);
+        }
+      }
+      return measured;
+    }
+
+    /**
+     * Read the bytes allocated by the measured threads. A thread that died, for example the robot
+     * thread in robotInit, stops counting its allocation, so it fails the test instead of passing
+     * any budget.
+     */
+    private long readAllocatedBytes(List<Thread> measured) {
+      long total = 0;
+      for (Thread thread : measured) {
+        long bytes = threads.getThreadAllocatedBytes(thread.getId());
+        if (!thread.isAlive()) {
+          throw new AssertionError("The " + thread.getName() + " thread is not running");
+        }
+        if (bytes < 0) {
+          throw new AssertionError("Thread allocation can't be measured on this JVM");
+        }
+        total += bytes;
+      }
+      return total;
+    }
+
+    private void stop() {
+      robot.endCompetition();
+      try {
+        competitionThread.interrupt();
+        competitionThread.join();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      robot.close();
+      resetSingletons();
+      RoboRioSim.resetData();
+      DriverStationSim.resetData();
+      DriverStationSim.notifyNewData();
+    }
+  }
+}
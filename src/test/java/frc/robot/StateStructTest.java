@@ -0,0 +1,67 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.telemetry.ArmState;
+import frc.robot.telemetry.DriveState;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class StateStructTest {
+
+  @Test
+  @DisplayName("Test arm state struct round trip.")
+  void testArmState() {
+    ArmState state = new ArmState();
+    state.goal = 1.0;
+    state.position = 0.9;
+    state.velocity = 0.5;
+    state.setpointPosition = 0.95;
+    state.setpointVelocity = 0.4;
+    state.pidOutput = 0.2;
+    state.feedforward = 1.1;
+    state.voltage = 1.3;
+    state.current = 12.5;
+    state.enabled = true;
+
+    ByteBuffer bb = ByteBuffer.allocate(ArmState.struct.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+    ArmState.struct.pack(bb, state);
+    assertThat(bb.remaining()).isZero();
+
+    bb.rewind();
+    ArmState decoded = ArmState.struct.unpack(bb);
+    assertThat(decoded).usingRecursiveComparison().isEqualTo(state);
+  }
+
+  @Test
+  @DisplayName("Test drive state struct round trip.")
+  void testDriveState() {
+    DriveState state = new DriveState();
+    state.pose = new Pose2d(1.0, 2.0, Rotation2d.fromDegrees(30));
+    state.leftPosition = 3.0;
+    state.rightPosition = 3.5;
+    state.gyroAngle = 30;
+    state.gyroRate = -2;
+    for (int i = 0; i < DriveState.MOTOR_COUNT; i++) {
+      state.voltage[i] = 12 - i;
+      state.current[i] = 10 + i;
+      state.temperature[i] = 30 + i;
+    }
+
+    ByteBuffer bb = ByteBuffer.allocate(DriveState.struct.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+    DriveState.struct.pack(bb, state);
+    assertThat(bb.remaining()).isZero();
+
+    bb.rewind();
+    DriveState decoded = DriveState.struct.unpack(bb);
+    assertThat(decoded.pose).isEqualTo(state.pose);
+    assertThat(decoded.voltage).containsExactly(state.voltage);
+    assertThat(decoded.current).containsExactly(state.current);
+    assertThat(decoded.temperature).containsExactly(state.temperature);
+    assertThat(decoded.gyroRate).isEqualTo(state.gyroRate);
+  }
+}
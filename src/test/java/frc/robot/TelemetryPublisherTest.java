@@ -0,0 +1,71 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import frc.robot.telemetry.TelemetryPublisher;
+import frc.robot.telemetry.TelemetryPublisher.BooleanSignal;
+import frc.robot.telemetry.TelemetryPublisher.DoubleSignal;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TelemetryPublisherTest {
+  private static final double DELTA = 1e-9;
+
+  private final TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+  private final NetworkTable table = NetworkTableInstance.getDefault().getTable("SmartDashboard");
+
+  @Test
+  @DisplayName("Test values inside the deadband are skipped.")
+  void testDeadband() {
+    DoubleSignal signal = telemetry.addDouble("Test Deadband", 0.5);
+
+    // The first value is always published
+    signal.set(1.0);
+    telemetry.flush();
+    assertThat(table.getEntry("Test Deadband").getDouble(-1)).isEqualTo(1.0);
+
+    // A small change is skipped and counted
+    long skipped = telemetry.getSkipCount();
+    signal.set(1.2);
+    telemetry.flush();
+    assertThat(table.getEntry("Test Deadband").getDouble(-1)).isEqualTo(1.0);
+    assertThat(telemetry.getSkipCount()).isEqualTo(skipped + 1);
+
+    // A change outside the deadband of the last published value is published
+    long published = telemetry.getPublishCount();
+    signal.set(1.6);
+    telemetry.flush();
+    assertThat(table.getEntry("Test Deadband").getDouble(-1)).isCloseTo(1.6, within(DELTA));
+    assertThat(telemetry.getPublishCount()).isEqualTo(published + 1);
+
+    // A signal that was not set is neither published nor skipped
+    skipped = telemetry.getSkipCount();
+    published = telemetry.getPublishCount();
+    telemetry.flush();
+    assertThat(telemetry.getSkipCount()).isEqualTo(skipped);
+    assertThat(telemetry.getPublishCount()).isEqualTo(published);
+  }
+
+  @Test
+  @DisplayName("Test boolean signals and signal reuse.")
+  void testBooleanAndReuse() {
+    BooleanSignal signal = telemetry.addBoolean("Test Boolean");
+    assertThat(telemetry.addBoolean("Test Boolean")).isSameAs(signal);
+
+    signal.set(true);
+    telemetry.flush();
+    assertThat(table.getEntry("Test Boolean").getBoolean(false)).isTrue();
+
+    long skipped = telemetry.getSkipCount();
+    signal.set(true);
+    telemetry.flush();
+    assertThat(telemetry.getSkipCount()).isEqualTo(skipped + 1);
+
+    signal.set(false);
+    telemetry.flush();
+    assertThat(table.getEntry("Test Boolean").getBoolean(true)).isFalse();
+  }
+}
@@ -0,0 +1,97 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import frc.robot.RobotLoopExtension.Mode;
+import frc.robot.RobotLoopExtension.SimRobot;
+import frc.robot.commands.FollowTrajectory;
+import frc.robot.control.DriveTrajectory;
+import frc.robot.subsystems.DriveSubsystem;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+/** A compiled trajectory followed by the simulated drivetrain. */
+@ExtendWith(RobotLoopExtension.class)
+@ResourceLock("timing")
+class TrajectoryFollowTest {
+  private static final double PERIOD = 0.02;
+  private static final double ACCELERATION = 1.0;
+  private static final double CRUISE_VELOCITY = 1.0;
+  private static final double START_X = 1.0;
+  private static final double START_Y = 2.0;
+  private static final double DISTANCE = 2.0;
+  private static final double POSITION_DELTA = 0.1;
+
+  @TempDir Path directory;
+
+  @Test
+  @DisplayName("Test a straight trajectory is driven to its end and the command finishes.")
+  void testStraight(SimRobot robot) throws IOException {
+    robot.setMode(Mode.TELEOP);
+    robot.step(5);
+    DriveSubsystem drive = robot.getContainer().getDriveSubsystem();
+    DriveTrajectory trajectory = DriveTrajectory.load(writeStraight());
+    assertThat(trajectory.getTotalTime()).isCloseTo(3.0, within(1e-6));
+
+    FollowTrajectory command = new FollowTrajectory("FollowStraight", drive, trajectory, true);
+    command.schedule();
+    robot.step(5);
+    assertThat(drive.getPose().getX()).isGreaterThan(START_X);
+
+    robot.step((int) Math.ceil(trajectory.getTotalTime() / PERIOD) + 5);
+    assertThat(command.isScheduled()).isFalse();
+    assertThat(drive.getPose().getX()).isCloseTo(START_X + DISTANCE, within(POSITION_DELTA));
+    assertThat(drive.getPose().getY()).isCloseTo(START_Y, within(POSITION_DELTA));
+  }
+
+  /** Write a trapezoid profile along +x from the start position. */
+  private Path writeStraight() throws IOException {
+    double accelerationTime = CRUISE_VELOCITY / ACCELERATION;
+    double accelerationDistance = 0.5 * ACCELERATION * accelerationTime * accelerationTime;
+    double cruiseTime = (DISTANCE - 2 * accelerationDistance) / CRUISE_VELOCITY;
+    double totalTime = 2 * accelerationTime + cruiseTime;
+    int sampleCount = (int) Math.round(totalTime / PERIOD) + 1;
+
+    double[] samples = new double[sampleCount * DriveTrajectory.FIELDS];
+    for (int i = 0; i < sampleCount; i++) {
+      double time = i * PERIOD;
+      double distance;
+      double velocity;
+      double acceleration;
+      if (time < accelerationTime) {
+        distance = 0.5 * ACCELERATION * time * time;
+        velocity = ACCELERATION * time;
+        acceleration = ACCELERATION;
+      } else if (time < accelerationTime + cruiseTime) {
+        distance = accelerationDistance + CRUISE_VELOCITY * (time - accelerationTime);
+        velocity = CRUISE_VELOCITY;
+        acceleration = 0;
+      } else {
+        double remaining = Math.max(totalTime - time, 0);
+        distance = DISTANCE - 0.5 * ACCELERATION * remaining * remaining;
+        velocity = ACCELERATION * remaining;
+        acceleration = -ACCELERATION;
+      }
+      int offset = i * DriveTrajectory.FIELDS;
+      samples[offset + DriveTrajectory.TIME] = time;
+      samples[offset + DriveTrajectory.X] = START_X + distance;
+      samples[offset + DriveTrajectory.Y] = START_Y;
+      samples[offset + DriveTrajectory.VELOCITY] = velocity;
+      samples[offset + DriveTrajectory.ACCELERATION] = acceleration;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(DriveTrajectory.getFileSize(sampleCount));
+    DriveTrajectory.write(samples, buffer);
+    Path file = directory.resolve("Straight.traj");
+    Files.write(file, buffer.array());
+    return file;
+  }
+}
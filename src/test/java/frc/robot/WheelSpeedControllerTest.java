@@ -0,0 +1,97 @@
+package frc.robot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import frc.robot.control.WheelSpeedController;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class WheelSpeedControllerTest {
+  private static final double PERIOD = 0.02;
+  private static final int SUBSTEPS = 20;
+  private static final double KS = 0.1;
+  private static final double KV = 2.8;
+  private static final double KA = 0.3;
+  private static final double MAX_ACCELERATION = 4.0;
+
+  private final WheelSpeedController controller = new WheelSpeedController(PERIOD);
+
+  // Simulated wheel
+  private double speed;
+
+  @BeforeEach
+  void setup() {
+    controller.setFeedforward(KS, KV, KA);
+    controller.setPid(1.0, 0, 0);
+    controller.setMaxAcceleration(MAX_ACCELERATION);
+    controller.reset(0);
+  }
+
+  @Test
+  @DisplayName("Test the setpoint accelerates at the limit and the wheel follows it.")
+  void testAcceleration() {
+    for (int i = 0; i < 40; i++) {
+      double lastSetpoint = controller.getSetpoint();
+      step(controller.calculate(3.0, speed));
+      assertThat(controller.getSetpoint() - lastSetpoint)
+          .isCloseTo(Math.min(MAX_ACCELERATION * PERIOD, 3.0 - lastSetpoint), within(1e-9));
+      assertThat(Math.abs(controller.getError())).isLessThan(0.1);
+    }
+    assertThat(controller.getSetpoint()).isCloseTo(3.0, within(1e-9));
+    for (int i = 0; i < 25; i++) {
+      step(controller.calculate(3.0, speed));
+    }
+    assertThat(controller.getAcceleration()).isZero();
+    assertThat(speed).isCloseTo(3.0, within(0.01));
+  }
+
+  @Test
+  @DisplayName("Test a reset continues from the measured speed and the integral is limited.")
+  void testReset() {
+    controller.reset(2.0);
+    controller.calculate(2.0, 2.0);
+    assertThat(controller.getSetpoint()).isEqualTo(2.0);
+    assertThat(controller.getAcceleration()).isZero();
+
+    // Stalled wheel: the integral stops growing at its limit
+    controller.setPid(0, 10, 0);
+    double voltage = 0;
+    for (int i = 0; i < 100; i++) {
+      voltage = controller.calculate(2.0, 0.0);
+    }
+    assertThat(voltage)
+        .isCloseTo(KS + KV * 2.0 + WheelSpeedController.INTEGRATOR_RANGE_VOLTS, within(1e-9));
+  }
+
+  @Test
+  @DisplayName("Test the integral does not wind up while the output is limited to the supply.")
+  void testSaturation() {
+    // A wheel asked for more speed than the supply can give
+    controller.setPid(1.0, 10, 0);
+    double supply = 6.0;
+    for (int i = 0; i < 150; i++) {
+      double voltage = controller.calculate(3.0, speed);
+      double applied = Math.max(-supply, Math.min(supply, voltage));
+      controller.setAppliedVoltage(applied);
+      step(applied);
+    }
+    assertThat(speed).isLessThan(2.5);
+
+    // Only the periods before the output reached the limit were integrated, so when the speed
+    // catches up to the setpoint little more than the feedforward is applied
+    double voltage = controller.calculate(3.0, 3.0);
+    assertThat(voltage - (KS + KV * 3.0))
+        .isLessThan(0.25 * WheelSpeedController.INTEGRATOR_RANGE_VOLTS);
+  }
+
+  /** Step the simulated wheel by one period. */
+  private void step(double voltage) {
+    double dt = PERIOD / SUBSTEPS;
+    for (int i = 0; i < SUBSTEPS; i++) {
+      double friction = Math.abs(speed) > 1e-3 ? KS * Math.signum(speed) : 0;
+      speed += (voltage - friction - KV * speed) / KA * dt;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package frc.robot.devices;
+
+/**
+ * Resets the device singletons between tests. The reset methods are package-private so robot code
+ * can't clear the registrations of a running robot.
+ */
+public final class DeviceSingletons {
+
+  private DeviceSingletons() {}
+
+  /** Reset the sampler, bus budget and configurator instances. */
+  public static void resetAll() {
+    CanSignalSampler.getInstance().reset();
+    reset(CanBusBudget.getInstance());
+    DeviceConfigurator.getInstance().reset();
+  }
+
+  /**
+   * Reset a bus budget.
+   *
+   * @param budget The budget to reset.
+   */
+  public static void reset(CanBusBudget budget) {
+    budget.reset();
+  }
+}
@@ -0,0 +1,281 @@
+package frc.tools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Desktop tool that fits the arm feedforward gains to system identification logs.
+ *
+ * <p>The arm subsystem records a {@code double[]} sample of voltage, position and velocity to
+ * {@code /arm/sysid/data} every system identification period, and the name of each test to {@code
+ * /arm/sysid/test} when it starts. The acceleration of each sample is the central difference of the
+ * velocities around it within the same test. The gains are the least squares fit of
+ *
+ * <pre>
+ * V = kS * sgn(v) + kG * cos(position) + kV * v + kA * a
+ * </pre>
+ *
+ * <p>to all samples of all logs, except samples where the arm is nearly stopped so that the
+ * direction of static friction is not known. The normal equations are accumulated as the logs are
+ * read, so the samples are not kept in memory.
+ *
+ * <pre>
+ * ./gradlew fitArm -Plogs=path/to/logs
+ * </pre>
+ */
+public final class ArmSysIdFitter implements WpiLogReader.Visitor {
+
+  /** Samples slower than this are not used. */
+  public static final double MIN_VELOCITY_RAD_PER_SEC = 0.05;
+
+  /** Samples further apart than this are treated as separate runs. */
+  public static final double MAX_SAMPLE_GAP_SEC = 0.05;
+
+  private static final int TERMS = 4;
+
+  // Entry ids of the current log
+  private int dataEntry = -1;
+  private int testEntry = -1;
+
+  // The last two samples, so the velocity on both sides of the earlier one is known
+  private int runLength;
+  private double time1;
+  private double voltage1;
+  private double position1;
+  private double velocity1;
+  private double time2;
+  private double velocity2;
+
+  // Normal equations of the fit
+  private final double[][] ata = new double[TERMS][TERMS];
+  private final double[] atb = new double[TERMS];
+  private final double[] row = new double[TERMS];
+  private double sumVoltage;
+  private double sumVoltageSquared;
+  private int sampleCount;
+
+  /** Fitted gains and how well they explain the samples. */
+  public static final class Result {
+    /** Static gain in volts. */
+    public final double ks;
+
+    /** Gravity gain in volts. */
+    public final double kg;
+
+    /** Velocity gain in volts per radian per second. */
+    public final double kv;
+
+    /** Acceleration gain in volts per radian per second squared. */
+    public final double ka;
+
+    /** Fraction of the voltage variance explained by the fit. */
+    public final double rSquared;
+
+    /** Number of samples in the fit. */
+    public final int samples;
+
+    Result(double ks, double kg, double kv, double ka, double rSquared, int samples) {
+      this.ks = ks;
+      this.kg = kg;
+      this.kv = kv;
+      this.ka = ka;
+      this.rSquared = rSquared;
+      this.samples = samples;
+    }
+
+    /** Returns the gains as Preferences keys and values, with kA and the fit quality as notes. */
+    @Override
+    public String toString() {
+      return String.format(
+          Locale.ROOT,
+          "ArmKS=%.4f%nArmKG=%.4f%nArmKV=%.4f%n# kA=%.5f (not a preference)%n# %d samples,"
+              + " R^2=%.4f",
+          ks,
+          kg,
+          kv,
+          ka,
+          samples,
+          rSquared);
+    }
+  }
+
+  /**
+   * Fit the gains to logs and print them.
+   *
+   * @param args The log files or directories.
+   * @throws IOException If a log or directory can't be read.
+   */
+  public static void main(String[] args) throws IOException {
+    List<Path> inputs = new ArrayList<>();
+    for (String arg : args) {
+      inputs.add(Paths.get(arg));
+    }
+    if (inputs.isEmpty()) {
+      System.err.println("Usage: ArmSysIdFitter <log file or directory>...");
+      System.exit(1);
+    }
+
+    ArmSysIdFitter fitter = new ArmSysIdFitter();
+    for (Path log : LogAnalyzer.findLogs(inputs)) {
+      fitter.read(log);
+    }
+    System.out.println(fitter.fit());
+  }
+
+  /**
+   * Add the samples of a log.
+   *
+   * @param log The log file.
+   * @throws IOException If the file can't be read or is not a valid log.
+   */
+  public void read(Path log) throws IOException {
+    dataEntry = -1;
+    testEntry = -1;
+    startTest();
+    WpiLogReader.read(log, this);
+  }
+
+  @Override
+  public void start(int entry, String name, String type, long timestamp) {
+    if ("/arm/sysid/data".equals(name)) {
+      dataEntry = entry;
+    } else if ("/arm/sysid/test".equals(name)) {
+      testEntry = entry;
+    }
+  }
+
+  @Override
+  public void record(int entry, long timestamp, ByteBuffer payload) {
+    if (entry == dataEntry) {
+      int start = payload.position();
+      addSample(
+          timestamp * 1e-6,
+          payload.getDouble(start),
+          payload.getDouble(start + Double.BYTES),
+          payload.getDouble(start + 2 * Double.BYTES));
+    } else if (entry == testEntry) {
+      startTest();
+    }
+  }
+
+  /** Start a new test, so acceleration is not calculated across the gap from the last one. */
+  public void startTest() {
+    runLength = 0;
+  }
+
+  /**
+   * Add a sample. The sample before it is added to the fit once its acceleration is known.
+   *
+   * @param time The sample time in seconds.
+   * @param voltage The applied voltage.
+   * @param position The arm position in radians from horizontal.
+   * @param velocity The arm velocity in radians per second.
+   */
+  public void addSample(double time, double voltage, double position, double velocity) {
+    if (runLength > 0 && time - time1 > MAX_SAMPLE_GAP_SEC) {
+      runLength = 0;
+    }
+    if (runLength >= 2 && Math.abs(velocity1) >= MIN_VELOCITY_RAD_PER_SEC) {
+      double acceleration = (velocity - velocity2) / (time - time2);
+      addToFit(voltage1, position1, velocity1, acceleration);
+    }
+    time2 = time1;
+    velocity2 = velocity1;
+    time1 = time;
+    voltage1 = voltage;
+    position1 = position;
+    velocity1 = velocity;
+    runLength++;
+  }
+
+  private void addToFit(double voltage, double position, double velocity, double acceleration) {
+    row[0] = Math.signum(velocity);
+    row[1] = Math.cos(position);
+    row[2] = velocity;
+    row[3] = acceleration;
+    for (int i = 0; i < TERMS; i++) {
+      for (int j = 0; j < TERMS; j++) {
+        ata[i][j] += row[i] * row[j];
+      }
+      atb[i] += row[i] * voltage;
+    }
+    sumVoltage += voltage;
+    sumVoltageSquared += voltage * voltage;
+    sampleCount++;
+  }
+
+  /** Returns the number of samples in the fit so far. */
+  public int getSampleCount() {
+    return sampleCount;
+  }
+
+  /**
+   * Solve for the gains.
+   *
+   * @return The gains.
+   * @throws IllegalStateException If the samples don't determine all four gains, for example if
+   *     only one test was run.
+   */
+  public Result fit() {
+    double[] gains = solve();
+
+    // Residual sum of squares from the normal equations: b'b - 2 x'A'b + x'A'Ax
+    double residual = sumVoltageSquared;
+    for (int i = 0; i < TERMS; i++) {
+      residual -= 2 * gains[i] * atb[i];
+      for (int j = 0; j < TERMS; j++) {
+        residual += gains[i] * ata[i][j] * gains[j];
+      }
+    }
+    double total = sumVoltageSquared - sumVoltage * sumVoltage / sampleCount;
+    double rSquared = total > 0 ? 1 - residual / total : 0;
+    return new Result(gains[0], gains[1], gains[2], gains[3], rSquared, sampleCount);
+  }
+
+  /** Solve the normal equations by Gaussian elimination with partial pivoting. */
+  private double[] solve() {
+    double[][] a = new double[TERMS][TERMS + 1];
+    for (int i = 0; i < TERMS; i++) {
+      System.arraycopy(ata[i], 0, a[i], 0, TERMS);
+      a[i][TERMS] = atb[i];
+    }
+
+    for (int col = 0; col < TERMS; col++) {
+      int pivot = col;
+      for (int r = col + 1; r < TERMS; r++) {
+        if (Math.abs(a[r][col]) > Math.abs(a[pivot][col])) {
+          pivot = r;
+        }
+      }
+      if (Math.abs(a[pivot][col]) < 1e-9 * Math.max(1, sampleCount)) {
+        throw new IllegalStateException(
+            "Not enough variation in " + sampleCount + " samples to fit the arm gains");
+      }
+      double[] swap = a[col];
+      a[col] = a[pivot];
+      a[pivot] = swap;
+
+      for (int r = col + 1; r < TERMS; r++) {
+        double factor = a[r][col] / a[col][col];
+        for (int c = col; c <= TERMS; c++) {
+          a[r][c] -= factor * a[col][c];
+        }
+      }
+    }
+
+    double[] x = new double[TERMS];
+    for (int i = TERMS - 1; i >= 0; i--) {
+      double sum = a[i][TERMS];
+      for (int j = i + 1; j < TERMS; j++) {
+        sum -= a[i][j] * x[j];
+      }
+      x[i] = sum / a[i][i];
+    }
+    return x;
+  }
+}
@@ -0,0 +1,170 @@
+package frc.tools;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Stream;
+
+/**
+ * Desktop tool that summarizes robot {@code .wpilog} files.
+ *
+ * <p>Each log is read in one streaming pass by {@link WpiLogReader} into a {@link LogSummary}.
+ * Directories are searched for logs, and the logs are analyzed in parallel on a fork-join pool. The
+ * report has a section for each log followed by the combined statistics of all logs.
+ *
+ * <pre>
+ * ./gradlew analyzeLogs -Plogs=path/to/logs [-Preport=report.txt]
+ * </pre>
+ */
+public final class LogAnalyzer {
+
+  private LogAnalyzer() {
+    // Command line tool
+  }
+
+  /**
+   * Analyze logs and print the report.
+   *
+   * @param args The log files or directories, optionally followed by {@code --out <file>}.
+   * @throws IOException If a log or directory can't be read.
+   */
+  public static void main(String[] args) throws IOException {
+    List<Path> inputs = new ArrayList<>();
+    Path reportFile = null;
+    for (int i = 0; i < args.length; i++) {
+      if ("--out".equals(args[i]) && i + 1 < args.length) {
+        reportFile = Paths.get(args[++i]);
+      } else {
+        inputs.add(Paths.get(args[i]));
+      }
+    }
+    if (inputs.isEmpty()) {
+      System.err.println("Usage: LogAnalyzer <log file or directory>... [--out <report file>]");
+      System.exit(1);
+    }
+
+    List<Path> logs = findLogs(inputs);
+    LogSummary[] summaries = analyze(logs, ForkJoinPool.commonPool());
+
+    if (reportFile == null) {
+      printReport(summaries, System.out);
+    } else {
+      try (PrintStream out =
+          new PrintStream(
+              new FileOutputStream(reportFile.toFile()), false, StandardCharsets.UTF_8)) {
+        printReport(summaries, out);
+      }
+      System.out.println("Wrote " + reportFile);
+    }
+  }
+
+  /**
+   * Find the log files in a list of files and directories.
+   *
+   * @param inputs Files are used as given and directories are searched for {@code .wpilog} files.
+   * @return The log files, sorted by path.
+   * @throws IOException If a directory can't be read.
+   */
+  public static List<Path> findLogs(List<Path> inputs) throws IOException {
+    List<Path> logs = new ArrayList<>();
+    for (Path input : inputs) {
+      if (Files.isDirectory(input)) {
+        try (Stream<Path> files = Files.walk(input)) {
+          files
+              .filter(file -> file.getFileName().toString().endsWith(".wpilog"))
+              .sorted()
+              .forEach(logs::add);
+        }
+      } else {
+        logs.add(input);
+      }
+    }
+    return logs;
+  }
+
+  /**
+   * Analyze logs in parallel.
+   *
+   * @param logs The log files.
+   * @param pool The pool to run on.
+   * @return The summary of each log, in the same order as the files.
+   * @throws IOException If a log can't be read.
+   */
+  public static LogSummary[] analyze(List<Path> logs, ForkJoinPool pool) throws IOException {
+    LogSummary[] summaries = new LogSummary[logs.size()];
+    try {
+      pool.invoke(new AnalyzeTask(logs, summaries, 0, logs.size()));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+    return summaries;
+  }
+
+  /**
+   * Analyze one log on the calling thread.
+   *
+   * @param log The log file.
+   * @return The summary.
+   * @throws IOException If the log can't be read.
+   */
+  public static LogSummary analyze(Path log) throws IOException {
+    LogSummary summary = new LogSummary(log.getFileName().toString());
+    WpiLogReader.read(log, summary);
+    summary.finish();
+    return summary;
+  }
+
+  private static void printReport(LogSummary[] summaries, PrintStream out) {
+    LogSummary total = new LogSummary("All logs (" + summaries.length + ")");
+    for (LogSummary summary : summaries) {
+      summary.print(out);
+      out.println();
+      total.merge(summary);
+    }
+    total.print(out);
+  }
+
+  /** Splits the list of logs in half until each task has a single log. */
+  private static final class AnalyzeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<Path> logs;
+    private final transient LogSummary[] summaries;
+    private final int start;
+    private final int end;
+
+    AnalyzeTask(List<Path> logs, LogSummary[] summaries, int start, int end) {
+      this.logs = logs;
+      this.summaries = summaries;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start <= 1) {
+        for (int i = start; i < end; i++) {
+          try {
+            summaries[i] = analyze(logs.get(i));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+        return;
+      }
+      int middle = (start + end) >>> 1;
+      invokeAll(
+          new AnalyzeTask(logs, summaries, start, middle),
+          new AnalyzeTask(logs, summaries, middle, end));
+    }
+  }
+}
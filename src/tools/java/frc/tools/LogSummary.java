@@ -0,0 +1,404 @@
+package frc.tools;
+
+import frc.robot.Constants.ArmConstants;
+import frc.robot.telemetry.ArmState;
+import frc.robot.telemetry.CommandEventLog;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Statistics collected from one or more robot logs.
+ *
+ * <p>A summary is filled by passing it to {@link WpiLogReader#read} as the visitor. It collects:
+ *
+ * <ul>
+ *   <li>Loop time percentiles from {@code /robot/LoopTime}.
+ *   <li>Command run times from {@code /command/dictionary} and {@code /command/event}.
+ *   <li>Arm settle times from {@code /arm/state}: the time from a goal change until the measured
+ *       position is within the tolerance of the goal and stays there for {@link #ARM_SETTLED_LOOPS}
+ *       loops, so an overshoot through the goal is not counted as settled.
+ *   <li>Brownout intervals from {@code /robot/BrownedOut}.
+ * </ul>
+ *
+ * <p>Entries are matched by name and type. An entry with a known name but a different type, for
+ * example from an older robot program, is counted in {@link #getMismatchedEntries()} and skipped.
+ *
+ * <p>Summaries of different logs can be combined with {@link #merge(LogSummary)}.
+ */
+public final class LogSummary implements WpiLogReader.Visitor {
+
+  /** Number of loops the arm must stay within tolerance of its goal to count as settled. */
+  public static final int ARM_SETTLED_LOOPS = 10;
+
+  private static final int EVENT_MASK = (1 << CommandEventLog.EVENT_BITS) - 1;
+
+  private static final double LOOP_PERIOD_SECONDS = 0.02;
+  private static final double MICROS_PER_SECOND = 1e6;
+  private static final double MICROS_PER_MS = 1e3;
+  private static final long ARM_SETTLED_MICROS =
+      Math.round(ARM_SETTLED_LOOPS * LOOP_PERIOD_SECONDS * MICROS_PER_SECOND);
+
+  private final String name;
+  private int loopTimeEntry = -1;
+  private int dictionaryEntry = -1;
+  private int eventEntry = -1;
+  private int armStateEntry = -1;
+  private int brownoutEntry = -1;
+
+  private final DoubleList loopTimes = new DoubleList();
+
+  private final Map<Integer, String> commandNames = new HashMap<>();
+  private final Map<Integer, Long> commandStarts = new HashMap<>();
+  private final Map<String, CommandStats> commands = new TreeMap<>();
+
+  private final DoubleList settleTimes = new DoubleList();
+  private double armGoal = Double.NaN;
+  private long armGoalTime = -1;
+  private long armInToleranceTime = -1;
+  private int unsettledGoals;
+
+  private int mismatchedEntries;
+
+  private long brownoutStart = -1;
+  private int brownoutCount;
+  private long brownoutMicros;
+  private long lastTimestamp;
+
+  /**
+   * Create an empty summary.
+   *
+   * @param name The name shown in the report, usually the log file name.
+   */
+  public LogSummary(String name) {
+    this.name = name;
+  }
+
+  /** Returns the name shown in the report. */
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public void start(int entry, String entryName, String type, long timestamp) {
+    switch (entryName) {
+      case "/robot/LoopTime":
+        loopTimeEntry = match(entry, type, "double", loopTimeEntry);
+        break;
+      case "/command/dictionary":
+        dictionaryEntry = match(entry, type, "string", dictionaryEntry);
+        break;
+      case "/command/event":
+        eventEntry = match(entry, type, "int64", eventEntry);
+        break;
+      case "/arm/state":
+        armStateEntry = match(entry, type, ArmState.struct.getTypeString(), armStateEntry);
+        break;
+      case "/robot/BrownedOut":
+        brownoutEntry = match(entry, type, "boolean", brownoutEntry);
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Returns the new entry id if the type is the expected one, otherwise counts it and keeps the
+   * current id.
+   */
+  private int match(int entry, String type, String expectedType, int currentEntry) {
+    if (!expectedType.equals(type)) {
+      mismatchedEntries++;
+      return currentEntry;
+    }
+    return entry;
+  }
+
+  @Override
+  public void record(int entry, long timestamp, ByteBuffer payload) {
+    lastTimestamp = Math.max(lastTimestamp, timestamp);
+    if (entry == loopTimeEntry) {
+      loopTimes.add(payload.getDouble());
+    } else if (entry == eventEntry) {
+      commandEvent(payload.getLong(), timestamp);
+    } else if (entry == armStateEntry) {
+      if (payload.remaining() != ArmState.struct.getSize()) {
+        // Same type name with a different layout, so none of its records can be read
+        mismatchedEntries++;
+        armStateEntry = -1;
+        return;
+      }
+      ArmState state = ArmState.struct.unpack(payload);
+      armState(state.goal, state.position, timestamp);
+    } else if (entry == brownoutEntry) {
+      brownout(payload.get() != 0, timestamp);
+    } else if (entry == dictionaryEntry) {
+      String record = WpiLogReader.getString(payload);
+      int comma = record.indexOf(',');
+      commandNames.put(Integer.parseInt(record.substring(0, comma)), record.substring(comma + 1));
+    }
+  }
+
+  /** Close any intervals that were still open at the end of the log. */
+  public void finish() {
+    if (brownoutStart >= 0) {
+      brownout(false, lastTimestamp);
+    }
+    if (armGoalTime >= 0) {
+      unsettledGoals++;
+      armGoalTime = -1;
+    }
+    commandStarts.clear();
+  }
+
+  private void commandEvent(long record, long timestamp) {
+    int id = (int) (record >> CommandEventLog.EVENT_BITS);
+    int event = (int) (record & EVENT_MASK);
+    if (event == CommandEventLog.EVENT_INITIALIZE) {
+      commandStarts.put(id, timestamp);
+      return;
+    }
+    Long start = commandStarts.remove(id);
+    if (start == null) {
+      return;
+    }
+    String commandName = commandNames.getOrDefault(id, "#" + id);
+    commands
+        .computeIfAbsent(commandName, key -> new CommandStats())
+        .add(timestamp - start, event == CommandEventLog.EVENT_INTERRUPT);
+  }
+
+  private void armState(double goal, double position, long timestamp) {
+    if (goal != armGoal) {
+      if (armGoalTime >= 0) {
+        unsettledGoals++;
+      }
+      armGoal = goal;
+      armGoalTime = timestamp;
+      armInToleranceTime = -1;
+    }
+    if (armGoalTime < 0) {
+      return;
+    }
+    if (Math.abs(goal - position) >= ArmConstants.POSITION_TOLERANCE) {
+      // Passing through the goal on an overshoot is not settling
+      armInToleranceTime = -1;
+      return;
+    }
+    if (armInToleranceTime < 0) {
+      armInToleranceTime = timestamp;
+    }
+    if (timestamp - armInToleranceTime >= ARM_SETTLED_MICROS) {
+      // Settled when it entered the tolerance for the last time
+      settleTimes.add((armInToleranceTime - armGoalTime) / MICROS_PER_SECOND);
+      armGoalTime = -1;
+    }
+  }
+
+  private void brownout(boolean brownedOut, long timestamp) {
+    if (brownedOut && brownoutStart < 0) {
+      brownoutStart = timestamp;
+    } else if (!brownedOut && brownoutStart >= 0) {
+      brownoutCount++;
+      brownoutMicros += timestamp - brownoutStart;
+      brownoutStart = -1;
+    }
+  }
+
+  /**
+   * Add the statistics of another summary to this one.
+   *
+   * @param other A finished summary.
+   */
+  public void merge(LogSummary other) {
+    loopTimes.addAll(other.loopTimes);
+    settleTimes.addAll(other.settleTimes);
+    unsettledGoals += other.unsettledGoals;
+    mismatchedEntries += other.mismatchedEntries;
+    brownoutCount += other.brownoutCount;
+    brownoutMicros += other.brownoutMicros;
+    for (Map.Entry<String, CommandStats> command : other.commands.entrySet()) {
+      commands
+          .computeIfAbsent(command.getKey(), key -> new CommandStats())
+          .merge(command.getValue());
+    }
+  }
+
+  /** Returns the number of loop time samples. */
+  public int getLoopCount() {
+    return loopTimes.size;
+  }
+
+  /**
+   * Returns a loop time percentile in seconds, or NaN if there are no samples.
+   *
+   * @param percentile The percentile, from 0 to 1.
+   */
+  public double getLoopTimePercentile(double percentile) {
+    return loopTimes.percentile(percentile);
+  }
+
+  /** Returns the number of arm goals that were reached. */
+  public int getSettleCount() {
+    return settleTimes.size;
+  }
+
+  /**
+   * Returns an arm settle time percentile in seconds, or NaN if no goals were reached.
+   *
+   * @param percentile The percentile, from 0 to 1.
+   */
+  public double getSettleTimePercentile(double percentile) {
+    return settleTimes.percentile(percentile);
+  }
+
+  /** Returns the number of arm goals that were replaced or never reached. */
+  public int getUnsettledGoals() {
+    return unsettledGoals;
+  }
+
+  /** Returns the number of known entries that were skipped because their type did not match. */
+  public int getMismatchedEntries() {
+    return mismatchedEntries;
+  }
+
+  /** Returns the number of brownouts. */
+  public int getBrownoutCount() {
+    return brownoutCount;
+  }
+
+  /** Returns the total brownout time in seconds. */
+  public double getBrownoutSeconds() {
+    return brownoutMicros / MICROS_PER_SECOND;
+  }
+
+  /**
+   * Returns the number of completed runs of a command.
+   *
+   * @param commandName The command name.
+   */
+  public int getCommandCount(String commandName) {
+    CommandStats stats = commands.get(commandName);
+    return stats == null ? 0 : stats.count;
+  }
+
+  /**
+   * Print the summary.
+   *
+   * @param out Where to print.
+   */
+  public void print(PrintStream out) {
+    out.println("== " + name);
+    if (loopTimes.size > 0) {
+      out.printf(
+          "Loop time ms: n=%d p50=%.2f p90=%.2f p99=%.2f max=%.2f over %dms=%d%n",
+          loopTimes.size,
+          loopTimes.percentile(0.5) * MICROS_PER_MS,
+          loopTimes.percentile(0.9) * MICROS_PER_MS,
+          loopTimes.percentile(0.99) * MICROS_PER_MS,
+          loopTimes.percentile(1.0) * MICROS_PER_MS,
+          (int) (LOOP_PERIOD_SECONDS * MICROS_PER_MS),
+          loopTimes.countAbove(LOOP_PERIOD_SECONDS));
+    }
+    if (!commands.isEmpty()) {
+      out.println("Commands (runs, interrupted, mean s, max s):");
+      for (Map.Entry<String, CommandStats> command : commands.entrySet()) {
+        CommandStats stats = command.getValue();
+        out.printf(
+            "  %-40s %5d %5d %8.3f %8.3f%n",
+            command.getKey(),
+            stats.count,
+            stats.interrupted,
+            stats.totalMicros / MICROS_PER_SECOND / stats.count,
+            stats.maxMicros / MICROS_PER_SECOND);
+      }
+    }
+    if (settleTimes.size > 0 || unsettledGoals > 0) {
+      out.printf(
+          "Arm settle s: n=%d p50=%.3f p90=%.3f max=%.3f unsettled=%d%n",
+          settleTimes.size,
+          settleTimes.percentile(0.5),
+          settleTimes.percentile(0.9),
+          settleTimes.percentile(1.0),
+          unsettledGoals);
+    }
+    out.printf("Brownouts: %d totaling %.3f s%n", brownoutCount, getBrownoutSeconds());
+    if (mismatchedEntries > 0) {
+      out.printf("Skipped %d entries with unexpected types%n", mismatchedEntries);
+    }
+  }
+
+  /** Run time statistics for one command. */
+  private static final class CommandStats {
+    int count;
+    int interrupted;
+    long totalMicros;
+    long maxMicros;
+
+    void add(long micros, boolean wasInterrupted) {
+      count++;
+      if (wasInterrupted) {
+        interrupted++;
+      }
+      totalMicros += micros;
+      maxMicros = Math.max(maxMicros, micros);
+    }
+
+    void merge(CommandStats other) {
+      count += other.count;
+      interrupted += other.interrupted;
+      totalMicros += other.totalMicros;
+      maxMicros = Math.max(maxMicros, other.maxMicros);
+    }
+  }
+
+  /** Growable array of doubles that avoids boxing every sample. */
+  private static final class DoubleList {
+    double[] values = new double[1024];
+    int size;
+    boolean sorted = true;
+
+    void add(double value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+      sorted = false;
+    }
+
+    void addAll(DoubleList other) {
+      for (int i = 0; i < other.size; i++) {
+        add(other.values[i]);
+      }
+    }
+
+    double percentile(double percentile) {
+      if (size == 0) {
+        return Double.NaN;
+      }
+      sort();
+      int index = (int) Math.ceil(percentile * size) - 1;
+      return values[Math.max(0, Math.min(size - 1, index))];
+    }
+
+    int countAbove(double threshold) {
+      int count = 0;
+      for (int i = 0; i < size; i++) {
+        if (values[i] > threshold) {
+          count++;
+        }
+      }
+      return count;
+    }
+
+    private void sort() {
+      if (!sorted) {
+        Arrays.sort(values, 0, size);
+        sorted = true;
+      }
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package frc.tools;
+
+import edu.wpi.first.math.controller.SimpleMotorFeedforward;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+import edu.wpi.first.math.trajectory.TrajectoryConfig;
+import edu.wpi.first.math.trajectory.TrajectoryGenerator;
+import edu.wpi.first.math.trajectory.constraint.DifferentialDriveVoltageConstraint;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.control.DriveTrajectory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Build-time tool that compiles drive path definitions into binary trajectory files.
+ *
+ * <p>Each {@code .path} file in the path directory is a list of waypoints the robot drives through,
+ * one per line, with optional limits:
+ *
+ * <pre>
+ * # Comments start with #
+ * maxVelocity 2.0        # meters per second
+ * maxAcceleration 1.5    # meters per second squared
+ * reversed true          # drive backwards
+ * waypoint 0.0 0.0 0     # x and y in meters, heading in degrees
+ * waypoint 3.0 1.0 30
+ * </pre>
+ *
+ * <p>The trajectory through the waypoints is generated by the WPILib trajectory generator, limited
+ * by the drive feedforward to {@link DriveConstants#MAX_TRAJECTORY_VOLTS}, and written as a {@link
+ * DriveTrajectory} file with the same name and a {@code .traj} extension. The robot memory-maps the
+ * files from the deploy directory, so it does not generate trajectories while it boots. The build
+ * runs this before the robot jar is built:
+ *
+ * <pre>
+ * ./gradlew generateTrajectories
+ * </pre>
+ */
+public final class TrajectoryCompiler {
+
+  /** Extension of path definition files. */
+  public static final String PATH_EXTENSION = ".path";
+
+  /** Extension of compiled trajectory files. */
+  public static final String TRAJECTORY_EXTENSION = DriveTrajectory.FILE_EXTENSION;
+
+  private TrajectoryCompiler() {
+    // Command line tool
+  }
+
+  /**
+   * Compile every path definition in a directory.
+   *
+   * @param args The path directory and the trajectory output directory.
+   * @throws IOException If a path can't be read or a trajectory can't be written.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: TrajectoryCompiler <path directory> <trajectory directory>");
+      System.exit(1);
+    }
+    Path pathDirectory = Paths.get(args[0]);
+    Path trajectoryDirectory = Paths.get(args[1]);
+    Files.createDirectories(trajectoryDirectory);
+
+    try (DirectoryStream<Path> paths =
+        Files.newDirectoryStream(pathDirectory, "*" + PATH_EXTENSION)) {
+      for (Path path : paths) {
+        String name = path.getFileName().toString();
+        name = name.substring(0, name.length() - PATH_EXTENSION.length());
+        Path output = trajectoryDirectory.resolve(name + TRAJECTORY_EXTENSION);
+        Trajectory trajectory = generate(path);
+        write(trajectory, output);
+        System.out.printf(Locale.ROOT, "%s: %.2f s%n", output, trajectory.getTotalTimeSeconds());
+      }
+    }
+  }
+
+  /**
+   * Generate the trajectory for a path definition.
+   *
+   * @param path The path definition file.
+   * @return The trajectory.
+   * @throws IOException If the file can't be read or is not a valid path definition.
+   */
+  public static Trajectory generate(Path path) throws IOException {
+    double maxVelocity = DriveConstants.MAX_SPEED_METERS_PER_SEC;
+    double maxAcceleration = DriveConstants.MAX_ACCELERATION_METERS_PER_SEC_SQUARED;
+    boolean reversed = false;
+    List<Pose2d> waypoints = new ArrayList<>();
+
+    List<String> lines = Files.readAllLines(path);
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i);
+      int comment = line.indexOf('#');
+      String[] words = (comment >= 0 ? line.substring(0, comment) : line).trim().split("\\s+");
+      try {
+        switch (words[0]) {
+          case "":
+            break;
+          case "maxVelocity":
+            maxVelocity = Double.parseDouble(words[1]);
+            break;
+          case "maxAcceleration":
+            maxAcceleration = Double.parseDouble(words[1]);
+            break;
+          case "reversed":
+            reversed = Boolean.parseBoolean(words[1]);
+            break;
+          case "waypoint":
+            waypoints.add(
+                new Pose2d(
+                    Double.parseDouble(words[1]),
+                    Double.parseDouble(words[2]),
+                    Rotation2d.fromDegrees(Double.parseDouble(words[3]))));
+            break;
+          default:
+            throw new IOException(path + ":" + (i + 1) + ": unknown setting " + words[0]);
+        }
+      } catch (IndexOutOfBoundsException | NumberFormatException e) {
+        throw new IOException(path + ":" + (i + 1) + ": invalid " + words[0], e);
+      }
+    }
+    if (waypoints.size() < 2) {
+      throw new IOException(path + ": a path needs at least two waypoints");
+    }
+
+    TrajectoryConfig config =
+        new TrajectoryConfig(maxVelocity, maxAcceleration)
+            .setKinematics(DriveConstants.kDriveKinematics)
+            .setReversed(reversed)
+            .addConstraint(
+                new DifferentialDriveVoltageConstraint(
+                    new SimpleMotorFeedforward(
+                        DriveConstants.KS_VOLTS,
+                        DriveConstants.KV_VOLTS_PER_METER_PER_SEC,
+                        DriveConstants.KA_VOLTS_PER_METER_PER_SEC_SQUARED),
+                    DriveConstants.kDriveKinematics,
+                    DriveConstants.MAX_TRAJECTORY_VOLTS));
+    return TrajectoryGenerator.generateTrajectory(waypoints, config);
+  }
+
+  /**
+   * Write a trajectory file.
+   *
+   * @param trajectory The trajectory.
+   * @param file The trajectory file.
+   * @throws IOException If the file can't be written.
+   */
+  public static void write(Trajectory trajectory, Path file) throws IOException {
+    List<Trajectory.State> states = trajectory.getStates();
+    double[] samples = new double[states.size() * DriveTrajectory.FIELDS];
+    int count = 0;
+    float lastTime = Float.NEGATIVE_INFINITY;
+    for (Trajectory.State state : states) {
+      // Drop samples too close together to have different times in the file
+      if ((float) state.timeSeconds <= lastTime) {
+        continue;
+      }
+      lastTime = (float) state.timeSeconds;
+      int offset = count * DriveTrajectory.FIELDS;
+      samples[offset + DriveTrajectory.TIME] = state.timeSeconds;
+      samples[offset + DriveTrajectory.X] = state.poseMeters.getX();
+      samples[offset + DriveTrajectory.Y] = state.poseMeters.getY();
+      samples[offset + DriveTrajectory.HEADING] = state.poseMeters.getRotation().getRadians();
+      samples[offset + DriveTrajectory.VELOCITY] = state.velocityMetersPerSecond;
+      samples[offset + DriveTrajectory.ACCELERATION] = state.accelerationMetersPerSecondSq;
+      samples[offset + DriveTrajectory.CURVATURE] = state.curvatureRadPerMeter;
+      count++;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(DriveTrajectory.getFileSize(count));
+    DriveTrajectory.write(Arrays.copyOf(samples, count * DriveTrajectory.FIELDS), buffer);
+    Files.write(file, buffer.array());
+  }
+}
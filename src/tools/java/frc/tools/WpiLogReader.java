@@ -0,0 +1,178 @@
+package frc.tools;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming reader for WPILib {@code .wpilog} files.
+ *
+ * <p>The file is memory mapped and read in a single pass. Records are passed to a {@link Visitor}
+ * as they are found; nothing is kept in memory by the reader. The record payload is passed as a
+ * view of the mapped file that is only valid until the visitor returns.
+ *
+ * <p>See the WPILib datalog specification for the format: a header, then records with a one byte
+ * field length bitfield followed by the entry id, payload size and timestamp in little endian.
+ * Entry id 0 holds control records that start and finish entries.
+ */
+public final class WpiLogReader {
+
+  private static final byte[] MAGIC = "WPILOG".getBytes(StandardCharsets.US_ASCII);
+  private static final int SUPPORTED_VERSION = 0x0100;
+  private static final int CONTROL_START = 0;
+
+  /** Receives the contents of a log. */
+  public interface Visitor {
+    /**
+     * An entry was started. Data records for the entry follow.
+     *
+     * @param entry The entry id.
+     * @param name The entry name.
+     * @param type The entry type string, such as {@code double} or {@code struct:ArmState}.
+     * @param timestamp The start time in microseconds.
+     */
+    void start(int entry, String name, String type, long timestamp);
+
+    /**
+     * A data record was read.
+     *
+     * @param entry The entry id.
+     * @param timestamp The record time in microseconds.
+     * @param payload The little endian payload, positioned at its first byte.
+     */
+    void record(int entry, long timestamp, ByteBuffer payload);
+  }
+
+  private WpiLogReader() {
+    // Static methods only
+  }
+
+  /**
+   * Read a log file.
+   *
+   * @param file The file to read.
+   * @param visitor Receives the entries and records.
+   * @throws IOException If the file can't be read or is not a valid log.
+   */
+  public static void read(Path file, Visitor visitor) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(file + " is larger than 2 GB");
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      read(buffer, visitor);
+    }
+  }
+
+  /**
+   * Read a log from a buffer.
+   *
+   * @param buffer The log contents, from the header to the end of the log.
+   * @param visitor Receives the entries and records.
+   * @throws IOException If the buffer is not a valid log.
+   */
+  public static void read(ByteBuffer buffer, Visitor visitor) throws IOException {
+    ByteBuffer log = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    try {
+      readRecords(log, visitor);
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      throw new IOException("Log is corrupt at offset " + log.position(), e);
+    }
+  }
+
+  private static void readRecords(ByteBuffer log, Visitor visitor) throws IOException {
+    readHeader(log);
+
+    // Reused view of each payload so reading a record does not allocate
+    ByteBuffer payload = log.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    while (log.remaining() > 0) {
+      int lengths = log.get() & 0xff;
+      int entryBytes = (lengths & 0x3) + 1;
+      int sizeBytes = ((lengths >> 2) & 0x3) + 1;
+      int timestampBytes = ((lengths >> 4) & 0x7) + 1;
+      // The last record of a log that was not closed cleanly may be cut off, in its header or its
+      // payload
+      if (entryBytes + sizeBytes + timestampBytes > log.remaining()) {
+        break;
+      }
+      int entry = (int) readVarInt(log, entryBytes);
+      int size = (int) readVarInt(log, sizeBytes);
+      long timestamp = readVarInt(log, timestampBytes);
+      int start = log.position();
+      if (size > log.remaining()) {
+        break;
+      }
+      log.position(start + size);
+
+      payload.limit(start + size).position(start);
+      if (entry == 0) {
+        readControl(payload, timestamp, visitor);
+      } else {
+        visitor.record(entry, timestamp, payload);
+      }
+    }
+  }
+
+  private static void readHeader(ByteBuffer log) throws IOException {
+    for (byte b : MAGIC) {
+      if (log.get() != b) {
+        throw new IOException("Not a wpilog file");
+      }
+    }
+    int version = log.getShort() & 0xffff;
+    if (version != SUPPORTED_VERSION) {
+      throw new IOException("Unsupported wpilog version " + Integer.toHexString(version));
+    }
+    int extraHeaderLength = log.getInt();
+    log.position(log.position() + extraHeaderLength);
+  }
+
+  private static void readControl(ByteBuffer payload, long timestamp, Visitor visitor) {
+    int control = payload.get();
+    if (control == CONTROL_START) {
+      int entry = payload.getInt();
+      String name = getString(payload, payload.getInt());
+      String type = getString(payload, payload.getInt());
+      visitor.start(entry, name, type, timestamp);
+    }
+    // Finish and set metadata records are not needed by the analyzer
+  }
+
+  private static long readVarInt(ByteBuffer log, int bytes) {
+    long value = 0;
+    for (int i = 0; i < bytes; i++) {
+      value |= (long) (log.get() & 0xff) << (8 * i);
+    }
+    return value;
+  }
+
+  /**
+   * Decode a UTF-8 string from a payload.
+   *
+   * @param payload The payload, positioned at the start of the string.
+   * @param length The length of the string in bytes.
+   * @return The string.
+   */
+  public static String getString(ByteBuffer payload, int length) {
+    byte[] bytes = new byte[length];
+    payload.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Decode a string record.
+   *
+   * @param payload The record payload.
+   * @return The string.
+   */
+  public static String getString(ByteBuffer payload) {
+    return getString(payload, payload.remaining());
+  }
+}